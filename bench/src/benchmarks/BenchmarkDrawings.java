@@ -0,0 +1,177 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+import filters.FigureFilter;
+import filters.PaintFilter;
+import metrics.Metrics;
+import utils.Log;
+
+/**
+ * Construction des dessins utilisés par les benchmarks : des figures de
+ * tailles, positions, couleurs et traits pseudo-aléatoires (mais
+ * reproductibles) générées par un {@link SceneGenerator} sur une zone dont la
+ * surface est proportionnelle au nombre de figures (la densité de figures est
+ * donc la même quel que soit le nombre de figures).
+ * @author davidroussel
+ */
+public class BenchmarkDrawings
+{
+	/**
+	 * Graine des générateurs pseudo-aléatoires des benchmarks
+	 */
+	public final static long Seed = 0x5EEDL;
+
+	/**
+	 * Les couleurs utilisées pour le remplissage et le trait des figures
+	 */
+	public final static Color[] Colors = {Color.black, Color.blue, Color.cyan,
+	    Color.green, Color.magenta, Color.orange, Color.red, Color.white,
+	    Color.yellow};
+
+	/**
+	 * Mise en sourdine de l'éditeur lors des benchmarks : pas de journal ni
+	 * de mesures
+	 */
+	public static void quiet()
+	{
+		Log.setLevel(Log.Level.OFF);
+		Metrics.setEnabled(false);
+	}
+
+	/**
+	 * Côté de la zone occupée par un nombre de figures
+	 * @param count le nombre de figures
+	 * @return le côté (en pixels) de la zone carrée occupée par les figures
+	 */
+	public static double side(int count)
+	{
+		return new SceneGenerator(Seed).side(count);
+	}
+
+	/**
+	 * Construction d'un dessin avec les paramètres par défaut du
+	 * {@link SceneGenerator}
+	 * @param count le nombre de figures du dessin
+	 * @param seed la graine du générateur pseudo-aléatoire
+	 * @return un nouveau dessin contenant count figures
+	 */
+	public static Drawing create(int count, long seed)
+	{
+		quiet();
+		Drawing drawing = new Drawing();
+		new SceneGenerator(seed).fill(drawing, count);
+		return drawing;
+	}
+
+	/**
+	 * Points pseudo-aléatoires répartis sur la zone occupée par les figures
+	 * @param count le nombre de figures du dessin
+	 * @param points le nombre de points à générer
+	 * @param seed la graine du générateur pseudo-aléatoire
+	 * @return les points générés
+	 */
+	public static Point2D[] points(int count, int points, long seed)
+	{
+		Random random = new Random(seed);
+		double side = side(count);
+		Point2D[] result = new Point2D[points];
+		for (int i = 0; i < points; i++)
+		{
+			result[i] = new Point2D.Double(random.nextDouble() * side,
+			                               random.nextDouble() * side);
+		}
+		return result;
+	}
+
+	/**
+	 * Filtre des figures selon leur type
+	 */
+	public static class ShapeFilter extends FigureFilter<FigureType>
+	{
+		/**
+		 * Constructeur
+		 * @param type le type des figures acceptées
+		 */
+		public ShapeFilter(FigureType type)
+		{
+			super(type);
+		}
+
+		@Override
+		public boolean test(Figure f)
+		{
+			return f.getType() == element;
+		}
+	}
+
+	/**
+	 * Filtre des figures selon leur couleur de remplissage
+	 */
+	public static class FillColorFilter extends PaintFilter
+	{
+		/**
+		 * Constructeur
+		 * @param paint la couleur de remplissage des figures acceptées
+		 */
+		public FillColorFilter(Paint paint)
+		{
+			super(paint);
+		}
+
+		@Override
+		public boolean test(Figure f)
+		{
+			return matches(f.getFillId());
+		}
+	}
+
+	/**
+	 * Filtre des figures selon leur couleur de trait
+	 */
+	public static class EdgeColorFilter extends PaintFilter
+	{
+		/**
+		 * Constructeur
+		 * @param paint la couleur de trait des figures acceptées
+		 */
+		public EdgeColorFilter(Paint paint)
+		{
+			super(paint);
+		}
+
+		@Override
+		public boolean test(Figure f)
+		{
+			return matches(f.getEdgeId());
+		}
+	}
+
+	/**
+	 * Filtre des figures selon leur type de trait
+	 */
+	public static class LineFilter extends FigureFilter<LineType>
+	{
+		/**
+		 * Constructeur
+		 * @param type le type de trait des figures acceptées
+		 */
+		public LineFilter(LineType type)
+		{
+			super(type);
+		}
+
+		@Override
+		public boolean test(Figure f)
+		{
+			return f.getLineType() == element;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package benchmarks;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Ellipse;
+import figures.Figure;
+
+/**
+ * Benchmark des opérations géométriques d'une figure (transformée) :
+ * enveloppe, appartenance d'un point et transformation.
+ * @author davidroussel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FigureBenchmark
+{
+	/**
+	 * La figure
+	 */
+	private Figure figure;
+
+	/**
+	 * Un point à l'intérieur de la figure
+	 */
+	private Point2D inside;
+
+	/**
+	 * Un point à l'extérieur de l'enveloppe de la figure
+	 */
+	private Point2D outside;
+
+	/**
+	 * Un point à l'intérieur de l'enveloppe mais à l'extérieur de la figure
+	 */
+	private Point2D corner;
+
+	/**
+	 * Construction de la figure (translatée, tournée et agrandie)
+	 */
+	@Setup
+	public void setup()
+	{
+		BenchmarkDrawings.quiet();
+		figure = new Ellipse(new BasicStroke(2.0f), Color.black, Color.red,
+		                     new Point2D.Double(100, 100),
+		                     new Point2D.Double(180, 140));
+		figure.translate(20, 10);
+		figure.rotate(Math.PI / 6);
+		figure.scale(1.5);
+		Rectangle2D bounds = figure.getBounds2D();
+		inside = new Point2D.Double(bounds.getCenterX(), bounds.getCenterY());
+		outside = new Point2D.Double(bounds.getMaxX() + 50,
+		                             bounds.getMaxY() + 50);
+		corner = new Point2D.Double(bounds.getMinX() + 1,
+		                            bounds.getMinY() + 1);
+	}
+
+	/**
+	 * Enveloppe de la figure
+	 * @return l'enveloppe de la figure
+	 */
+	@Benchmark
+	public Rectangle2D getBounds2D()
+	{
+		return figure.getBounds2D();
+	}
+
+	/**
+	 * Appartenance d'un point intérieur
+	 * @return true
+	 */
+	@Benchmark
+	public boolean containsInside()
+	{
+		return figure.contains(inside);
+	}
+
+	/**
+	 * Appartenance d'un point extérieur à l'enveloppe
+	 * @return false
+	 */
+	@Benchmark
+	public boolean containsOutside()
+	{
+		return figure.contains(outside);
+	}
+
+	/**
+	 * Appartenance d'un point de l'enveloppe extérieur à la figure
+	 * @return false
+	 */
+	@Benchmark
+	public boolean containsCorner()
+	{
+		return figure.contains(corner);
+	}
+
+	/**
+	 * Transformation de la figure
+	 * @return la transformation de la figure
+	 */
+	@Benchmark
+	public AffineTransform getTransform()
+	{
+		return figure.getTransform();
+	}
+}
@@ -0,0 +1,127 @@
+package benchmarks;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Paint;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import utils.FlyweightFactory;
+import utils.PaintFactory;
+import utils.StrokeFactory;
+
+/**
+ * Benchmark de l'obtention d'éléments déjà présents dans les factories de
+ * poids mouches ({@link FlyweightFactory#get(Object)}) : avec l'instance
+ * partagée elle même ou avec une instance égale mais distincte (cas des
+ * couleurs et traits recréés par l'interface).
+ * @author davidroussel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlyweightBenchmark
+{
+	/**
+	 * Une factory de chaînes de caractères
+	 */
+	private FlyweightFactory<String> factory;
+
+	/**
+	 * L'instance partagée de la factory de chaînes
+	 */
+	private String shared;
+
+	/**
+	 * Une chaîne égale à l'instance partagée mais distincte
+	 */
+	private String equal;
+
+	/**
+	 * Une couleur égale à une couleur partagée mais distincte
+	 */
+	private Color color;
+
+	/**
+	 * Un trait égal à un trait partagé mais distinct
+	 */
+	private BasicStroke stroke;
+
+	/**
+	 * Remplissage des factories
+	 */
+	@Setup
+	public void setup()
+	{
+		BenchmarkDrawings.quiet();
+		factory = new FlyweightFactory<String>();
+		for (int i = 0; i < 64; i++)
+		{
+			factory.get("element " + i);
+		}
+		shared = factory.get("element 42");
+		equal = new String(shared);
+
+		for (Color c : BenchmarkDrawings.Colors)
+		{
+			PaintFactory.getPaint(c);
+		}
+		color = new Color(Color.orange.getRGB());
+
+		StrokeFactory.getStroke(new BasicStroke(3.0f));
+		stroke = new BasicStroke(3.0f);
+	}
+
+	/**
+	 * Obtention de l'instance partagée elle même
+	 * @return l'instance partagée
+	 */
+	@Benchmark
+	public String getShared()
+	{
+		return factory.get(shared);
+	}
+
+	/**
+	 * Obtention de l'instance partagée à partir d'une instance égale
+	 * @return l'instance partagée
+	 */
+	@Benchmark
+	public String getEqual()
+	{
+		return factory.get(equal);
+	}
+
+	/**
+	 * Obtention d'une couleur partagée à partir d'une couleur égale
+	 * @return la couleur partagée
+	 */
+	@Benchmark
+	public Paint getPaint()
+	{
+		return PaintFactory.getPaint(color);
+	}
+
+	/**
+	 * Obtention d'un trait partagé à partir d'un trait égal
+	 * @return le trait partagé
+	 */
+	@Benchmark
+	public BasicStroke getStroke()
+	{
+		return StrokeFactory.getStroke(stroke);
+	}
+}
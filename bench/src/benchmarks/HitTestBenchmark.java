@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.awt.geom.Point2D;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Benchmark de la recherche de la figure située sous un point
+ * ({@link Drawing#getFigureAt(Point2D)}) en des points pseudo-aléatoires
+ * répartis sur tout le dessin.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class HitTestBenchmark
+{
+	/**
+	 * Nombre de points testés (puissance de 2)
+	 */
+	private final static int Points = 1024;
+
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "100000", "1000000"})
+	public int figures;
+
+	/**
+	 * Le dessin
+	 */
+	private Drawing drawing;
+
+	/**
+	 * Les points testés
+	 */
+	private Point2D[] points;
+
+	/**
+	 * Index du prochain point testé
+	 */
+	private int next;
+
+	/**
+	 * Construction du dessin et des points testés
+	 */
+	@Setup
+	public void setup()
+	{
+		drawing = BenchmarkDrawings.create(figures, BenchmarkDrawings.Seed);
+		points = BenchmarkDrawings.points(figures, Points,
+		                                  BenchmarkDrawings.Seed + 1);
+		next = 0;
+	}
+
+	/**
+	 * Recherche de la figure située sous le point suivant
+	 * @return la figure trouvée (ou null)
+	 */
+	@Benchmark
+	public Figure getFigureAt()
+	{
+		Point2D p = points[next];
+		next = (next + 1) & (Points - 1);
+		return drawing.getFigureAt(p);
+	}
+}
@@ -0,0 +1,140 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Drawing;
+import figures.Figure;
+import history.Memento;
+
+/**
+ * Benchmark de la création des {@link Memento} d'un dessin et de leur
+ * restitution ({@link Drawing#setMemento(Memento)}) :
+ * <ul>
+ * <li>création d'un memento complet (toutes les figures sont copiées)</li>
+ * <li>création d'un memento alors qu'aucune figure n'a été modifiée depuis
+ * le précédent (toutes les copies sont partagées)</li>
+ * <li>création d'un memento après la modification d'une figure</li>
+ * <li>restitution alternée de deux mementos différant par 1 % des
+ * figures</li>
+ * </ul>
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class MementoBenchmark
+{
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "100000", "1000000"})
+	public int figures;
+
+	/**
+	 * Le dessin dont on crée les mementos
+	 */
+	private Drawing drawing;
+
+	/**
+	 * Les figures du dessin
+	 */
+	private List<Figure> list;
+
+	/**
+	 * Le dessin dont on restitue les mementos
+	 */
+	private Drawing restored;
+
+	/**
+	 * Les deux mementos restitués alternativement
+	 */
+	private List<Memento<Figure>> mementos;
+
+	/**
+	 * Index du prochain memento restitué
+	 */
+	private int next;
+
+	/**
+	 * Construction des dessins et des mementos à restituer
+	 */
+	@Setup
+	public void setup()
+	{
+		drawing = BenchmarkDrawings.create(figures, BenchmarkDrawings.Seed);
+		list = drawing.stream().collect(Collectors.toList());
+		drawing.createMemento();
+
+		restored = BenchmarkDrawings.create(figures, BenchmarkDrawings.Seed);
+		List<Figure> restoredList = restored.stream()
+		    .collect(Collectors.toList());
+		mementos = new ArrayList<Memento<Figure>>(2);
+		mementos.add(restored.createMemento());
+		for (int i = 0; i < restoredList.size(); i += 100)
+		{
+			restoredList.get(i).translate(10, 10);
+		}
+		mementos.add(restored.createMemento());
+		next = 0;
+	}
+
+	/**
+	 * Création d'un memento complet des figures
+	 * @return le memento
+	 */
+	@Benchmark
+	public Memento<Figure> createFullMemento()
+	{
+		return new Memento<Figure>(list);
+	}
+
+	/**
+	 * Création d'un memento sans modification depuis le précédent
+	 * @return le memento
+	 */
+	@Benchmark
+	public Memento<Figure> createUnchangedMemento()
+	{
+		return drawing.createMemento();
+	}
+
+	/**
+	 * Création d'un memento après la modification d'une figure
+	 * @return le memento
+	 */
+	@Benchmark
+	public Memento<Figure> createEditedMemento()
+	{
+		list.get(next).translate(1, 0);
+		next = (next + 1) % list.size();
+		return drawing.createMemento();
+	}
+
+	/**
+	 * Restitution alternée de deux mementos
+	 */
+	@Benchmark
+	public void setMemento()
+	{
+		restored.setMemento(mementos.get(next & 1));
+		next++;
+	}
+}
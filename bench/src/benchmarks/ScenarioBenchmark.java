@@ -0,0 +1,371 @@
+package benchmarks;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.FigureCodec;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+import history.HistoryManager;
+import metrics.Histogram;
+import metrics.Metrics;
+import utils.PaintFactory;
+import utils.StrokeFactory;
+import widgets.DrawingPanel;
+
+/**
+ * Benchmarks de scénarios complets exécutés sans interface graphique
+ * (headless) : là où les micro benchmarks JMH mesurent une opération isolée,
+ * un scénario enchaîne les opérations d'une session d'édition réaliste sur une
+ * scène synthétique ({@link SceneGenerator}) afin de détecter les régressions
+ * qui n'apparaissent qu'avec l'ensemble de l'éditeur (historique,
+ * notifications, caches, dessin) :
+ * <ol>
+ * <li>build : construction de la scène (dessin, panel et historique)</li>
+ * <li>select : sélection d'une figure sur deux</li>
+ * <li>restyle : application d'un style aux figures sélectionnées</li>
+ * <li>move : déplacement des figures sélectionnées en haut de la liste</li>
+ * <li>filter : mise en place de filtres et parcours des figures filtrées</li>
+ * <li>undo : annulation (10 fois) des dernières modifications</li>
+ * <li>render : dessin de l'ensemble du dessin dans une image hors écran</li>
+ * </ol>
+ * Les étapes restyle et move sont répétées {@link #Rounds} fois afin que
+ * l'historique contienne suffisamment d'états à annuler. Chaque étape
+ * (chaque annulation pour undo) est mesurée dans un {@link Histogram} dont
+ * on rapporte les percentiles, ainsi que le pic d'occupation du tas au cours
+ * d'un scénario.
+ * <p>
+ * Usage : <code>java benchmarks.ScenarioBenchmark [figures...]</code> avec
+ * les propriétés système :
+ * </p>
+ * <ul>
+ * <li>scenario.runs : nombre de scénarios mesurés (10 par défaut)</li>
+ * <li>scenario.warmups : nombre de scénarios de chauffe non mesurés (3 par
+ * défaut)</li>
+ * <li>scenario.output : fichier CSV dans lequel écrire les résultats (en
+ * plus de la sortie standard)</li>
+ * </ul>
+ * @author davidroussel
+ */
+public class ScenarioBenchmark
+{
+	/**
+	 * Les étapes d'un scénario
+	 */
+	private final static String[] Steps = {"build", "select", "restyle",
+	    "move", "filter", "undo", "render"};
+
+	/**
+	 * Nombre de répétitions des étapes restyle et move dans un scénario
+	 */
+	private final static int Rounds = 5;
+
+	/**
+	 * Nombre d'annulations dans un scénario
+	 */
+	private final static int Undos = 10;
+
+	/**
+	 * Nombre maximum de mementos de l'historique (comme dans l'éditeur)
+	 */
+	private final static int HistoryLength = 1024;
+
+	/**
+	 * Budget mémoire de l'historique (comme dans l'éditeur)
+	 */
+	private final static long HistoryBudget = 64L * 1024L * 1024L;
+
+	/**
+	 * Largeur de l'image dans laquelle est dessinée la scène
+	 */
+	private final static int ViewportWidth = 1920;
+
+	/**
+	 * Hauteur de l'image dans laquelle est dessinée la scène
+	 */
+	private final static int ViewportHeight = 1080;
+
+	/**
+	 * Nombre de figures de la scène
+	 */
+	private final int figures;
+
+	/**
+	 * Les histogrammes des durées de chacune des étapes
+	 */
+	private final Histogram[] histograms;
+
+	/**
+	 * Pic d'occupation du tas (en octets) au cours des scénarios mesurés
+	 */
+	private long peakHeap;
+
+	/**
+	 * Nombre de figures parcourues après la mise en place des filtres
+	 */
+	private long visible;
+
+	/**
+	 * Constructeur
+	 * @param figures le nombre de figures de la scène
+	 */
+	public ScenarioBenchmark(int figures)
+	{
+		this.figures = figures;
+		histograms = new Histogram[Steps.length];
+		for (int i = 0; i < Steps.length; i++)
+		{
+			histograms[i] =
+			    Metrics.histogram("scenario." + figures + "." + Steps[i]);
+		}
+		peakHeap = 0L;
+		visible = 0L;
+	}
+
+	/**
+	 * Exécution des scénarios
+	 * @param warmups le nombre de scénarios de chauffe (non mesurés)
+	 * @param runs le nombre de scénarios mesurés
+	 */
+	public void run(int warmups, int runs)
+	{
+		for (int i = 0; i < warmups; i++)
+		{
+			runOnce();
+		}
+		for (Histogram histogram : histograms)
+		{
+			histogram.reset();
+		}
+		peakHeap = 0L;
+		for (int i = 0; i < runs; i++)
+		{
+			peakHeap = Math.max(peakHeap, runOnce());
+		}
+	}
+
+	/**
+	 * Exécution d'un scénario
+	 * @return le pic d'occupation du tas (en octets) au cours du scénario
+	 */
+	private long runOnce()
+	{
+		System.gc();
+		List<MemoryPoolMXBean> pools = heapPools();
+		for (MemoryPoolMXBean pool : pools)
+		{
+			pool.resetPeakUsage();
+		}
+
+		// build
+		long start = Metrics.now();
+		Drawing drawing = new Drawing();
+		DrawingPanel panel = new DrawingPanel(drawing, null, null);
+		HistoryManager<Figure> history =
+		    new HistoryManager<Figure>(drawing, HistoryLength, HistoryBudget);
+		history.setCodec(new FigureCodec());
+		SceneGenerator generator = new SceneGenerator(BenchmarkDrawings.Seed);
+		generator.setOverlap(1.0);
+		generator.setTransforms(0.25, Math.PI / 4.0, 0.5, 2.0);
+		generator.fill(drawing, figures);
+		histograms[0].recordSince(start);
+
+		// select
+		start = Metrics.now();
+		history.record();
+		int[] index = new int[1];
+		drawing.stream().forEach((Figure f) ->
+		{
+			f.setSelected((index[0]++ & 1) == 0);
+		});
+		drawing.updateSelection();
+		histograms[1].recordSince(start);
+
+		// restyle & move
+		Paint[] colors = BenchmarkDrawings.Colors;
+		LineType[] lines = {LineType.SOLID, LineType.DASHED};
+		for (int i = 0; i < Rounds; i++)
+		{
+			start = Metrics.now();
+			history.record();
+			Paint fill = PaintFactory.getPaint(colors[i % colors.length]);
+			Paint edge = PaintFactory.getPaint(colors[(i + 1) % colors.length]);
+			BasicStroke stroke =
+			    StrokeFactory.getStroke(lines[i % lines.length], 1 + i);
+			drawing.applyStyleToSelected(fill, edge, stroke);
+			histograms[2].recordSince(start);
+
+			start = Metrics.now();
+			history.record();
+			drawing.moveSelectedUp();
+			histograms[3].recordSince(start);
+		}
+
+		// filter
+		start = Metrics.now();
+		drawing.addShapeFilter(
+		    new BenchmarkDrawings.ShapeFilter(FigureType.ELLIPSE));
+		drawing.addLineFilter(new BenchmarkDrawings.LineFilter(LineType.SOLID));
+		drawing.setFiltering(true);
+		visible = drawing.stream().count();
+		histograms[4].recordSince(start);
+
+		// undo
+		for (int i = 0; i < Undos; i++)
+		{
+			start = Metrics.now();
+			history.undo();
+			histograms[5].recordSince(start);
+		}
+
+		// render
+		double side = generator.side(figures);
+		BufferedImage image = new BufferedImage(ViewportWidth, ViewportHeight,
+		                                        BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2D = image.createGraphics();
+		g2D.scale(ViewportWidth / side, ViewportHeight / side);
+		panel.setSize((int) Math.ceil(side), (int) Math.ceil(side));
+		start = Metrics.now();
+		panel.paint(g2D);
+		histograms[6].recordSince(start);
+		g2D.dispose();
+
+		long peak = 0L;
+		for (MemoryPoolMXBean pool : pools)
+		{
+			peak += pool.getPeakUsage().getUsed();
+		}
+		history.close();
+		return peak;
+	}
+
+	/**
+	 * Les zones mémoire du tas. La somme de leurs pics d'occupation est un
+	 * majorant du pic d'occupation du tas (les pics des différentes zones
+	 * n'ayant pas forcément lieu au même moment).
+	 * @return les zones mémoire du tas
+	 */
+	private static List<MemoryPoolMXBean> heapPools()
+	{
+		List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+			{
+				pools.add(pool);
+			}
+		}
+		return pools;
+	}
+
+	/**
+	 * Ecriture des résultats sous forme de tableau
+	 * @param out le flux dans lequel écrire les résultats
+	 */
+	public void report(PrintWriter out)
+	{
+		out.printf("%d figures (%d after filtering), peak heap %.1f MB%n", figures,
+		           visible, peakHeap / (1024.0 * 1024.0));
+		out.printf("  %-8s %6s %10s %10s %10s %10s %10s%n", "step", "count",
+		           "mean(ms)", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+		for (int i = 0; i < Steps.length; i++)
+		{
+			Histogram.Snapshot s = histograms[i].snapshot();
+			out.printf("  %-8s %6d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+			           Steps[i], s.getCount(), s.getMean() / 1e6,
+			           s.getValueAtPercentile(50.0) / 1e6,
+			           s.getValueAtPercentile(90.0) / 1e6,
+			           s.getValueAtPercentile(99.0) / 1e6,
+			           s.getMax() / 1e6);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Ecriture des résultats au format CSV (durées en nanosecondes, pic
+	 * d'occupation du tas en octets)
+	 * @param out le flux dans lequel écrire les résultats
+	 */
+	public void exportCsv(PrintWriter out)
+	{
+		for (int i = 0; i < Steps.length; i++)
+		{
+			Histogram.Snapshot s = histograms[i].snapshot();
+			out.printf("%d,%s,%d,%.0f,%d,%d,%d,%d,%d%n", figures, Steps[i],
+			           s.getCount(), s.getMean(),
+			           s.getValueAtPercentile(50.0),
+			           s.getValueAtPercentile(90.0),
+			           s.getValueAtPercentile(99.0), s.getMax(), peakHeap);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Programme principal
+	 * @param args les nombres de figures des scènes (1000, 10000 et 100000
+	 * par défaut)
+	 * @throws IOException si le fichier CSV ne peut pas être écrit
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		System.setProperty("java.awt.headless", "true");
+		BenchmarkDrawings.quiet();
+		Metrics.setEnabled(true);
+
+		int runs = Integer.getInteger("scenario.runs", 10).intValue();
+		int warmups = Integer.getInteger("scenario.warmups", 3).intValue();
+		String output = System.getProperty("scenario.output");
+		String[] counts = args.length > 0 ? args
+		    : new String[] {"1000", "10000", "100000"};
+
+		PrintWriter console = new PrintWriter(System.out);
+		PrintWriter csv = null;
+		if (output != null)
+		{
+			Path path = Paths.get(output);
+			if (path.getParent() != null)
+			{
+				Files.createDirectories(path.getParent());
+			}
+			csv = new PrintWriter(
+			    Files.newBufferedWriter(path, StandardCharsets.UTF_8));
+			csv.println("figures,step,count,mean,p50,p90,p99,max,peakHeap");
+		}
+		try
+		{
+			for (String count : counts)
+			{
+				ScenarioBenchmark benchmark =
+				    new ScenarioBenchmark(Integer.parseInt(count));
+				benchmark.run(warmups, runs);
+				benchmark.report(console);
+				if (csv != null)
+				{
+					benchmark.exportCsv(csv);
+				}
+			}
+		}
+		finally
+		{
+			if (csv != null)
+			{
+				csv.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,299 @@
+package benchmarks;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+
+/**
+ * Générateur de scènes synthétiques : remplit un {@link Drawing} avec un
+ * nombre quelconque de figures dont les types, tailles, styles, densité de
+ * recouvrement et transformations sont paramétrables. Les figures sont
+ * tirées à partir d'un générateur pseudo-aléatoire initialisé avec une
+ * graine : deux générateurs de même graine et de mêmes paramètres
+ * produisent exactement la même scène.
+ * <p>
+ * La densité de recouvrement est le nombre moyen d'enveloppes de figures
+ * recouvrant un point de la zone occupée par les figures : la taille de cette
+ * zone est donc calculée en fonction du nombre de figures et de leur taille
+ * moyenne de manière à conserver ce recouvrement quel que soit le nombre de
+ * figures.
+ * </p>
+ * @author davidroussel
+ */
+public class SceneGenerator
+{
+	/**
+	 * Le générateur pseudo-aléatoire des figures
+	 */
+	private final Random random;
+
+	/**
+	 * Les types de figures générées (tirés uniformément)
+	 */
+	private FigureType[] types;
+
+	/**
+	 * Taille minimum (largeur et hauteur) des figures
+	 */
+	private double minSize;
+
+	/**
+	 * Taille maximum (largeur et hauteur) des figures
+	 */
+	private double maxSize;
+
+	/**
+	 * Les couleurs de remplissage des figures (tirées uniformément)
+	 */
+	private Paint[] fillPaints;
+
+	/**
+	 * Les couleurs de trait des figures (tirées uniformément)
+	 */
+	private Paint[] edgePaints;
+
+	/**
+	 * Les types de trait des figures (tirés uniformément)
+	 */
+	private LineType[] lineTypes;
+
+	/**
+	 * Epaisseur de trait minimum des figures
+	 */
+	private int minEdgeWidth;
+
+	/**
+	 * Epaisseur de trait maximum des figures
+	 */
+	private int maxEdgeWidth;
+
+	/**
+	 * Nombre moyen d'enveloppes de figures recouvrant un point de la scène
+	 */
+	private double overlap;
+
+	/**
+	 * Proportion des figures transformées (rotation et facteur d'échelle)
+	 */
+	private double transformed;
+
+	/**
+	 * Angle maximum (en valeur absolue et en radians) de la rotation des
+	 * figures transformées
+	 */
+	private double maxAngle;
+
+	/**
+	 * Facteur d'échelle minimum des figures transformées
+	 */
+	private double minScale;
+
+	/**
+	 * Facteur d'échelle maximum des figures transformées
+	 */
+	private double maxScale;
+
+	/**
+	 * Constructeur d'un générateur produisant des ellipses de 5 à 45 pixels
+	 * de côté, de couleurs et traits quelconques, d'épaisseur 1 à 4 pixels,
+	 * sans transformation et avec un recouvrement moyen de 0.25.
+	 * @param seed la graine du générateur pseudo-aléatoire
+	 */
+	public SceneGenerator(long seed)
+	{
+		random = new Random(seed);
+		types = new FigureType[] {FigureType.ELLIPSE};
+		minSize = 5.0;
+		maxSize = 45.0;
+		fillPaints = BenchmarkDrawings.Colors;
+		edgePaints = BenchmarkDrawings.Colors;
+		lineTypes = LineType.values();
+		minEdgeWidth = 1;
+		maxEdgeWidth = 4;
+		overlap = 0.25;
+		transformed = 0.0;
+		maxAngle = 0.0;
+		minScale = 1.0;
+		maxScale = 1.0;
+	}
+
+	/**
+	 * Mise en place des types de figures générées
+	 * @param types les types de figures à générer
+	 * @throws IllegalArgumentException si aucun type n'est fourni ou si l'un
+	 * des types ne peut pas (encore) être instancié par
+	 * {@link FigureType#getFigure(BasicStroke, Paint, Paint, Point2D)}
+	 */
+	public void setTypes(FigureType... types) throws IllegalArgumentException
+	{
+		if (types.length == 0)
+		{
+			throw new IllegalArgumentException("no figure type");
+		}
+		Point2D origin = new Point2D.Double();
+		for (FigureType type : types)
+		{
+			if (type.getFigure(null, Color.black, null, origin) == null)
+			{
+				throw new IllegalArgumentException("unavailable figure type "
+				    + type);
+			}
+		}
+		this.types = types.clone();
+	}
+
+	/**
+	 * Mise en place de la taille des figures générées
+	 * @param min la taille (largeur et hauteur) minimum des figures
+	 * @param max la taille (largeur et hauteur) maximum des figures
+	 * @throws IllegalArgumentException si min est négatif ou supérieur à max
+	 */
+	public void setSizes(double min, double max)
+	    throws IllegalArgumentException
+	{
+		if ((min < 0.0) || (min > max))
+		{
+			throw new IllegalArgumentException("invalid sizes " + min + ", "
+			    + max);
+		}
+		minSize = min;
+		maxSize = max;
+	}
+
+	/**
+	 * Mise en place des couleurs des figures générées
+	 * @param fills les couleurs de remplissage des figures
+	 * @param edges les couleurs de trait des figures
+	 * @throws IllegalArgumentException si l'un des tableaux est vide
+	 */
+	public void setPaints(Paint[] fills, Paint[] edges)
+	    throws IllegalArgumentException
+	{
+		if ((fills.length == 0) || (edges.length == 0))
+		{
+			throw new IllegalArgumentException("no paint");
+		}
+		fillPaints = fills.clone();
+		edgePaints = edges.clone();
+	}
+
+	/**
+	 * Mise en place des traits des figures générées
+	 * @param types les types de trait des figures
+	 * @param minWidth l'épaisseur de trait minimum
+	 * @param maxWidth l'épaisseur de trait maximum
+	 * @throws IllegalArgumentException si aucun type de trait n'est fourni ou
+	 * si les épaisseurs sont incohérentes
+	 */
+	public void setLines(LineType[] types, int minWidth, int maxWidth)
+	    throws IllegalArgumentException
+	{
+		if ((types.length == 0) || (minWidth < 0) || (minWidth > maxWidth))
+		{
+			throw new IllegalArgumentException("invalid lines");
+		}
+		lineTypes = types.clone();
+		minEdgeWidth = minWidth;
+		maxEdgeWidth = maxWidth;
+	}
+
+	/**
+	 * Mise en place de la densité de recouvrement des figures
+	 * @param overlap le nombre moyen d'enveloppes de figures recouvrant un
+	 * point de la scène
+	 * @throws IllegalArgumentException si overlap n'est pas strictement
+	 * positif
+	 */
+	public void setOverlap(double overlap) throws IllegalArgumentException
+	{
+		if (!(overlap > 0.0))
+		{
+			throw new IllegalArgumentException("invalid overlap " + overlap);
+		}
+		this.overlap = overlap;
+	}
+
+	/**
+	 * Mise en place des transformations des figures générées
+	 * @param ratio la proportion de figures transformées (entre 0 et 1)
+	 * @param angle l'angle maximum (en valeur absolue et en radians) de la
+	 * rotation des figures transformées
+	 * @param min le facteur d'échelle minimum des figures transformées
+	 * @param max le facteur d'échelle maximum des figures transformées
+	 * @throws IllegalArgumentException si les paramètres sont incohérents
+	 */
+	public void setTransforms(double ratio, double angle, double min,
+	                          double max)
+	    throws IllegalArgumentException
+	{
+		if ((ratio < 0.0) || (ratio > 1.0) || (min <= 0.0) || (min > max))
+		{
+			throw new IllegalArgumentException("invalid transforms");
+		}
+		transformed = ratio;
+		maxAngle = Math.abs(angle);
+		minScale = min;
+		maxScale = max;
+	}
+
+	/**
+	 * Côté de la zone occupée par un nombre de figures
+	 * @param count le nombre de figures
+	 * @return le côté (en pixels) de la zone carrée occupée par les figures
+	 * de manière à respecter le recouvrement moyen demandé
+	 */
+	public double side(int count)
+	{
+		double meanSize = (minSize + maxSize) / 2.0;
+		return Math.sqrt((count * meanSize * meanSize) / overlap);
+	}
+
+	/**
+	 * Ajout de figures à un dessin. Les figures sont créées avec
+	 * {@link Drawing#initiateFigure(Point2D)}, comme dans l'éditeur.
+	 * Seuls les paramètres qui varient consomment des tirages
+	 * pseudo-aléatoires, de sorte que l'ajout d'un paramètre constant ne
+	 * modifie pas la scène générée.
+	 * @param drawing le dessin à remplir
+	 * @param count le nombre de figures à ajouter
+	 */
+	public void fill(Drawing drawing, int count)
+	{
+		double side = side(count);
+		for (int i = 0; i < count; i++)
+		{
+			if (types.length > 1)
+			{
+				drawing.setFigureType(types[random.nextInt(types.length)]);
+			}
+			else
+			{
+				drawing.setFigureType(types[0]);
+			}
+			drawing.setFillPaint(fillPaints[random.nextInt(fillPaints.length)]);
+			drawing.setEdgePaint(edgePaints[random.nextInt(edgePaints.length)]);
+			drawing.setEdgeType(lineTypes[random.nextInt(lineTypes.length)]);
+			drawing.setEdgeWidth(minEdgeWidth
+			    + random.nextInt((maxEdgeWidth - minEdgeWidth) + 1));
+			double x = random.nextDouble() * side;
+			double y = random.nextDouble() * side;
+			Figure figure = drawing.initiateFigure(new Point2D.Double(x, y));
+			double width = minSize + (random.nextDouble() * (maxSize - minSize));
+			double height = minSize + (random.nextDouble() * (maxSize - minSize));
+			figure.setLastPoint(new Point2D.Double(x + width, y + height));
+			if ((transformed > 0.0) && (random.nextDouble() < transformed))
+			{
+				figure.rotate(((2.0 * random.nextDouble()) - 1.0) * maxAngle);
+				figure.scale(minScale
+				    + (random.nextDouble() * (maxScale - minScale)));
+			}
+		}
+	}
+}
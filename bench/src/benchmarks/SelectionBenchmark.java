@@ -0,0 +1,107 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Drawing;
+import figures.Figure;
+import history.Memento;
+
+/**
+ * Benchmark des opérations sur les figures sélectionnées (1 % des figures,
+ * réparties sur tout le dessin) : déplacement en haut ou en bas de la liste
+ * des figures et destruction. Ces opérations modifiant le dessin, celui ci
+ * est restitué (hors mesure) avant chaque invocation.
+ * @author davidroussel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SelectionBenchmark
+{
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "100000", "1000000"})
+	public int figures;
+
+	/**
+	 * Le dessin
+	 */
+	private Drawing drawing;
+
+	/**
+	 * Le memento du dessin avant l'opération mesurée
+	 */
+	private Memento<Figure> initial;
+
+	/**
+	 * Construction du dessin et sélection d'une figure sur 100
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		drawing = BenchmarkDrawings.create(figures, BenchmarkDrawings.Seed);
+		List<Figure> list = drawing.stream().collect(Collectors.toList());
+		for (int i = 0; i < list.size(); i += 100)
+		{
+			list.get(i).setSelected(true);
+		}
+		drawing.updateSelection();
+		initial = drawing.createMemento();
+	}
+
+	/**
+	 * Restitution du dessin avant chaque opération
+	 */
+	@Setup(Level.Invocation)
+	public void restore()
+	{
+		drawing.setMemento(initial);
+		drawing.updateSelection();
+	}
+
+	/**
+	 * Déplacement des figures sélectionnées en haut de la liste
+	 */
+	@Benchmark
+	public void moveSelectedUp()
+	{
+		drawing.moveSelectedUp();
+	}
+
+	/**
+	 * Déplacement des figures sélectionnées en bas de la liste
+	 */
+	@Benchmark
+	public void moveSelectedDown()
+	{
+		drawing.moveSelectedDown();
+	}
+
+	/**
+	 * Destruction des figures sélectionnées
+	 */
+	@Benchmark
+	public void deleteSelected()
+	{
+		drawing.deleteSelected();
+	}
+}
@@ -0,0 +1,494 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.FigureCodec;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+import figures.listeners.creation.AbstractCreationListener;
+import history.HistoryManager;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.Session;
+import widgets.DrawingPanel;
+
+/**
+ * Rejeu sans interface graphique (headless) d'une session d'édition
+ * enregistrée par le {@link metrics.SessionRecorder} de l'éditeur, afin de
+ * transformer les sessions de travail réelles en tests de performances
+ * reproductibles.
+ * La session est rejouée sur un nouveau dessin (vide) muni d'un historique
+ * et d'une zone de dessin ({@link DrawingPanel}) de la taille de celle de
+ * l'enregistrement :
+ * <ul>
+ * <li>les évènements souris et clavier sont envoyés à la zone de dessin et
+ * donc aux listeners de figures</li>
+ * <li>les changements de style sont appliqués au dessin (et le listener de
+ * création est changé avec le type de figure comme dans l'éditeur)</li>
+ * <li>les actions sont appliquées au dessin et à l'historique comme le font
+ * les actions de l'éditeur (enregistrement de l'état puis modification). Les
+ * actions sans effet sur le dessin (about, performances, etc.) sont
+ * ignorées</li>
+ * </ul>
+ * Après chaque évènement ou action ayant modifié le dessin, la zone de
+ * dessin est dessinée dans une image hors écran (une image par modification,
+ * là où Swing regrouperait les modifications proches).
+ * La session est rejouée à la vitesse de l'enregistrement ou bien aussi vite
+ * que possible. On rapporte la latence de chaque type d'évènement et
+ * d'action ainsi que les durées de dessin des images.
+ * <p>
+ * Usage : <code>java benchmarks.SessionReplay session.rec [max]</code> avec
+ * la propriété système replay.output : fichier CSV dans lequel écrire les
+ * résultats (en plus de la sortie standard)
+ * </p>
+ * @author davidroussel
+ */
+public class SessionReplay implements Observer
+{
+	/**
+	 * Nombre maximum de mementos de l'historique (comme dans l'éditeur)
+	 */
+	private final static int HistoryLength = 1024;
+
+	/**
+	 * Budget mémoire de l'historique (comme dans l'éditeur)
+	 */
+	private final static long HistoryBudget = 64L * 1024L * 1024L;
+
+	/**
+	 * Nom de l'histogramme des durées de dessin des images
+	 */
+	private final static String Frames = "frame";
+
+	/**
+	 * La session à rejouer
+	 */
+	private final Session session;
+
+	/**
+	 * Rejeu aussi rapide que possible (sinon à la vitesse de
+	 * l'enregistrement)
+	 */
+	private final boolean maxSpeed;
+
+	/**
+	 * Le dessin sur lequel est rejouée la session
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * L'historique du dessin
+	 */
+	private final HistoryManager<Figure> history;
+
+	/**
+	 * La zone de dessin recevant les évènements
+	 */
+	private final DrawingPanel panel;
+
+	/**
+	 * L'image hors écran dans laquelle est dessinée la zone de dessin
+	 */
+	private final BufferedImage image;
+
+	/**
+	 * Le listener de création de figures (ou null s'il n'y en a pas pour le
+	 * type de figure courant)
+	 */
+	private AbstractCreationListener creationListener;
+
+	/**
+	 * Mode création (sinon mode édition)
+	 */
+	private boolean creation;
+
+	/**
+	 * Etat de modification du dessin depuis la dernière image
+	 */
+	private boolean dirty;
+
+	/**
+	 * Les histogrammes de latence indexés par type d'évènement ou d'action
+	 * (et celui des durées de dessin des images)
+	 */
+	private final Map<String, Histogram> histograms;
+
+	/**
+	 * Nombre d'actions ignorées
+	 */
+	private int skipped;
+
+	/**
+	 * Durée totale (en nanosecondes) du rejeu
+	 */
+	private long elapsed;
+
+	/**
+	 * Constructeur
+	 * @param session la session à rejouer
+	 * @param maxSpeed rejeu aussi rapide que possible (sinon à la vitesse
+	 * de l'enregistrement)
+	 */
+	public SessionReplay(Session session, boolean maxSpeed)
+	{
+		this.session = session;
+		this.maxSpeed = maxSpeed;
+		drawing = new Drawing();
+		history = new HistoryManager<Figure>(drawing, HistoryLength,
+		                                     HistoryBudget);
+		history.setCodec(new FigureCodec());
+		int width = Math.max(1, session.getWidth());
+		int height = Math.max(1, session.getHeight());
+		panel = new DrawingPanel(drawing, null, null);
+		panel.setSize(width, height);
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		creationListener = null;
+		creation = true;
+		setFigureType(drawing.getFigureType());
+		dirty = false;
+		drawing.addObserver(this);
+		histograms = new TreeMap<String, Histogram>();
+		skipped = 0;
+		elapsed = 0L;
+	}
+
+	/**
+	 * Notification d'une modification du dessin
+	 * @param observable le dessin
+	 * @param data les données de la notification
+	 */
+	@Override
+	public void update(Observable observable, Object data)
+	{
+		dirty = true;
+	}
+
+	/**
+	 * Rejeu de la session
+	 */
+	public void replay()
+	{
+		long start = System.nanoTime();
+		for (Session.Record record : session.getRecords())
+		{
+			if (!maxSpeed)
+			{
+				long delay = (start + record.getTime()) - System.nanoTime();
+				if (delay > 0)
+				{
+					LockSupport.parkNanos(delay);
+				}
+			}
+			if (record instanceof Session.StyleRecord)
+			{
+				apply((Session.StyleRecord) record);
+			}
+			else if (record instanceof Session.InputRecord)
+			{
+				dispatch((Session.InputRecord) record);
+			}
+			else if (record instanceof Session.ActionRecord)
+			{
+				perform((Session.ActionRecord) record);
+			}
+			if (dirty)
+			{
+				render();
+			}
+		}
+		elapsed = System.nanoTime() - start;
+		history.close();
+	}
+
+	/**
+	 * Mise en place d'un style enregistré
+	 * @param record l'enregistrement de style
+	 */
+	private void apply(Session.StyleRecord record)
+	{
+		FigureType previous = drawing.getFigureType();
+		record.applyTo(drawing);
+		if (record.getType() != previous)
+		{
+			setFigureType(record.getType());
+		}
+	}
+
+	/**
+	 * Changement de type de figure : mise en place du listener de création
+	 * correspondant (en mode création) comme dans l'éditeur
+	 * @param type le nouveau type de figure (éventuellement null)
+	 */
+	private void setFigureType(FigureType type)
+	{
+		drawing.setFigureType(type);
+		AbstractCreationListener listener = type != null
+		    ? type.getCreationListener(drawing, history, null) : null;
+		if (creation)
+		{
+			panel.removeFigureListener(creationListener);
+			panel.addFigureListener(listener);
+		}
+		creationListener = listener;
+	}
+
+	/**
+	 * Envoi d'un évènement enregistré à la zone de dessin
+	 * @param record l'enregistrement de l'évènement
+	 */
+	private void dispatch(Session.InputRecord record)
+	{
+		Histogram histogram = histogram(record.getName());
+		long start = Metrics.now();
+		panel.dispatchEvent(record.toEvent(panel, System.currentTimeMillis()));
+		histogram.recordSince(start);
+	}
+
+	/**
+	 * Exécution d'une action enregistrée
+	 * @param record l'enregistrement de l'action
+	 */
+	private void perform(Session.ActionRecord record)
+	{
+		String name = record.getName();
+		boolean selected = Boolean.TRUE.equals(record.getSelected());
+		Histogram histogram = histogram("action." + name);
+		long start = Metrics.now();
+		switch (name)
+		{
+			case "Undo":
+				history.undo();
+				break;
+			case "Redo":
+				history.redo();
+				break;
+			case "Clear":
+				history.record();
+				drawing.clear();
+				break;
+			case "Delete":
+				history.record();
+				drawing.deleteSelected();
+				break;
+			case "Up":
+				history.record();
+				drawing.moveSelectedUp();
+				break;
+			case "Down":
+				history.record();
+				drawing.moveSelectedDown();
+				break;
+			case "Style":
+				history.record();
+				drawing.applyStyleToSelected(drawing.getFillpaint(),
+				                             drawing.getEdgePaint(),
+				                             drawing.getStroke());
+				break;
+			case "Filter":
+				drawing.setFiltering(selected);
+				break;
+			case "Fill Color":
+				drawing.setFillColorFilter(selected
+				    ? new BenchmarkDrawings.FillColorFilter(
+				        drawing.getFillpaint())
+				    : null);
+				break;
+			case "Edge Color":
+				drawing.setEdgeColorFilter(selected
+				    ? new BenchmarkDrawings.EdgeColorFilter(
+				        drawing.getEdgePaint())
+				    : null);
+				break;
+			case "Edition":
+				creation = !selected;
+				if (creation)
+				{
+					panel.addFigureListener(creationListener);
+				}
+				else
+				{
+					panel.removeFigureListener(creationListener);
+				}
+				break;
+			default:
+				if (!filter(name, selected))
+				{
+					skipped++;
+					return;
+				}
+				break;
+		}
+		histogram.recordSince(start);
+	}
+
+	/**
+	 * Exécution d'une action de filtrage par type de figure ou de trait
+	 * @param name le nom de l'action (le nom du type de figure ou de trait)
+	 * @param selected l'état du bouton ayant déclenché l'action
+	 * @return true si l'action était une action de filtrage par type de
+	 * figure ou de trait
+	 */
+	private boolean filter(String name, boolean selected)
+	{
+		for (FigureType type : FigureType.values())
+		{
+			if (type.toString().equals(name))
+			{
+				BenchmarkDrawings.ShapeFilter filter =
+				    new BenchmarkDrawings.ShapeFilter(type);
+				if (selected)
+				{
+					drawing.addShapeFilter(filter);
+				}
+				else
+				{
+					drawing.removeShapeFilter(filter);
+				}
+				return true;
+			}
+		}
+		for (LineType type : LineType.values())
+		{
+			if (type.toString().equals(name))
+			{
+				BenchmarkDrawings.LineFilter filter =
+				    new BenchmarkDrawings.LineFilter(type);
+				if (selected)
+				{
+					drawing.addLineFilter(filter);
+				}
+				else
+				{
+					drawing.removeLineFilter(filter);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Dessin de la zone de dessin dans l'image hors écran
+	 */
+	private void render()
+	{
+		Histogram histogram = histogram(Frames);
+		Graphics2D g2D = image.createGraphics();
+		long start = Metrics.now();
+		panel.paint(g2D);
+		histogram.recordSince(start);
+		g2D.dispose();
+		dirty = false;
+	}
+
+	/**
+	 * Histogramme des latences d'un type d'évènement ou d'action
+	 * @param name le nom du type d'évènement ou d'action
+	 * @return l'histogramme correspondant
+	 */
+	private Histogram histogram(String name)
+	{
+		return histograms.computeIfAbsent(name,
+		    (String n) -> Metrics.histogram("replay." + n));
+	}
+
+	/**
+	 * Ecriture des résultats sous forme de tableau
+	 * @param out le flux dans lequel écrire les résultats
+	 */
+	public void report(PrintWriter out)
+	{
+		out.printf("%d record(s) replayed in %.1f ms (recorded in %.1f ms, "
+		    + "%s), %d figure(s), %d action(s) skipped%n",
+		           session.getRecords().size(), elapsed / 1e6,
+		           session.getDuration() / 1e6,
+		           maxSpeed ? "max speed" : "recorded speed",
+		           drawing.getFigureCount(), skipped);
+		out.printf("  %-24s %7s %10s %10s %10s %10s %10s%n", "event", "count",
+		           "mean(ms)", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet())
+		{
+			Histogram.Snapshot s = entry.getValue().snapshot();
+			out.printf("  %-24s %7d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+			           entry.getKey(), s.getCount(), s.getMean() / 1e6,
+			           s.getValueAtPercentile(50.0) / 1e6,
+			           s.getValueAtPercentile(90.0) / 1e6,
+			           s.getValueAtPercentile(99.0) / 1e6,
+			           s.getMax() / 1e6);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Ecriture des résultats au format CSV (durées en nanosecondes)
+	 * @param out le flux dans lequel écrire les résultats
+	 */
+	public void exportCsv(PrintWriter out)
+	{
+		out.println("event,count,mean,p50,p90,p99,max");
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet())
+		{
+			Histogram.Snapshot s = entry.getValue().snapshot();
+			out.printf("%s,%d,%.0f,%d,%d,%d,%d%n", entry.getKey(),
+			           s.getCount(), s.getMean(),
+			           s.getValueAtPercentile(50.0),
+			           s.getValueAtPercentile(90.0),
+			           s.getValueAtPercentile(99.0), s.getMax());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Programme principal
+	 * @param args le fichier de session, suivi de "max" pour un rejeu aussi
+	 * rapide que possible
+	 * @throws IOException si la session ne peut pas être lue ou si le
+	 * fichier CSV ne peut pas être écrit
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length == 0)
+		{
+			System.err.println("usage: SessionReplay session.rec [max]");
+			System.exit(1);
+		}
+		System.setProperty("java.awt.headless", "true");
+		BenchmarkDrawings.quiet();
+		Metrics.setEnabled(true);
+
+		Session session = Session.read(Paths.get(args[0]));
+		boolean maxSpeed = (args.length > 1) && args[1].equals("max");
+		SessionReplay replay = new SessionReplay(session, maxSpeed);
+		replay.replay();
+		replay.report(new PrintWriter(System.out));
+
+		String output = System.getProperty("replay.output");
+		if (output != null)
+		{
+			Path path = Paths.get(output);
+			if (path.getParent() != null)
+			{
+				Files.createDirectories(path.getParent());
+			}
+			try (PrintWriter csv = new PrintWriter(
+			    Files.newBufferedWriter(path, StandardCharsets.UTF_8)))
+			{
+				replay.exportCsv(csv);
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import figures.Drawing;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+
+/**
+ * Benchmark du parcours des figures d'un dessin
+ * ({@link Drawing#stream()}) pour chaque combinaison de filtres.
+ * La combinaison de filtres est un masque de bits :
+ * <ul>
+ * <li>1 : filtre sur le type de figure (ellipses)</li>
+ * <li>2 : filtre sur la couleur de remplissage (rouge)</li>
+ * <li>4 : filtre sur la couleur de trait (noir)</li>
+ * <li>8 : filtre sur le type de trait (continu)</li>
+ * </ul>
+ * Avec la combinaison 0 le filtrage est désactivé.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class StreamBenchmark
+{
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "100000", "1000000"})
+	public int figures;
+
+	/**
+	 * Combinaison de filtres (masque de bits)
+	 */
+	@Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11",
+	    "12", "13", "14", "15"})
+	public int filters;
+
+	/**
+	 * Le dessin
+	 */
+	private Drawing drawing;
+
+	/**
+	 * Construction du dessin et mise en place des filtres
+	 */
+	@Setup
+	public void setup()
+	{
+		drawing = BenchmarkDrawings.create(figures, BenchmarkDrawings.Seed);
+		if ((filters & 1) != 0)
+		{
+			drawing.addShapeFilter(
+			    new BenchmarkDrawings.ShapeFilter(FigureType.ELLIPSE));
+		}
+		if ((filters & 2) != 0)
+		{
+			drawing.setFillColorFilter(
+			    new BenchmarkDrawings.FillColorFilter(Color.red));
+		}
+		if ((filters & 4) != 0)
+		{
+			drawing.setEdgeColorFilter(
+			    new BenchmarkDrawings.EdgeColorFilter(Color.black));
+		}
+		if ((filters & 8) != 0)
+		{
+			drawing.addLineFilter(
+			    new BenchmarkDrawings.LineFilter(LineType.SOLID));
+		}
+		drawing.setFiltering(filters != 0);
+	}
+
+	/**
+	 * Parcours des figures (filtrées)
+	 * @param blackhole le consommateur des figures parcourues
+	 */
+	@Benchmark
+	public void stream(Blackhole blackhole)
+	{
+		drawing.stream().forEach(blackhole::consume);
+	}
+}
@@ -4,6 +4,9 @@ import javax.swing.UIManager;
 import javax.swing.UIManager.LookAndFeelInfo;
 import javax.swing.UnsupportedLookAndFeelException;
 
+import metrics.StallWatchdog;
+import utils.IconAtlas;
+import utils.Log;
 import utils.Signature;
 import widgets.EditorFrame;
 
@@ -20,6 +23,17 @@ public class Editor implements Signature
 	 */
 	public static void main(String[] args)
 	{
+		/*
+		 * Décodage de l'atlas des icônes en tâche de fond pendant la mise en
+		 * place du look and feel et la construction de la fenêtre
+		 */
+		IconAtlas.preload();
+
+		/*
+		 * Surveillance des blocages de l'EDT
+		 */
+		StallWatchdog.start();
+
 		/*
 		 * Mise ne place du look and feel du système, ou celui fourni en
 		 * argument du programme
@@ -46,38 +60,24 @@ public class Editor implements Signature
 		}
 		catch (ClassNotFoundException e)
 		{
-			System.err.println(Signature.getClassName(Editor.class) + "::"
-			    + Signature.getStaticMethodName()
-			    + " Look and feel could not be found");
-			e.printStackTrace();
+			Log.error("Look and feel could not be found", e);
 		}
 		catch (InstantiationException e)
 		{
-			System.err.println(Signature.getClassName(Editor.class) + "::"
-			    + Signature.getStaticMethodName()
-			    + " new instance of the class couldn't be created");
-			e.printStackTrace();
+			Log.error("new instance of the class couldn't be created", e);
 		}
 		catch (IllegalAccessException e)
 		{
-			System.err.println(Signature.getClassName(Editor.class) + "::"
-			    + Signature.getStaticMethodName()
-			    + " Look and feel class or initializer isn't accessible");
-			e.printStackTrace();
+			Log.error("Look and feel class or initializer isn't accessible", e);
 		}
 		catch (UnsupportedLookAndFeelException e)
 		{
-			System.err.println(Signature.getClassName(Editor.class) + "::"
-			    + Signature.getStaticMethodName()
-			    + " isSupportedLookAndFeel() is false");
-			e.printStackTrace();
+			Log.error("isSupportedLookAndFeel() is false", e);
 		}
 		catch (ClassCastException e)
 		{
-			System.err.println(Signature.getClassName(Editor.class) + "::"
-			    + Signature.getStaticMethodName()
-			    + " className does not identify a class that extends LookAndFeel");
-			e.printStackTrace();
+			Log.error("className does not identify a class that extends "
+			    + "LookAndFeel", e);
 		}
 
 		// Mise en place spécifique à Mac OS X
@@ -107,7 +107,7 @@ public class Editor implements Signature
 				}
 				catch (Exception e)
 				{
-					e.printStackTrace();
+					Log.error("unable to show the editor window", e);
 				}
 			}
 		});
@@ -3,11 +3,19 @@ package figures;
 import java.awt.BasicStroke;
 import java.awt.Paint;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.Iterator;
 
@@ -17,6 +25,14 @@ import filters.FigureFilter;
 import filters.FigureFilters;
 import history.Memento;
 import history.Originator;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.NotificationProfiler;
+import metrics.jfr.FilterEvent;
+import metrics.jfr.HitTestEvent;
+import metrics.jfr.NotificationEvent;
+import utils.Log;
 import utils.PaintFactory;
 import utils.Signature;
 import utils.StrokeFactory;
@@ -123,6 +139,42 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	private FigureFilters<LineType> lineFilters;
 
+	/**
+	 * Marge (en pixels) ajoutée autour des figures modifiées pour tenir compte
+	 * du soulignement des figures sélectionnées
+	 */
+	private static final double SelectionMargin = 4.0;
+
+	/**
+	 * Le dernier memento créé ou mis en place. Sert de base au memento
+	 * suivant qui partagera les copies des figures non modifiées depuis
+	 */
+	private Memento<Figure> lastMemento;
+
+	/**
+	 * Durées des recherches de figure sous un point
+	 * ({@link #getFigureAt(Point2D)})
+	 */
+	private static final Histogram figureAtTime =
+	    Metrics.histogram("drawing.getFigureAt");
+
+	/**
+	 * Nombre de flux de figures obtenus par {@link #stream()}
+	 */
+	private static final Counter streams = Metrics.counter("drawing.stream");
+
+	/**
+	 * Nombre de figures soumises aux filtres dans les flux filtrés
+	 */
+	private static final Counter streamedIn =
+	    Metrics.counter("drawing.stream.in");
+
+	/**
+	 * Nombre de figures ayant passé les filtres dans les flux filtrés
+	 */
+	private static final Counter streamedOut =
+	    Metrics.counter("drawing.stream.out");
+
 	/**
 	 * Constructeur de modèle de dessin
 	 */
@@ -159,8 +211,9 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		edgeWidth = 1;
 		edgeType = LineType.NONE;
 		stroke = StrokeFactory.getStroke(edgeType,edgeWidth);
-		/*System.out.println(getClassName() + "::" + getMethodName()
-		    + " Drawing not properly initialized yet");*/
+		lastMemento = null;
+		Metrics.gauge("drawing.figures", () -> figures.size());
+		/*Log.debug("Drawing not properly initialized yet");*/
 	}
 
 	/**
@@ -181,6 +234,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		lineFilters = null;
 		fillPaint = null;
 		edgePaint = null;
+		lastMemento = null;
 	}
 
 	/**
@@ -189,8 +243,20 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public void update()
 	{
+		if (NotificationProfiler.isEnabled())
+		{
+			NotificationProfiler.notified(notificationState());
+		}
+		NotificationEvent event = new NotificationEvent();
+		event.begin();
 		setChanged();
 		notifyObservers(); // pour que les observateurs soient mis à jour
+		if (event.shouldCommit())
+		{
+			event.observers = countObservers();
+			event.detailed = false;
+			event.commit();
+		}
 	}
 
 	/**
@@ -311,9 +377,6 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public Figure initiateFigure(Point2D p)
 	{
-		System.err.println(getClassName() + "::" + getMethodName()
-		+ " not yet implemented");
-
 		/*
 		 * TODO Maintenant que l'on s'apprête effectivement à créer une figure on
 		 * ajoute/obtient les Paints et le Stroke des factories
@@ -352,6 +415,25 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		return figures.lastElement();
 	}
 
+	/**
+	 * Nombre de figures du dessin
+	 * @return le nombre de figures du dessin (qu'elles soient filtrées ou
+	 * non)
+	 */
+	public int getFigureCount()
+	{
+		return figures.size();
+	}
+
+	/**
+	 * Nombre de figures sélectionnées
+	 * @return le nombre de figures sélectionnées
+	 */
+	public int getSelectionCount()
+	{
+		return selectionIndex.size();
+	}
+
 	/**
 	 * Obtention de la dernière figure contenant le point p.
 	 * @param p le point sous lequel on cherche une figure
@@ -360,8 +442,12 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public Figure getFigureAt(Point2D p)
 	{
+		long start = Metrics.now();
+		HitTestEvent event = new HitTestEvent();
+		event.begin();
 		selectedFigure = null;
 		Figure curFigure;
+		OutlineCache.reserve(figures.size());
 
 		/*
 		 * TODO Recherche dans le flux des figures de la DERNIERE figure
@@ -371,6 +457,15 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 			curFigure=it.next();
 			if(curFigure.contains(p)) selectedFigure=curFigure;
 		}
+		figureAtTime.recordSince(start);
+		if (event.shouldCommit())
+		{
+			event.x = p.getX();
+			event.y = p.getY();
+			event.figures = figures.size();
+			event.hit = selectedFigure != null;
+			event.commit();
+		}
 		return selectedFigure;
 	}
 
@@ -536,7 +631,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		 * TODO Remise à l'état non sélectionné de toutes les figures
 		 */
 		for(Iterator<Figure> it = figures.iterator();it.hasNext();){
-			it.next().selected=false;
+			it.next().setSelected(false);
 		}
 		selectionIndex.clear();
 	}
@@ -552,15 +647,23 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		 * sont sélectionnées (isSelected) et mise à jour des indices des
 		 * figures sélectionnées dans selectionIndex
 		 */
+		rebuildSelectionIndex();
+
+		Log.debug("Update Selection = {}", selectionIndex);
+
+		update();
+	}
+
+	/**
+	 * Reconstruction de {@link #selectionIndex} d'après l'état de sélection
+	 * des {@link #figures} (sans mise à jour du modèle)
+	 */
+	private void rebuildSelectionIndex()
+	{
 		selectionIndex.clear();
 		for(int i=0;i<figures.size();i++) {
 			if(figures.get(i).isSelected()) selectionIndex.add(i);
 		}
-
-		System.out.println(getClassName() + "::" + getMethodName()
-		    + " Update Selection = " + selectionIndex);
-
-		update();
 	}
 
 	/**
@@ -585,7 +688,15 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		 * puis MAJ de la sélection (puisque ces figures n'existent plus)
 		 * puis MAJ modèle
 		 */
-		for(Iterator<Integer> it=selectionIndex.iterator();it.hasNext();) figures.remove((int) it.next());
+		Vector<Figure> newfigures = new Vector<Figure>(figures.size());
+		for (int i = 0; i < figures.size(); i++)
+		{
+			if (!selectionIndex.contains(i))
+			{
+				newfigures.add(figures.get(i));
+			}
+		}
+		figures = newfigures;
 		selectionIndex.clear();
 		update();
 	}
@@ -626,10 +737,16 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		 */
 		Vector<Figure> newfigures=new Vector<Figure>();
 		selectionIndex.stream().forEach((Integer i) -> newfigures.add(figures.get(i)));
-		figures.stream().forEach((Figure f) -> newfigures.add(f));
+		for (int i = 0; i < figures.size(); i++)
+		{
+			if (!selectionIndex.contains(i))
+			{
+				newfigures.add(figures.get(i));
+			}
+		}
 		figures.clear();
 		figures=newfigures;
-		updateSelection();
+		rebuildSelectionIndex();
 		update();
 	}
 
@@ -648,11 +765,17 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		 * MAJ de la sélection et du modèle
 		 */
 		Vector<Figure> newfigures=new Vector<Figure>();
-		figures.stream().filter((Figure f)->!selectionIndex.contains(figures.indexOf(f))).forEach((Figure f)->newfigures.add(f));
+		for (int i = 0; i < figures.size(); i++)
+		{
+			if (!selectionIndex.contains(i))
+			{
+				newfigures.add(figures.get(i));
+			}
+		}
 		selectionIndex.stream().forEach((Integer i) -> newfigures.add(figures.get(i)));
 		figures.clear();
 		figures=newfigures;
-		updateSelection();
+		rebuildSelectionIndex();
 		update();
 	}
 
@@ -665,22 +788,114 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	public Stream<Figure> stream()
 	{
 		Stream<Figure> figuresStream = figures.stream();
+		streams.increment();
+		boolean counting = filtering && Metrics.isEnabled();
+		if (counting)
+		{
+			figuresStream = figuresStream.peek((Figure f) -> streamedIn.increment());
+		}
 		if (filtering)
 		{
-			shapeFilters.clear();;
 			// TODO Filtrez le flux de figures avec "shapeFilters" s'il est non vide
-			if(!shapeFilters.isEmpty()) figuresStream=figuresStream.filter((Figure f) -> shapeFilters.contains(f.getType()));
+			if(!shapeFilters.isEmpty()) figuresStream=figuresStream.filter(shapeFilters);
 			// TODO Filtrez le flux de figures avec "fillColorFilter" s'il est non null
-			if(fillColorFilter!=null) figuresStream=figuresStream.filter((Figure f) -> f.fill==fillColorFilter.getElement());
+			if(fillColorFilter!=null) figuresStream=figuresStream.filter(fillColorFilter);
 			// TODO Filtrez le flux de figures avec "edgeColorFilter" s'il est non null
-			if(edgeColorFilter!=null) figuresStream=figuresStream.filter((Figure f) -> f.edge==edgeColorFilter.getElement());
+			if(edgeColorFilter!=null) figuresStream=figuresStream.filter(edgeColorFilter);
 			// TODO Filtrez le flux de figures avec "lineFilters" s'il est non vide
-			if(!lineFilters.isEmpty()) figuresStream=figuresStream.filter((Figure f) -> lineFilters.contains(f.getLineType()));
+			if(!lineFilters.isEmpty()) figuresStream=figuresStream.filter(lineFilters);
 			
 		}
+		if (counting)
+		{
+			figuresStream = figuresStream.peek((Figure f) -> streamedOut.increment());
+		}
+		if (filtering)
+		{
+			/*
+			 * Lors d'un enregistrement JFR les filtres sont évalués dès
+			 * maintenant afin de mesurer leur évaluation
+			 */
+			FilterEvent event = new FilterEvent();
+			if (event.isEnabled())
+			{
+				event.begin();
+				List<Figure> passed = figuresStream.collect(Collectors.toList());
+				event.end();
+				if (event.shouldCommit())
+				{
+					event.figuresIn = figures.size();
+					event.figuresOut = passed.size();
+					event.filters = describeFilters();
+					event.commit();
+				}
+				figuresStream = passed.stream();
+			}
+		}
 		return figuresStream;
 	}
 
+	/**
+	 * Etat visible du dessin pour le profilage des notifications
+	 * ({@link NotificationProfiler}) : change dès qu'une figure est ajoutée,
+	 * retirée, déplacée dans la liste ou modifiée (y compris sa sélection)
+	 * ou que les filtres changent
+	 * @return une empreinte de l'état visible du dessin
+	 */
+	private long notificationState()
+	{
+		long state = filtering ? 1L : 0L;
+		state = (31L * state) + shapeFilters.size();
+		state = (31L * state) + System.identityHashCode(fillColorFilter);
+		state = (31L * state) + System.identityHashCode(edgeColorFilter);
+		state = (31L * state) + (lineFilters != null ? lineFilters.size() : 0);
+		for (Figure f : figures)
+		{
+			state = (31L * state) + System.identityHashCode(f);
+			state = (31L * state) + f.getVersion();
+		}
+		return state;
+	}
+
+	/**
+	 * Description des filtres actifs
+	 * @return une chaîne de caractères décrivant les filtres actifs
+	 */
+	private String describeFilters()
+	{
+		StringBuilder builder = new StringBuilder();
+		if (!shapeFilters.isEmpty())
+		{
+			builder.append("shapes ").append(shapeFilters.size()).append(' ');
+		}
+		if (fillColorFilter != null)
+		{
+			builder.append("fill ");
+		}
+		if (edgeColorFilter != null)
+		{
+			builder.append("edge ");
+		}
+		if (!lineFilters.isEmpty())
+		{
+			builder.append("lines ").append(lineFilters.size()).append(' ');
+		}
+		return builder.length() > 0 ? builder.toString().trim() : "none";
+	}
+
+	/**
+	 * Enveloppe d'une figure dans la zone de dessin, augmentée de
+	 * l'épaisseur du trait et de la marge de sélection : une figure dont
+	 * l'enveloppe ne rencontre pas la zone à redessiner n'a pas besoin
+	 * d'être dessinée
+	 * @param figure la figure
+	 * @return l'enveloppe de la figure
+	 */
+	public static Rectangle2D getPaintBounds(Figure figure)
+	{
+		return addDirty(null, figure);
+	}
+
 	/* (non-Javadoc)
 	 * @see history.Originator#createMemento()
 	 */
@@ -688,9 +903,11 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	public Memento<Figure> createMemento()
 	{
 		/*
-		 * TODO Création d'un memento contenant l'ensemble des figures à dessiner
+		 * Le memento partage avec le précédent les copies des figures qui
+		 * n'ont pas été modifiées depuis
 		 */
-		return new Memento<Figure>(figures);
+		lastMemento = new Memento<Figure>(figures, lastMemento);
+		return lastMemento;
 	}
 
 	/* (non-Javadoc)
@@ -699,13 +916,137 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	@Override
 	public void setMemento(Memento<Figure> memento)
 	{
+		if (memento == null)
+		{
+			update();
+			return;
+		}
+
 		/*
-		 * TODO Mise en place d'un memento contenant des figures pour remplacer
-		 * l'ensemble de figures à dessiner
-		 * MAJ
+		 * Seules les figures modifiées depuis la création du memento sont
+		 * restituées (en place), les autres sont réutilisées telles quelles.
+		 * On relève au passage l'enveloppe des figures avant leur modification
 		 */
-		figures.clear();
-		if(memento!=null) memento.getState().forEach((Figure f)->figures.add(f));
-		update();
+		List<Figure> changed = new ArrayList<Figure>();
+		Rectangle2D[] dirty = new Rectangle2D[1];
+		List<Figure> target = memento.restoreInPlace((Figure f) -> {
+			changed.add(f);
+			dirty[0] = addDirty(dirty[0], f);
+		});
+		lastMemento = memento;
+
+		List<Figure> added = new ArrayList<Figure>();
+		List<Figure> removed = new ArrayList<Figure>();
+		boolean reordered = false;
+		boolean sameFigures = (target.size() == figures.size());
+		for (int i = 0; sameFigures && (i < target.size()); i++)
+		{
+			sameFigures = (target.get(i) == figures.get(i));
+		}
+
+		if (!sameFigures)
+		{
+			/*
+			 * Différence (par identité) entre les figures courantes et les
+			 * figures restituées
+			 */
+			Map<Figure, Integer> currentIndex =
+			    new IdentityHashMap<Figure, Integer>(figures.size());
+			for (int i = 0; i < figures.size(); i++)
+			{
+				currentIndex.put(figures.get(i), Integer.valueOf(i));
+			}
+			int lastIndex = -1;
+			for (Figure f : target)
+			{
+				Integer index = currentIndex.remove(f);
+				if (index == null)
+				{
+					added.add(f);
+				}
+				else
+				{
+					reordered |= (index.intValue() < lastIndex);
+					lastIndex = index.intValue();
+				}
+			}
+			removed.addAll(currentIndex.keySet());
+			if (!added.isEmpty())
+			{
+				// Les figures ajoutées ne sont pas considérées comme modifiées
+				Set<Figure> addedSet = Collections
+				    .newSetFromMap(new IdentityHashMap<Figure, Boolean>());
+				addedSet.addAll(added);
+				changed.removeIf((Figure f) -> addedSet.contains(f));
+			}
+			if (removed.contains(selectedFigure))
+			{
+				selectedFigure = null;
+			}
+
+			figures.clear();
+			figures.addAll(target);
+		}
+
+		for (Figure f : removed)
+		{
+			dirty[0] = addDirty(dirty[0], f);
+		}
+		for (Figure f : added)
+		{
+			dirty[0] = addDirty(dirty[0], f);
+		}
+		for (Figure f : changed)
+		{
+			dirty[0] = addDirty(dirty[0], f);
+		}
+
+		DrawingEvent event = new DrawingEvent(this, added, removed, changed,
+		    reordered, reordered ? null : dirty[0]);
+		if (!event.isEmpty())
+		{
+			rebuildSelectionIndex();
+			if (NotificationProfiler.isEnabled())
+			{
+				NotificationProfiler.notified(notificationState());
+			}
+			NotificationEvent notification = new NotificationEvent();
+			notification.begin();
+			setChanged();
+			notifyObservers(event);
+			if (notification.shouldCommit())
+			{
+				notification.observers = countObservers();
+				notification.added = event.getAdded().size();
+				notification.removed = event.getRemoved().size();
+				notification.changed = event.getChanged().size();
+				notification.detailed = true;
+				notification.commit();
+			}
+		}
+	}
+
+	/**
+	 * Ajout de l'enveloppe d'une figure (augmentée de l'épaisseur du trait
+	 * et de la marge de sélection) à une zone
+	 * @param area la zone à compléter (ou null)
+	 * @param figure la figure dont on ajoute l'enveloppe
+	 * @return la zone complétée
+	 */
+	private static Rectangle2D addDirty(Rectangle2D area, Figure figure)
+	{
+		Rectangle2D bounds = figure.getBounds2D();
+		BasicStroke figureStroke = figure.getStroke();
+		double margin = SelectionMargin
+		    + (figureStroke != null ? figureStroke.getLineWidth() : 0.0);
+		bounds.setFrame(bounds.getX() - margin, bounds.getY() - margin,
+		                bounds.getWidth() + (2 * margin),
+		                bounds.getHeight() + (2 * margin));
+		if (area == null)
+		{
+			return bounds;
+		}
+		area.add(bounds);
+		return area;
 	}
 }
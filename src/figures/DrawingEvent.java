@@ -0,0 +1,143 @@
+package figures;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.EventObject;
+import java.util.List;
+
+/**
+ * Evènement transmis aux observateurs d'un {@link Drawing} (au travers de
+ * {@link Drawing#notifyObservers(Object)}) décrivant précisément les
+ * changements survenus lors de la restitution d'un état : figures ajoutées,
+ * retirées ou modifiées, changement d'ordre des figures et zone du dessin
+ * affectée par ces changements.
+ * @author davidroussel
+ */
+public class DrawingEvent extends EventObject
+{
+	/**
+	 * Serializable class must have a serial version UID
+	 */
+	private static final long serialVersionUID = 2851623937062270346L;
+
+	/**
+	 * Les figures ajoutées au dessin
+	 */
+	private final List<Figure> added;
+
+	/**
+	 * Les figures retirées du dessin
+	 */
+	private final List<Figure> removed;
+
+	/**
+	 * Les figures restées dans le dessin dont le contenu a changé
+	 */
+	private final List<Figure> changed;
+
+	/**
+	 * Indique si l'ordre des figures restées dans le dessin a changé
+	 */
+	private final boolean reordered;
+
+	/**
+	 * La zone du dessin affectée par les changements (avant et après) ou
+	 * null si l'ensemble du dessin est affecté
+	 */
+	private final Rectangle2D dirtyBounds;
+
+	/**
+	 * Constructeur d'un évènement de changement du dessin
+	 * @param source le dessin modifié
+	 * @param added les figures ajoutées
+	 * @param removed les figures retirées
+	 * @param changed les figures modifiées
+	 * @param reordered indique si l'ordre des figures a changé
+	 * @param dirtyBounds la zone affectée par les changements ou null si
+	 * l'ensemble du dessin est affecté
+	 */
+	public DrawingEvent(Drawing source,
+	                    List<Figure> added,
+	                    List<Figure> removed,
+	                    List<Figure> changed,
+	                    boolean reordered,
+	                    Rectangle2D dirtyBounds)
+	{
+		super(source);
+		this.added = Collections.unmodifiableList(added);
+		this.removed = Collections.unmodifiableList(removed);
+		this.changed = Collections.unmodifiableList(changed);
+		this.reordered = reordered;
+		this.dirtyBounds = dirtyBounds;
+	}
+
+	/**
+	 * Figures ajoutées
+	 * @return la liste des figures ajoutées au dessin
+	 */
+	public List<Figure> getAdded()
+	{
+		return added;
+	}
+
+	/**
+	 * Figures retirées
+	 * @return la liste des figures retirées du dessin
+	 */
+	public List<Figure> getRemoved()
+	{
+		return removed;
+	}
+
+	/**
+	 * Figures modifiées
+	 * @return la liste des figures restées dans le dessin dont le contenu a
+	 * changé
+	 */
+	public List<Figure> getChanged()
+	{
+		return changed;
+	}
+
+	/**
+	 * Changement d'ordre
+	 * @return true si l'ordre des figures restées dans le dessin a changé
+	 */
+	public boolean isReordered()
+	{
+		return reordered;
+	}
+
+	/**
+	 * Zone affectée
+	 * @return la zone du dessin affectée par les changements ou null si
+	 * l'ensemble du dessin est affecté
+	 */
+	public Rectangle2D getDirtyBounds()
+	{
+		return dirtyBounds;
+	}
+
+	/**
+	 * Indique si l'évènement ne décrit aucun changement
+	 * @return true si aucune figure n'a été ajoutée, retirée, modifiée ou
+	 * déplacée dans l'ordre des figures
+	 */
+	public boolean isEmpty()
+	{
+		return added.isEmpty() && removed.isEmpty() && changed.isEmpty()
+		    && !reordered;
+	}
+
+	/**
+	 * Représentation sous forme de chaîne de caractères
+	 * @return le nombre de figures ajoutées, retirées et modifiées
+	 */
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[+" + added.size() + ", -"
+		    + removed.size() + ", ~" + changed.size()
+		    + (reordered ? ", reordered" : "") + "]";
+	}
+}
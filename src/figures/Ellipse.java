@@ -6,6 +6,7 @@ import java.awt.geom.Ellipse2D;
 import java.awt.geom.Point2D;
 
 import figures.enums.FigureType;
+import utils.Log;
 import utils.Signature;
 
 /**
@@ -44,6 +45,21 @@ public class Ellipse extends Figure implements Signature
 		shape = new Ellipse2D.Double(x, y, w, h);
 	}
 
+	/**
+	 * Création d'une ellipse à partir d'une forme existante sans lui attribuer
+	 * de nouveau numéro d'instance (utilisé par le {@link FigureCodec} qui
+	 * restitue le numéro d'instance d'origine)
+	 * @param stroke le type de trait
+	 * @param edge la couleur du trait
+	 * @param fill la couleur de remplissage
+	 * @param ellipse la forme de l'ellipse
+	 */
+	Ellipse(BasicStroke stroke, Paint edge, Paint fill, Ellipse2D ellipse)
+	{
+		super(stroke, edge, fill);
+		shape = ellipse;
+	}
+
 	/**
 	 * Constructeur de copie assurant une copie distincte de l'ellipse
 	 * @param ellipse l'ellipse à copier
@@ -95,6 +111,7 @@ public class Ellipse extends Figure implements Signature
 	{
 		if (shape != null)
 		{
+			touch();
 			Ellipse2D.Double ellipse = (Ellipse2D.Double) shape;
 			double newWidth = p.getX() - ellipse.x;
 			double newHeight = p.getY() - ellipse.y;
@@ -103,8 +120,7 @@ public class Ellipse extends Figure implements Signature
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null shape");
+			Log.warning("null shape");
 		}
 	}
 
@@ -136,6 +152,7 @@ public class Ellipse extends Figure implements Signature
 		double cx = center.getX();
 		double cy = center.getY();
 		Ellipse2D.Double ellipse = (Ellipse2D.Double) shape;
+		touch();
 		translation.translate(cx, cy);
 		ellipse.setFrame(ellipse.x - cx,
 		                 ellipse.y - cy,
@@ -7,14 +7,26 @@ import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.util.concurrent.atomic.AtomicLong;
 
 import figures.enums.FigureType;
 import figures.enums.LineType;
+import history.ContentHashable;
+import history.Identifiable;
+import history.Measurable;
+import history.Memento;
 import history.Prototype;
+import history.Restorable;
+import history.Versioned;
 import utils.CColor;
+import utils.Log;
 import utils.PaintFactory;
+import utils.Palette;
 import utils.Signature;
 import utils.StrokeFactory;
 
@@ -22,8 +34,36 @@ import utils.StrokeFactory;
  * Classe commune à toutes les sortes de figures
  * @author davidroussel
  */
-public abstract class Figure implements Prototype<Figure>, Signature
+public abstract class Figure
+    implements Prototype<Figure>, Restorable<Figure>, Versioned, Identifiable,
+    Measurable, ContentHashable, Signature
 {
+	/**
+	 * Horloge globale fournissant les numéros de version des figures.
+	 * Une horloge commune à toutes les figures garantit qu'une version donnée
+	 * n'est jamais attribuée deux fois
+	 */
+	private static final AtomicLong versionClock = new AtomicLong();
+
+	/**
+	 * Taille estimée (en octets) d'une figure sans sa forme ni ses
+	 * transformations : en-tête d'objet et attributs
+	 */
+	private static final long FigureBaseSize = 56;
+
+	/**
+	 * Taille estimée (en octets) d'un {@link AffineTransform} : en-tête
+	 * d'objet, 6 coefficients et l'état de la transformation
+	 */
+	private static final long TransformSize = 72;
+
+	/**
+	 * Tolérance par défaut (en pixels) pour tester si un point est sur le
+	 * bord d'une figure
+	 * @see #contains(Point2D)
+	 */
+	public static final double HitTolerance = 2.0;
+
 	/**
 	 * La forme à dessiner
 	 */
@@ -45,6 +85,18 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	protected Paint fill;
 
+	/**
+	 * Identifiant de {@link #edge} dans la {@link Palette} (qui reste
+	 * valable tant que la figure référence le paint partagé {@link #edge})
+	 */
+	protected int edgeId;
+
+	/**
+	 * Identifiant de {@link #fill} dans la {@link Palette} (qui reste
+	 * valable tant que la figure référence le paint partagé {@link #fill})
+	 */
+	protected int fillId;
+
 	/**
 	 * Caractéristiques de la bordure des figure : épaisseur, forme des
 	 * extremités et [evt] forme des jointures
@@ -92,6 +144,39 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	protected boolean selected;
 
+	/**
+	 * La version courante de la figure, changée à chaque modification
+	 * @see #touch()
+	 */
+	protected long version;
+
+	/**
+	 * L'empreinte du contenu de la figure mise en cache
+	 * @see #getContentHash()
+	 */
+	private long contentHash;
+
+	/**
+	 * La version de la figure pour laquelle {@link #contentHash} a été
+	 * calculée
+	 */
+	private long contentHashVersion;
+
+	/**
+	 * Le dernier trait de test utilisé par {@link #contains(Point2D, double)}
+	 */
+	private BasicStroke hitStroke;
+
+	/**
+	 * Le trait de la figure pour lequel {@link #hitStroke} a été obtenu
+	 */
+	private BasicStroke hitStrokeBase;
+
+	/**
+	 * La tolérance pour laquelle {@link #hitStroke} a été obtenu
+	 */
+	private double hitStrokeTolerance;
+
 	/**
 	 * Constructeur d'une figure abstraite à partir d'un style de ligne d'une
 	 * couleur de bordure et d'une couleur de remplissage. Les styles de lignes
@@ -105,8 +190,10 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	protected Figure(BasicStroke stroke, Paint edge, Paint fill)
 	{
 		this.stroke = stroke;
-		this.edge = edge;
-		this.fill = fill;
+		this.edge = Palette.intern(edge);
+		this.fill = Palette.intern(fill);
+		edgeId = Palette.idOf(this.edge);
+		fillId = Palette.idOf(this.fill);
 		shape = null;
 		translation = new AffineTransform();
 		translation.setToIdentity();
@@ -115,6 +202,9 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		scale = new AffineTransform();
 		scale.setToIdentity();
 		selected = false;
+		version = versionClock.incrementAndGet();
+		contentHash = 0;
+		contentHashVersion = 0;
 	}
 
 	/**
@@ -126,12 +216,17 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		shape = null; // Shapes must be copied in subclasses
 		edge = PaintFactory.getPaint(f.edge);
 		fill = PaintFactory.getPaint(f.fill);
+		edgeId = f.edgeId;
+		fillId = f.fillId;
 		stroke = StrokeFactory.getStroke(f.stroke);
 		translation = new AffineTransform(f.translation);
 		rotation = new AffineTransform(f.rotation);
 		scale = new AffineTransform(f.scale);
 		instanceNumber = f.instanceNumber;
 		selected = f.selected;
+		version = f.version;
+		contentHash = f.contentHash;
+		contentHashVersion = f.contentHashVersion;
 	}
 
 	/**
@@ -140,6 +235,59 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	@Override
 	public abstract Figure clone();
 
+	/**
+	 * Mise en place (en place) du contenu d'une copie de cette figure, y
+	 * compris sa version : la figure redevient identique à la copie sans
+	 * changer d'identité
+	 * @param snapshot la copie dont on reprend le contenu
+	 * @see history.Restorable#restoreFrom(java.lang.Object)
+	 */
+	@Override
+	public void restoreFrom(Figure snapshot)
+	{
+		Memento.beforeChange(this);
+		edge = snapshot.edge;
+		fill = snapshot.fill;
+		edgeId = snapshot.edgeId;
+		fillId = snapshot.fillId;
+		stroke = snapshot.stroke;
+		translation.setTransform(snapshot.translation);
+		rotation.setTransform(snapshot.rotation);
+		scale.setTransform(snapshot.scale);
+		instanceNumber = snapshot.instanceNumber;
+		selected = snapshot.selected;
+		restoreShape(snapshot.shape);
+		version = snapshot.version;
+		contentHash = snapshot.contentHash;
+		contentHashVersion = snapshot.contentHashVersion;
+	}
+
+	/**
+	 * Mise en place de la forme d'une copie de cette figure. Les formes
+	 * rectangulaires sont modifiées en place, les autres formes sont
+	 * remplacées par une copie (sous forme de chemin) de celle de la copie.
+	 * Les classes filles utilisant d'autres formes pourront redéfinir cette
+	 * méthode pour conserver le type de leur forme.
+	 * @param snapshotShape la forme de la copie
+	 */
+	protected void restoreShape(Shape snapshotShape)
+	{
+		if ((shape instanceof RectangularShape)
+		    && (snapshotShape instanceof RectangularShape))
+		{
+			((RectangularShape) shape)
+			    .setFrame(((RectangularShape) snapshotShape).getFrame());
+		}
+		else if (snapshotShape != null)
+		{
+			shape = new Path2D.Double(snapshotShape);
+		}
+		else
+		{
+			shape = null;
+		}
+	}
+
 	/**
 	 * Comparaison de deux figures
 	 * @param Object o l'objet à comparer
@@ -170,19 +318,19 @@ public abstract class Figure implements Prototype<Figure>, Signature
 					// boolean edgeTest = (edge == null ? f.edge == null :
 					// edge.equals(f.edge));
 					/*
-					 * Les egde sont fournies par une PaintFactory donc elles
-					 * sont uniques
+					 * Les egde sont identifiées dans la Palette donc elles
+					 * sont égales si elles ont le même identifiant
 					 */
-					boolean edgeTest = (edge == f.edge);
+					boolean edgeTest = (edgeId == f.edgeId);
 					if (edgeTest)
 					{
 						// boolean fillTest = (fill == null ? f.fill == null :
 						// fill.equals(f.fill));
 						/*
-						 * Les fill sont fournies par une PaintFactory donc
-						 * elles sont uniques
+						 * Les fill sont identifiées dans la Palette donc
+						 * elles sont égales si elles ont le même identifiant
 						 */
-						boolean fillTest = (fill == f.fill);
+						boolean fillTest = (fillId == f.fillId);
 						if (fillTest)
 						{
 							// boolean strokeTest = (stroke == null ?
@@ -223,6 +371,176 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		return false;
 	}
 
+	/**
+	 * Accesseur de la version courante de la figure
+	 * @return la version courante de la figure
+	 * @see history.Versioned#getVersion()
+	 */
+	@Override
+	public long getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Identité de la figure : son type et son numéro d'instance (conservés
+	 * par ses copies)
+	 * @return l'identité de la figure
+	 * @see history.Identifiable#getIdentity()
+	 */
+	@Override
+	public long getIdentity()
+	{
+		return ((long) getType().intValue() << 32)
+		    | (instanceNumber & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Signale une modification de la figure en lui attribuant une nouvelle
+	 * version. Doit être appelé par toutes les méthodes modifiant la figure
+	 * (y compris dans les classes filles) <b>avant</b> la modification afin
+	 * qu'un memento en cours de capture puisse encore cloner la figure dans
+	 * son état précédent
+	 */
+	protected void touch()
+	{
+		Memento.beforeChange(this);
+		version = versionClock.incrementAndGet();
+	}
+
+	/**
+	 * Empreinte du contenu de la figure, cohérente avec {@link #equals(Object)}
+	 * (type, numéro d'instance, couleurs, trait, transformations et forme).
+	 * L'empreinte est mise en cache et n'est recalculée que lorsque la figure
+	 * a changé de version.
+	 * @return l'empreinte sur 64 bits du contenu de la figure
+	 * @see history.ContentHashable#getContentHash()
+	 */
+	@Override
+	public long getContentHash()
+	{
+		if (contentHashVersion != version)
+		{
+			long hash = getType().ordinal();
+			hash = mix(hash, instanceNumber);
+			hash = mix(hash, edgeId);
+			hash = mix(hash, fillId);
+			hash = mix(hash, stroke == null ? 0 : stroke.hashCode());
+			hash = mix(hash, translation.hashCode());
+			hash = mix(hash, rotation.hashCode());
+			hash = mix(hash, scale.hashCode());
+			hash = mix(hash, shapeHash(shape));
+			contentHash = hash;
+			contentHashVersion = version;
+		}
+		return contentHash;
+	}
+
+	/**
+	 * Combinaison d'une empreinte avec une nouvelle valeur
+	 * @param hash l'empreinte courante
+	 * @param value la valeur à y ajouter
+	 * @return la nouvelle empreinte
+	 */
+	private static long mix(long hash, long value)
+	{
+		long h = (hash * 0x9E3779B97F4A7C15L) + value;
+		return h ^ (h >>> 29);
+	}
+
+	/**
+	 * Empreinte d'une forme
+	 * @param shape la forme
+	 * @return le hashCode des formes rectangulaires (qui dépend de leur
+	 * contenu) ou bien une empreinte calculée à partir des segments du chemin
+	 * pour les autres formes
+	 */
+	protected static long shapeHash(Shape shape)
+	{
+		if (shape == null)
+		{
+			return 0;
+		}
+
+		if (shape instanceof RectangularShape)
+		{
+			return shape.hashCode();
+		}
+
+		long hash = 1;
+		double[] coords = new double[6];
+		for (PathIterator it = shape.getPathIterator(null); !it.isDone();
+		    it.next())
+		{
+			int type = it.currentSegment(coords);
+			hash = mix(hash, type);
+			for (int i = 0; i < 6; i++)
+			{
+				hash = mix(hash, Double.doubleToLongBits(coords[i]));
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par la figure : la figure elle même,
+	 * ses trois transformations et sa forme. Les {@link Paint} et
+	 * {@link BasicStroke} provenant de factories et étant partagés ne sont pas
+	 * comptés.
+	 * @return une estimation (en octets) de la mémoire occupée par la figure
+	 * @see history.Measurable#getEstimatedSize()
+	 */
+	@Override
+	public long getEstimatedSize()
+	{
+		return FigureBaseSize + (3 * TransformSize) + estimateShapeSize(shape);
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par une forme
+	 * @param shape la forme à estimer
+	 * @return une estimation (en octets) de la mémoire occupée par la forme :
+	 * taille fixe pour les formes rectangulaires (rectangles, ellipses, etc.)
+	 * et proportionnelle au nombre de segments pour les autres formes
+	 */
+	protected static long estimateShapeSize(Shape shape)
+	{
+		if (shape == null)
+		{
+			return 0;
+		}
+
+		if (shape instanceof RectangularShape)
+		{
+			return 16 + (6 * 8); // en-tête + jusqu'à 6 doubles
+		}
+
+		long size = 64; // en-tête et tableaux du chemin
+		double[] coords = new double[6];
+		for (PathIterator it = shape.getPathIterator(null); !it.isDone();
+		    it.next())
+		{
+			switch (it.currentSegment(coords))
+			{
+				case PathIterator.SEG_MOVETO:
+				case PathIterator.SEG_LINETO:
+					size += 1 + (2 * 8);
+					break;
+				case PathIterator.SEG_QUADTO:
+					size += 1 + (4 * 8);
+					break;
+				case PathIterator.SEG_CUBICTO:
+					size += 1 + (6 * 8);
+					break;
+				default: // SEG_CLOSE
+					size += 1;
+					break;
+			}
+		}
+
+		return size;
+	}
+
 	/**
 	 * Déplacement du dernier point de la figure (utilisé lors du dessin d'une
 	 * figure tant que l'on déplace le dernier point)
@@ -340,6 +658,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public void setTranslation(AffineTransform translation)
 	{
+		touch();
 		this.translation = translation;
 	}
 
@@ -350,6 +669,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public void translate(double dx, double dy)
 	{
+		touch();
 		translation.translate(dx, dy);
 	}
 
@@ -359,6 +679,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public void setRotation(AffineTransform rotation)
 	{
+		touch();
 		this.rotation = rotation;
 	}
 
@@ -368,6 +689,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public void rotate(double deltaAngle)
 	{
+		touch();
 		rotation.rotate(deltaAngle);
 	}
 
@@ -377,6 +699,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public void setScale(AffineTransform scale)
 	{
+		touch();
 		this.scale = scale;
 	}
 
@@ -386,6 +709,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public void scale(double deltaScale)
 	{
+		touch();
 		scale.scale(deltaScale, deltaScale);
 	}
 
@@ -451,12 +775,34 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	public abstract Point2D getCenter();
 
 	/**
-	 * Teste si le point p est contenu dans cette figure.
-	 * Utilise {@link Shape#contains(Point2D)}
+	 * Teste si le point p est contenu dans cette figure ou bien sur son
+	 * bord avec la tolérance par défaut {@link #HitTolerance}.
 	 * @param p le point dont on veut tester s'il est contenu dans la figure
 	 * @return true si le point p est contenu dans la figure, false sinon
+	 * @see #contains(Point2D, double)
 	 */
 	public boolean contains(Point2D p)
+	{
+		return contains(p, HitTolerance);
+	}
+
+	/**
+	 * Teste si le point p est contenu dans cette figure ou bien sur son bord.
+	 * L'intérieur est testé avec {@link Shape#contains(Point2D)} et le bord
+	 * avec le contour du trait de la figure élargi de la tolérance de part et
+	 * d'autre (de sorte que les figures sans remplissage, aux traits fins ou
+	 * ouvertes puissent être désignées). Les points situés hors du rectangle
+	 * englobant de la forme élargi de la demi largeur de ce contour sont
+	 * rejetés avant tout autre test, de sorte que seules les figures proches
+	 * du point requièrent un contour. Les contours sont conservés dans
+	 * l'{@link OutlineCache} afin de ne pas les recalculer à chaque test.
+	 * @param p le point dont on veut tester s'il est contenu dans la figure
+	 * @param tolerance la distance (en pixels) autour du trait en deçà de
+	 * laquelle un point est considéré comme étant sur le bord
+	 * @return true si le point p est contenu dans la figure ou sur son bord,
+	 * false sinon
+	 */
+	public boolean contains(Point2D p, double tolerance)
 	{
 		/*
 		 * Ce point p doit subir la transformation inverse
@@ -465,19 +811,101 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		 */
 		try
 		{
+			AffineTransform transform = getTransform();
 			Point2D transformedPoint = new Point2D.Double();
-			getTransform().inverseTransform(p, transformedPoint);
+			transform.inverseTransform(p, transformedPoint);
+
+			// Tolérance dans le repère de la forme
+			double det = Math.abs(transform.getDeterminant());
+			double localTolerance =
+			    (det > 0.0 ? tolerance / Math.sqrt(det) : tolerance);
+			BasicStroke hitStroke = getHitStroke(localTolerance);
+
+			// Rejet rapide : hors de l'enveloppe de la forme et de son contour
+			double margin = (hitStroke != null ? hitStroke.getLineWidth()
+			    * hitStrokeReach(hitStroke) : 0.0);
+			Rectangle2D bounds = shape.getBounds2D();
+			double x = transformedPoint.getX();
+			double y = transformedPoint.getY();
+			if ((x < (bounds.getMinX() - margin))
+			    || (x > (bounds.getMaxX() + margin))
+			    || (y < (bounds.getMinY() - margin))
+			    || (y > (bounds.getMaxY() + margin)))
+			{
+				return false;
+			}
 
-			return shape.contains(transformedPoint);
+			if (shape.contains(transformedPoint))
+			{
+				return true;
+			}
+			if (hitStroke == null)
+			{
+				return false;
+			}
+			OutlineCache.Entry outline = OutlineCache.get(this, hitStroke);
+			return outline.bounds.contains(transformedPoint)
+			    && outline.outline.contains(transformedPoint);
 		}
 		catch (NoninvertibleTransformException e)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " contains : Non inversible transformation");
+			Log.warning("contains : Non inversible transformation");
 			return false;
 		}
 	}
 
+	/**
+	 * Distance maximum entre la forme et le contour d'un trait, relativement à
+	 * la largeur du trait : la demi largeur pour des jonctions arrondies ou
+	 * biseautées, éventuellement agrandie par les extrémités carrées (d'un
+	 * facteur racine de 2) ou bien par les pointes des jonctions en onglet
+	 * (limitées par la limite d'onglet du trait).
+	 * @param stroke le trait
+	 * @return le rapport entre la distance maximum du contour à la forme et
+	 * la largeur du trait
+	 */
+	private static double hitStrokeReach(BasicStroke stroke)
+	{
+		double reach = Math.sqrt(2.0) / 2.0;
+		if (stroke.getLineJoin() == BasicStroke.JOIN_MITER)
+		{
+			reach = Math.max(reach, stroke.getMiterLimit() / 2.0);
+		}
+		return reach;
+	}
+
+	/**
+	 * Trait utilisé pour tester si un point est sur le bord de la figure :
+	 * trait plein de la largeur du trait de la figure augmentée de deux fois
+	 * la tolérance. La largeur est arrondie au quart de pixel afin que les
+	 * figures de même trait partagent le même trait de test.
+	 * @param tolerance la tolérance dans le repère de la forme
+	 * @return le trait de test provenant de la {@link StrokeFactory} ou bien
+	 * null si le trait de test serait vide
+	 */
+	private BasicStroke getHitStroke(double tolerance)
+	{
+		if ((hitStroke != null) && (hitStrokeBase == stroke)
+		    && (hitStrokeTolerance == tolerance))
+		{
+			return hitStroke;
+		}
+		float width = (stroke != null ? stroke.getLineWidth() : 0.0f)
+		    + (float) (2.0 * tolerance);
+		width = Math.round(width * 4.0f) / 4.0f;
+		if (width <= 0.0f)
+		{
+			return null;
+		}
+		int cap = (stroke != null ? stroke.getEndCap() : BasicStroke.CAP_ROUND);
+		int join = (stroke != null ? stroke.getLineJoin()
+		    : BasicStroke.JOIN_ROUND);
+		hitStroke = StrokeFactory.getStroke(new BasicStroke(width, cap, join));
+		hitStrokeBase = stroke;
+		hitStrokeTolerance = tolerance;
+		return hitStroke;
+	}
+
 	/**
 	 * Accesseur du type de figure selon {@link FigureType}
 	 * @return le type de figure
@@ -494,20 +922,22 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	}
 
 	/**
-	 * Accesseur en lecture de la couleur comparable du contour
+	 * Accesseur en lecture de la couleur comparable du contour (obtenue
+	 * auprès de la {@link Palette} sans allocation)
 	 * @return la couleur comparable du contour
 	 */
 	public CColor getEdgeCColor()
 	{
-		if (edge != null)
-		{
-			if (edge instanceof Color)
-			{
-				return new CColor((Color) edge);
-			}
-		}
+		return Palette.getCColor(edgeId);
+	}
 
-		return CColor.NoColor;
+	/**
+	 * Accesseur en lecture de l'identifiant du {@link Paint} du contour
+	 * @return l'identifiant du contour dans la {@link Palette}
+	 */
+	public int getEdgeId()
+	{
+		return edgeId;
 	}
 
 	/**
@@ -518,12 +948,13 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	{
 		if (edge != null)
 		{
-			this.edge = edge;
+			touch();
+			this.edge = Palette.intern(edge);
+			edgeId = Palette.idOf(this.edge);
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null paint");
+			Log.warning("null paint");
 		}
 	}
 
@@ -537,20 +968,22 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	}
 
 	/**
-	 * Accesseur en lecture de la couleur comparable de remplissage
+	 * Accesseur en lecture de la couleur comparable de remplissage (obtenue
+	 * auprès de la {@link Palette} sans allocation)
 	 * @return la couleur comparable du remplissage
 	 */
 	public CColor getFillCColor()
 	{
-		if (fill != null)
-		{
-			if (fill instanceof Color)
-			{
-				return new CColor((Color) fill);
-			}
-		}
+		return Palette.getCColor(fillId);
+	}
 
-		return CColor.NoColor;
+	/**
+	 * Accesseur en lecture de l'identifiant du {@link Paint} du remplissage
+	 * @return l'identifiant du remplissage dans la {@link Palette}
+	 */
+	public int getFillId()
+	{
+		return fillId;
 	}
 
 	/**
@@ -561,12 +994,13 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	{
 		if (fill != null)
 		{
-			this.fill = fill;
+			touch();
+			this.fill = Palette.intern(fill);
+			fillId = Palette.idOf(this.fill);
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null paint");
+			Log.warning("null paint");
 		}
 	}
 
@@ -599,12 +1033,12 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	{
 		if (stroke != null)
 		{
+			touch();
 			this.stroke = stroke;
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null stroke");
+			Log.warning("null stroke");
 		}
 	}
 
@@ -623,7 +1057,11 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public void setSelected(boolean selected)
 	{
-		this.selected = selected;
+		if (this.selected != selected)
+		{
+			touch();
+			this.selected = selected;
+		}
 	}
 
 	/**
@@ -0,0 +1,300 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import figures.enums.FigureType;
+import history.MementoCodec;
+import utils.Palette;
+import utils.StrokeFactory;
+
+/**
+ * Encodeur / Décodeur binaire des {@link Figure} utilisé par le
+ * {@link history.HistoryManager} pour compresser ou déverser sur disque les
+ * entrées d'historique les plus anciennes.
+ * Les couleurs sont encodées par leur identifiant dans la {@link Palette}
+ * (sur un ou deux octets en général) et les traits décodés sont obtenus
+ * auprès de la {@link StrokeFactory} afin que les figures réhydratées
+ * partagent les mêmes flyweights que les figures vivantes.
+ * @note les identifiants de la {@link Palette} n'étant valables que tant que
+ * les couleurs correspondantes sont référencées, l'encodeur conserve les
+ * couleurs qu'il a encodées (afin que leurs identifiants ne soient pas
+ * recyclés) et les données encodées ne doivent pas survivre à l'encodeur
+ * (ce qui est le cas de l'historique).
+ * @author davidroussel
+ */
+public class FigureCodec implements MementoCodec<Figure>
+{
+	/**
+	 * Les couleurs encodées indexées par leur identifiant dans la
+	 * {@link Palette}
+	 */
+	private final ConcurrentHashMap<Integer, Paint> paints;
+
+	/**
+	 * Constructeur par défaut
+	 */
+	public FigureCodec()
+	{
+		paints = new ConcurrentHashMap<Integer, Paint>();
+	}
+
+	/**
+	 * Encodage d'une figure
+	 * @param figure la figure à encoder
+	 * @param out le flux dans lequel écrire la figure
+	 * @throws IOException si la figure ne peut pas être encodée
+	 */
+	@Override
+	public void write(Figure figure, DataOutput out) throws IOException
+	{
+		FigureType type = figure.getType();
+		out.writeByte(type.intValue());
+		out.writeInt(figure.instanceNumber);
+		out.writeLong(figure.version);
+		out.writeBoolean(figure.selected);
+		writePaint(figure.edgeId, figure.edge, out);
+		writePaint(figure.fillId, figure.fill, out);
+		writeStroke(figure.stroke, out);
+		writeTransform(figure.translation, out);
+		writeTransform(figure.rotation, out);
+		writeTransform(figure.scale, out);
+
+		switch (type)
+		{
+			case ELLIPSE:
+				Ellipse2D ellipse = (Ellipse2D) figure.shape;
+				out.writeDouble(ellipse.getX());
+				out.writeDouble(ellipse.getY());
+				out.writeDouble(ellipse.getWidth());
+				out.writeDouble(ellipse.getHeight());
+				break;
+			default:
+				throw new IOException("Unsupported figure type " + type);
+		}
+	}
+
+	/**
+	 * Décodage d'une figure
+	 * @param in le flux dans lequel lire la figure
+	 * @return une nouvelle figure identique à celle qui avait été encodée
+	 * (numéro d'instance et version compris)
+	 * @throws IOException si la figure ne peut pas être décodée
+	 */
+	@Override
+	public Figure read(DataInput in) throws IOException
+	{
+		FigureType type = FigureType.fromInteger(in.readByte());
+		int instanceNumber = in.readInt();
+		long version = in.readLong();
+		boolean selected = in.readBoolean();
+		Paint edge = readPaint(in);
+		Paint fill = readPaint(in);
+		BasicStroke stroke = readStroke(in);
+		AffineTransform translation = readTransform(in);
+		AffineTransform rotation = readTransform(in);
+		AffineTransform scale = readTransform(in);
+
+		Figure figure;
+		switch (type)
+		{
+			case ELLIPSE:
+				double x = in.readDouble();
+				double y = in.readDouble();
+				double w = in.readDouble();
+				double h = in.readDouble();
+				figure = new Ellipse(stroke, edge, fill,
+				                     new Ellipse2D.Double(x, y, w, h));
+				break;
+			default:
+				throw new IOException("Unsupported figure type " + type);
+		}
+
+		figure.instanceNumber = instanceNumber;
+		figure.selected = selected;
+		figure.translation = translation;
+		figure.rotation = rotation;
+		figure.scale = scale;
+		figure.version = version;
+		return figure;
+	}
+
+	/**
+	 * Encodage d'un entier positif sur un nombre variable d'octets (7 bits
+	 * par octet, le bit de poids fort indiquant qu'un autre octet suit)
+	 * @param value l'entier à encoder
+	 * @param out le flux dans lequel écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	private static void writeVarInt(int value, DataOutput out)
+	    throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Décodage d'un entier encodé par {@link #writeVarInt(int, DataOutput)}
+	 * @param in le flux dans lequel lire
+	 * @return l'entier décodé
+	 * @throws IOException si la lecture échoue
+	 */
+	private static int readVarInt(DataInput in) throws IOException
+	{
+		int value = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			if (shift > 28)
+			{
+				throw new IOException("Malformed variable length integer");
+			}
+			b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Encodage d'une couleur par son identifiant dans la {@link Palette}
+	 * @param id l'identifiant de la couleur
+	 * @param paint la couleur (conservée par l'encodeur)
+	 * @param out le flux dans lequel écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	private void writePaint(int id, Paint paint, DataOutput out)
+	    throws IOException
+	{
+		if (paint != null)
+		{
+			paints.putIfAbsent(Integer.valueOf(id), paint);
+		}
+		writeVarInt(id, out);
+	}
+
+	/**
+	 * Décodage d'une couleur
+	 * @param in le flux dans lequel lire
+	 * @return la couleur encodée correspondant à l'identifiant lu (ou null
+	 * pour {@link Palette#NoPaint})
+	 * @throws IOException si l'identifiant lu n'a pas été encodé
+	 */
+	private Paint readPaint(DataInput in) throws IOException
+	{
+		int id = readVarInt(in);
+		Paint paint = paints.get(Integer.valueOf(id));
+		if ((paint == null) && (id != Palette.NoPaint))
+		{
+			throw new IOException("Unknown paint id " + id);
+		}
+		return paint;
+	}
+
+	/**
+	 * Encodage d'un trait
+	 * @param stroke le trait à encoder (éventuellement null)
+	 * @param out le flux dans lequel écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	private static void writeStroke(BasicStroke stroke, DataOutput out)
+	    throws IOException
+	{
+		out.writeBoolean(stroke != null);
+		if (stroke != null)
+		{
+			out.writeFloat(stroke.getLineWidth());
+			out.writeByte(stroke.getEndCap());
+			out.writeByte(stroke.getLineJoin());
+			out.writeFloat(stroke.getMiterLimit());
+			float[] dash = stroke.getDashArray();
+			out.writeShort(dash != null ? dash.length : -1);
+			if (dash != null)
+			{
+				for (float d : dash)
+				{
+					out.writeFloat(d);
+				}
+			}
+			out.writeFloat(stroke.getDashPhase());
+		}
+	}
+
+	/**
+	 * Décodage d'un trait
+	 * @param in le flux dans lequel lire
+	 * @return le trait décodé issu de la {@link StrokeFactory} (ou null)
+	 * @throws IOException si la lecture échoue
+	 */
+	private static BasicStroke readStroke(DataInput in) throws IOException
+	{
+		if (!in.readBoolean())
+		{
+			return null;
+		}
+		float width = in.readFloat();
+		int cap = in.readByte();
+		int join = in.readByte();
+		float miterLimit = in.readFloat();
+		int dashLength = in.readShort();
+		float[] dash = null;
+		if (dashLength >= 0)
+		{
+			dash = new float[dashLength];
+			for (int i = 0; i < dashLength; i++)
+			{
+				dash[i] = in.readFloat();
+			}
+		}
+		float phase = in.readFloat();
+		return StrokeFactory.getStroke(
+		    new BasicStroke(width, cap, join, miterLimit, dash, phase));
+	}
+
+	/**
+	 * Encodage d'une transformation
+	 * @param transform la transformation à encoder
+	 * @param out le flux dans lequel écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	private static void writeTransform(AffineTransform transform,
+	                                   DataOutput out)
+	    throws IOException
+	{
+		double[] matrix = new double[6];
+		transform.getMatrix(matrix);
+		for (double m : matrix)
+		{
+			out.writeDouble(m);
+		}
+	}
+
+	/**
+	 * Décodage d'une transformation
+	 * @param in le flux dans lequel lire
+	 * @return une nouvelle transformation
+	 * @throws IOException si la lecture échoue
+	 */
+	private static AffineTransform readTransform(DataInput in)
+	    throws IOException
+	{
+		double[] matrix = new double[6];
+		for (int i = 0; i < matrix.length; i++)
+		{
+			matrix[i] = in.readDouble();
+		}
+		return new AffineTransform(matrix);
+	}
+}
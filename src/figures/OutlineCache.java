@@ -0,0 +1,439 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache des contours tracés ({@link BasicStroke#createStrokedShape(Shape)})
+ * des figures utilisés pour tester si un point se trouve sur le bord d'une
+ * figure (cf. {@link Figure#contains(java.awt.geom.Point2D, double)}).
+ * Calculer le contour d'un trait est coûteux : il n'est recalculé que
+ * lorsque la forme de la figure (version de la figure puis empreinte de sa
+ * forme, un simple déplacement ne changeant pas la forme) ou le trait de
+ * test (provenant de la {@link utils.StrokeFactory}) ont changé.
+ * Le cache est une table concurrente : les consultations ne prennent aucun
+ * verrou et les contours manquants sont calculés par le thread qui les
+ * demande, sans bloquer les autres.
+ * La taille du cache est bornée par un budget mémoire : le plus grand entre
+ * {@link #Budget} (configurable avec la propriété système
+ * "figures.outlineBudget") et {@link #FigureBudget} octets par figure du plus
+ * grand dessin testé ({@link #reserve(int)}). Au delà, les contours les
+ * moins récemment utilisés sont oubliés. Les figures ne sont référencées que
+ * faiblement par le cache et les contours des figures détruites sont
+ * retirés.
+ * @author davidroussel
+ */
+public class OutlineCache
+{
+	/**
+	 * Budget mémoire minimum (en octets) du cache
+	 */
+	public final static long Budget =
+	    Long.getLong("figures.outlineBudget", 4L * 1024L * 1024L).longValue();
+
+	/**
+	 * Budget mémoire (en octets) par figure testée : de quoi conserver le
+	 * contour de chaque figure d'un dessin d'ellipses
+	 */
+	public final static long FigureBudget = 2048;
+
+	/**
+	 * Taille estimée (en octets) d'une entrée du cache sans son contour
+	 */
+	private final static long EntryOverhead = 128;
+
+	/**
+	 * Proportion du budget à laquelle le cache est ramené lorsque le budget
+	 * est dépassé (afin de ne pas trier les entrées à chaque ajout)
+	 */
+	private final static double TrimRatio = 0.75;
+
+	/**
+	 * Les entrées du cache
+	 */
+	private static final ConcurrentHashMap<FigureKey, Entry> entries =
+	    new ConcurrentHashMap<FigureKey, Entry>();
+
+	/**
+	 * Les clés dont la figure a été détruite
+	 */
+	private static final ReferenceQueue<Figure> collected =
+	    new ReferenceQueue<Figure>();
+
+	/**
+	 * Verrou réservant le retrait des entrées à un seul thread à la fois
+	 */
+	private static final ReentrantLock trimming = new ReentrantLock();
+
+	/**
+	 * Horloge logique des utilisations des entrées (LRU)
+	 */
+	private static final AtomicLong clock = new AtomicLong();
+
+	/**
+	 * Taille estimée (en octets) des contours du cache
+	 */
+	private static final AtomicLong usedBytes = new AtomicLong();
+
+	/**
+	 * Nombre de figures du plus grand dessin testé
+	 */
+	private static volatile int figures = 0;
+
+	/**
+	 * Nombre de contours obtenus depuis le cache
+	 */
+	private static final LongAdder hits = new LongAdder();
+
+	/**
+	 * Nombre de contours calculés
+	 */
+	private static final LongAdder misses = new LongAdder();
+
+	/**
+	 * Nombre de contours oubliés pour respecter le budget
+	 */
+	private static final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Entrée du cache : le contour d'une figure et ce qui a permis de le
+	 * calculer
+	 */
+	static class Entry
+	{
+		/**
+		 * La version de la figure lors de la dernière validation du contour
+		 */
+		private volatile long version;
+
+		/**
+		 * La date (logique) de la dernière utilisation de l'entrée
+		 */
+		private volatile long lastUse;
+
+		/**
+		 * L'empreinte de la forme de la figure
+		 */
+		private final long shapeHash;
+
+		/**
+		 * Le trait de test ayant servi à calculer le contour
+		 */
+		private final BasicStroke stroke;
+
+		/**
+		 * Le contour tracé
+		 */
+		final Shape outline;
+
+		/**
+		 * Le rectangle englobant du contour
+		 */
+		final Rectangle2D bounds;
+
+		/**
+		 * Taille estimée (en octets) de l'entrée
+		 */
+		private final long size;
+
+		/**
+		 * Constructeur d'une entrée
+		 * @param version la version de la figure
+		 * @param shapeHash l'empreinte de la forme de la figure
+		 * @param stroke le trait de test
+		 * @param outline le contour tracé
+		 */
+		private Entry(long version,
+		              long shapeHash,
+		              BasicStroke stroke,
+		              Shape outline)
+		{
+			this.version = version;
+			this.shapeHash = shapeHash;
+			this.stroke = stroke;
+			this.outline = outline;
+			lastUse = clock.incrementAndGet();
+			bounds = outline.getBounds2D();
+			size = EntryOverhead + estimateSize(outline);
+		}
+	}
+
+	/**
+	 * Dimensionnement du budget du cache en fonction du nombre de figures
+	 * d'un dessin dont on teste les figures
+	 * @param count le nombre de figures du dessin
+	 */
+	public static void reserve(int count)
+	{
+		if (count > figures)
+		{
+			figures = count;
+		}
+	}
+
+	/**
+	 * Budget effectif du cache
+	 * @return le budget mémoire (en octets) du cache
+	 */
+	public static long getBudget()
+	{
+		return Math.max(Budget, figures * FigureBudget);
+	}
+
+	/**
+	 * Obtention du contour tracé de la forme d'une figure
+	 * @param figure la figure
+	 * @param stroke le trait de test (provenant de la
+	 * {@link utils.StrokeFactory} afin de pouvoir être comparé par référence)
+	 * @return l'entrée contenant le contour tracé de la forme de la figure
+	 */
+	static Entry get(Figure figure, BasicStroke stroke)
+	{
+		purge();
+		FigureKey key = new FigureKey(figure, null);
+		Entry entry = entries.get(key);
+		if ((entry != null) && (entry.stroke == stroke))
+		{
+			if (entry.version == figure.version)
+			{
+				entry.lastUse = clock.incrementAndGet();
+				hits.increment();
+				return entry;
+			}
+			// La figure a changé : sa forme a-t-elle changé ?
+			if (entry.shapeHash == Figure.shapeHash(figure.shape))
+			{
+				entry.version = figure.version;
+				entry.lastUse = clock.incrementAndGet();
+				hits.increment();
+				return entry;
+			}
+		}
+
+		Entry created = new Entry(figure.version,
+		                          Figure.shapeHash(figure.shape),
+		                          stroke,
+		                          stroke.createStrokedShape(figure.shape));
+		misses.increment();
+		Entry previous = entries.put(new FigureKey(figure, collected), created);
+		usedBytes.addAndGet(created.size
+		    - (previous != null ? previous.size : 0L));
+		if (usedBytes.get() > getBudget())
+		{
+			trim();
+		}
+		return created;
+	}
+
+	/**
+	 * Retrait des entrées dont la figure a été détruite
+	 */
+	private static void purge()
+	{
+		for (Reference<? extends Figure> ref = collected.poll(); ref != null;
+		    ref = collected.poll())
+		{
+			Entry removed = entries.remove(ref);
+			if (removed != null)
+			{
+				usedBytes.addAndGet(-removed.size);
+			}
+		}
+	}
+
+	/**
+	 * Retrait des entrées les moins récemment utilisées jusqu'à ramener la
+	 * taille du cache à {@link #TrimRatio} du budget (un seul thread à la
+	 * fois, les autres continuant sans attendre)
+	 */
+	private static void trim()
+	{
+		if (!trimming.tryLock())
+		{
+			return;
+		}
+		try
+		{
+			long target = (long) (getBudget() * TrimRatio);
+			List<Map.Entry<FigureKey, Entry>> eldest =
+			    new ArrayList<Map.Entry<FigureKey, Entry>>(entries.entrySet());
+			eldest.sort((Map.Entry<FigureKey, Entry> e1,
+			             Map.Entry<FigureKey, Entry> e2) ->
+			    Long.compare(e1.getValue().lastUse, e2.getValue().lastUse));
+			for (Iterator<Map.Entry<FigureKey, Entry>> it = eldest.iterator();
+			    (usedBytes.get() > target) && it.hasNext();)
+			{
+				Map.Entry<FigureKey, Entry> e = it.next();
+				if (entries.remove(e.getKey(), e.getValue()))
+				{
+					usedBytes.addAndGet(-e.getValue().size);
+					evictions.increment();
+				}
+			}
+		}
+		finally
+		{
+			trimming.unlock();
+		}
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par un contour
+	 * @param outline le contour
+	 * @return la taille estimée (en octets) du contour
+	 */
+	private static long estimateSize(Shape outline)
+	{
+		long size = 0;
+		double[] coords = new double[6];
+		for (PathIterator it = outline.getPathIterator(null); !it.isDone();
+		    it.next())
+		{
+			switch (it.currentSegment(coords))
+			{
+				case PathIterator.SEG_MOVETO:
+				case PathIterator.SEG_LINETO:
+					size += 1 + (2 * Double.BYTES);
+					break;
+				case PathIterator.SEG_QUADTO:
+					size += 1 + (4 * Double.BYTES);
+					break;
+				case PathIterator.SEG_CUBICTO:
+					size += 1 + (6 * Double.BYTES);
+					break;
+				default:
+					size += 1;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Nombre de contours dans le cache
+	 * @return le nombre de contours dans le cache
+	 */
+	public static int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Taille estimée du cache
+	 * @return la taille estimée (en octets) des contours du cache
+	 */
+	public static long getUsedBytes()
+	{
+		return usedBytes.get();
+	}
+
+	/**
+	 * Nombre de contours obtenus depuis le cache
+	 * @return le nombre de tests pour lesquels le contour n'a pas été
+	 * recalculé
+	 */
+	public static long getHitCount()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Nombre de contours calculés
+	 * @return le nombre de tests pour lesquels le contour a été calculé
+	 */
+	public static long getMissCount()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Nombre de contours oubliés
+	 * @return le nombre de contours oubliés pour respecter le budget
+	 */
+	public static long getEvictionCount()
+	{
+		return evictions.sum();
+	}
+
+	/**
+	 * Vidage du cache
+	 */
+	public static void clear()
+	{
+		trimming.lock();
+		try
+		{
+			entries.clear();
+			usedBytes.set(0L);
+		}
+		finally
+		{
+			trimming.unlock();
+		}
+	}
+
+	/**
+	 * Clé du cache : référence faible vers une figure comparée par identité
+	 */
+	private static class FigureKey extends WeakReference<Figure>
+	{
+		/**
+		 * Le hachage (par identité) de la figure
+		 */
+		private final int hash;
+
+		/**
+		 * Constructeur d'une clé
+		 * @param figure la figure
+		 * @param queue la file dans laquelle placer la clé lorsque la figure
+		 * est détruite (ou null pour une clé de recherche)
+		 */
+		public FigureKey(Figure figure, ReferenceQueue<Figure> queue)
+		{
+			super(figure, queue);
+			hash = System.identityHashCode(figure);
+		}
+
+		/**
+		 * Hachage de la clé
+		 * @return le hachage par identité de la figure
+		 */
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		/**
+		 * Comparaison avec une autre clé
+		 * @param o l'objet à comparer
+		 * @return true si o est cette clé ou une clé vers la même figure
+		 */
+		@Override
+		public boolean equals(Object o)
+		{
+			if (o == this)
+			{
+				return true;
+			}
+			if (!(o instanceof FigureKey))
+			{
+				return false;
+			}
+			Figure figure = get();
+			return (figure != null) && (figure == ((FigureKey) o).get());
+		}
+	}
+}
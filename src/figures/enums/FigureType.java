@@ -12,6 +12,7 @@ import figures.Figure;
 import figures.listeners.creation.AbstractCreationListener;
 import figures.listeners.creation.RectangularShapeCreationListener;
 import history.HistoryManager;
+import utils.Log;
 import utils.Signature;
 
 /**
@@ -51,35 +52,29 @@ public enum FigureType implements Signature
 		{
 			case CIRCLE:
 				// TODO Enlever le message et renvoyer une nouvelle figure de type Circle
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + CIRCLE + ": No such figure yet");
+				Log.warning("for {}: No such figure yet", CIRCLE);
 				return null;
 			case ELLIPSE:
 				return new Ellipse(stroke, edge, fill, p, p);
 			case RECTANGLE:
 				// TODO Enlever le message et renvoyer une nouvelle figure de type Rectangle
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + RECTANGLE + ": No such figure yet");
+				Log.warning("for {}: No such figure yet", RECTANGLE);
 				return null;
 			case ROUNDED_RECTANGLE:
 				// TODO Enlever le message et renvoyer une nouvelle figure de type RoundedRectangle
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + ROUNDED_RECTANGLE + ": No such figure yet");
+				Log.warning("for {}: No such figure yet", ROUNDED_RECTANGLE);
 				return null;
 			case POLYGON:
 				// TODO Enlever le message et renvoyer une nouvelle figure de type Polygon
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + POLYGON + ": No such figure yet");
+				Log.warning("for {}: No such figure yet", POLYGON);
 				return null;
 			case NGON:
 				// TODO Enlever le message et renvoyer une nouvelle figure de type Ngon
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + NGON + ": No such figure yet");
+				Log.warning("for {}: No such figure yet", NGON);
 				return null;
 			case STAR:
 				// TODO Enlever le message et renvoyer une nouvelle figure de type Star
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + STAR + ": No such figure yet");
+				Log.warning("for {}: No such figure yet", STAR);
 				return null;
 		}
 
@@ -109,23 +104,19 @@ public enum FigureType implements Signature
 				return new RectangularShapeCreationListener(model, history, tipLabel);
 			case ROUNDED_RECTANGLE:
 				// TODO Enlever le message et renvoyer une nouveau CreationListener adapté aux RoundedRectangle
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + ROUNDED_RECTANGLE + ": No such listener yet");
+				Log.warning("for {}: No such listener yet", ROUNDED_RECTANGLE);
 				return null;
 			case POLYGON:
 				// TODO Enlever le message et renvoyer une nouveau CreationListener adapté aux Polygon
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + POLYGON + ": No such listener yet");
+				Log.warning("for {}: No such listener yet", POLYGON);
 				return null;
 			case NGON:
 				// TODO Enlever le message et renvoyer une nouveau CreationListener adapté aux Ngon
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + NGON + ": No such listener yet");
+				Log.warning("for {}: No such listener yet", NGON);
 				return null;
 			case STAR:
 				// TODO Enlever le message et renvoyer une nouveau CreationListener adapté aux Star
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + STAR + ": No such listener yet");
+				Log.warning("for {}: No such listener yet", STAR);
 				return null;
 		}
 
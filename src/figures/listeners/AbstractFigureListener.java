@@ -11,6 +11,7 @@ import javax.swing.JLabel;
 import figures.Drawing;
 import figures.Figure;
 import history.HistoryManager;
+import utils.Log;
 import utils.Signature;
 
 /**
@@ -115,20 +116,17 @@ public abstract class AbstractFigureListener
 
 		if (drawingModel == null)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " caution : null drawing model");
+			Log.warning("caution : null drawing model");
 		}
 
 		if (history == null)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " caution : null history manager");
+			Log.warning("caution : null history manager");
 		}
 
 		if (tipLabel == null)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " caution : null tip label");
+			Log.warning("caution : null tip label");
 		}
 	}
 
@@ -218,8 +216,7 @@ public abstract class AbstractFigureListener
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null tipLabel");
+			Log.warning("null tipLabel");
 		}
 	}
 }
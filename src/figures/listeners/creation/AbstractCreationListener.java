@@ -11,6 +11,7 @@ import figures.Drawing;
 import figures.Figure;
 import figures.listeners.AbstractFigureListener;
 import history.HistoryManager;
+import utils.Log;
 import utils.Signature;
 
 /**
@@ -42,27 +43,47 @@ public abstract class AbstractCreationListener extends AbstractFigureListener
 
 	/**
 	 * Initialisation de la création d'une nouvelle figure. détermine le point
-	 * de départ de la figure ({@link #startPoint}), initie une nouvelle figure
-	 * à la position de l'évènement ({@link Drawing#initiateFigure(Point2D)}),
-	 * met à jour le dessin {@link Drawing#update()}, puis passe à l'étape
-	 * suivante en mettant à jour les conseils utilisateurs (
-	 * {@link #updateTip()}). Pour la plupart des figures la création commence
-	 * par un appui sur le bouton gauche de la souris. A utiliser dans
-	 * {@link MouseListener#mousePressed(MouseEvent)} ou bien dans
-	 * {@link MouseListener#mouseClicked(MouseEvent)} suivant la figure à créer.
+	 * de départ de la figure ({@link #startPoint}), ouvre un enregistrement
+	 * en attente dans l'historique ({@link HistoryManager#openPending()}),
+	 * puis passe à l'étape suivante en mettant à jour les conseils
+	 * utilisateurs ({@link #updateTip()}). La figure elle même n'est initiée
+	 * qu'à la première modification ({@link #initiateFigure()}) de manière à
+	 * ce qu'un simple clic ne coûte rien. Pour la plupart des figures la
+	 * création commence par un appui sur le bouton gauche de la souris. A
+	 * utiliser dans {@link MouseListener#mousePressed(MouseEvent)} ou bien
+	 * dans {@link MouseListener#mouseClicked(MouseEvent)} suivant la figure à
+	 * créer.
 	 * @param e l'évènement souris à utiliser pour initier la création d'une
 	 * nouvelle figure à la position de cet évènement
 	 */
 	@Override
 	public void startAction(MouseEvent e)
 	{
-		history.record();
+		history.openPending();
 		setStartPoint(e);
-		currentFigure = drawingModel.initiateFigure(e.getPoint());
+		currentFigure = null;
 
 		nextStep();
+	}
 
-		drawingModel.update();
+	/**
+	 * Initiation effective de la figure au point de départ
+	 * ({@link #startPoint}) si elle n'a pas encore été initiée : l'état du
+	 * dessin est d'abord capturé dans l'historique
+	 * ({@link HistoryManager#recordPending()}) puis une nouvelle figure est
+	 * ajoutée au dessin ({@link Drawing#initiateFigure(Point2D)}). A appeler
+	 * par les classes filles avant chaque modification de la figure en cours
+	 * de création.
+	 * @return la figure en cours de création
+	 */
+	protected Figure initiateFigure()
+	{
+		if (currentFigure == null)
+		{
+			history.recordPending();
+			currentFigure = drawingModel.initiateFigure(startPoint);
+		}
+		return currentFigure;
 	}
 
 	/**
@@ -71,7 +92,8 @@ public abstract class AbstractCreationListener extends AbstractFigureListener
 	 * {@link #endPoint}), vérifie que la figure ainsi terminée n'est pas de
 	 * taille 0 ({@link #checkZeroSizeFigure()}), puis met à jour le dessin (
 	 * {@link Drawing#update()}) et les conseils utilisateurs (
-	 * {@link #updateTip()}). A utiliser dans un
+	 * {@link #updateTip()}). Si aucune figure n'a été initiée (simple clic)
+	 * l'enregistrement en attente est simplement refermé sans rien capturer. A utiliser dans un
 	 * {@link MouseListener#mousePressed(MouseEvent)} ou bien dans un
 	 * {@link MouseListener#mouseClicked(MouseEvent)} suivant la figure à créer.
 	 * @param e l'évènement souris à utiliser lors de la terminaison d'un figure
@@ -85,24 +107,26 @@ public abstract class AbstractCreationListener extends AbstractFigureListener
 
 		setendPoint(e);
 
-		// à la fin de la figure on la normalise pour qu'elle soit centrée
-		// sur son barycentre et la position du barycentre dans la translation
-		if (currentFigure != null)
-		{
-			currentFigure.normalize();
-		}
-		else
+		if (currentFigure == null)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null figure");
+			// Aucune figure initiée : rien à enregistrer
+			history.closePending();
+			updateTip();
+			return;
 		}
 
+		// à la fin de la figure on la normalise pour qu'elle soit centrée
+		// sur son barycentre et la position du barycentre dans la translation
+		currentFigure.normalize();
+
 		if (checkZeroSizeFigure())
 		{
 			// cancel last memento
 			history.cancel();
 		}
 
+		currentFigure = null;
+
 		drawingModel.update();
 
 		updateTip();
@@ -119,8 +143,8 @@ public abstract class AbstractCreationListener extends AbstractFigureListener
 	{
 		if (startPoint.distance(endPoint) < 1.0)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " Removed zero sized figure " + drawingModel.getLastFigure());
+			Log.warning("Removed zero sized figure {}",
+			    drawingModel.getLastFigure());
 			drawingModel.removeLastFigure();
 			return true;
 		}
@@ -8,6 +8,7 @@ import javax.swing.JLabel;
 import figures.Drawing;
 import figures.Figure;
 import history.HistoryManager;
+import utils.Log;
 
 /**
  * Listener permettant d'enchainer les actions souris pour créer des formes
@@ -40,12 +41,13 @@ public class RectangularShapeCreationListener extends AbstractCreationListener
 
 		updateTip();
 
-		System.out.println(getClassName() + "::" + getMethodName() + " created");
+		Log.debug("created");
 	}
 
 	/**
-	 * Création d'une nouvelle figure rectangulaire de taille 0 au point de
-	 * l'évènement souris, si le bouton appuyé est le bouton gauche.
+	 * Début de la création d'une nouvelle figure rectangulaire au point de
+	 * l'évènement souris, si le bouton appuyé est le bouton gauche. La figure
+	 * n'est effectivement créée qu'au premier déplacement de la souris.
 	 *
 	 * @param e l'évènement souris
 	 * @see AbstractCreationListener#startAction(MouseEvent)
@@ -116,8 +118,10 @@ public class RectangularShapeCreationListener extends AbstractCreationListener
 	/**
 	 * Déplacement du point en bas à droite de la figure rectangulaire, si
 	 * l'on se trouve à l'étape 1 (après initalisation de la figure) et que
-	 * le bouton enfoncé est bien le bouton gauche.
+	 * le bouton enfoncé est bien le bouton gauche. Le premier déplacement
+	 * initie effectivement la figure.
 	 * @see java.awt.event.MouseMotionListener#mouseDragged(java.awt.event.MouseEvent)
+	 * @see AbstractCreationListener#initiateFigure()
 	 */
 	@Override
 	public void mouseDragged(MouseEvent e)
@@ -125,14 +129,13 @@ public class RectangularShapeCreationListener extends AbstractCreationListener
 		if (currentStep == 1)
 		{
 			// AbstractFigure figure = drawingModel.getLastFigure();
-			if (currentFigure != null)
+			if (initiateFigure() != null)
 			{
 				currentFigure.setLastPoint(e.getPoint());
 			}
 			else
 			{
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " : null figure");
+				Log.warning("null figure");
 			}
 
 			drawingModel.update();
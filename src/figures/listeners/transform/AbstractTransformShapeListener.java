@@ -14,6 +14,7 @@ import figures.Figure;
 import figures.listeners.AbstractFigureListener;
 import figures.listeners.creation.AbstractCreationListener;
 import history.HistoryManager;
+import utils.Log;
 
 /**
  * Listener permettant de transformer une figure
@@ -77,7 +78,7 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 
 		updateTip();
 
-		System.out.println(getClassName() + " created");
+		Log.debug(() -> getClassName() + " created");
 
 		center = null;
 
@@ -101,7 +102,10 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 	 * Initialisation de la transformation de la figure. Détermine le point de
 	 * départ de la transformation de la figure ({@link #startPoint}) ainsi que
 	 * la figure sélectionnée qui peut éventuellement être nulle s'il n'y a pas
-	 * de figures sélectionnées ou sous le curseur.
+	 * de figures sélectionnées ou sous le curseur. Aucun état n'est capturé
+	 * dans l'historique à ce stade : un enregistrement en attente est ouvert
+	 * ({@link HistoryManager#openPending()}) et ne sera capturé qu'au
+	 * premier déplacement effectif.
 	 * A utiliser dans
 	 * {@link MouseListener#mousePressed(MouseEvent)} ou bien dans
 	 * {@link MouseListener#mouseClicked(MouseEvent)} suivant la figure à créer.
@@ -111,7 +115,7 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 	@Override
 	public void startAction(MouseEvent e)
 	{
-		history.record();
+		history.openPending();
 
 		setStartPoint(e);
 
@@ -156,6 +160,7 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 			currentFigure = null;
 			drawingModel.update();
 		}
+		history.closePending();
 	}
 
 	/**
@@ -180,8 +185,7 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " : null figure");
+			Log.warning("null figure");
 		}
 	}
 
@@ -246,6 +250,8 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 	 * Les classes filles pourront spécialiser la méthode
 	 * {@link #updateDrag(MouseEvent)} pour appliquer soit une translation, soit
 	 * un facteur d'échelle, soit une rotation, ou même les 3 en même temps.
+	 * L'état du dessin est capturé dans l'historique juste avant la première
+	 * transformation ({@link HistoryManager#recordPending()}).
 	 * @see java.awt.event.MouseMotionListener#mouseDragged(java.awt.event.MouseEvent)
 	 * @see #updateDrag(MouseEvent)
 	 */
@@ -256,13 +262,13 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 		{
 			if (currentFigure != null)
 			{
+				history.recordPending();
 				updateDrag(e);
 				drawingModel.update();
 			}
 			else
 			{
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " : null figure");
+				Log.warning("null figure");
 			}
 		}
 	}
@@ -0,0 +1,67 @@
+package filters;
+
+import java.awt.Paint;
+
+import utils.Palette;
+
+/**
+ * Filtre des figures selon l'une de leurs couleurs ({@link Paint}) pouvant
+ * servir de base aux filtres de couleurs de remplissage ou de trait.
+ * Plutôt que de comparer les {@link Paint} avec equals, les classes filles
+ * peuvent comparer (dans leur méthode test) l'identifiant de la couleur de
+ * la figure dans la {@link Palette} à celui de l'élément du filtre avec
+ * {@link #matches(int)}. L'identifiant de l'élément est recherché sans être
+ * enregistré dans la {@link Palette} (un {@link Paint} inconnu de la palette
+ * ne correspond donc à aucune figure) et n'est recherché de nouveau que
+ * lorsque la génération de la {@link Palette} a changé.
+ * @author davidroussel
+ */
+public abstract class PaintFilter extends FigureFilter<Paint>
+{
+	/**
+	 * Génération de la {@link Palette} (sur les 32 bits de poids fort) et
+	 * identifiant de l'élément dans la palette (sur les 32 bits de poids
+	 * faible) réunis pour être lus et écrits ensemble
+	 */
+	private volatile long cached;
+
+	/**
+	 * Constructeur d'un filtre de couleur
+	 * @param paint la couleur des figures acceptées
+	 */
+	public PaintFilter(Paint paint)
+	{
+		super(paint);
+		cached = lookup(Palette.generation());
+	}
+
+	/**
+	 * Comparaison de l'identifiant d'une couleur d'une figure avec celui
+	 * de l'élément du filtre
+	 * @param id l'identifiant dans la {@link Palette} de la couleur de la
+	 * figure à tester
+	 * @return true si id est l'identifiant de l'élément du filtre
+	 */
+	protected boolean matches(int id)
+	{
+		int generation = Palette.generation();
+		long current = cached;
+		if ((int) (current >>> 32) != generation)
+		{
+			current = lookup(generation);
+			cached = current;
+		}
+		return id == (int) current;
+	}
+
+	/**
+	 * Recherche de l'identifiant de l'élément dans la {@link Palette}
+	 * @param generation la génération de la palette
+	 * @return la génération et l'identifiant de l'élément réunis
+	 */
+	private long lookup(int generation)
+	{
+		int id = Palette.find(element);
+		return ((long) generation << 32) | (id & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,21 @@
+package history;
+
+/**
+ * Interface pour les éléments capables de fournir une empreinte (hash sur 64
+ * bits) de leur contenu. Permet aux {@link Memento} de calculer leur propre
+ * empreinte à partir de celles de leurs éléments et au
+ * {@link HistoryManager} de reconnaître en temps constant un memento
+ * identique au précédent.
+ * @note deux éléments égaux (au sens de equals) doivent avoir la même
+ * empreinte. L'empreinte peut être mise en cache tant que l'élément n'est
+ * pas modifié (cf. {@link Versioned}).
+ * @author davidroussel
+ */
+public interface ContentHashable
+{
+	/**
+	 * Empreinte du contenu de l'élément
+	 * @return une empreinte sur 64 bits du contenu de l'élément
+	 */
+	public abstract long getContentHash();
+}
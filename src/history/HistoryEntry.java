@@ -0,0 +1,362 @@
+package history;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import history.enums.HistoryTier;
+
+/**
+ * Entrée de l'historique du {@link HistoryManager}.
+ * Une entrée contient un {@link Memento} qui peut être conservé sous trois
+ * formes (cf. {@link HistoryTier}) :
+ * <ul>
+ * <li>sous forme d'objets vivants (les entrées les plus récentes)</li>
+ * <li>encodé et compressé en mémoire</li>
+ * <li>encodé, compressé et déversé dans un {@link SpillFile}</li>
+ * </ul>
+ * Une entrée encodée est reconstituée (réhydratée) sous forme de
+ * {@link Memento} lorsque l'on en a besoin. Une entrée qui quitte
+ * l'historique est abandonnée ({@link HistoryTier#DISCARDED}) et ne
+ * contient alors plus aucune donnée.
+ * Les accès à une entrée sont synchronisés afin de pouvoir la consulter
+ * depuis un autre thread (par exemple pour en dessiner une miniature)
+ * pendant que le {@link HistoryManager} change son niveau de stockage.
+ * @param E le type des éléments contenus dans le memento
+ * @author davidroussel
+ */
+public class HistoryEntry<E extends Prototype<E>>
+{
+	/**
+	 * Surcoût (estimé en octets) d'une entrée en plus de son contenu
+	 */
+	public final static long EntryOverhead = 48;
+
+	/**
+	 * Compteur fournissant les identifiants des entrées
+	 */
+	private static final AtomicLong idCounter = new AtomicLong();
+
+	/**
+	 * Identifiant unique de l'entrée
+	 */
+	private final long id;
+
+	/**
+	 * Date de création de l'entrée (en ms)
+	 */
+	private final long timestamp;
+
+	/**
+	 * Le niveau de stockage courant de l'entrée
+	 */
+	private HistoryTier tier;
+
+	/**
+	 * Le memento lorsque l'entrée est {@link HistoryTier#LIVE}
+	 */
+	private Memento<E> memento;
+
+	/**
+	 * Les données compressées lorsque l'entrée est
+	 * {@link HistoryTier#COMPRESSED}
+	 */
+	private byte[] data;
+
+	/**
+	 * Position des données dans le fichier de débordement lorsque l'entrée
+	 * est {@link HistoryTier#SPILLED}
+	 */
+	private long offset;
+
+	/**
+	 * Taille des données compressées (quel que soit l'endroit où elles sont
+	 * stockées)
+	 */
+	private int length;
+
+	/**
+	 * Nombre d'éléments du memento
+	 */
+	private int count;
+
+	/**
+	 * L'empreinte du contenu du memento
+	 */
+	private long contentHash;
+
+	/**
+	 * Indique si le memento peut être encodé. Devient faux lorsque
+	 * l'encodage a échoué une fois afin de ne pas le retenter.
+	 */
+	private boolean encodable;
+
+	/**
+	 * Constructeur d'une entrée vivante
+	 * @param memento le memento de l'entrée
+	 */
+	public HistoryEntry(Memento<E> memento)
+	{
+		id = idCounter.incrementAndGet();
+		timestamp = System.currentTimeMillis();
+		tier = HistoryTier.LIVE;
+		this.memento = memento;
+		data = null;
+		offset = -1;
+		length = 0;
+		count = memento.size();
+		contentHash = memento.getContentHash();
+		encodable = true;
+	}
+
+	/**
+	 * Identifiant de l'entrée
+	 * @return l'identifiant unique de l'entrée
+	 */
+	public long getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Date de création de l'entrée
+	 * @return la date de création de l'entrée (en ms)
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * Niveau de stockage de l'entrée
+	 * @return le niveau de stockage courant de l'entrée
+	 */
+	public synchronized HistoryTier getTier()
+	{
+		return tier;
+	}
+
+	/**
+	 * Nombre d'éléments du memento
+	 * @return le nombre d'éléments du memento de l'entrée
+	 */
+	public int size()
+	{
+		return count;
+	}
+
+	/**
+	 * Empreinte du contenu du memento (disponible quel que soit le niveau de
+	 * stockage de l'entrée)
+	 * @return l'empreinte du contenu du memento de l'entrée
+	 */
+	public long getContentHash()
+	{
+		return contentHash;
+	}
+
+	/**
+	 * Comparaison en temps constant du contenu de l'entrée avec un memento
+	 * @param other le memento à comparer
+	 * @return true si le memento a le même nombre d'éléments et la même
+	 * empreinte que le memento de cette entrée
+	 */
+	public boolean matches(Memento<E> other)
+	{
+		return (other != null) && (other.size() == count)
+		    && (other.getContentHash() == contentHash);
+	}
+
+	/**
+	 * Accès au memento sans réhydratation
+	 * @return le memento de l'entrée si celle-ci est vivante, null sinon
+	 */
+	public synchronized Memento<E> peekMemento()
+	{
+		return memento;
+	}
+
+	/**
+	 * Indique si l'entrée peut être encodée
+	 * @return faux si une tentative d'encodage de l'entrée a déjà échoué
+	 */
+	public boolean isEncodable()
+	{
+		return encodable;
+	}
+
+	/**
+	 * Taille des données compressées
+	 * @return la taille (en octets) des données compressées ou bien 0 si
+	 * l'entrée est vivante
+	 */
+	public synchronized int getCompressedSize()
+	{
+		return length;
+	}
+
+	/**
+	 * Taille estimée de l'entrée sur le tas lorsqu'elle n'est pas vivante
+	 * (la taille d'une entrée vivante est évaluée par le
+	 * {@link HistoryManager} en tenant compte des copies partagées)
+	 * @return la taille estimée (en octets) de l'entrée sur le tas
+	 */
+	public synchronized long getHeapSize()
+	{
+		return EntryOverhead + (data != null ? data.length : 0);
+	}
+
+	/**
+	 * Encodage et compression d'une entrée vivante
+	 * @param codec l'encodeur des éléments du memento
+	 * @throws IOException si l'un des éléments ne peut pas être encodé,
+	 * auquel cas l'entrée reste vivante
+	 * @pre l'entrée est {@link HistoryTier#LIVE}
+	 * @post l'entrée est {@link HistoryTier#COMPRESSED}
+	 */
+	public synchronized void compress(MementoCodec<E> codec) throws IOException
+	{
+		if ((tier != HistoryTier.LIVE) || !encodable)
+		{
+			return;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out =
+		    new DataOutputStream(new DeflaterOutputStream(bytes)))
+		{
+			List<E> state = memento.getState();
+			out.writeInt(state.size());
+			for (E elt : state)
+			{
+				codec.write(elt, out);
+			}
+		}
+		catch (IOException e)
+		{
+			encodable = false;
+			throw e;
+		}
+
+		data = bytes.toByteArray();
+		length = data.length;
+		memento = null;
+		tier = HistoryTier.COMPRESSED;
+	}
+
+	/**
+	 * Déversement des données compressées dans le fichier de débordement
+	 * @param file le fichier de débordement
+	 * @throws IOException si l'écriture échoue, auquel cas l'entrée reste
+	 * compressée en mémoire
+	 * @pre l'entrée est {@link HistoryTier#COMPRESSED}
+	 * @post l'entrée est {@link HistoryTier#SPILLED}
+	 */
+	public synchronized void spill(SpillFile file) throws IOException
+	{
+		if (tier != HistoryTier.COMPRESSED)
+		{
+			return;
+		}
+
+		offset = file.write(data);
+		data = null;
+		tier = HistoryTier.SPILLED;
+	}
+
+	/**
+	 * Obtention du memento de l'entrée en le réhydratant si nécessaire, pour
+	 * le consulter seulement. L'entrée elle même n'est pas modifiée.
+	 * @param codec le décodeur des éléments du memento
+	 * @param file le fichier de débordement
+	 * @return le memento de l'entrée ou bien null si l'entrée a été
+	 * abandonnée
+	 * @throws IOException si les données ne peuvent pas être relues ou
+	 * décodées
+	 */
+	public Memento<E> getMemento(MementoCodec<E> codec, SpillFile file)
+	    throws IOException
+	{
+		return getMemento(codec, file, null);
+	}
+
+	/**
+	 * Obtention du memento de l'entrée en le réhydratant si nécessaire.
+	 * Les éléments réhydratés sont rattachés aux éléments de même identité
+	 * de l'état courant (cf. {@link Memento#restored(List, Memento)}) afin
+	 * que la restitution du memento ne recrée que les éléments disparus.
+	 * L'entrée elle même n'est pas modifiée.
+	 * @param codec le décodeur des éléments du memento
+	 * @param file le fichier de débordement
+	 * @param current le memento de l'état courant (ou null)
+	 * @return le memento de l'entrée ou bien null si l'entrée a été
+	 * abandonnée
+	 * @throws IOException si les données ne peuvent pas être relues ou
+	 * décodées
+	 */
+	public synchronized Memento<E> getMemento(MementoCodec<E> codec,
+	                                          SpillFile file,
+	                                          Memento<E> current)
+	    throws IOException
+	{
+		if ((tier == HistoryTier.LIVE) || (tier == HistoryTier.DISCARDED))
+		{
+			return memento;
+		}
+
+		byte[] bytes = (tier == HistoryTier.SPILLED ? file.read(offset, length)
+		    : data);
+		try (DataInputStream in = new DataInputStream(
+		    new InflaterInputStream(new ByteArrayInputStream(bytes))))
+		{
+			int n = in.readInt();
+			List<E> snapshots = new ArrayList<E>(n);
+			for (int i = 0; i < n; i++)
+			{
+				snapshots.add(codec.read(in));
+			}
+			return Memento.restored(snapshots, current);
+		}
+	}
+
+	/**
+	 * Libération des ressources de l'entrée (memento, données compressées
+	 * ou place occupée dans le fichier de débordement) lorsqu'elle quitte
+	 * l'historique
+	 * @param file le fichier de débordement
+	 * @post l'entrée est {@link HistoryTier#DISCARDED}
+	 */
+	public synchronized void discard(SpillFile file)
+	{
+		if (tier == HistoryTier.SPILLED)
+		{
+			file.release(offset, length);
+		}
+		memento = null;
+		data = null;
+		offset = -1;
+		tier = HistoryTier.DISCARDED;
+	}
+
+	/**
+	 * Représentation sous forme de chaîne de caractères
+	 * @return le memento de l'entrée s'il est vivant ou bien le niveau de
+	 * stockage de l'entrée avec son nombre d'éléments et sa taille compressée
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		if (tier == HistoryTier.LIVE)
+		{
+			return String.valueOf(memento);
+		}
+		return tier.toString() + "[" + count + ", " + length + " bytes]";
+	}
+}
@@ -1,19 +1,58 @@
 package history;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Observable;
+
+import history.enums.HistoryTier;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.jfr.HistoryEvent;
+import metrics.jfr.RestoreEvent;
+import utils.Log;
 import utils.Signature;
 
 /**
- * Classe permettant de gérer les piles de Undo et de Redo de E
+ * Classe permettant de gérer les piles de Undo et de Redo de E.
+ * L'historique est limité à la fois par un nombre maximum de {@link Memento}
+ * par pile et par un budget mémoire (en octets) : lorsque la taille estimée
+ * de l'ensemble des memento dépasse le budget, les plus anciens sont oubliés.
+ * Les copies partagées entre plusieurs memento ne sont comptées qu'une seule
+ * fois.
+ * Lorsqu'un {@link MementoCodec} est fourni, seules les entrées les plus
+ * récentes de chaque pile restent vivantes : les suivantes sont encodées et
+ * compressées en mémoire et les plus anciennes sont déversées dans un
+ * fichier temporaire ({@link SpillFile}). Elles sont réhydratées de
+ * manière transparente lorsqu'on les restitue (une entrée qui ne peut pas
+ * être réhydratée reste dans sa pile).
+ * Tous les états atteints sont en outre conservés dans un {@link UndoTree} :
+ * les branches abandonnées lorsqu'un nouvel enregistrement vide la pile des
+ * redo y restent accessibles et {@link #jumpTo(UndoNode)} permet de se
+ * rendre à n'importe quel noeud de l'arbre (ce saut pouvant lui même être
+ * annulé).
+ * Les observateurs de l'historique sont notifiés à chaque modification des
+ * piles (par exemple pour mettre à jour un navigateur d'historique).
  * @param E l'état à sauvegarder dans les piles
  * @author davidroussel
  */
-public class HistoryManager<E extends Prototype<E>> implements Signature
+public class HistoryManager<E extends Prototype<E>> extends Observable
+    implements Signature
 {
 	/**
 	 * Le nombre maximum d'undo / redo
 	 */
 	private int size;
 
+	/**
+	 * Le budget mémoire (en octets) de l'historique
+	 */
+	private long byteBudget;
+
 	/**
 	 * L'originator dont on doit sauvegarder l'état.
 	 * Permet de demander à l'originator de générer un memento ou de
@@ -21,37 +60,308 @@ public class HistoryManager<E extends Prototype<E>> implements Signature
 	 */
 	private Originator<E> originator;
 
-	/*
-	 * TODO Compléter les attributs par les piles de undo et de redo
+	/**
+	 * La pile des undo (le sommet de la pile est le premier élément)
+	 */
+	private Deque<HistoryEntry<E>> undoStack;
+
+	/**
+	 * La pile des redo (le sommet de la pile est le premier élément)
 	 */
+	private Deque<HistoryEntry<E>> redoStack;
 
 	/**
-	 * Constructeur du manager de Undo/Redo
+	 * Nombre d'entrées conservées vivantes par défaut au sommet de chaque
+	 * pile
+	 */
+	public final static int DefaultLiveDepth = 8;
+
+	/**
+	 * Nombre d'entrées conservées compressées en mémoire par défaut dans
+	 * chaque pile (après les entrées vivantes)
+	 */
+	public final static int DefaultCompressedDepth = 64;
+
+	/**
+	 * Nombre maximum de noeuds de l'{@link #tree}, configurable avec la
+	 * propriété système "history.treeNodes"
+	 */
+	public final static int TreeNodes =
+	    Integer.getInteger("history.treeNodes", 256).intValue();
+
+	/**
+	 * L'arbre de tous les états atteints, dont les branches survivent aux
+	 * nouveaux enregistrements
+	 */
+	private UndoTree<E> tree;
+
+	/**
+	 * L'encodeur / décodeur des éléments permettant de compresser les
+	 * entrées. Si celui-ci est null toutes les entrées restent vivantes
+	 */
+	private MementoCodec<E> codec;
+
+	/**
+	 * Nombre d'entrées conservées vivantes au sommet de chaque pile
+	 */
+	private int liveDepth;
+
+	/**
+	 * Nombre d'entrées conservées compressées en mémoire dans chaque pile
+	 * avant d'être déversées dans le {@link #spillFile}
+	 */
+	private int compressedDepth;
+
+	/**
+	 * Le fichier de débordement des entrées les plus anciennes
+	 */
+	private SpillFile spillFile;
+
+	/**
+	 * Comptabilité des copies d'éléments référencées par les memento
+	 * vivants de l'historique
+	 */
+	private SnapshotLedger ledger;
+
+	/**
+	 * Les entrées dont le memento est encore en cours de capture (clones
+	 * réalisés en tâche de fond) et qui ne sont donc pas encore prises en
+	 * compte dans {@link #usedBytes}
+	 * @see Memento#isCaptured()
+	 */
+	private List<HistoryEntry<E>> unsettled;
+
+	/**
+	 * Taille estimée (en octets) de l'ensemble des memento de l'historique
+	 */
+	private long usedBytes;
+
+	/**
+	 * Dernière valeur de {@link #usedBytes} publiée par le thread qui
+	 * modifie l'historique (après la prise en compte des captures terminées)
+	 * et qui peut être lue depuis n'importe quel thread
+	 */
+	private volatile long publishedBytes;
+
+	/**
+	 * Nombre de memento oubliés pour respecter {@link #size} ou
+	 * {@link #byteBudget}
+	 */
+	private long evictions;
+
+	/**
+	 * Nombre d'octets libérés par les memento oubliés
+	 */
+	private long evictedBytes;
+
+	/**
+	 * Nombre d'enregistrements ignorés car identiques au sommet de la pile
+	 * des undo
+	 */
+	private long skippedRecords;
+
+	/**
+	 * Indique si le dernier enregistrement a été ignoré, auquel cas
+	 * {@link #cancel()} n'a rien à annuler
+	 */
+	private boolean lastRecordSkipped;
+
+	/**
+	 * Indique qu'un enregistrement est en attente : une action a commencé
+	 * mais l'état de l'originator ne sera capturé qu'au moment de sa
+	 * première modification effective
+	 * @see #openPending()
+	 * @see #recordPending()
+	 */
+	private boolean pending;
+
+	/**
+	 * Nombre d'enregistrements en attente abandonnés sans capture car
+	 * l'action n'a finalement rien modifié
+	 */
+	private long abandonedPendings;
+
+	/**
+	 * Taille cumulée des données compressées conservées en mémoire
+	 */
+	private long compressedBytes;
+
+	/**
+	 * Nombre d'entrées réhydrées depuis un niveau compressé ou déversé
+	 */
+	private long rehydrations;
+
+	/**
+	 * Durée cumulée (en ns) des réhydratations
+	 */
+	private long rehydrationNanos;
+
+	/**
+	 * Durée maximale (en ns) d'une réhydratation
+	 */
+	private long maxRehydrationNanos;
+
+	/**
+	 * Durées des enregistrements ({@link #record()})
+	 */
+	private static final Histogram recordTime =
+	    Metrics.histogram("history.record");
+
+	/**
+	 * Durées des undo ({@link #undo()})
+	 */
+	private static final Histogram undoTime = Metrics.histogram("history.undo");
+
+	/**
+	 * Durées des redo ({@link #redo()})
+	 */
+	private static final Histogram redoTime = Metrics.histogram("history.redo");
+
+	/**
+	 * Constructeur du manager de Undo/Redo sans budget mémoire
 	 * @param origin l'originator dont on doit savegarder l'état
 	 * @param size ne nombre maximum d'undos/redos à mémorsier
 	 */
 	public HistoryManager(Originator<E> origin, int size)
+	{
+		this(origin, size, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructeur du manager de Undo/Redo
+	 * @param origin l'originator dont on doit savegarder l'état
+	 * @param size ne nombre maximum d'undos/redos à mémorsier
+	 * @param byteBudget le budget mémoire (en octets) de l'historique
+	 */
+	public HistoryManager(Originator<E> origin, int size, long byteBudget)
 	{
 		this.size = size;
+		this.byteBudget = byteBudget;
 		originator = origin;
-		// TODO Compléter ...
+		undoStack = new ArrayDeque<HistoryEntry<E>>();
+		redoStack = new ArrayDeque<HistoryEntry<E>>();
+		codec = null;
+		liveDepth = DefaultLiveDepth;
+		compressedDepth = DefaultCompressedDepth;
+		spillFile = new SpillFile();
+		tree = new UndoTree<E>(origin, TreeNodes);
+		ledger = new SnapshotLedger();
+		unsettled = new ArrayList<HistoryEntry<E>>();
+		usedBytes = 0;
+		publishedBytes = 0;
+		evictions = 0;
+		evictedBytes = 0;
+		skippedRecords = 0;
+		lastRecordSkipped = false;
+		pending = false;
+		abandonedPendings = 0;
+		compressedBytes = 0;
+		rehydrations = 0;
+		rehydrationNanos = 0;
+		maxRehydrationNanos = 0;
+		Metrics.gauge("history.bytes", this::getUsedBytes);
+		Metrics.gauge("history.undo", () -> undoStack.size());
+		Metrics.gauge("history.redo", () -> redoStack.size());
 	}
 
 	@Override
 	protected void finalize() throws Throwable
 	{
-		// TODO Compléter ...
+		undoStack.clear();
+		redoStack.clear();
+		ledger.clear();
+		unsettled.clear();
+		spillFile.close();
 		super.finalize();
 	}
 
+	/**
+	 * Mise en place de l'encodeur / décodeur permettant de compresser les
+	 * entrées les plus anciennes
+	 * @param codec l'encodeur / décodeur des éléments ou null pour conserver
+	 * toutes les entrées vivantes
+	 */
+	public void setCodec(MementoCodec<E> codec)
+	{
+		this.codec = codec;
+		demote();
+		trim();
+		changed();
+	}
+
+	/**
+	 * Mise en place des profondeurs des différents niveaux de stockage
+	 * @param liveDepth le nombre d'entrées conservées vivantes au sommet de
+	 * chaque pile
+	 * @param compressedDepth le nombre d'entrées conservées compressées en
+	 * mémoire dans chaque pile avant d'être déversées sur disque
+	 * @post les entrées déjà présentes ont été redistribuées dans les niveaux
+	 * (les entrées déjà encodées ne redeviennent toutefois pas vivantes)
+	 */
+	public void setTiers(int liveDepth, int compressedDepth)
+	{
+		this.liveDepth = Math.max(0, liveDepth);
+		this.compressedDepth = Math.max(0, compressedDepth);
+		demote();
+		trim();
+		changed();
+	}
+
+	/**
+	 * Nombre d'entrées conservées vivantes au sommet de chaque pile
+	 * @return le nombre d'entrées conservées vivantes au sommet de chaque pile
+	 */
+	public int getLiveDepth()
+	{
+		return liveDepth;
+	}
+
+	/**
+	 * Nombre d'entrées conservées compressées en mémoire dans chaque pile
+	 * @return le nombre d'entrées conservées compressées en mémoire dans
+	 * chaque pile
+	 */
+	public int getCompressedDepth()
+	{
+		return compressedDepth;
+	}
+
+	/**
+	 * Fermeture de l'historique : le fichier de débordement est détruit et
+	 * les entrées qui s'y trouvaient sont oubliées
+	 */
+	public void close()
+	{
+		dropSpilled(undoStack);
+		dropSpilled(redoStack);
+		spillFile.close();
+		changed();
+	}
+
+	/**
+	 * Retrait des entrées déversées sur disque d'une pile
+	 * @param stack la pile dont on retire les entrées déversées
+	 */
+	private void dropSpilled(Deque<HistoryEntry<E>> stack)
+	{
+		for (Iterator<HistoryEntry<E>> it = stack.iterator(); it.hasNext();)
+		{
+			HistoryEntry<E> entry = it.next();
+			if (entry.getTier() == HistoryTier.SPILLED)
+			{
+				release(entry);
+				it.remove();
+			}
+		}
+	}
+
 	/**
 	 * Nombre d'éléments accumulés dans la pile de undo
 	 * @return Le nombre d'éléments accumulés dans la pile de undo
 	 */
 	public int undoSize()
 	{
-		// TODO Remplacer par l'implémentation ...
-		return 0;
+		return undoStack.size();
 	}
 
 	/**
@@ -60,29 +370,569 @@ public class HistoryManager<E extends Prototype<E>> implements Signature
 	 */
 	public int redoSize()
 	{
-		// TODO Remplacer par l'implémentation ...
-		return 0;
+		return redoStack.size();
+	}
+
+	/**
+	 * Accesseur du budget mémoire de l'historique
+	 * @return le budget mémoire (en octets) de l'historique
+	 */
+	public long getByteBudget()
+	{
+		return byteBudget;
+	}
+
+	/**
+	 * Mise en place d'un nouveau budget mémoire
+	 * @param byteBudget le nouveau budget mémoire (en octets)
+	 * @post les memento les plus anciens ont été oubliés si nécessaire pour
+	 * respecter le nouveau budget
+	 */
+	public void setByteBudget(long byteBudget)
+	{
+		this.byteBudget = byteBudget;
+		trim();
+		changed();
+	}
+
+	/**
+	 * Taille estimée de l'historique telle qu'elle a été publiée lors de la
+	 * dernière modification de l'historique. Ne modifie rien et peut donc
+	 * être appelée depuis n'importe quel thread (serveur JMX, métriques).
+	 * @return la taille estimée (en octets) de l'ensemble des memento de
+	 * l'historique
+	 */
+	public long getUsedBytes()
+	{
+		return publishedBytes;
+	}
+
+	/**
+	 * Nombre de memento oubliés depuis la création de l'historique
+	 * @return le nombre de memento oubliés pour respecter le nombre maximum
+	 * de memento ou le budget mémoire
+	 */
+	public long getEvictionCount()
+	{
+		return evictions;
+	}
+
+	/**
+	 * Mémoire libérée par les memento oubliés
+	 * @return le nombre d'octets (estimé) libérés par les memento oubliés
+	 */
+	public long getEvictedBytes()
+	{
+		return evictedBytes;
+	}
+
+	/**
+	 * Nombre d'enregistrements ignorés
+	 * @return le nombre d'appels à {@link #record()} ignorés car l'état de
+	 * l'originator était identique au sommet de la pile des undo
+	 */
+	public long getSkippedRecordCount()
+	{
+		return skippedRecords;
+	}
+
+	/**
+	 * Nombre d'enregistrements en attente abandonnés
+	 * @return le nombre d'actions ouvertes par {@link #openPending()} et
+	 * terminées sans avoir rien modifié (et donc sans capture)
+	 */
+	public long getAbandonedPendingCount()
+	{
+		return abandonedPendings;
+	}
+
+	/**
+	 * Nombre d'entrées de l'historique dans un niveau de stockage
+	 * @param tier le niveau de stockage
+	 * @return le nombre d'entrées (undo et redo) dans ce niveau
+	 */
+	public int getTierCount(HistoryTier tier)
+	{
+		return count(undoStack, tier) + count(redoStack, tier);
+	}
+
+	/**
+	 * Nombre d'entrées d'une pile dans un niveau de stockage
+	 * @param stack la pile à examiner
+	 * @param tier le niveau de stockage
+	 * @return le nombre d'entrées de la pile dans ce niveau
+	 */
+	private int count(Deque<HistoryEntry<E>> stack, HistoryTier tier)
+	{
+		int n = 0;
+		for (HistoryEntry<E> entry : stack)
+		{
+			if (entry.getTier() == tier)
+			{
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Taille des entrées compressées conservées en mémoire
+	 * @return la taille cumulée (en octets) des données compressées
+	 * conservées en mémoire
+	 */
+	public long getCompressedBytes()
+	{
+		return compressedBytes;
+	}
+
+	/**
+	 * Taille des entrées déversées sur disque
+	 * @return la taille cumulée (en octets) des données utiles du fichier de
+	 * débordement
+	 */
+	public long getSpilledBytes()
+	{
+		return spillFile.getUsedBytes();
+	}
+
+	/**
+	 * Nombre de réhydratations
+	 * @return le nombre d'entrées compressées ou déversées qui ont été
+	 * réhydratées depuis la création de l'historique
+	 */
+	public long getRehydrationCount()
+	{
+		return rehydrations;
+	}
+
+	/**
+	 * Durée moyenne d'une réhydratation
+	 * @return la durée moyenne (en ns) d'une réhydratation ou 0 si aucune
+	 * réhydratation n'a eu lieu
+	 */
+	public long getMeanRehydrationNanos()
+	{
+		return rehydrations > 0 ? rehydrationNanos / rehydrations : 0;
+	}
+
+	/**
+	 * Durée maximale d'une réhydratation
+	 * @return la durée maximale (en ns) d'une réhydratation
+	 */
+	public long getMaxRehydrationNanos()
+	{
+		return maxRehydrationNanos;
+	}
+
+	/**
+	 * Prise en compte d'une entrée entrant dans l'historique (ou changeant
+	 * de niveau de stockage)
+	 * @param entry l'entrée entrante
+	 */
+	private void retain(HistoryEntry<E> entry)
+	{
+		Memento<E> memento = entry.peekMemento();
+		if ((memento != null) && !memento.isCaptured())
+		{
+			// sera pris en compte par settle() à la fin de la capture
+			unsettled.add(entry);
+			return;
+		}
+		if (memento == null)
+		{
+			usedBytes += entry.getHeapSize();
+			if (entry.getTier() == HistoryTier.COMPRESSED)
+			{
+				compressedBytes += entry.getCompressedSize();
+			}
+			return;
+		}
+
+		usedBytes += ledger.retain(memento);
+	}
+
+	/**
+	 * Prise en compte d'une entrée sortant de l'historique (ou changeant de
+	 * niveau de stockage)
+	 * @param entry l'entrée sortante
+	 * @return le nombre d'octets libérés sur le tas par le retrait de l'entrée
+	 */
+	private long release(HistoryEntry<E> entry)
+	{
+		if (unsettled.remove(entry))
+		{
+			// pas encore pris en compte
+			return 0;
+		}
+		long before = usedBytes;
+		Memento<E> memento = entry.peekMemento();
+		if (memento == null)
+		{
+			usedBytes -= entry.getHeapSize();
+			if (entry.getTier() == HistoryTier.COMPRESSED)
+			{
+				compressedBytes -= entry.getCompressedSize();
+			}
+			return before - usedBytes;
+		}
+
+		usedBytes -= ledger.release(memento);
+		return before - usedBytes;
+	}
+
+	/**
+	 * Oubli du memento le plus ancien d'une pile
+	 * @param stack la pile dont on retire le memento le plus ancien
+	 */
+	private void evict(Deque<HistoryEntry<E>> stack)
+	{
+		HistoryEntry<E> entry = stack.removeLast();
+		evictedBytes += release(entry);
+		entry.discard(spillFile);
+		evictions++;
+	}
+
+	/**
+	 * Répartition des entrées d'une pile dans les niveaux de stockage : les
+	 * {@link #liveDepth} premières restent vivantes, les
+	 * {@link #compressedDepth} suivantes sont compressées en mémoire et les
+	 * autres sont déversées dans le {@link #spillFile}.
+	 * Une entrée qui ne peut pas être encodée reste vivante et une entrée qui
+	 * ne peut pas être déversée reste compressée.
+	 * @param stack la pile à répartir
+	 */
+	private void demote(Deque<HistoryEntry<E>> stack)
+	{
+		int index = 0;
+		for (HistoryEntry<E> entry : stack)
+		{
+			if ((index >= liveDepth)
+			    && (entry.getTier() == HistoryTier.LIVE)
+			    && entry.isEncodable())
+			{
+				release(entry);
+				try
+				{
+					entry.compress(codec);
+				}
+				catch (IOException e)
+				{
+					Log.warning("entry kept live : {}",
+					    e.getLocalizedMessage());
+				}
+				retain(entry);
+			}
+			if ((index >= (liveDepth + compressedDepth))
+			    && (entry.getTier() == HistoryTier.COMPRESSED))
+			{
+				release(entry);
+				try
+				{
+					entry.spill(spillFile);
+				}
+				catch (IOException e)
+				{
+					Log.warning("entry kept compressed : {}",
+					    e.getLocalizedMessage());
+				}
+				retain(entry);
+			}
+			index++;
+		}
+	}
+
+	/**
+	 * Répartition des entrées des deux piles dans les niveaux de stockage
+	 * lorsqu'un {@link #codec} est disponible
+	 */
+	private void demote()
+	{
+		if (codec != null)
+		{
+			demote(undoStack);
+			demote(redoStack);
+		}
+	}
+
+	/**
+	 * Obtention du memento d'une entrée de l'historique, en le réhydratant
+	 * si nécessaire. L'entrée n'est pas modifiée.
+	 * @param entry l'entrée de l'historique
+	 * @param current le memento de l'état courant dont les éléments seront
+	 * réutilisés par le memento réhydraté
+	 * @return le memento de l'entrée ou bien null s'il n'a pas pu être
+	 * réhydraté
+	 */
+	private Memento<E> rehydrate(HistoryEntry<E> entry, Memento<E> current)
+	{
+		if (entry.getTier() == HistoryTier.LIVE)
+		{
+			return entry.peekMemento();
+		}
+
+		Memento<E> memento = null;
+		RestoreEvent event = new RestoreEvent();
+		event.begin();
+		long start = System.nanoTime();
+		try
+		{
+			memento = entry.getMemento(codec, spillFile, current);
+		}
+		catch (IOException e)
+		{
+			Log.error("unable to rehydrate " + entry, e);
+		}
+		long elapsed = System.nanoTime() - start;
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.tier = entry.getTier().toString();
+			event.elements = entry.size();
+			event.compressedBytes = entry.getCompressedSize();
+			event.succeeded = memento != null;
+			event.commit();
+		}
+		rehydrations++;
+		rehydrationNanos += elapsed;
+		maxRehydrationNanos = Math.max(maxRehydrationNanos, elapsed);
+		return memento;
+	}
+
+	/**
+	 * Retrait de l'entrée au sommet d'une pile et obtention de son memento.
+	 * Si le memento ne peut pas être réhydraté, l'entrée reste dans la pile
+	 * (rien n'est perdu et l'opération pourra être retentée).
+	 * @param stack la pile dont on veut l'entrée au sommet
+	 * @param current le memento de l'état courant
+	 * @return le memento de l'entrée au sommet de la pile ou bien null s'il
+	 * n'a pas pu être réhydraté
+	 */
+	private Memento<E> restore(Deque<HistoryEntry<E>> stack, Memento<E> current)
+	{
+		Memento<E> memento = rehydrate(stack.peek(), current);
+		if (memento != null)
+		{
+			pop(stack).discard(spillFile);
+		}
+		return memento;
+	}
+
+	/**
+	 * Emission (si un enregistrement JFR est en cours) de l'évènement
+	 * correspondant à une opération de l'historique
+	 * @param event l'évènement commencé au début de l'opération
+	 * @param operation le nom de l'opération
+	 * @param memento le memento enregistré ou restitué (ou null)
+	 * @param skipped true si l'enregistrement a été ignoré
+	 */
+	private void commit(HistoryEvent event,
+	                    String operation,
+	                    Memento<E> memento,
+	                    boolean skipped)
+	{
+		if (event.shouldCommit())
+		{
+			event.operation = operation;
+			event.elements = memento != null ? memento.size() : 0;
+			event.skipped = skipped;
+			event.usedBytes = usedBytes;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Prise en compte des entrées dont la capture s'est terminée depuis
+	 * leur entrée dans l'historique
+	 */
+	private void settle()
+	{
+		for (Iterator<HistoryEntry<E>> it = unsettled.iterator(); it.hasNext();)
+		{
+			HistoryEntry<E> entry = it.next();
+			if (entry.peekMemento().isCaptured())
+			{
+				it.remove();
+				retain(entry);
+			}
+		}
+	}
+
+	/**
+	 * Retrait des memento les plus anciens tant que le budget mémoire est
+	 * dépassé. Les plus anciens undo sont oubliés en premier, puis les redo
+	 * les plus lointains. Le dernier memento est toujours conservé même s'il
+	 * dépasse à lui seul le budget.
+	 */
+	private void trim()
+	{
+		settle();
+		while ((usedBytes > byteBudget)
+		    && ((undoStack.size() + redoStack.size()) > 1))
+		{
+			evict(undoStack.isEmpty() ? redoStack : undoStack);
+		}
+	}
+
+	/**
+	 * Empile un memento dans une pile en retirant les plus anciens memento
+	 * si la pile dépasse la taille maximale {@link #size}
+	 * @param stack la pile dans laquelle empiler
+	 * @param memento le memento à empiler
+	 */
+	private void push(Deque<HistoryEntry<E>> stack, Memento<E> memento)
+	{
+		if (memento != null)
+		{
+			HistoryEntry<E> entry = new HistoryEntry<E>(memento);
+			stack.push(entry);
+			retain(entry);
+			while (stack.size() > size)
+			{
+				evict(stack);
+			}
+		}
+	}
+
+	/**
+	 * Dépile l'entrée au sommet d'une pile
+	 * @param stack la pile à dépiler
+	 * @return l'entrée au sommet de la pile (qu'il faudra abandonner avec
+	 * {@link HistoryEntry#discard(SpillFile)})
+	 */
+	private HistoryEntry<E> pop(Deque<HistoryEntry<E>> stack)
+	{
+		HistoryEntry<E> entry = stack.pop();
+		release(entry);
+		return entry;
 	}
 
 	/**
 	 * Enregistre un {@link Memento} de l'{@link #originator} pour pouvoir
 	 * le restituer par la suite.
+	 * Le memento n'est pas enregistré s'il est identique (même empreinte) à
+	 * celui qui se trouve au sommet de la pile des undo : une action qui n'a
+	 * rien modifié ne produit pas d'entrée supplémentaire.
+	 * @post la pile des redo est vidée puisque l'on s'apprête à modifier
+	 * l'état de l'originator
 	 */
 	public void record()
 	{
-		// TODO Compléter ...
+		long start = Metrics.now();
+		HistoryEvent event = new HistoryEvent();
+		event.begin();
+		pending = false;
+		while (!redoStack.isEmpty())
+		{
+			pop(redoStack).discard(spillFile);
+		}
+		Memento<E> memento = originator.createMemento();
+		tree.update(memento);
+		HistoryEntry<E> top = undoStack.peek();
+		lastRecordSkipped = (top != null) && top.matches(memento);
+		if (lastRecordSkipped)
+		{
+			skippedRecords++;
+			publish();
+			recordTime.recordSince(start);
+			commit(event, "record", memento, true);
+			return;
+		}
+		push(undoStack, memento);
+		demote();
+		trim();
+		recordTime.recordSince(start);
+		commit(event, "record", memento, false);
+		changed();
+	}
+
+	/**
+	 * Ouverture d'un enregistrement en attente au début d'une action
+	 * susceptible de modifier l'originator. Contrairement à {@link #record()}
+	 * aucun état n'est capturé : la capture n'aura lieu que lors de l'appel à
+	 * {@link #recordPending()} juste avant la première modification effective.
+	 * Une action qui ne modifie rien ne coûte donc rien.
+	 */
+	public void openPending()
+	{
+		pending = true;
+	}
+
+	/**
+	 * Capture de l'état de l'originator si un enregistrement est en attente.
+	 * A appeler juste avant chaque modification de l'originator au cours
+	 * d'une action : seul le premier appel capture effectivement l'état.
+	 * @return true si l'état a été capturé lors de cet appel
+	 */
+	public boolean recordPending()
+	{
+		if (pending)
+		{
+			pending = false;
+			record();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Fermeture de l'enregistrement en attente à la fin d'une action. Si
+	 * aucune modification n'a eu lieu au cours de l'action, rien n'est
+	 * enregistré.
+	 */
+	public void closePending()
+	{
+		if (pending)
+		{
+			pending = false;
+			abandonedPendings++;
+		}
+	}
+
+	/**
+	 * Indique si un enregistrement est en attente
+	 * @return true si une action a été ouverte par {@link #openPending()}
+	 * et n'a encore rien modifié
+	 */
+	public boolean isPending()
+	{
+		return pending;
 	}
 
 	/**
 	 * Restitue le dernier Memento sauvegardé dans la pile des undo
-	 * @return le dernier memento sauvegardé dans la pile des undo
-	 * ({@link #undoStack}), ou bien null si celle-ci est vide.
+	 * ({@link #undoStack}).
+	 * Si ce memento ne peut pas être réhydraté, il reste dans la pile des
+	 * undo et l'état de l'{@link #originator} n'est pas modifié.
+	 * @return true si le memento a été restitué, false si la pile des undo
+	 * est vide ou si le memento n'a pas pu être réhydraté
 	 * @post un {@link Memento} de l'{@link #originator} a été créé au préalable
 	 * dans la pile des redo.
 	 */
-	public void undo()
+	public boolean undo()
 	{
-		// TODO Compléter ...
+		if (!undoStack.isEmpty())
+		{
+			long start = Metrics.now();
+			HistoryEvent event = new HistoryEvent();
+			event.begin();
+			lastRecordSkipped = false;
+			Memento<E> current = originator.createMemento();
+			tree.update(current);
+			Memento<E> memento = restore(undoStack, current);
+			if (memento != null)
+			{
+				push(redoStack, current);
+				originator.setMemento(memento);
+				tree.update(memento);
+			}
+			demote();
+			trim();
+			undoTime.recordSince(start);
+			commit(event, "undo", memento, false);
+			changed();
+			return memento != null;
+		}
+		return false;
 	}
 
 	/**
@@ -91,19 +941,169 @@ public class HistoryManager<E extends Prototype<E>> implements Signature
 	 */
 	public void cancel()
 	{
-		// TODO Compléter ...
+		if (lastRecordSkipped)
+		{
+			lastRecordSkipped = false;
+			return;
+		}
+		if (!undoStack.isEmpty())
+		{
+			pop(undoStack).discard(spillFile);
+			changed();
+		}
 	}
 
 	/**
 	 * Restitue de dernier Memento sauvegardé dans la pile des redo
-	 * @return Le dernier Memento sauvegardé dans la pile des redo
-	 * ({@link #redoStack}) ou bien null si celle-ci est vide.
+	 * ({@link #redoStack}).
+	 * Si ce memento ne peut pas être réhydraté, il reste dans la pile des
+	 * redo et l'état de l'{@link #originator} n'est pas modifié.
+	 * @return true si le memento a été restitué, false si la pile des redo
+	 * est vide ou si le memento n'a pas pu être réhydraté
 	 * @post un {@link Memento} de l'{@link #originator} a été créé au préalable
 	 * dans la pile des undo.
 	 */
-	public void redo()
+	public boolean redo()
+	{
+		if (!redoStack.isEmpty())
+		{
+			long start = Metrics.now();
+			HistoryEvent event = new HistoryEvent();
+			event.begin();
+			lastRecordSkipped = false;
+			Memento<E> current = originator.createMemento();
+			tree.update(current);
+			Memento<E> memento = restore(redoStack, current);
+			if (memento != null)
+			{
+				push(undoStack, current);
+				originator.setMemento(memento);
+				tree.update(memento);
+			}
+			demote();
+			trim();
+			redoTime.recordSince(start);
+			commit(event, "redo", memento, false);
+			changed();
+			return memento != null;
+		}
+		return false;
+	}
+
+	/**
+	 * Arbre de tous les états atteints
+	 * @return l'arbre des états (à ne consulter que depuis le thread qui
+	 * modifie l'historique)
+	 */
+	public UndoTree<E> getTree()
+	{
+		return tree;
+	}
+
+	/**
+	 * Mise en place de l'état d'un noeud quelconque de l'{@link #tree} en
+	 * suivant le chemin qui y mène depuis l'état courant. L'état courant est
+	 * préalablement enregistré dans la pile des undo, si bien qu'un undo
+	 * ramène à l'état précédant le saut.
+	 * @param node le noeud à atteindre
+	 * @return true si le noeud a été atteint, false s'il n'appartient pas
+	 * (ou plus) à l'arbre ou s'il s'agit du noeud courant
+	 */
+	public boolean jumpTo(UndoNode<E> node)
+	{
+		if ((node == null) || (node == tree.getCurrent()))
+		{
+			return false;
+		}
+
+		record();
+		if (!tree.jumpTo(node))
+		{
+			cancel();
+			return false;
+		}
+		changed();
+		return true;
+	}
+
+	/**
+	 * Entrées de la pile des undo
+	 * @return la liste (non modifiable) des entrées de la pile des undo, de
+	 * la plus récente à la plus ancienne
+	 */
+	public List<HistoryEntry<E>> getUndoEntries()
+	{
+		return Collections.unmodifiableList(
+		    new ArrayList<HistoryEntry<E>>(undoStack));
+	}
+
+	/**
+	 * Entrées de la pile des redo
+	 * @return la liste (non modifiable) des entrées de la pile des redo, de
+	 * la plus proche à la plus lointaine
+	 */
+	public List<HistoryEntry<E>> getRedoEntries()
+	{
+		return Collections.unmodifiableList(
+		    new ArrayList<HistoryEntry<E>>(redoStack));
+	}
+
+	/**
+	 * Lecture des éléments d'une entrée sans la modifier ni la retirer de
+	 * l'historique. Peut être appelée depuis un autre thread que celui qui
+	 * modifie l'historique (pour dessiner un aperçu de l'entrée par
+	 * exemple) : les éléments obtenus ne doivent alors pas être modifiés.
+	 * @param entry l'entrée à lire
+	 * @return les éléments du memento de l'entrée (réhydratés si l'entrée
+	 * n'est plus vivante)
+	 * @throws IOException si l'entrée ne peut pas être réhydratée (notamment
+	 * si elle a quitté l'historique entre temps)
+	 */
+	public List<E> getSnapshots(HistoryEntry<E> entry) throws IOException
+	{
+		Memento<E> memento = entry.getMemento(codec, spillFile);
+		if (memento == null)
+		{
+			throw new IOException("Entry " + entry.getId() + " was discarded");
+		}
+		return memento.getState();
+	}
+
+	/**
+	 * Publication de la taille de l'historique pour les lectures depuis
+	 * d'autres threads (cf. {@link #getUsedBytes()})
+	 */
+	private void publish()
+	{
+		settle();
+		publishedBytes = usedBytes;
+	}
+
+	/**
+	 * Notification des observateurs après une modification des piles
+	 */
+	private void changed()
+	{
+		publish();
+		setChanged();
+		notifyObservers();
+	}
+
+	/**
+	 * Ajout du contenu d'une pile à un StringBuilder
+	 * @param sb le StringBuilder à compléter
+	 * @param stack la pile à afficher
+	 */
+	private void append(StringBuilder sb, Deque<HistoryEntry<E>> stack)
 	{
-		// TODO Compléter ...
+		for (Iterator<HistoryEntry<E>> it = stack.iterator(); it.hasNext();)
+		{
+			sb.append(it.next());
+			if (it.hasNext())
+			{
+				sb.append(", ");
+			}
+		}
 	}
 
 	/**
@@ -117,10 +1117,13 @@ public class HistoryManager<E extends Prototype<E>> implements Signature
 		StringBuilder sb = new StringBuilder();
 
 		sb.append(super.toString());
-		sb.append("[" + String.valueOf(size) + "] :\nUndo = {");
-		// TODO Compléter ...
+		sb.append("[" + String.valueOf(size) + ", "
+		    + String.valueOf(usedBytes) + "/" + String.valueOf(byteBudget)
+		    + " bytes, " + String.valueOf(getSpilledBytes())
+		    + " spilled bytes] :\nUndo = {");
+		append(sb, undoStack);
 		sb.append("},\nRedo = {");
-		// TODO Compléter ...
+		append(sb, redoStack);
 		sb.append("}");
 		return sb.toString();
 	}
@@ -0,0 +1,18 @@
+package history;
+
+/**
+ * Interface pour les éléments possédant une identité stable, conservée par
+ * leurs copies. Permet à un {@link Memento} reconstitué à partir de copies
+ * (décodées par exemple) de retrouver les éléments originaux correspondants
+ * afin de les réutiliser ou de les restituer en place plutôt que de les
+ * recréer.
+ * @author davidroussel
+ */
+public interface Identifiable
+{
+	/**
+	 * Identité de l'élément
+	 * @return une identité propre à l'élément et partagée par ses copies
+	 */
+	public abstract long getIdentity();
+}
@@ -0,0 +1,17 @@
+package history;
+
+/**
+ * Interface pour les éléments capables d'estimer la place qu'ils occupent
+ * en mémoire. Permet au {@link HistoryManager} de limiter l'historique à un
+ * budget en octets plutôt qu'à un nombre fixe de {@link Memento}.
+ * @author davidroussel
+ */
+public interface Measurable
+{
+	/**
+	 * Estimation de la taille mémoire retenue par l'élément
+	 * @return une estimation (en octets) de la mémoire occupée par l'élément
+	 * et par les objets qu'il est seul à référencer
+	 */
+	public abstract long getEstimatedSize();
+}
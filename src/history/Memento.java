@@ -1,42 +1,671 @@
 package history;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 /**
  * Un état constitué d'une liste de d'éléments de type E constituant
  * l'état à sauvegarder dans le Memento.
+ * Les copies sont partagées entre memento successifs (copy on write) : un
+ * élément {@link Versioned} qui n'a pas changé de version depuis le memento
+ * précédent n'est pas cloné à nouveau, le memento réutilise la copie du
+ * memento précédent. Ainsi la mémoire occupée par l'historique dépend du
+ * volume des modifications et non plus de la taille de l'état multipliée par
+ * la profondeur de l'historique.
  * @note les élements doivent dériver de {@link Prototype} pour pouvoir
  * être effectivement clonés (Deep Copy) dans l'état du Memento.
+ * Le memento calcule une empreinte de son contenu à partir de celles de ses
+ * éléments ({@link ContentHashable}), ce qui permet de comparer deux memento
+ * en temps constant.
+ * Lorsque de nombreux éléments doivent être clonés, la création du memento
+ * ne fait que relever les éléments à cloner et leurs versions : les clones
+ * sont réalisés en tâche de fond dans un {@link ForkJoinPool} (en découpant
+ * les très grandes listes en plusieurs tâches). Un élément original sur le
+ * point d'être modifié avant d'avoir été cloné doit le signaler par
+ * {@link #beforeChange(Object)} afin d'être cloné immédiatement. Toute
+ * consultation de l'état attend la fin des clones en cours.
+ * @note les copies contenues dans l'état sont partagées et ne doivent donc
+ * jamais être modifiées.
  * @author davidroussel
  */
-public class Memento<E extends Prototype<E>>
+public class Memento<E extends Prototype<E>> implements ContentHashable
 {
+	/**
+	 * Version attribuée aux éléments qui ne sont pas {@link Versioned} et
+	 * qui doivent donc toujours être clonés
+	 */
+	protected static final long UNVERSIONED = Long.MIN_VALUE;
+
+	/**
+	 * Taille estimée (en octets) d'un élément qui n'est pas {@link Measurable}
+	 */
+	protected static final long DefaultElementSize = 64;
+
+	/**
+	 * Nombre minimum d'éléments à cloner pour que les clones soient réalisés
+	 * en tâche de fond plutôt qu'immédiatement
+	 */
+	protected static final int AsyncThreshold =
+	    Integer.getInteger("history.asyncThreshold", 256).intValue();
+
+	/**
+	 * Nombre maximum d'éléments clonés par une même tâche de fond (au delà
+	 * la tâche est découpée en sous-tâches)
+	 */
+	protected static final int CaptureChunkSize = 1024;
+
+	/**
+	 * Les memento dont les clones sont en cours de réalisation
+	 */
+	private static final List<Memento<?>> inFlight =
+	    new CopyOnWriteArrayList<Memento<?>>();
+
 	/**
 	 * La liste d'élément de type E qui constitue l'état à sauvegarder
+	 * (copies éventuellement partagées avec d'autres memento)
 	 */
 	private List<E> state;
 
 	/**
-	 * Constructeur par défaut d'un état
+	 * Les éléments originaux dont {@link #state} contient les copies.
+	 * Permet de reconnaître (par identité) les éléments qui n'ont pas changé
+	 */
+	private List<E> origins;
+
+	/**
+	 * Les versions des éléments originaux au moment de la création du memento
+	 */
+	private long[] versions;
+
+	/**
+	 * Le nombre d'éléments effectivement clonés par ce memento (les autres
+	 * étant partagés avec le memento précédent)
+	 */
+	private int copies;
+
+	/**
+	 * Taille estimée (en octets) des éléments clonés par ce memento
+	 */
+	private long copiesSize;
+
+	/**
+	 * L'empreinte du contenu de ce memento
+	 */
+	private long contentHash;
+
+	/**
+	 * La tâche de fond réalisant les clones ou null si tous les clones sont
+	 * déjà dans {@link #state}
+	 */
+	private volatile CaptureTask capture;
+
+	/**
+	 * Positions (dans {@link #state}) des éléments à cloner en tâche de fond
+	 */
+	private int[] pendingClones;
+
+	/**
+	 * Index (par identité) des éléments originaux à cloner en tâche de fond
+	 */
+	private Map<E, Integer> pendingIndex;
+
+	/**
+	 * Les clones réalisés en tâche de fond (ou juste avant la modification
+	 * d'un élément original), aux positions de {@link #state}
+	 */
+	private AtomicReferenceArray<E> slots;
+
+	/**
+	 * Tâche de fond réalisant les clones d'une partie des éléments en
+	 * attente
+	 */
+	private class CaptureTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Indice (dans {@link Memento#pendingClones}) du premier élément à
+		 * cloner
+		 */
+		private final int low;
+
+		/**
+		 * Indice (dans {@link Memento#pendingClones}) suivant le dernier
+		 * élément à cloner
+		 */
+		private final int high;
+
+		/**
+		 * Constructeur d'une tâche de clonage
+		 * @param low indice du premier élément à cloner
+		 * @param high indice suivant le dernier élément à cloner
+		 */
+		public CaptureTask(int low, int high)
+		{
+			this.low = low;
+			this.high = high;
+		}
+
+		/**
+		 * Réalisation des clones, en découpant la tâche si elle est trop
+		 * grande. La tâche racine retire le memento des memento en cours de
+		 * capture lorsque tous les clones sont réalisés.
+		 */
+		@Override
+		protected void compute()
+		{
+			try
+			{
+				if ((high - low) > CaptureChunkSize)
+				{
+					int middle = (low + high) >>> 1;
+					invokeAll(new CaptureTask(low, middle),
+					          new CaptureTask(middle, high));
+				}
+				else
+				{
+					for (int k = low; k < high; k++)
+					{
+						preserve(pendingClones[k]);
+					}
+				}
+			}
+			finally
+			{
+				if (this == capture)
+				{
+					inFlight.removeIf(m -> m == Memento.this);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Constructeur d'un état clonant tous les éléments
+	 * @param things les éléments à sauvegarder
 	 */
 	public Memento(List<E> things)
 	{
-		this.state = new ArrayList<E>();
+		this(things, null);
+	}
+
+	/**
+	 * Constructeur d'un état partageant avec un memento précédent les copies
+	 * des éléments qui n'ont pas été modifiés depuis.
+	 * @param things les éléments à sauvegarder
+	 * @param previous le memento précédent dont on peut réutiliser les
+	 * copies (ou null pour cloner tous les éléments)
+	 */
+	public Memento(List<E> things, Memento<E> previous)
+	{
+		int n = things.size();
+		state = new ArrayList<E>(n);
+		origins = new ArrayList<E>(n);
+		versions = new long[n];
+		copies = 0;
+		copiesSize = 0;
+		contentHash = n;
+		capture = null;
+		if (previous != null)
+		{
+			previous.await();
+		}
+
+		int[] toClone = new int[n];
+		Map<E, Integer> previousIndex = null;
+		int i = 0;
 		for (E elt : things)
 		{
-			this.state.add(elt.clone());
+			long version = versionOf(elt);
+			E snapshot = null;
+			if ((previous != null) && (version != UNVERSIONED))
+			{
+				/*
+				 * Cas le plus fréquent : l'élément est à la même place que
+				 * dans le memento précédent, sinon on le cherche dans un
+				 * index construit à la demande
+				 */
+				int j = -1;
+				if ((i < previous.origins.size())
+				    && (previous.origins.get(i) == elt))
+				{
+					j = i;
+				}
+				else
+				{
+					if (previousIndex == null)
+					{
+						previousIndex = previous.index();
+					}
+					Integer index = previousIndex.get(elt);
+					if (index != null)
+					{
+						j = index.intValue();
+					}
+				}
+
+				if ((j >= 0) && (previous.versions[j] == version))
+				{
+					snapshot = previous.state.get(j);
+				}
+			}
+
+			if (snapshot == null)
+			{
+				// clone à réaliser : l'original a le même contenu
+				toClone[copies++] = i;
+				copiesSize += sizeOf(elt);
+				contentHash = combine(contentHash, elt);
+			}
+			else
+			{
+				contentHash = combine(contentHash, snapshot);
+			}
+
+			state.add(snapshot);
+			origins.add(elt);
+			versions[i++] = version;
+		}
+
+		if (copies < AsyncThreshold)
+		{
+			for (int k = 0; k < copies; k++)
+			{
+				int index = toClone[k];
+				state.set(index, origins.get(index).clone());
+			}
+		}
+		else
+		{
+			pendingClones = Arrays.copyOf(toClone, copies);
+			pendingIndex = new IdentityHashMap<E, Integer>(copies);
+			for (int index : pendingClones)
+			{
+				pendingIndex.put(origins.get(index), Integer.valueOf(index));
+			}
+			slots = new AtomicReferenceArray<E>(n);
+			capture = new CaptureTask(0, copies);
+			inFlight.add(this);
+			ForkJoinPool.commonPool().execute(capture);
 		}
 	}
 
+	/**
+	 * Signale qu'un élément est sur le point d'être modifié. Si l'élément
+	 * est en attente de clonage dans un memento en cours de capture, il est
+	 * cloné immédiatement (avant sa modification).
+	 * @param elt l'élément sur le point d'être modifié
+	 * @note doit être appelé avant toute modification d'un élément
+	 * {@link Versioned} (en général lors du changement de version)
+	 */
+	public static void beforeChange(Object elt)
+	{
+		if (!inFlight.isEmpty())
+		{
+			for (Memento<?> memento : inFlight)
+			{
+				memento.preserve(elt);
+			}
+		}
+	}
+
+	/**
+	 * Clonage immédiat d'un élément original s'il est en attente de clonage
+	 * dans ce memento
+	 * @param elt l'élément sur le point d'être modifié
+	 */
+	private void preserve(Object elt)
+	{
+		Map<E, Integer> index = pendingIndex;
+		if (index != null)
+		{
+			Integer i = index.get(elt);
+			if (i != null)
+			{
+				preserve(i.intValue());
+			}
+		}
+	}
+
+	/**
+	 * Clonage de l'élément original à une position s'il n'a pas déjà été
+	 * cloné (par la tâche de fond ou par {@link #beforeChange(Object)})
+	 * @param index la position de l'élément
+	 */
+	private void preserve(int index)
+	{
+		AtomicReferenceArray<E> clones = slots;
+		if ((clones != null) && (clones.get(index) == null))
+		{
+			clones.compareAndSet(index, null, origins.get(index).clone());
+		}
+	}
+
+	/**
+	 * Indique si tous les clones de ce memento ont été réalisés
+	 * @return true si aucun clone n'est en cours de réalisation en tâche de
+	 * fond
+	 */
+	public boolean isCaptured()
+	{
+		CaptureTask task = capture;
+		return (task == null) || task.isDone();
+	}
+
+	/**
+	 * Attente de la fin des clones réalisés en tâche de fond puis mise en
+	 * place de ces clones dans {@link #state}
+	 */
+	private synchronized void await()
+	{
+		CaptureTask task = capture;
+		if (task != null)
+		{
+			task.join();
+			for (int index : pendingClones)
+			{
+				state.set(index, slots.get(index));
+			}
+			capture = null;
+			pendingIndex = null;
+			pendingClones = null;
+			slots = null;
+		}
+	}
+
+	/**
+	 * Constructeur d'un memento reconstitué à partir de copies (par exemple
+	 * décodées). Les copies deviennent l'état du memento. Chaque copie
+	 * {@link Identifiable} est rattachée à l'élément original de même
+	 * identité dans le memento courant : cet élément sera réutilisé tel quel
+	 * par {@link #restoreInPlace(Consumer)} s'il a la même version que la
+	 * copie, et restitué en place sinon. Seules les copies sans élément
+	 * original correspondant (éléments disparus depuis) seront clonées, lors
+	 * de leur première restitution.
+	 * @param snapshots les copies constituant l'état du memento
+	 * @param current le memento de l'état courant dont les éléments
+	 * originaux peuvent être réutilisés (ou null si le memento n'est que
+	 * consulté)
+	 * @return un nouveau memento dont l'état est constitué des copies
+	 */
+	public static <E extends Prototype<E>> Memento<E> restored(List<E> snapshots,
+	                                                          Memento<E> current)
+	{
+		Memento<E> memento = new Memento<E>(new ArrayList<E>(), null);
+		int n = snapshots.size();
+		memento.state = new ArrayList<E>(snapshots);
+		memento.origins = new ArrayList<E>(n);
+		memento.versions = new long[n];
+		memento.contentHash = n;
+		Map<Long, E> live = (current != null ? current.identities() : null);
+		int i = 0;
+		for (E snapshot : snapshots)
+		{
+			memento.contentHash = combine(memento.contentHash, snapshot);
+			E origin = null;
+			if ((live != null) && (snapshot instanceof Identifiable))
+			{
+				origin = live.remove(Long.valueOf(
+				    ((Identifiable) snapshot).getIdentity()));
+			}
+			memento.origins.add(origin);
+			memento.versions[i++] = versionOf(snapshot);
+			memento.copiesSize += sizeOf(snapshot);
+		}
+		memento.copies = n;
+		return memento;
+	}
+
+	/**
+	 * Index des éléments originaux {@link Identifiable} par identité
+	 * @return une map associant à chaque identité l'élément original
+	 * correspondant
+	 */
+	private Map<Long, E> identities()
+	{
+		await();
+		Map<Long, E> identities = new HashMap<Long, E>(origins.size() * 2);
+		for (E elt : origins)
+		{
+			if (elt instanceof Identifiable)
+			{
+				identities.put(Long.valueOf(((Identifiable) elt).getIdentity()),
+				    elt);
+			}
+		}
+		return identities;
+	}
+
+	/**
+	 * Version d'un élément
+	 * @param elt l'élément dont on veut la version
+	 * @return la version de l'élément s'il est {@link Versioned} ou bien
+	 * {@link #UNVERSIONED}
+	 */
+	protected static long versionOf(Object elt)
+	{
+		if (elt instanceof Versioned)
+		{
+			return ((Versioned) elt).getVersion();
+		}
+
+		return UNVERSIONED;
+	}
+
+	/**
+	 * Estimation de la taille d'un élément
+	 * @param elt l'élément à estimer
+	 * @return la taille estimée de l'élément s'il est {@link Measurable} ou
+	 * bien {@link #DefaultElementSize}
+	 */
+	protected static long sizeOf(Object elt)
+	{
+		if (elt instanceof Measurable)
+		{
+			return ((Measurable) elt).getEstimatedSize();
+		}
+
+		return DefaultElementSize;
+	}
+
+	/**
+	 * Combinaison de l'empreinte d'un memento avec celle d'un élément
+	 * supplémentaire. Les copies partagées avec le memento précédent ayant
+	 * déjà calculé leur empreinte, seules les copies nouvelles coûtent un
+	 * calcul.
+	 * @param hash l'empreinte courante
+	 * @param elt l'élément à y ajouter
+	 * @return la nouvelle empreinte (qui dépend de l'ordre des éléments)
+	 */
+	protected static long combine(long hash, Object elt)
+	{
+		long eltHash;
+		if (elt instanceof ContentHashable)
+		{
+			eltHash = ((ContentHashable) elt).getContentHash();
+		}
+		else
+		{
+			eltHash = (elt != null ? elt.hashCode() : 0);
+		}
+		long h = (hash * 0xC6A4A7935BD1E995L) + eltHash;
+		return h ^ (h >>> 31);
+	}
+
+	/**
+	 * Index des éléments originaux (par identité)
+	 * @return une map associant chaque élément original à sa position
+	 */
+	private Map<E, Integer> index()
+	{
+		Map<E, Integer> index = new IdentityHashMap<E, Integer>(origins.size());
+		int i = 0;
+		for (E elt : origins)
+		{
+			index.put(elt, Integer.valueOf(i++));
+		}
+		return index;
+	}
+
 	/**
 	 * Accesseur à l'état du memento
-	 * @return l'état stocké dans le memento
+	 * @return l'état stocké dans le memento (non modifiable)
+	 * @note les éléments de cet état sont partagés avec d'autres memento et
+	 * ne doivent pas être modifiés. Utiliser {@link #restoreState()} pour
+	 * obtenir des éléments utilisables
 	 */
 	public List<E> getState()
 	{
-		return state;
+		await();
+		return Collections.unmodifiableList(state);
+	}
+
+	/**
+	 * Obtention des éléments à remettre en place pour restituer cet état.
+	 * Les éléments originaux qui n'ont pas été modifiés depuis la création
+	 * du memento sont directement réutilisés, seuls les éléments modifiés
+	 * depuis sont recréés à partir de leur copie.
+	 * @return une nouvelle liste d'éléments modifiables correspondant à
+	 * l'état de ce memento
+	 */
+	public List<E> restoreState()
+	{
+		await();
+		List<E> restored = new ArrayList<E>(state.size());
+		for (int i = 0; i < versions.length; i++)
+		{
+			E origin = origins.get(i);
+			if ((versions[i] != UNVERSIONED)
+			    && (versionOf(origin) == versions[i]))
+			{
+				restored.add(origin);
+			}
+			else
+			{
+				restored.add(state.get(i).clone());
+			}
+		}
+		return restored;
+	}
+
+	/**
+	 * Obtention des éléments à remettre en place pour restituer cet état en
+	 * modifiant en place les éléments originaux : les éléments originaux
+	 * {@link Restorable} modifiés depuis la création du memento reprennent le
+	 * contenu (et la version) de leur copie, les autres sont réutilisés tels
+	 * quels. Les éléments qui ne sont pas {@link Restorable} sont recréés
+	 * comme dans {@link #restoreState()}.
+	 * L'identité des éléments est ainsi conservée d'un état à l'autre ce qui
+	 * permet de déterminer précisément les éléments ajoutés, retirés ou
+	 * modifiés.
+	 * @param beforeRestore action réalisée sur chaque élément original juste
+	 * avant qu'il ne soit modifié en place (ou null)
+	 * @return une nouvelle liste contenant les éléments originaux dans l'état
+	 * de ce memento
+	 */
+	@SuppressWarnings("unchecked")
+	public List<E> restoreInPlace(Consumer<E> beforeRestore)
+	{
+		await();
+		List<E> restored = new ArrayList<E>(state.size());
+		for (int i = 0; i < versions.length; i++)
+		{
+			E origin = origins.get(i);
+			if ((versions[i] != UNVERSIONED)
+			    && (versionOf(origin) == versions[i]))
+			{
+				restored.add(origin);
+			}
+			else if ((versions[i] != UNVERSIONED)
+			    && (origin instanceof Restorable<?>))
+			{
+				if (beforeRestore != null)
+				{
+					beforeRestore.accept(origin);
+				}
+				((Restorable<E>) origin).restoreFrom(state.get(i));
+				restored.add(origin);
+			}
+			else if (origin == null)
+			{
+				/*
+				 * Elément d'un memento reconstitué qui n'existe plus : le
+				 * clone devient l'élément original de ce memento
+				 */
+				origin = state.get(i).clone();
+				origins.set(i, origin);
+				restored.add(origin);
+			}
+			else
+			{
+				restored.add(state.get(i).clone());
+			}
+		}
+		return restored;
+	}
+
+	/**
+	 * Nombre d'éléments de l'état
+	 * @return le nombre d'éléments de l'état
+	 */
+	public int size()
+	{
+		return state.size();
+	}
+
+	/**
+	 * Nombre d'éléments effectivement copiés par ce memento
+	 * @return le nombre d'éléments clonés lors de la création de ce memento,
+	 * les autres étant partagés avec le memento précédent
+	 */
+	public int copies()
+	{
+		return copies;
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par la structure du memento
+	 * (listes et versions) sans compter les éléments
+	 * @return la taille estimée (en octets) de la structure du memento
+	 */
+	public long overheadSize()
+	{
+		long n = versions.length;
+		return 32 + (2 * (40 + (4 * n))) + (16 + (8 * n));
+	}
+
+	/**
+	 * Estimation de la mémoire retenue par ce memento : sa structure et les
+	 * copies qu'il a lui même créées (les copies partagées sont comptées par
+	 * le memento qui les a créées)
+	 * @return la taille estimée (en octets) du memento
+	 */
+	public long getEstimatedSize()
+	{
+		return overheadSize() + copiesSize;
+	}
+
+	/**
+	 * Empreinte du contenu de ce memento, calculée une fois pour toutes lors
+	 * de sa création
+	 * @return l'empreinte sur 64 bits du contenu de ce memento
+	 * @see history.ContentHashable#getContentHash()
+	 */
+	@Override
+	public long getContentHash()
+	{
+		return contentHash;
 	}
 
 	/* (non-Javadoc)
@@ -45,13 +674,7 @@ public class Memento<E extends Prototype<E>>
 	@Override
 	public int hashCode()
 	{
-		final int prime = 31;
-		int hash = 1;
-		for (E elt : state)
-		{
-			hash += (prime * hash) + (elt != null ? elt.hashCode() : 0);
-		}
-		return hash;
+		return (int) (contentHash ^ (contentHash >>> 32));
 	}
 
 	/**
@@ -78,8 +701,14 @@ public class Memento<E extends Prototype<E>>
 		if (obj instanceof Memento<?>)
 		{
 			Memento<?> as = (Memento<?>) obj;
+			if (as.contentHash != contentHash)
+			{
+				return false;
+			}
 			if (!as.state.isEmpty() && !state.isEmpty())
 			{
+				await();
+				as.await();
 				if (state.get(0).getClass() == as.state.get(0).getClass())
 				{
 					@SuppressWarnings("unchecked")
@@ -117,6 +746,7 @@ public class Memento<E extends Prototype<E>>
 	{
 		StringBuilder sb = new StringBuilder();
 
+		await();
 		sb.append('[');
 		for (Iterator<E> it = state.iterator(); it.hasNext();)
 		{
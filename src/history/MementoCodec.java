@@ -0,0 +1,33 @@
+package history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodeur / Décodeur binaire des éléments contenus dans les {@link Memento}.
+ * Permet au {@link HistoryManager} de conserver les memento les plus anciens
+ * sous une forme compacte (compressée en mémoire ou bien sur disque) plutôt
+ * que sous forme d'objets.
+ * @param E le type des éléments à encoder
+ * @author davidroussel
+ */
+public interface MementoCodec<E>
+{
+	/**
+	 * Encodage d'un élément
+	 * @param element l'élément à encoder
+	 * @param out le flux dans lequel écrire l'élément
+	 * @throws IOException si l'élément ne peut pas être encodé
+	 */
+	public abstract void write(E element, DataOutput out) throws IOException;
+
+	/**
+	 * Décodage d'un élément
+	 * @param in le flux dans lequel lire l'élément
+	 * @return un nouvel élément distinct équivalent à celui qui avait été
+	 * encodé (y compris sa version s'il est {@link Versioned})
+	 * @throws IOException si l'élément ne peut pas être décodé
+	 */
+	public abstract E read(DataInput in) throws IOException;
+}
@@ -0,0 +1,21 @@
+package history;
+
+/**
+ * Interface pour les éléments capables de reprendre en place (sans changer
+ * d'identité) le contenu d'une de leurs copies. Permet aux {@link Memento}
+ * de restituer un état en ne modifiant que les éléments qui ont changé,
+ * plutôt qu'en remplaçant tous les éléments par de nouvelles copies.
+ * @param E le type des éléments
+ * @author davidroussel
+ */
+public interface Restorable<E>
+{
+	/**
+	 * Mise en place du contenu d'une copie de cet élément
+	 * @param snapshot la copie dont on reprend le contenu (qui n'est pas
+	 * modifiée et ne doit pas être référencée par cet élément)
+	 * @post si l'élément est {@link Versioned} il reprend aussi la version
+	 * de la copie
+	 */
+	public abstract void restoreFrom(E snapshot);
+}
@@ -0,0 +1,122 @@
+package history;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Comptabilité de la mémoire occupée par un ensemble de {@link Memento} dont
+ * les copies peuvent être partagées : chaque copie n'est comptée qu'une
+ * seule fois, quel que soit le nombre de memento qui la référencent.
+ * @author davidroussel
+ */
+class SnapshotLedger
+{
+	/**
+	 * Occupation d'une copie d'élément : nombre de memento la référençant
+	 * et taille estimée
+	 */
+	private static class Usage
+	{
+		/**
+		 * Nombre de memento référençant la copie
+		 */
+		int refs = 0;
+
+		/**
+		 * Taille estimée (en octets) de la copie
+		 */
+		long bytes = 0;
+	}
+
+	/**
+	 * Occupation des copies d'éléments référencées par les memento
+	 * (indexées par identité)
+	 */
+	private Map<Object, Usage> usages;
+
+	/**
+	 * Taille estimée (en octets) de l'ensemble des memento
+	 */
+	private long usedBytes;
+
+	/**
+	 * Constructeur d'une comptabilité vide
+	 */
+	public SnapshotLedger()
+	{
+		usages = new IdentityHashMap<Object, Usage>();
+		usedBytes = 0;
+	}
+
+	/**
+	 * Prise en compte des copies d'un memento
+	 * @param memento le memento entrant
+	 * @return le nombre d'octets supplémentaires occupés
+	 */
+	public long retain(Memento<?> memento)
+	{
+		long before = usedBytes;
+		usedBytes += memento.overheadSize();
+		for (Object elt : memento.getState())
+		{
+			Usage usage = usages.get(elt);
+			if (usage == null)
+			{
+				usage = new Usage();
+				usage.bytes = Memento.sizeOf(elt);
+				usages.put(elt, usage);
+				usedBytes += usage.bytes;
+			}
+			usage.refs++;
+		}
+		return usedBytes - before;
+	}
+
+	/**
+	 * Retrait des copies d'un memento
+	 * @param memento le memento sortant
+	 * @return le nombre d'octets libérés
+	 */
+	public long release(Memento<?> memento)
+	{
+		long before = usedBytes;
+		usedBytes -= memento.overheadSize();
+		for (Object elt : memento.getState())
+		{
+			Usage usage = usages.get(elt);
+			if ((usage != null) && (--usage.refs == 0))
+			{
+				usages.remove(elt);
+				usedBytes -= usage.bytes;
+			}
+		}
+		return before - usedBytes;
+	}
+
+	/**
+	 * Taille estimée de l'ensemble des memento pris en compte
+	 * @return la taille estimée (en octets) des memento pris en compte
+	 */
+	public long getUsedBytes()
+	{
+		return usedBytes;
+	}
+
+	/**
+	 * Nombre de copies distinctes
+	 * @return le nombre de copies distinctes référencées par les memento
+	 */
+	public int getSnapshotCount()
+	{
+		return usages.size();
+	}
+
+	/**
+	 * Oubli de tous les memento
+	 */
+	public void clear()
+	{
+		usages.clear();
+		usedBytes = 0;
+	}
+}
@@ -0,0 +1,264 @@
+package history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import utils.Log;
+import utils.Signature;
+
+/**
+ * Fichier temporaire dans lequel le {@link HistoryManager} déverse les
+ * entrées d'historique les plus anciennes.
+ * Les données sont lues et écrites à une position donnée du fichier (sans
+ * projection en mémoire). La place libérée par les entrées qui quittent
+ * l'historique est réutilisée par les écritures suivantes et le fichier est
+ * tronqué dès que sa fin ne contient plus de données utiles : sa taille
+ * reste donc proportionnelle aux données encore utilisées.
+ * @author davidroussel
+ */
+public class SpillFile implements Signature
+{
+	/**
+	 * Le fichier temporaire
+	 */
+	private File file;
+
+	/**
+	 * Le canal d'accès au fichier
+	 */
+	private FileChannel channel;
+
+	/**
+	 * La fin des données écrites dans le fichier
+	 */
+	private long end;
+
+	/**
+	 * Le nombre d'octets encore utilisés dans le fichier
+	 */
+	private long usedBytes;
+
+	/**
+	 * Les zones libres (avant {@link #end}) indexées par leur position et
+	 * associées à leur taille. Deux zones libres ne sont jamais contiguës.
+	 */
+	private TreeMap<Long, Long> holes;
+
+	/**
+	 * Constructeur d'un fichier de débordement.
+	 * Le fichier n'est réellement créé que lors de la première écriture.
+	 */
+	public SpillFile()
+	{
+		file = null;
+		channel = null;
+		end = 0;
+		usedBytes = 0;
+		holes = new TreeMap<Long, Long>();
+	}
+
+	/**
+	 * Ouverture (si nécessaire) du fichier temporaire
+	 * @throws IOException si le fichier ne peut pas être créé
+	 */
+	@SuppressWarnings("resource")
+	private void open() throws IOException
+	{
+		if (channel == null)
+		{
+			file = File.createTempFile("history", ".spill");
+			file.deleteOnExit();
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			end = 0;
+			holes.clear();
+		}
+	}
+
+	/**
+	 * Ecriture de données dans la première zone libre assez grande ou bien
+	 * à la fin du fichier
+	 * @param data les données à écrire
+	 * @return la position des données dans le fichier
+	 * @throws IOException si l'écriture échoue
+	 */
+	public synchronized long write(byte[] data) throws IOException
+	{
+		open();
+		long offset = allocate(data.length);
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		try
+		{
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer, offset + buffer.position());
+			}
+		}
+		catch (IOException e)
+		{
+			free(offset, data.length);
+			throw e;
+		}
+		usedBytes += data.length;
+		return offset;
+	}
+
+	/**
+	 * Lecture de données précédemment écrites
+	 * @param offset la position des données dans le fichier
+	 * @param length la taille des données
+	 * @return les données lues
+	 * @throws IOException si la lecture échoue
+	 */
+	public synchronized byte[] read(long offset, int length) throws IOException
+	{
+		if ((channel == null) || (offset < 0) || ((offset + length) > end))
+		{
+			throw new IOException("no such data in spill file");
+		}
+		byte[] data = new byte[length];
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, offset + buffer.position()) < 0)
+			{
+				throw new IOException("truncated spill file");
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Libération de données devenues inutiles : leur place pourra être
+	 * réutilisée et le fichier est tronqué si elles se trouvaient à la fin
+	 * du fichier.
+	 * @param offset la position des données libérées
+	 * @param length la taille des données libérées
+	 */
+	public synchronized void release(long offset, int length)
+	{
+		if ((channel == null) || (offset < 0))
+		{
+			return;
+		}
+		usedBytes -= length;
+		free(offset, length);
+	}
+
+	/**
+	 * Recherche de la place nécessaire à de nouvelles données
+	 * @param length la taille des données
+	 * @return la position à laquelle écrire les données
+	 */
+	private long allocate(int length)
+	{
+		for (Iterator<Map.Entry<Long, Long>> it = holes.entrySet().iterator();
+		    it.hasNext();)
+		{
+			Map.Entry<Long, Long> hole = it.next();
+			long size = hole.getValue().longValue();
+			if (size >= length)
+			{
+				long offset = hole.getKey().longValue();
+				it.remove();
+				if (size > length)
+				{
+					holes.put(Long.valueOf(offset + length),
+					    Long.valueOf(size - length));
+				}
+				return offset;
+			}
+		}
+		long offset = end;
+		end += length;
+		return offset;
+	}
+
+	/**
+	 * Ajout d'une zone aux zones libres en la fusionnant avec ses voisines
+	 * puis troncature du fichier si la fin du fichier est libre
+	 * @param offset la position de la zone libérée
+	 * @param length la taille de la zone libérée
+	 */
+	private void free(long offset, long length)
+	{
+		Map.Entry<Long, Long> before = holes.floorEntry(Long.valueOf(offset));
+		if ((before != null)
+		    && ((before.getKey().longValue() + before.getValue().longValue())
+		        == offset))
+		{
+			holes.remove(before.getKey());
+			offset = before.getKey().longValue();
+			length += before.getValue().longValue();
+		}
+		Long after = holes.remove(Long.valueOf(offset + length));
+		if (after != null)
+		{
+			length += after.longValue();
+		}
+
+		if ((offset + length) == end)
+		{
+			end = offset;
+			try
+			{
+				channel.truncate(end);
+			}
+			catch (IOException e)
+			{
+				Log.warning("{}", e.getLocalizedMessage());
+			}
+		}
+		else
+		{
+			holes.put(Long.valueOf(offset), Long.valueOf(length));
+		}
+	}
+
+	/**
+	 * Nombre d'octets utiles dans le fichier
+	 * @return le nombre d'octets encore utilisés dans le fichier
+	 */
+	public synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+
+	/**
+	 * Taille du fichier
+	 * @return la taille du fichier (données utiles ou non)
+	 */
+	public synchronized long getFileSize()
+	{
+		return end;
+	}
+
+	/**
+	 * Fermeture et destruction du fichier temporaire
+	 */
+	public synchronized void close()
+	{
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException e)
+			{
+				Log.warning("{}", e.getLocalizedMessage());
+			}
+			file.delete();
+			channel = null;
+			file = null;
+			end = 0;
+			usedBytes = 0;
+			holes.clear();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package history;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Noeud d'un {@link UndoTree} : un état de l'originator (sous forme de
+ * {@link Memento}) atteint au cours de l'édition. Les fils d'un noeud sont
+ * les différents états atteints à partir de celui-ci, chacun constituant
+ * une branche de l'historique.
+ * @param E le type des éléments contenus dans le memento
+ * @author davidroussel
+ */
+public class UndoNode<E extends Prototype<E>>
+{
+	/**
+	 * Numéro du noeud (croissant dans l'ordre de création des noeuds)
+	 */
+	private final int id;
+
+	/**
+	 * Date de création du noeud (en ms)
+	 */
+	private final long timestamp;
+
+	/**
+	 * L'état de l'originator dans ce noeud
+	 */
+	private final Memento<E> memento;
+
+	/**
+	 * Le noeud parent (ou null pour la racine)
+	 */
+	private UndoNode<E> parent;
+
+	/**
+	 * Les noeuds fils (dans l'ordre de création)
+	 */
+	private List<UndoNode<E>> children;
+
+	/**
+	 * Le dernier fils créé ou visité, suivi par un redo
+	 */
+	private UndoNode<E> lastChild;
+
+	/**
+	 * Constructeur d'un noeud
+	 * @param id le numéro du noeud
+	 * @param memento l'état de l'originator dans ce noeud
+	 * @param parent le noeud parent (ou null pour la racine)
+	 */
+	UndoNode(int id, Memento<E> memento, UndoNode<E> parent)
+	{
+		this.id = id;
+		timestamp = System.currentTimeMillis();
+		this.memento = memento;
+		this.parent = parent;
+		children = new ArrayList<UndoNode<E>>();
+		lastChild = null;
+	}
+
+	/**
+	 * Numéro du noeud
+	 * @return le numéro du noeud
+	 */
+	public int getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Date de création du noeud
+	 * @return la date de création du noeud (en ms)
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * Etat de l'originator dans ce noeud
+	 * @return le memento de ce noeud
+	 */
+	public Memento<E> getMemento()
+	{
+		return memento;
+	}
+
+	/**
+	 * Noeud parent
+	 * @return le noeud parent ou null si ce noeud est la racine
+	 */
+	public UndoNode<E> getParent()
+	{
+		return parent;
+	}
+
+	/**
+	 * Noeuds fils
+	 * @return la liste (non modifiable) des noeuds fils
+	 */
+	public List<UndoNode<E>> getChildren()
+	{
+		return Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * Dernier fils créé ou visité
+	 * @return le fils vers lequel un redo mènera ou null si ce noeud n'a pas
+	 * de fils
+	 */
+	public UndoNode<E> getLastChild()
+	{
+		return lastChild;
+	}
+
+	/**
+	 * Profondeur du noeud
+	 * @return la distance de ce noeud à la racine
+	 */
+	public int getDepth()
+	{
+		int depth = 0;
+		for (UndoNode<E> node = parent; node != null; node = node.parent)
+		{
+			depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * Ajout d'un fils qui devient le dernier fils
+	 * @param child le fils à ajouter
+	 */
+	void addChild(UndoNode<E> child)
+	{
+		children.add(child);
+		lastChild = child;
+	}
+
+	/**
+	 * Retrait d'un fils
+	 * @param child le fils à retirer
+	 */
+	void removeChild(UndoNode<E> child)
+	{
+		children.remove(child);
+		if (lastChild == child)
+		{
+			lastChild = children.isEmpty() ? null
+			    : children.get(children.size() - 1);
+		}
+	}
+
+	/**
+	 * Mise en place du fils suivi par un redo
+	 * @param child le fils à suivre
+	 */
+	void setLastChild(UndoNode<E> child)
+	{
+		lastChild = child;
+	}
+
+	/**
+	 * Détachement du parent (lorsque ce noeud devient la racine)
+	 */
+	void detach()
+	{
+		parent = null;
+	}
+
+	/**
+	 * Représentation sous forme de chaîne de caractères
+	 * @return le numéro du noeud et son nombre de fils
+	 */
+	@Override
+	public String toString()
+	{
+		return "#" + id + (children.isEmpty() ? ""
+		    : "(" + children.size() + ")");
+	}
+}
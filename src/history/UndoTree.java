@@ -0,0 +1,509 @@
+package history;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import utils.Log;
+import utils.Signature;
+
+/**
+ * Historique arborescent de l'état d'un {@link Originator}.
+ * Contrairement au {@link HistoryManager} dont la pile des redo est vidée
+ * par chaque nouvelle modification, toutes les branches de l'historique sont
+ * conservées : chaque noeud ({@link UndoNode}) est un état atteint au cours
+ * de l'édition et ses fils sont les différents états atteints à partir de
+ * lui. On peut annuler (retour au parent), refaire (retour au dernier fils
+ * visité) ou bien se rendre directement à n'importe quel noeud.
+ * Les memento des noeuds partagent leurs copies (copy on write, cf.
+ * {@link Memento}) quelle que soit leur branche, si bien que conserver les
+ * branches ne coûte que les éléments effectivement modifiés dans chacune
+ * d'elles (la {@link SnapshotLedger} de l'arbre ne compte qu'une fois les
+ * copies partagées).
+ * Se rendre à un noeud suit le plus court chemin dans l'arbre
+ * ({@link #getPath(UndoNode, UndoNode)}) : les états des noeuds du chemin
+ * sont mis en place l'un après l'autre, chaque étape ne restituant (en
+ * place) que les éléments qui diffèrent entre deux noeuds voisins.
+ * Le {@link HistoryManager} tient l'arbre à jour au fil de ses
+ * enregistrements, annulations et restitutions (cf.
+ * {@link #update(Memento)}) afin qu'aucune branche ne soit perdue lorsque
+ * sa pile des redo est vidée.
+ * Le nombre de noeuds est limité : au delà, les feuilles les plus anciennes
+ * (hors de la branche courante) sont oubliées, puis la racine.
+ * @param E l'état à sauvegarder dans l'arbre
+ * @author davidroussel
+ */
+public class UndoTree<E extends Prototype<E>> implements Signature
+{
+	/**
+	 * L'originator dont on doit sauvegarder l'état
+	 */
+	private Originator<E> originator;
+
+	/**
+	 * Le nombre maximum de noeuds de l'arbre
+	 */
+	private int maxNodes;
+
+	/**
+	 * La racine de l'arbre (ou null tant que rien n'a été enregistré)
+	 */
+	private UndoNode<E> root;
+
+	/**
+	 * Le noeud correspondant au dernier état enregistré ou restitué
+	 */
+	private UndoNode<E> current;
+
+	/**
+	 * Tous les noeuds de l'arbre dans l'ordre de création
+	 */
+	private List<UndoNode<E>> nodes;
+
+	/**
+	 * Numéro du prochain noeud
+	 */
+	private int nextId;
+
+	/**
+	 * Comptabilité des copies partagées par les memento des noeuds
+	 */
+	private SnapshotLedger ledger;
+
+	/**
+	 * Les noeuds dont le memento est encore en cours de capture et qui ne
+	 * sont donc pas encore pris en compte dans {@link #ledger}
+	 */
+	private List<UndoNode<E>> unsettled;
+
+	/**
+	 * Nombre de noeuds oubliés pour respecter {@link #maxNodes}
+	 */
+	private long prunedNodes;
+
+	/**
+	 * Constructeur d'un arbre d'historique
+	 * @param origin l'originator dont on doit sauvegarder l'état
+	 * @param maxNodes le nombre maximum de noeuds de l'arbre
+	 */
+	public UndoTree(Originator<E> origin, int maxNodes)
+	{
+		originator = origin;
+		this.maxNodes = Math.max(2, maxNodes);
+		root = null;
+		current = null;
+		nodes = new ArrayList<UndoNode<E>>();
+		nextId = 0;
+		ledger = new SnapshotLedger();
+		unsettled = new ArrayList<UndoNode<E>>();
+		prunedNodes = 0;
+	}
+
+	/**
+	 * Racine de l'arbre
+	 * @return la racine de l'arbre ou null si rien n'a été enregistré
+	 */
+	public UndoNode<E> getRoot()
+	{
+		return root;
+	}
+
+	/**
+	 * Noeud courant
+	 * @return le noeud correspondant au dernier état enregistré ou restitué
+	 */
+	public UndoNode<E> getCurrent()
+	{
+		return current;
+	}
+
+	/**
+	 * Noeuds de l'arbre
+	 * @return la liste (non modifiable) des noeuds dans l'ordre de création
+	 */
+	public List<UndoNode<E>> getNodes()
+	{
+		return Collections.unmodifiableList(nodes);
+	}
+
+	/**
+	 * Nombre de noeuds de l'arbre
+	 * @return le nombre de noeuds de l'arbre
+	 */
+	public int size()
+	{
+		return nodes.size();
+	}
+
+	/**
+	 * Taille estimée de l'arbre
+	 * @return la taille estimée (en octets) des memento de l'arbre, les
+	 * copies partagées n'étant comptées qu'une seule fois
+	 */
+	public long getUsedBytes()
+	{
+		settle();
+		return ledger.getUsedBytes();
+	}
+
+	/**
+	 * Nombre de noeuds oubliés
+	 * @return le nombre de noeuds oubliés pour respecter le nombre maximum
+	 * de noeuds
+	 */
+	public long getPrunedCount()
+	{
+		return prunedNodes;
+	}
+
+	/**
+	 * Indique si l'on peut annuler
+	 * @return true si le noeud courant a un parent
+	 */
+	public boolean canUndo()
+	{
+		return (current != null) && (current.getParent() != null);
+	}
+
+	/**
+	 * Indique si l'on peut refaire
+	 * @return true si le noeud courant a au moins un fils
+	 */
+	public boolean canRedo()
+	{
+		return (current != null) && (current.getLastChild() != null);
+	}
+
+	/**
+	 * Enregistre l'état de l'{@link #originator} avant une modification.
+	 * Si l'état a changé depuis le noeud courant (suite à la modification
+	 * précédente) un nouveau noeud fils du noeud courant est créé, qui
+	 * devient le noeud courant.
+	 */
+	public void record()
+	{
+		sync();
+	}
+
+	/**
+	 * Annulation d'un enregistrement lorsque l'action n'a pas modifié
+	 * l'état. Les noeuds n'étant créés que pour des états effectivement
+	 * différents, il n'y a rien à annuler.
+	 */
+	public void cancel()
+	{
+		// Rien
+	}
+
+	/**
+	 * Retour à l'état du noeud parent du noeud courant. L'état courant est
+	 * préalablement enregistré s'il a changé afin de pouvoir y revenir.
+	 */
+	public void undo()
+	{
+		sync();
+		if (canUndo())
+		{
+			UndoNode<E> parent = current.getParent();
+			parent.setLastChild(current);
+			restore(parent);
+		}
+	}
+
+	/**
+	 * Retour à l'état du dernier fils créé ou visité du noeud courant.
+	 * Si l'état courant a changé il devient un nouveau fils sans descendance
+	 * et il n'y a donc rien à refaire.
+	 */
+	public void redo()
+	{
+		sync();
+		if (canRedo())
+		{
+			restore(current.getLastChild());
+		}
+	}
+
+	/**
+	 * Mise en place de l'état d'un noeud quelconque de l'arbre. L'état
+	 * courant est préalablement enregistré s'il a changé. Les branches
+	 * menant au noeud deviennent celles suivies par les redo.
+	 * @param node le noeud à atteindre
+	 * @return true si le noeud a été atteint, false s'il n'appartient pas
+	 * (ou plus) à l'arbre
+	 */
+	public boolean jumpTo(UndoNode<E> node)
+	{
+		if ((node == null) || !nodes.contains(node))
+		{
+			return false;
+		}
+
+		sync();
+		for (UndoNode<E> child = node; child.getParent() != null;
+		    child = child.getParent())
+		{
+			child.getParent().setLastChild(child);
+		}
+		restore(node);
+		return true;
+	}
+
+	/**
+	 * Chemin le plus court entre deux noeuds : on remonte depuis le premier
+	 * noeud jusqu'à leur plus proche ancêtre commun puis on redescend vers
+	 * le second noeud
+	 * @param from le noeud de départ
+	 * @param to le noeud d'arrivée
+	 * @return la liste des noeuds du chemin (extrémités comprises) ou bien
+	 * une liste vide si les noeuds n'appartiennent pas au même arbre
+	 */
+	public List<UndoNode<E>> getPath(UndoNode<E> from, UndoNode<E> to)
+	{
+		List<UndoNode<E>> up = ancestry(from);
+		List<UndoNode<E>> down = ancestry(to);
+		List<UndoNode<E>> path = new ArrayList<UndoNode<E>>();
+		if (up.isEmpty() || down.isEmpty()
+		    || (up.get(up.size() - 1) != down.get(down.size() - 1)))
+		{
+			return path;
+		}
+
+		// Retrait de la partie commune (depuis la racine)
+		int i = up.size() - 1;
+		int j = down.size() - 1;
+		while ((i > 0) && (j > 0) && (up.get(i - 1) == down.get(j - 1)))
+		{
+			i--;
+			j--;
+		}
+		path.addAll(up.subList(0, i + 1));
+		for (int k = j - 1; k >= 0; k--)
+		{
+			path.add(down.get(k));
+		}
+		return path;
+	}
+
+	/**
+	 * Ascendance d'un noeud
+	 * @param node le noeud
+	 * @return la liste des noeuds depuis le noeud jusqu'à la racine
+	 */
+	private List<UndoNode<E>> ancestry(UndoNode<E> node)
+	{
+		List<UndoNode<E>> ancestry = new ArrayList<UndoNode<E>>();
+		for (UndoNode<E> n = node; n != null; n = n.getParent())
+		{
+			ancestry.add(n);
+		}
+		return ancestry;
+	}
+
+	/**
+	 * Enregistrement de l'état courant de l'originator s'il diffère de
+	 * celui du noeud courant
+	 * @see #update(Memento)
+	 */
+	private void sync()
+	{
+		update(originator.createMemento());
+	}
+
+	/**
+	 * Mise à jour du noeud courant à partir d'un memento de l'état courant
+	 * de l'originator (créé par ailleurs, par exemple par le
+	 * {@link HistoryManager}) : si l'état est celui du noeud courant rien ne
+	 * change, si c'est celui d'un autre noeud de l'arbre (en priorité le
+	 * parent ou un fils du noeud courant) ce noeud devient le noeud courant,
+	 * sinon l'état devient un nouveau fils du noeud courant.
+	 * @param memento le memento de l'état courant de l'originator
+	 */
+	public void update(Memento<E> memento)
+	{
+		if (memento == null)
+		{
+			return;
+		}
+
+		if (current == null)
+		{
+			root = add(memento, null);
+			current = root;
+			return;
+		}
+
+		if (same(memento, current.getMemento()))
+		{
+			return;
+		}
+
+		UndoNode<E> parent = current.getParent();
+		if ((parent != null) && same(memento, parent.getMemento()))
+		{
+			parent.setLastChild(current);
+			current = parent;
+			return;
+		}
+
+		for (UndoNode<E> child : current.getChildren())
+		{
+			if (same(memento, child.getMemento()))
+			{
+				current.setLastChild(child);
+				current = child;
+				return;
+			}
+		}
+
+		// Etat déjà atteint ailleurs dans l'arbre (après un saut par exemple)
+		for (UndoNode<E> node : nodes)
+		{
+			if (same(memento, node.getMemento()))
+			{
+				current = node;
+				return;
+			}
+		}
+
+		current = add(memento, current);
+		prune();
+	}
+
+	/**
+	 * Comparaison en temps constant du contenu de deux memento
+	 * @param m1 le premier memento
+	 * @param m2 le second memento
+	 * @return true si les deux memento ont la même taille et la même
+	 * empreinte
+	 */
+	private static boolean same(Memento<?> m1, Memento<?> m2)
+	{
+		return (m1.size() == m2.size())
+		    && (m1.getContentHash() == m2.getContentHash());
+	}
+
+	/**
+	 * Création d'un nouveau noeud
+	 * @param memento l'état du noeud
+	 * @param parent le parent du noeud (ou null pour la racine)
+	 * @return le nouveau noeud
+	 */
+	private UndoNode<E> add(Memento<E> memento, UndoNode<E> parent)
+	{
+		UndoNode<E> node = new UndoNode<E>(nextId++, memento, parent);
+		if (parent != null)
+		{
+			parent.addChild(node);
+		}
+		nodes.add(node);
+		if (memento.isCaptured())
+		{
+			ledger.retain(memento);
+		}
+		else
+		{
+			unsettled.add(node);
+		}
+		return node;
+	}
+
+	/**
+	 * Prise en compte des noeuds dont la capture s'est terminée
+	 */
+	private void settle()
+	{
+		for (Iterator<UndoNode<E>> it = unsettled.iterator(); it.hasNext();)
+		{
+			UndoNode<E> node = it.next();
+			if (node.getMemento().isCaptured())
+			{
+				it.remove();
+				ledger.retain(node.getMemento());
+			}
+		}
+	}
+
+	/**
+	 * Mise en place de l'état d'un noeud qui devient le noeud courant, en
+	 * suivant le chemin depuis le noeud courant : l'état de chaque noeud du
+	 * chemin est mis en place à son tour, si bien que chaque étape ne
+	 * restitue que la différence entre deux noeuds voisins
+	 * @param node le noeud à restituer
+	 */
+	private void restore(UndoNode<E> node)
+	{
+		List<UndoNode<E>> path = getPath(current, node);
+		if (path.isEmpty())
+		{
+			originator.setMemento(node.getMemento());
+			current = node;
+			return;
+		}
+		for (UndoNode<E> step : path.subList(1, path.size()))
+		{
+			originator.setMemento(step.getMemento());
+			current = step;
+		}
+	}
+
+	/**
+	 * Oubli des noeuds les plus anciens tant que l'arbre dépasse
+	 * {@link #maxNodes} : d'abord la feuille la plus ancienne qui n'est pas
+	 * le noeud courant, puis la racine s'il n'y a plus d'autre feuille (la
+	 * branche courante est alors la seule branche).
+	 */
+	private void prune()
+	{
+		while (nodes.size() > maxNodes)
+		{
+			UndoNode<E> victim = null;
+			for (UndoNode<E> node : nodes)
+			{
+				if (node.getChildren().isEmpty() && (node != current)
+				    && (node != root))
+				{
+					victim = node;
+					break;
+				}
+			}
+
+			if (victim != null)
+			{
+				victim.getParent().removeChild(victim);
+			}
+			else if ((root != current) && (root.getChildren().size() == 1))
+			{
+				victim = root;
+				root = root.getChildren().get(0);
+				root.detach();
+			}
+			else
+			{
+				Log.warning("unable to prune");
+				return;
+			}
+
+			nodes.remove(victim);
+			if (!unsettled.remove(victim))
+			{
+				ledger.release(victim.getMemento());
+			}
+			prunedNodes++;
+		}
+	}
+
+	/**
+	 * Représentation sous forme de chaîne de caractères
+	 * @return le nombre de noeuds, le noeud courant et la taille estimée de
+	 * l'arbre (utile pour débuguer)
+	 */
+	@Override
+	public String toString()
+	{
+		return super.toString() + "[" + nodes.size() + "/" + maxNodes
+		    + " nodes, current = " + current + ", "
+		    + getUsedBytes() + " bytes]";
+	}
+}
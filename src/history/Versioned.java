@@ -0,0 +1,19 @@
+package history;
+
+/**
+ * Interface pour les éléments dont chaque modification est estampillée par
+ * un numéro de version. Permet aux {@link Memento} de partager les copies des
+ * éléments qui n'ont pas été modifiés depuis le memento précédent plutôt que
+ * de les cloner à nouveau.
+ * @note toute modification de l'élément doit changer sa version, sinon
+ * l'élément modifié serait confondu avec sa copie précédente.
+ * @author davidroussel
+ */
+public interface Versioned
+{
+	/**
+	 * Accesseur de la version courante de l'élément
+	 * @return la version de l'élément qui change à chaque modification
+	 */
+	public abstract long getVersion();
+}
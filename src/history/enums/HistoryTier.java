@@ -0,0 +1,49 @@
+package history.enums;
+
+/**
+ * Niveau de stockage d'une entrée de l'historique
+ * @author davidroussel
+ */
+public enum HistoryTier
+{
+	/**
+	 * Entrée conservée sous forme de {@link history.Memento} (objets vivants)
+	 */
+	LIVE,
+	/**
+	 * Entrée encodée et compressée en mémoire
+	 */
+	COMPRESSED,
+	/**
+	 * Entrée encodée, compressée et déversée dans un fichier temporaire
+	 */
+	SPILLED,
+	/**
+	 * Entrée abandonnée lorsqu'elle a quitté l'historique (elle ne
+	 * contient plus aucune donnée)
+	 */
+	DISCARDED;
+
+	/**
+	 * Représentation sous forme de chaine de caractères
+	 * @return une chaine de caractères représentant la valeur de cet enum
+	 * @throws AssertionError si le niveau est inconnu
+	 */
+	@Override
+	public String toString() throws AssertionError
+	{
+		switch (this)
+		{
+			case LIVE:
+				return new String("Live");
+			case COMPRESSED:
+				return new String("Compressed");
+			case SPILLED:
+				return new String("Spilled");
+			case DISCARDED:
+				return new String("Discarded");
+		}
+
+		throw new AssertionError("HistoryTier Unknown assertion " + this);
+	}
+}
@@ -0,0 +1,5 @@
+/**
+ * Package contenant les différents enums de l'historique
+ * @author davidroussel
+ */
+package history.enums;
@@ -0,0 +1,451 @@
+package metrics;
+
+import java.awt.event.ActionEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.swing.Action;
+
+/**
+ * Mesure des actions de l'éditeur : chaque action enveloppée par
+ * {@link #measure(Action)} mesure, à chacune de ses invocations, sa durée
+ * (dans l'histogramme "action.&lt;nom&gt;" du registre {@link Metrics}) et
+ * le nombre d'octets alloués par le thread qui l'exécute (l'EDT). Les
+ * statistiques sont cumulées par nom d'action ({@link #getStats()}) et
+ * peuvent être exportées au format CSV ({@link #exportCsv(Writer)}).
+ * Les allocations sont mesurées par le {@link java.lang.management.ThreadMXBean}
+ * de la plateforme lorsque celui ci le permet (sinon elles valent -1).
+ * Comme les autres mesures, les mesures des actions ne sont effectuées que
+ * lorsque les mesures sont actives ({@link Metrics#isEnabled()}).
+ * Les invocations sont aussi transmises au {@link SessionRecorder} lorsqu'une
+ * session est en cours d'enregistrement.
+ * @author davidroussel
+ */
+public class ActionMetrics
+{
+	/**
+	 * Le ThreadMXBean de la plateforme s'il permet de mesurer les octets
+	 * alloués par un thread, null sinon
+	 */
+	private final static com.sun.management.ThreadMXBean threads =
+	    allocationBean();
+
+	/**
+	 * Les statistiques indexées par nom d'action
+	 */
+	private static final ConcurrentHashMap<String, Stats> stats =
+	    new ConcurrentHashMap<String, Stats>();
+
+	/**
+	 * Enveloppe d'une action afin de mesurer ses invocations
+	 * @param action l'action à mesurer
+	 * @return une action déléguant toutes ses opérations à l'action fournie
+	 * et mesurant chacune de ses invocations
+	 */
+	public static Action measure(Action action)
+	{
+		return new MeasuredAction(action);
+	}
+
+	/**
+	 * Etat de la mesure des allocations
+	 * @return true si les octets alloués par les actions sont mesurés
+	 */
+	public static boolean isAllocationMeasured()
+	{
+		return threads != null;
+	}
+
+	/**
+	 * Les statistiques des actions invoquées
+	 * @return les statistiques des actions invoquées au moins une fois,
+	 * de la plus grande durée cumulée à la plus petite
+	 */
+	public static List<Stats> getStats()
+	{
+		List<Stats> list = new ArrayList<Stats>();
+		for (Stats s : stats.values())
+		{
+			if (s.getCount() > 0)
+			{
+				list.add(s);
+			}
+		}
+		list.sort((s1, s2) ->
+		    Double.compare(s2.getTotalMillis(), s1.getTotalMillis()));
+		return list;
+	}
+
+	/**
+	 * Remise à zéro des statistiques des actions
+	 */
+	public static void reset()
+	{
+		for (Stats s : stats.values())
+		{
+			s.reset();
+		}
+	}
+
+	/**
+	 * Export des statistiques des actions au format CSV (une ligne d'entête
+	 * puis une ligne par action, durées en ms et allocations en octets)
+	 * @param writer le flux de sortie
+	 */
+	public static void exportCsv(Writer writer)
+	{
+		PrintWriter out = new PrintWriter(writer);
+		out.println("action,count,total_ms,mean_ms,p50_ms,p99_ms,max_ms,"
+		    + "total_bytes,mean_bytes,max_bytes");
+		for (Stats s : getStats())
+		{
+			out.println(String.format(Locale.ROOT,
+			    "\"%s\",%d,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d,%d",
+			    s.getName().replace("\"", "\"\""), s.getCount(),
+			    s.getTotalMillis(), s.getMeanMillis(), s.getP50Millis(),
+			    s.getP99Millis(), s.getMaxMillis(), s.getTotalBytes(),
+			    s.getMeanBytes(), s.getMaxBytes()));
+		}
+		out.flush();
+	}
+
+	/**
+	 * Export des statistiques des actions dans un fichier CSV
+	 * @param path le chemin du fichier
+	 * @throws IOException si le fichier ne peut pas être écrit
+	 */
+	public static void exportCsv(Path path) throws IOException
+	{
+		try (Writer writer =
+		    Files.newBufferedWriter(path, StandardCharsets.UTF_8))
+		{
+			exportCsv(writer);
+		}
+	}
+
+	/**
+	 * Obtention du ThreadMXBean de la plateforme permettant de mesurer les
+	 * octets alloués par un thread
+	 * @return le ThreadMXBean de la plateforme (dont la mesure des
+	 * allocations est activée) ou bien null s'il ne permet pas de mesurer
+	 * les allocations
+	 */
+	private static com.sun.management.ThreadMXBean allocationBean()
+	{
+		java.lang.management.ThreadMXBean bean =
+		    ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sunBean =
+			    (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported())
+			{
+				try
+				{
+					sunBean.setThreadAllocatedMemoryEnabled(true);
+					return sunBean;
+				}
+				catch (UnsupportedOperationException e)
+				{
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Octets alloués jusqu'ici par le thread courant
+	 * @return le nombre d'octets alloués par le thread courant ou bien -1
+	 * si les allocations ne sont pas mesurées
+	 */
+	private static long allocatedBytes()
+	{
+		return threads != null ? threads.getCurrentThreadAllocatedBytes() : -1L;
+	}
+
+	/**
+	 * Statistiques cumulées des invocations d'une action
+	 */
+	public static class Stats
+	{
+		/**
+		 * Le nom de l'action
+		 */
+		private final String name;
+
+		/**
+		 * L'histogramme des durées des invocations
+		 */
+		private final Histogram latency;
+
+		/**
+		 * Le nombre total d'octets alloués par les invocations
+		 */
+		private final LongAdder bytes;
+
+		/**
+		 * Le plus grand nombre d'octets alloués par une invocation
+		 */
+		private final AtomicLong maxBytes;
+
+		/**
+		 * Constructeur de statistiques
+		 * @param name le nom de l'action
+		 */
+		private Stats(String name)
+		{
+			this.name = name;
+			latency = Metrics.histogram("action." + name);
+			bytes = new LongAdder();
+			maxBytes = new AtomicLong();
+		}
+
+		/**
+		 * Enregistrement d'une invocation
+		 * @param start l'instant (en ns) du début de l'invocation
+		 * @param allocated le nombre d'octets alloués par l'invocation (ou
+		 * une valeur négative si les allocations ne sont pas mesurées)
+		 */
+		private void record(long start, long allocated)
+		{
+			latency.recordSince(start);
+			if (allocated >= 0)
+			{
+				bytes.add(allocated);
+				maxBytes.accumulateAndGet(allocated, Math::max);
+			}
+		}
+
+		/**
+		 * Remise à zéro des statistiques
+		 */
+		private void reset()
+		{
+			latency.reset();
+			bytes.reset();
+			maxBytes.set(0);
+		}
+
+		/**
+		 * Nom de l'action
+		 * @return le nom de l'action
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * Nombre d'invocations
+		 * @return le nombre d'invocations mesurées
+		 */
+		public long getCount()
+		{
+			return latency.snapshot().getCount();
+		}
+
+		/**
+		 * Durée cumulée des invocations
+		 * @return la durée cumulée (en ms) des invocations
+		 */
+		public double getTotalMillis()
+		{
+			Histogram.Snapshot snapshot = latency.snapshot();
+			return (snapshot.getMean() * snapshot.getCount()) / 1e6;
+		}
+
+		/**
+		 * Durée moyenne des invocations
+		 * @return la durée moyenne (en ms) des invocations
+		 */
+		public double getMeanMillis()
+		{
+			return latency.snapshot().getMean() / 1e6;
+		}
+
+		/**
+		 * Durée médiane des invocations
+		 * @return la durée médiane (en ms) des invocations
+		 */
+		public double getP50Millis()
+		{
+			return latency.snapshot().getValueAtPercentile(50.0) / 1e6;
+		}
+
+		/**
+		 * 99ème percentile des durées des invocations
+		 * @return le 99ème percentile (en ms) des durées des invocations
+		 */
+		public double getP99Millis()
+		{
+			return latency.snapshot().getValueAtPercentile(99.0) / 1e6;
+		}
+
+		/**
+		 * Plus grande durée d'une invocation
+		 * @return la plus grande durée (en ms) d'une invocation
+		 */
+		public double getMaxMillis()
+		{
+			return latency.snapshot().getMax() / 1e6;
+		}
+
+		/**
+		 * Nombre total d'octets alloués par les invocations
+		 * @return le nombre total d'octets alloués ou bien -1 si les
+		 * allocations ne sont pas mesurées
+		 */
+		public long getTotalBytes()
+		{
+			return threads != null ? bytes.sum() : -1L;
+		}
+
+		/**
+		 * Nombre moyen d'octets alloués par invocation
+		 * @return le nombre moyen d'octets alloués par invocation ou bien -1
+		 * si les allocations ne sont pas mesurées
+		 */
+		public long getMeanBytes()
+		{
+			long count = getCount();
+			if (threads == null)
+			{
+				return -1L;
+			}
+			return count > 0 ? bytes.sum() / count : 0L;
+		}
+
+		/**
+		 * Plus grand nombre d'octets alloués par une invocation
+		 * @return le plus grand nombre d'octets alloués par une invocation
+		 * ou bien -1 si les allocations ne sont pas mesurées
+		 */
+		public long getMaxBytes()
+		{
+			return threads != null ? maxBytes.get() : -1L;
+		}
+	}
+
+	/**
+	 * Action mesurant les invocations d'une autre action à laquelle elle
+	 * délègue toutes ses opérations (y compris ses propriétés et leurs
+	 * listeners, de sorte que les widgets configurés par cette action
+	 * suivent les changements de l'action enveloppée)
+	 */
+	private static class MeasuredAction implements Action
+	{
+		/**
+		 * L'action enveloppée
+		 */
+		private final Action delegate;
+
+		/**
+		 * Les statistiques de l'action enveloppée (obtenues lors de la
+		 * première invocation puisque le nom de l'action peut ne pas encore
+		 * être fixé lors de l'enveloppement)
+		 */
+		private Stats stats;
+
+		/**
+		 * Constructeur d'une action mesurée
+		 * @param delegate l'action à mesurer
+		 */
+		public MeasuredAction(Action delegate)
+		{
+			this.delegate = delegate;
+			stats = null;
+		}
+
+		/**
+		 * Invocation de l'action enveloppée en mesurant sa durée et ses
+		 * allocations
+		 * @param e l'évènement déclenchant l'action
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			if (SessionRecorder.isRecording())
+			{
+				SessionRecorder.actionPerformed(this, e);
+			}
+			if (!Metrics.isEnabled())
+			{
+				delegate.actionPerformed(e);
+				return;
+			}
+			if (stats == null)
+			{
+				Object name = delegate.getValue(NAME);
+				String key = name != null ? name.toString()
+				    : delegate.getClass().getSimpleName();
+				stats = ActionMetrics.stats.computeIfAbsent(key, Stats::new);
+			}
+			long allocated = allocatedBytes();
+			long start = Metrics.now();
+			try
+			{
+				delegate.actionPerformed(e);
+			}
+			finally
+			{
+				stats.record(start, allocated >= 0
+				    ? allocatedBytes() - allocated : -1L);
+			}
+		}
+
+		@Override
+		public Object getValue(String key)
+		{
+			return delegate.getValue(key);
+		}
+
+		@Override
+		public void putValue(String key, Object value)
+		{
+			delegate.putValue(key, value);
+		}
+
+		@Override
+		public void setEnabled(boolean b)
+		{
+			delegate.setEnabled(b);
+		}
+
+		@Override
+		public boolean isEnabled()
+		{
+			return delegate.isEnabled();
+		}
+
+		@Override
+		public boolean accept(Object sender)
+		{
+			return delegate.accept(sender);
+		}
+
+		@Override
+		public void addPropertyChangeListener(PropertyChangeListener listener)
+		{
+			delegate.addPropertyChangeListener(listener);
+		}
+
+		@Override
+		public void removePropertyChangeListener(PropertyChangeListener listener)
+		{
+			delegate.removePropertyChangeListener(listener);
+		}
+	}
+}
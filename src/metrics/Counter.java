@@ -0,0 +1,82 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteur d'évènements pouvant être incrémenté simultanément par plusieurs
+ * threads sans contention.
+ * @author davidroussel
+ */
+public class Counter
+{
+	/**
+	 * Le nom du compteur
+	 */
+	private final String name;
+
+	/**
+	 * La valeur du compteur
+	 */
+	private final LongAdder value;
+
+	/**
+	 * Constructeur d'un compteur (cf. {@link Metrics#counter(String)})
+	 * @param name le nom du compteur
+	 */
+	Counter(String name)
+	{
+		this.name = name;
+		value = new LongAdder();
+	}
+
+	/**
+	 * Nom du compteur
+	 * @return le nom du compteur
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Incrémentation du compteur (si les mesures sont actives)
+	 */
+	public void increment()
+	{
+		if (Metrics.isEnabled())
+		{
+			value.increment();
+		}
+	}
+
+	/**
+	 * Ajout d'une quantité au compteur (si les mesures sont actives)
+	 * @param amount la quantité à ajouter
+	 */
+	public void add(long amount)
+	{
+		if (Metrics.isEnabled())
+		{
+			value.add(amount);
+		}
+	}
+
+	/**
+	 * Valeur du compteur
+	 * @return la valeur courante du compteur
+	 */
+	public long get()
+	{
+		return value.sum();
+	}
+
+	/**
+	 * Représentation sous forme de chaîne de caractères
+	 * @return le nom et la valeur du compteur
+	 */
+	@Override
+	public String toString()
+	{
+		return name + " = " + get();
+	}
+}
@@ -0,0 +1,16 @@
+package metrics;
+
+/**
+ * Jauge : valeur instantanée (taille d'une collection, mémoire occupée,
+ * etc.) calculée à la demande lors de sa consultation.
+ * @author davidroussel
+ */
+@FunctionalInterface
+public interface Gauge
+{
+	/**
+	 * Valeur courante de la jauge
+	 * @return la valeur courante de la jauge
+	 */
+	public abstract long getValue();
+}
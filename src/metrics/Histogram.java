@@ -0,0 +1,339 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de durées (en nanosecondes) à la manière des histogrammes HDR :
+ * les valeurs sont rangées dans des intervalles dont la largeur double à
+ * chaque puissance de 2 et dont chacune est découpée en {@link #SubBuckets}
+ * intervalles. L'erreur relative sur les percentiles est donc bornée
+ * (environ 3 %) quel que soit l'ordre de grandeur des durées, pour une
+ * taille fixe et sans allocation lors de l'enregistrement.
+ * Les percentiles sont calculés sur un instantané ({@link Snapshot}) de
+ * l'histogramme. La différence de deux instantanés permet d'obtenir les
+ * statistiques d'un intervalle de temps.
+ * @author davidroussel
+ */
+public class Histogram
+{
+	/**
+	 * Nombre de bits de chaque intervalle de base
+	 */
+	private final static int SubBits = 5;
+
+	/**
+	 * Nombre d'intervalles par puissance de 2
+	 */
+	public final static int SubBuckets = 1 << SubBits;
+
+	/**
+	 * Nombre total d'intervalles (toutes les valeurs positives d'un long)
+	 */
+	private final static int BucketCount = (64 - SubBits) * SubBuckets;
+
+	/**
+	 * Le nom de l'histogramme
+	 */
+	private final String name;
+
+	/**
+	 * Le nombre de valeurs de chaque intervalle
+	 */
+	private final AtomicLongArray counts;
+
+	/**
+	 * La somme des valeurs enregistrées
+	 */
+	private final LongAdder sum;
+
+	/**
+	 * La plus grande valeur enregistrée
+	 */
+	private final AtomicLong max;
+
+	/**
+	 * Constructeur d'un histogramme (cf. {@link Metrics#histogram(String)})
+	 * @param name le nom de l'histogramme
+	 */
+	Histogram(String name)
+	{
+		this.name = name;
+		counts = new AtomicLongArray(BucketCount);
+		sum = new LongAdder();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Nom de l'histogramme
+	 * @return le nom de l'histogramme
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Enregistrement d'une valeur (si les mesures sont actives)
+	 * @param value la valeur à enregistrer (les valeurs négatives sont
+	 * enregistrées comme des valeurs nulles)
+	 */
+	public void record(long value)
+	{
+		if (!Metrics.isEnabled())
+		{
+			return;
+		}
+		if (value < 0)
+		{
+			value = 0;
+		}
+		counts.incrementAndGet(indexOf(value));
+		sum.add(value);
+		if (value > max.get())
+		{
+			max.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	/**
+	 * Enregistrement de la durée écoulée depuis un instant obtenu avec
+	 * {@link Metrics#now()}
+	 * @param start l'instant de début de la mesure ({@link Metrics#Off} si
+	 * les mesures étaient désactivées au début de la mesure, auquel cas rien
+	 * n'est enregistré)
+	 */
+	public void recordSince(long start)
+	{
+		if (start != Metrics.Off)
+		{
+			record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Instantané de l'histogramme
+	 * @return un instantané (indépendant de l'histogramme) des valeurs
+	 * enregistrées jusqu'ici
+	 */
+	public Snapshot snapshot()
+	{
+		long[] copy = new long[BucketCount];
+		for (int i = 0; i < BucketCount; i++)
+		{
+			copy[i] = counts.get(i);
+		}
+		return new Snapshot(copy, sum.sum(), max.get());
+	}
+
+	/**
+	 * Remise à zéro de l'histogramme
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < BucketCount; i++)
+		{
+			counts.set(i, 0);
+		}
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Représentation sous forme de chaîne de caractères
+	 * @return le nom et les principales statistiques de l'histogramme
+	 */
+	@Override
+	public String toString()
+	{
+		return name + " " + snapshot();
+	}
+
+	/**
+	 * Index de l'intervalle contenant une valeur
+	 * @param value la valeur (positive ou nulle)
+	 * @return l'index de l'intervalle contenant la valeur
+	 */
+	static int indexOf(long value)
+	{
+		if (value < SubBuckets)
+		{
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SubBits;
+		int sub = (int) (value >>> shift) & (SubBuckets - 1);
+		return ((shift + 1) << SubBits) + sub;
+	}
+
+	/**
+	 * Plus petite valeur d'un intervalle
+	 * @param index l'index de l'intervalle
+	 * @return la plus petite valeur rangée dans cet intervalle
+	 */
+	static long lowestValue(int index)
+	{
+		if (index < SubBuckets)
+		{
+			return index;
+		}
+		int block = index >>> SubBits;
+		int sub = index & (SubBuckets - 1);
+		return ((long) (SubBuckets + sub)) << (block - 1);
+	}
+
+	/**
+	 * Plus grande valeur d'un intervalle
+	 * @param index l'index de l'intervalle
+	 * @return la plus grande valeur rangée dans cet intervalle
+	 */
+	static long highestValue(int index)
+	{
+		if (index < SubBuckets)
+		{
+			return index;
+		}
+		return lowestValue(index) + (1L << ((index >>> SubBits) - 1)) - 1;
+	}
+
+	/**
+	 * Instantané (non modifiable) d'un histogramme
+	 */
+	public static class Snapshot
+	{
+		/**
+		 * Le nombre de valeurs de chaque intervalle
+		 */
+		private final long[] counts;
+
+		/**
+		 * Le nombre total de valeurs
+		 */
+		private final long count;
+
+		/**
+		 * La somme des valeurs
+		 */
+		private final long sum;
+
+		/**
+		 * La plus grande valeur
+		 */
+		private final long max;
+
+		/**
+		 * Constructeur d'un instantané
+		 * @param counts le nombre de valeurs de chaque intervalle
+		 * @param sum la somme des valeurs
+		 * @param max la plus grande valeur
+		 */
+		private Snapshot(long[] counts, long sum, long max)
+		{
+			this.counts = counts;
+			long total = 0;
+			for (long c : counts)
+			{
+				total += c;
+			}
+			count = total;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * Nombre de valeurs
+		 * @return le nombre de valeurs de l'instantané
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * Valeur moyenne
+		 * @return la moyenne des valeurs ou bien 0 s'il n'y en a aucune
+		 */
+		public double getMean()
+		{
+			return count > 0 ? (double) sum / (double) count : 0.0;
+		}
+
+		/**
+		 * Plus grande valeur
+		 * @return la plus grande valeur de l'instantané
+		 */
+		public long getMax()
+		{
+			return max;
+		}
+
+		/**
+		 * Valeur d'un percentile
+		 * @param percentile le percentile voulu (entre 0 et 100)
+		 * @return la plus grande valeur équivalente (à la précision de
+		 * l'histogramme près) à celle du percentile demandé ou bien 0 si
+		 * l'instantané ne contient aucune valeur
+		 */
+		public long getValueAtPercentile(double percentile)
+		{
+			if (count == 0)
+			{
+				return 0;
+			}
+			double p = Math.min(Math.max(percentile, 0.0), 100.0);
+			long rank = Math.max(1L, (long) Math.ceil((p / 100.0) * count));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++)
+			{
+				seen += counts[i];
+				if (seen >= rank)
+				{
+					return Math.min(highestValue(i), max);
+				}
+			}
+			return max;
+		}
+
+		/**
+		 * Différence entre cet instantané et un instantané plus ancien du
+		 * même histogramme
+		 * @param previous l'instantané plus ancien (ou null)
+		 * @return un instantané des valeurs enregistrées entre les deux
+		 * instantanés
+		 */
+		public Snapshot minus(Snapshot previous)
+		{
+			if (previous == null)
+			{
+				return this;
+			}
+			long[] delta = new long[counts.length];
+			long highest = 0;
+			for (int i = 0; i < counts.length; i++)
+			{
+				delta[i] = Math.max(0L, counts[i] - previous.counts[i]);
+				if (delta[i] > 0)
+				{
+					highest = highestValue(i);
+				}
+			}
+			return new Snapshot(delta,
+			                    Math.max(0L, sum - previous.sum),
+			                    Math.min(highest, max));
+		}
+
+		/**
+		 * Représentation sous forme de chaîne de caractères
+		 * @return les principales statistiques de l'instantané (en us)
+		 */
+		@Override
+		public String toString()
+		{
+			return String.format("[n=%d mean=%.1fus p50=%.1fus p99=%.1fus "
+			    + "max=%.1fus]", count, getMean() / 1e3,
+			    getValueAtPercentile(50) / 1e3,
+			    getValueAtPercentile(99) / 1e3, max / 1e3);
+		}
+	}
+}
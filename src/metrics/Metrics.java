@@ -0,0 +1,230 @@
+package metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registre des mesures de l'éditeur : compteurs ({@link Counter}), jauges
+ * ({@link Gauge}) et histogrammes de durées ({@link Histogram}) identifiés
+ * par leur nom (par exemple "history.record").
+ * Les classes instrumentées obtiennent leurs mesures une seule fois (dans
+ * des attributs statiques) puis les mettent à jour sans consulter le
+ * registre. Une durée se mesure avec {@link #now()} puis
+ * {@link Histogram#recordSince(long)}.
+ * Les mesures sont désactivées par défaut, auquel cas leur coût se réduit à
+ * la lecture d'un booléen. Elles peuvent être activées globalement
+ * (propriété système "metrics.enabled" ou {@link #setEnabled(boolean)}) ou
+ * bien temporairement par les composants qui les affichent (overlay des
+ * performances, test de charge) au moyen de {@link #acquire()} et
+ * {@link #release()} : elles restent alors actives tant qu'au moins un de ces
+ * composants en a besoin.
+ * @author davidroussel
+ */
+public class Metrics
+{
+	/**
+	 * Valeur renvoyée par {@link #now()} lorsque les mesures sont
+	 * désactivées
+	 */
+	public final static long Off = Long.MIN_VALUE;
+
+	/**
+	 * Etat d'activation globale des mesures
+	 */
+	private static boolean global =
+	    Boolean.parseBoolean(System.getProperty("metrics.enabled", "false"));
+
+	/**
+	 * Nombre de composants ayant temporairement besoin des mesures
+	 */
+	private static int users = 0;
+
+	/**
+	 * Etat d'activation effectif des mesures (activation globale ou bien au
+	 * moins un composant ayant besoin des mesures)
+	 */
+	private static volatile boolean enabled = global;
+
+	/**
+	 * Les compteurs indexés par leur nom
+	 */
+	private static final ConcurrentHashMap<String, Counter> counters =
+	    new ConcurrentHashMap<String, Counter>();
+
+	/**
+	 * Les histogrammes indexés par leur nom
+	 */
+	private static final ConcurrentHashMap<String, Histogram> histograms =
+	    new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 * Les jauges indexées par leur nom
+	 */
+	private static final ConcurrentHashMap<String, Gauge> gauges =
+	    new ConcurrentHashMap<String, Gauge>();
+
+	/**
+	 * Etat d'activation des mesures
+	 * @return true si les mesures sont actives
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Activation ou désactivation globale des mesures (les mesures restent
+	 * actives tant qu'un composant en a besoin, voir {@link #acquire()})
+	 * @param value le nouvel état d'activation globale des mesures
+	 */
+	public static synchronized void setEnabled(boolean value)
+	{
+		global = value;
+		enabled = global || (users > 0);
+	}
+
+	/**
+	 * Activation temporaire des mesures par un composant qui en a besoin
+	 * (chaque appel doit être suivi d'un appel à {@link #release()})
+	 */
+	public static synchronized void acquire()
+	{
+		users++;
+		enabled = true;
+	}
+
+	/**
+	 * Fin du besoin des mesures d'un composant : les mesures sont
+	 * désactivées si elles ne sont pas activées globalement et qu'aucun autre
+	 * composant n'en a besoin
+	 */
+	public static synchronized void release()
+	{
+		if (users > 0)
+		{
+			users--;
+		}
+		enabled = global || (users > 0);
+	}
+
+	/**
+	 * Début d'une mesure de durée
+	 * @return l'instant courant (en ns) ou bien {@link #Off} si les mesures
+	 * sont désactivées
+	 */
+	public static long now()
+	{
+		return enabled ? System.nanoTime() : Off;
+	}
+
+	/**
+	 * Obtention (et création si besoin) d'un compteur
+	 * @param name le nom du compteur
+	 * @return le compteur portant ce nom
+	 */
+	public static Counter counter(String name)
+	{
+		return counters.computeIfAbsent(name, Counter::new);
+	}
+
+	/**
+	 * Obtention (et création si besoin) d'un histogramme de durées
+	 * @param name le nom de l'histogramme
+	 * @return l'histogramme portant ce nom
+	 */
+	public static Histogram histogram(String name)
+	{
+		return histograms.computeIfAbsent(name, Histogram::new);
+	}
+
+	/**
+	 * Enregistrement d'une jauge. Une jauge enregistrée sous le même nom
+	 * est remplacée (la jauge d'un nouveau dessin remplace celle du
+	 * précédent par exemple)
+	 * @param name le nom de la jauge
+	 * @param gauge la jauge
+	 */
+	public static void gauge(String name, Gauge gauge)
+	{
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * Retrait d'une jauge
+	 * @param name le nom de la jauge
+	 * @param gauge la jauge à retirer (seulement si c'est toujours elle qui
+	 * est enregistrée sous ce nom)
+	 */
+	public static void removeGauge(String name, Gauge gauge)
+	{
+		gauges.remove(name, gauge);
+	}
+
+	/**
+	 * Valeur courante d'une jauge
+	 * @param name le nom de la jauge
+	 * @return la valeur courante de la jauge ou bien 0 si aucune jauge
+	 * n'est enregistrée sous ce nom
+	 */
+	public static long getGaugeValue(String name)
+	{
+		Gauge gauge = gauges.get(name);
+		return gauge != null ? gauge.getValue() : 0L;
+	}
+
+	/**
+	 * Les compteurs triés par nom
+	 * @return une vue triée (non modifiable) des compteurs
+	 */
+	public static SortedMap<String, Counter> getCounters()
+	{
+		return Collections.unmodifiableSortedMap(
+		    new TreeMap<String, Counter>(counters));
+	}
+
+	/**
+	 * Les histogrammes triés par nom
+	 * @return une vue triée (non modifiable) des histogrammes
+	 */
+	public static SortedMap<String, Histogram> getHistograms()
+	{
+		return Collections.unmodifiableSortedMap(
+		    new TreeMap<String, Histogram>(histograms));
+	}
+
+	/**
+	 * Les jauges triées par nom
+	 * @return une vue triée (non modifiable) des jauges
+	 */
+	public static SortedMap<String, Gauge> getGauges()
+	{
+		return Collections.unmodifiableSortedMap(
+		    new TreeMap<String, Gauge>(gauges));
+	}
+
+	/**
+	 * Rapport de l'ensemble des mesures
+	 * @return une chaîne de caractères contenant une ligne par mesure
+	 */
+	public static String report()
+	{
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<String, Gauge> e : getGauges().entrySet())
+		{
+			builder.append(e.getKey()).append(" = ")
+			    .append(e.getValue().getValue()).append('\n');
+		}
+		for (Counter c : getCounters().values())
+		{
+			builder.append(c).append('\n');
+		}
+		for (Histogram h : getHistograms().values())
+		{
+			builder.append(h).append('\n');
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,433 @@
+package metrics;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.InvocationEvent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.swing.AbstractButton;
+import javax.swing.Action;
+
+import utils.Log;
+
+/**
+ * Profileur des notifications du modèle de dessin : regroupe les
+ * notifications (et les repaints qui en découlent) par évènement d'entrée
+ * (action, évènement souris ou clavier, etc.) afin de détecter les
+ * "tempêtes" de notifications.
+ * Pour chaque évènement, le profileur relève le nombre de notifications, les
+ * sites d'appel qui les ont déclenchées, le nombre de repaints demandés puis
+ * effectués. Une notification est signalée comme redondante lorsque l'état
+ * du modèle (fourni par le modèle lui même) n'a pas changé depuis la
+ * notification précédente du même évènement : elle ne provoque qu'un
+ * repaint inutile. Les évènements comportant des notifications redondantes
+ * sont journalisés dès qu'ils sont terminés et l'ensemble des statistiques
+ * est disponible sous forme de rapport ({@link #report()}).
+ * Le profileur est désactivé par défaut (propriété système
+ * "profiler.notifications" ou {@link #setEnabled(boolean)}) auquel cas son
+ * coût se réduit à la lecture d'un booléen.
+ * @author davidroussel
+ */
+public class NotificationProfiler
+{
+	/**
+	 * Etat d'activation du profileur
+	 */
+	private static volatile boolean enabled = Boolean
+	    .parseBoolean(System.getProperty("profiler.notifications", "false"));
+
+	/**
+	 * Parcours de la pile pour trouver le site d'appel des notifications
+	 */
+	private final static StackWalker walker =
+	    StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+	/**
+	 * Les statistiques cumulées indexées par type d'évènement
+	 */
+	private static final Map<String, Stats> stats =
+	    new HashMap<String, Stats>();
+
+	/**
+	 * L'évènement en cours (ou null si aucune notification n'a encore eu
+	 * lieu)
+	 */
+	private static Episode current = null;
+
+	/**
+	 * Le dernier évènement ayant demandé un repaint (auquel sont attribués
+	 * les repaints effectués)
+	 */
+	private static Episode repainting = null;
+
+	/**
+	 * Etat d'activation du profileur
+	 * @return true si le profileur est actif
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Activation ou désactivation du profileur. La désactivation journalise
+	 * le rapport des notifications profilées
+	 * @param value le nouvel état d'activation du profileur
+	 */
+	public static synchronized void setEnabled(boolean value)
+	{
+		if (value == enabled)
+		{
+			return;
+		}
+		enabled = value;
+		if (value)
+		{
+			reset();
+		}
+		else
+		{
+			close();
+			repainting = null;
+			Log.info("Notifications profile :\n{}", report());
+		}
+	}
+
+	/**
+	 * Remise à zéro des statistiques
+	 */
+	public static synchronized void reset()
+	{
+		stats.clear();
+		current = null;
+		repainting = null;
+	}
+
+	/**
+	 * Enregistrement d'une notification des observateurs du modèle (à
+	 * appeler par la méthode de notification du modèle, avant la
+	 * notification, uniquement lorsque le profileur est actif). Le site
+	 * d'appel retenu est l'appelant de la méthode de notification.
+	 * @param state l'état du modèle (une valeur qui change à chaque
+	 * modification visible du modèle)
+	 */
+	public static synchronized void notified(long state)
+	{
+		if (!enabled)
+		{
+			return;
+		}
+		AWTEvent event =
+		    EventQueue.isDispatchThread() ? EventQueue.getCurrentEvent() : null;
+		if ((current == null) || (current.event != event))
+		{
+			close();
+			current = new Episode(event, describe(event));
+		}
+
+		Optional<StackWalker.StackFrame> frame = walker.walk(frames -> frames
+		    .filter(f -> f.getDeclaringClass() != NotificationProfiler.class)
+		    .skip(1)
+		    .findFirst());
+		String site = frame.isPresent() ? frame.get().getDeclaringClass()
+		    .getSimpleName() + "." + frame.get().getMethodName() + ":"
+		    + frame.get().getLineNumber() : "<unknown>";
+
+		current.notified(site, state);
+	}
+
+	/**
+	 * Enregistrement d'une demande de repaint (à appeler par les vues lors
+	 * de leur notification)
+	 */
+	public static synchronized void repaintRequested()
+	{
+		if (enabled && (current != null))
+		{
+			current.repaintRequests++;
+			current.stats.repaintRequests++;
+			repainting = current;
+		}
+	}
+
+	/**
+	 * Enregistrement d'un repaint effectué (à appeler par les vues lors de
+	 * leur dessin). Le repaint est attribué au dernier évènement ayant
+	 * demandé un repaint
+	 */
+	public static synchronized void painted()
+	{
+		if (enabled && (repainting != null))
+		{
+			repainting.paints++;
+			repainting.stats.paints++;
+		}
+	}
+
+	/**
+	 * Rapport des notifications profilées
+	 * @return une chaîne de caractères contenant une ligne par type
+	 * d'évènement (du plus grand nombre de notifications au plus petit)
+	 * suivie des sites d'appel des notifications
+	 */
+	public static synchronized String report()
+	{
+		List<Stats> list = new ArrayList<Stats>(stats.values());
+		list.sort((s1, s2) -> Long.compare(s2.notifications, s1.notifications));
+		StringBuilder builder = new StringBuilder();
+		for (Stats s : list)
+		{
+			builder.append(s).append('\n');
+			List<Map.Entry<String, Long>> sites =
+			    new ArrayList<Map.Entry<String, Long>>(s.sites.entrySet());
+			sites.sort((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()));
+			for (Map.Entry<String, Long> e : sites)
+			{
+				builder.append("\t").append(e.getValue()).append(" x ")
+				    .append(e.getKey()).append('\n');
+			}
+		}
+		return builder.length() > 0 ? builder.toString() : "no notification\n";
+	}
+
+	/**
+	 * Clôture de l'évènement en cours : journalisation de l'évènement s'il
+	 * comporte des notifications redondantes
+	 */
+	private static void close()
+	{
+		if (current == null)
+		{
+			return;
+		}
+		if (current.redundant > 0)
+		{
+			Log.info("{} redundant notification(s) for {}", current.redundant,
+			    current);
+		}
+		current = null;
+	}
+
+	/**
+	 * Description d'un évènement d'entrée
+	 * @param event l'évènement (ou null si la notification n'a pas lieu
+	 * lors du traitement d'un évènement par l'EDT)
+	 * @return une description de l'évènement comprenant son type et, pour
+	 * les actions, le nom de l'action
+	 */
+	static String describe(AWTEvent event)
+	{
+		if (event == null)
+		{
+			return "<outside EDT>";
+		}
+		if (event instanceof ActionEvent)
+		{
+			Object source = event.getSource();
+			if (source instanceof AbstractButton)
+			{
+				Action action = ((AbstractButton) source).getAction();
+				if (action != null)
+				{
+					return "action " + action.getValue(Action.NAME);
+				}
+			}
+			return "action " + ((ActionEvent) event).getActionCommand();
+		}
+		if (event instanceof KeyEvent)
+		{
+			KeyEvent key = (KeyEvent) event;
+			String modifiers = InputEvent.getModifiersExText(key.getModifiersEx());
+			return "key " + (modifiers.isEmpty() ? "" : modifiers + "+")
+			    + KeyEvent.getKeyText(key.getKeyCode());
+		}
+		if (event instanceof InvocationEvent)
+		{
+			return "invocation";
+		}
+		String params = event.paramString();
+		int comma = params.indexOf(',');
+		String type = comma >= 0 ? params.substring(0, comma) : params;
+		return type + " on " + event.getSource().getClass().getSimpleName();
+	}
+
+	/**
+	 * Notifications déclenchées lors du traitement d'un évènement d'entrée
+	 */
+	private static class Episode
+	{
+		/**
+		 * L'évènement d'entrée
+		 */
+		private final AWTEvent event;
+
+		/**
+		 * Les statistiques cumulées du type de l'évènement
+		 */
+		private final Stats stats;
+
+		/**
+		 * Les sites d'appel des notifications de cet évènement
+		 */
+		private final List<String> sites;
+
+		/**
+		 * Le nombre de notifications redondantes
+		 */
+		private int redundant;
+
+		/**
+		 * Le nombre de repaints demandés
+		 */
+		private int repaintRequests;
+
+		/**
+		 * Le nombre de repaints effectués
+		 */
+		private int paints;
+
+		/**
+		 * L'état du modèle lors de la notification précédente
+		 */
+		private long state;
+
+		/**
+		 * Constructeur d'un évènement
+		 * @param event l'évènement d'entrée
+		 * @param label la description du type de l'évènement
+		 */
+		public Episode(AWTEvent event, String label)
+		{
+			this.event = event;
+			stats = NotificationProfiler.stats.computeIfAbsent(label,
+			    Stats::new);
+			stats.episodes++;
+			sites = new ArrayList<String>();
+			redundant = 0;
+			repaintRequests = 0;
+			paints = 0;
+			state = 0L;
+		}
+
+		/**
+		 * Enregistrement d'une notification
+		 * @param site le site d'appel de la notification
+		 * @param newState l'état du modèle lors de la notification
+		 */
+		public void notified(String site, long newState)
+		{
+			if (!sites.isEmpty())
+			{
+				stats.extra++;
+				if (newState == state)
+				{
+					redundant++;
+					stats.redundant++;
+					site = site + " (redundant)";
+				}
+			}
+			sites.add(site);
+			state = newState;
+			stats.notifications++;
+			stats.sites.merge(site, 1L, Long::sum);
+		}
+
+		/**
+		 * Représentation sous forme de chaîne de caractères
+		 * @return le type de l'évènement, ses nombres de notifications et de
+		 * repaints et les sites d'appel des notifications
+		 */
+		@Override
+		public String toString()
+		{
+			return stats.label + " : " + sites.size() + " notification(s), "
+			    + repaintRequests + " repaint request(s), " + paints
+			    + " repaint(s) " + sites;
+		}
+	}
+
+	/**
+	 * Statistiques cumulées des notifications d'un type d'évènement
+	 */
+	private static class Stats
+	{
+		/**
+		 * La description du type d'évènement
+		 */
+		private final String label;
+
+		/**
+		 * Le nombre d'évènements de ce type ayant déclenché des notifications
+		 */
+		private long episodes;
+
+		/**
+		 * Le nombre total de notifications
+		 */
+		private long notifications;
+
+		/**
+		 * Le nombre de notifications au delà de la première de chaque
+		 * évènement
+		 */
+		private long extra;
+
+		/**
+		 * Le nombre de notifications redondantes (modèle inchangé depuis la
+		 * notification précédente)
+		 */
+		private long redundant;
+
+		/**
+		 * Le nombre de repaints demandés
+		 */
+		private long repaintRequests;
+
+		/**
+		 * Le nombre de repaints effectués
+		 */
+		private long paints;
+
+		/**
+		 * Le nombre de notifications par site d'appel
+		 */
+		private final Map<String, Long> sites;
+
+		/**
+		 * Constructeur de statistiques
+		 * @param label la description du type d'évènement
+		 */
+		public Stats(String label)
+		{
+			this.label = label;
+			episodes = 0;
+			notifications = 0;
+			extra = 0;
+			redundant = 0;
+			repaintRequests = 0;
+			paints = 0;
+			sites = new HashMap<String, Long>();
+		}
+
+		/**
+		 * Représentation sous forme de chaîne de caractères
+		 * @return le type d'évènement et ses statistiques
+		 */
+		@Override
+		public String toString()
+		{
+			return String.format("%s : %d event(s), %d notification(s) "
+			    + "(%.2f per event, %d extra, %d redundant), %d repaint "
+			    + "request(s), %d repaint(s)", label, episodes, notifications,
+			    episodes > 0 ? (double) notifications / episodes : 0.0, extra,
+			    redundant, repaintRequests, paints);
+		}
+	}
+}
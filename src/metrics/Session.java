@@ -0,0 +1,719 @@
+package metrics;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Paint;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import figures.Drawing;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+
+/**
+ * Session d'édition enregistrée par le {@link SessionRecorder} : la suite
+ * horodatée des évènements souris et clavier reçus par la zone de dessin,
+ * des actions de l'éditeur invoquées et des changements de style courant du
+ * dessin (type de figure, couleurs et trait choisis dans la barre d'outils)
+ * qui permet de rejouer la session sur un nouveau dessin.
+ * Une session est enregistrée dans un fichier binaire compressé (gzip) dans
+ * lequel chaque enregistrement est daté relativement au précédent.
+ * Les couleurs sont enregistrées par leur valeur ARGB (et non par leur
+ * identifiant dans la {@link utils.Palette}) afin qu'une session puisse être
+ * rejouée par un autre programme. Les remplissages qui ne sont pas des
+ * couleurs unies ne sont pas enregistrés : le style courant n'est alors pas
+ * modifié lors du rejeu.
+ * @author davidroussel
+ */
+public class Session
+{
+	/**
+	 * Signature des fichiers de session ("SESS")
+	 */
+	public final static int Magic = 0x53455353;
+
+	/**
+	 * Version du format des fichiers de session
+	 */
+	public final static int Version = 1;
+
+	/**
+	 * Largeur de la zone de dessin lors de l'enregistrement
+	 */
+	private final int width;
+
+	/**
+	 * Hauteur de la zone de dessin lors de l'enregistrement
+	 */
+	private final int height;
+
+	/**
+	 * Les enregistrements de la session dans l'ordre chronologique
+	 */
+	private final List<Record> records;
+
+	/**
+	 * Constructeur d'une session vide
+	 * @param width la largeur de la zone de dessin
+	 * @param height la hauteur de la zone de dessin
+	 */
+	public Session(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		records = new ArrayList<Record>();
+	}
+
+	/**
+	 * Largeur de la zone de dessin lors de l'enregistrement
+	 * @return la largeur de la zone de dessin
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Hauteur de la zone de dessin lors de l'enregistrement
+	 * @return la hauteur de la zone de dessin
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Ajout d'un enregistrement à la fin de la session
+	 * @param record l'enregistrement à ajouter (postérieur aux précédents)
+	 */
+	public void add(Record record)
+	{
+		records.add(record);
+	}
+
+	/**
+	 * Les enregistrements de la session
+	 * @return une vue non modifiable des enregistrements de la session dans
+	 * l'ordre chronologique
+	 */
+	public List<Record> getRecords()
+	{
+		return Collections.unmodifiableList(records);
+	}
+
+	/**
+	 * Durée de la session
+	 * @return la date (en nanosecondes depuis le début de la session) du
+	 * dernier enregistrement
+	 */
+	public long getDuration()
+	{
+		return records.isEmpty() ? 0L : records.get(records.size() - 1).time;
+	}
+
+	/**
+	 * Ecriture de la session dans un fichier
+	 * @param path le chemin du fichier
+	 * @throws IOException si le fichier ne peut pas être écrit
+	 */
+	public void write(Path path) throws IOException
+	{
+		try (OutputStream out = Files.newOutputStream(path))
+		{
+			write(out);
+		}
+	}
+
+	/**
+	 * Ecriture (compressée) de la session dans un flux
+	 * @param stream le flux dans lequel écrire la session (qui n'est pas
+	 * fermé)
+	 * @throws IOException si l'écriture échoue
+	 */
+	public void write(OutputStream stream) throws IOException
+	{
+		GZIPOutputStream zip = new GZIPOutputStream(stream);
+		DataOutputStream out =
+		    new DataOutputStream(new BufferedOutputStream(zip));
+		out.writeInt(Magic);
+		out.writeShort(Version);
+		out.writeInt(width);
+		out.writeInt(height);
+		out.writeInt(records.size());
+		long previous = 0L;
+		for (Record record : records)
+		{
+			// Délai depuis l'enregistrement précédent en microsecondes
+			long micros = record.time / 1000L;
+			out.writeByte(record.getKind());
+			out.writeInt((int) Math.min(Integer.MAX_VALUE, micros - previous));
+			record.write(out);
+			previous = micros;
+		}
+		out.flush();
+		zip.finish();
+	}
+
+	/**
+	 * Lecture d'une session dans un fichier
+	 * @param path le chemin du fichier
+	 * @return la session lue
+	 * @throws IOException si le fichier ne peut pas être lu ou ne contient
+	 * pas une session
+	 */
+	public static Session read(Path path) throws IOException
+	{
+		try (InputStream in = Files.newInputStream(path))
+		{
+			return read(in);
+		}
+	}
+
+	/**
+	 * Lecture d'une session dans un flux
+	 * @param stream le flux dans lequel lire la session (qui n'est pas
+	 * fermé)
+	 * @return la session lue
+	 * @throws IOException si la lecture échoue ou si le flux ne contient pas
+	 * une session
+	 */
+	public static Session read(InputStream stream) throws IOException
+	{
+		DataInputStream in = new DataInputStream(
+		    new BufferedInputStream(new GZIPInputStream(stream)));
+		if (in.readInt() != Magic)
+		{
+			throw new IOException("Not a session");
+		}
+		int version = in.readShort();
+		if (version != Version)
+		{
+			throw new IOException("Unsupported session version " + version);
+		}
+		Session session = new Session(in.readInt(), in.readInt());
+		int count = in.readInt();
+		long time = 0L;
+		for (int i = 0; i < count; i++)
+		{
+			int kind = in.readByte();
+			time += in.readInt() * 1000L;
+			switch (kind)
+			{
+				case InputRecord.Kind:
+					session.add(new InputRecord(time, in));
+					break;
+				case ActionRecord.Kind:
+					session.add(new ActionRecord(time, in));
+					break;
+				case StyleRecord.Kind:
+					session.add(new StyleRecord(time, in));
+					break;
+				default:
+					throw new IOException("Unknown record kind " + kind);
+			}
+		}
+		return session;
+	}
+
+	/**
+	 * Enregistrement d'une session
+	 */
+	public static abstract class Record
+	{
+		/**
+		 * Date de l'enregistrement (en nanosecondes depuis le début de la
+		 * session)
+		 */
+		protected final long time;
+
+		/**
+		 * Constructeur
+		 * @param time la date de l'enregistrement (en nanosecondes depuis le
+		 * début de la session)
+		 */
+		protected Record(long time)
+		{
+			this.time = time;
+		}
+
+		/**
+		 * Date de l'enregistrement
+		 * @return la date de l'enregistrement (en nanosecondes depuis le
+		 * début de la session)
+		 */
+		public long getTime()
+		{
+			return time;
+		}
+
+		/**
+		 * Type de l'enregistrement dans le fichier de session
+		 * @return le type de l'enregistrement
+		 */
+		protected abstract int getKind();
+
+		/**
+		 * Ecriture du contenu de l'enregistrement
+		 * @param out le flux dans lequel écrire
+		 * @throws IOException si l'écriture échoue
+		 */
+		protected abstract void write(DataOutput out) throws IOException;
+	}
+
+	/**
+	 * Enregistrement d'un évènement souris (y compris la molette) ou clavier
+	 * reçu par la zone de dessin
+	 */
+	public static class InputRecord extends Record
+	{
+		/**
+		 * Type des enregistrements d'évènements
+		 */
+		private final static int Kind = 1;
+
+		/**
+		 * Identifiant AWT de l'évènement (MouseEvent.MOUSE_PRESSED, etc.)
+		 */
+		private final int id;
+
+		/**
+		 * Modificateurs étendus de l'évènement
+		 */
+		private final int modifiers;
+
+		/**
+		 * Abscisse de l'évènement souris
+		 */
+		private final int x;
+
+		/**
+		 * Ordonnée de l'évènement souris
+		 */
+		private final int y;
+
+		/**
+		 * Bouton de l'évènement souris ou code de touche de l'évènement
+		 * clavier
+		 */
+		private final int code;
+
+		/**
+		 * Nombre de clics de l'évènement souris, crans de molette ou
+		 * caractère de l'évènement clavier
+		 */
+		private final int count;
+
+		/**
+		 * Constructeur à partir d'un évènement
+		 * @param time la date de l'évènement (en nanosecondes depuis le début
+		 * de la session)
+		 * @param event l'évènement souris ou clavier
+		 * @throws IllegalArgumentException si l'évènement n'est ni un
+		 * évènement souris ni un évènement clavier
+		 */
+		public InputRecord(long time, InputEvent event)
+		    throws IllegalArgumentException
+		{
+			super(time);
+			id = event.getID();
+			modifiers = event.getModifiersEx();
+			if (event instanceof MouseEvent)
+			{
+				MouseEvent mouse = (MouseEvent) event;
+				x = mouse.getX();
+				y = mouse.getY();
+				code = mouse.getButton();
+				count = mouse instanceof MouseWheelEvent
+				    ? ((MouseWheelEvent) mouse).getWheelRotation()
+				    : mouse.getClickCount();
+			}
+			else if (event instanceof KeyEvent)
+			{
+				KeyEvent key = (KeyEvent) event;
+				x = 0;
+				y = 0;
+				code = key.getKeyCode();
+				count = key.getKeyChar();
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unsupported event "
+				    + event);
+			}
+		}
+
+		/**
+		 * Constructeur à partir d'un flux
+		 * @param time la date de l'enregistrement
+		 * @param in le flux dans lequel lire le contenu de l'enregistrement
+		 * @throws IOException si la lecture échoue
+		 */
+		private InputRecord(long time, DataInput in) throws IOException
+		{
+			super(time);
+			id = in.readShort();
+			modifiers = in.readInt();
+			x = in.readInt();
+			y = in.readInt();
+			code = in.readInt();
+			count = in.readInt();
+		}
+
+		@Override
+		protected int getKind()
+		{
+			return Kind;
+		}
+
+		@Override
+		protected void write(DataOutput out) throws IOException
+		{
+			out.writeShort(id);
+			out.writeInt(modifiers);
+			out.writeInt(x);
+			out.writeInt(y);
+			out.writeInt(code);
+			out.writeInt(count);
+		}
+
+		/**
+		 * Etat d'évènement clavier
+		 * @return true s'il s'agit d'un évènement clavier, false s'il s'agit
+		 * d'un évènement souris
+		 */
+		public boolean isKeyEvent()
+		{
+			return (id >= KeyEvent.KEY_FIRST) && (id <= KeyEvent.KEY_LAST);
+		}
+
+		/**
+		 * Nom de l'évènement (par exemple "MOUSE_PRESSED")
+		 * @return le nom de l'évènement
+		 */
+		public String getName()
+		{
+			switch (id)
+			{
+				case MouseEvent.MOUSE_PRESSED:
+					return "MOUSE_PRESSED";
+				case MouseEvent.MOUSE_RELEASED:
+					return "MOUSE_RELEASED";
+				case MouseEvent.MOUSE_CLICKED:
+					return "MOUSE_CLICKED";
+				case MouseEvent.MOUSE_MOVED:
+					return "MOUSE_MOVED";
+				case MouseEvent.MOUSE_DRAGGED:
+					return "MOUSE_DRAGGED";
+				case MouseEvent.MOUSE_ENTERED:
+					return "MOUSE_ENTERED";
+				case MouseEvent.MOUSE_EXITED:
+					return "MOUSE_EXITED";
+				case MouseEvent.MOUSE_WHEEL:
+					return "MOUSE_WHEEL";
+				case KeyEvent.KEY_PRESSED:
+					return "KEY_PRESSED";
+				case KeyEvent.KEY_RELEASED:
+					return "KEY_RELEASED";
+				case KeyEvent.KEY_TYPED:
+					return "KEY_TYPED";
+				default:
+					return "EVENT_" + id;
+			}
+		}
+
+		/**
+		 * Reconstitution de l'évènement enregistré
+		 * @param source le composant auquel destiner l'évènement
+		 * @param when la date (en millisecondes) du nouvel évènement
+		 * @return un nouvel évènement identique à l'évènement enregistré
+		 */
+		public InputEvent toEvent(Component source, long when)
+		{
+			if (isKeyEvent())
+			{
+				return new KeyEvent(source, id, when, modifiers, code,
+				                    (char) count);
+			}
+			if (id == MouseEvent.MOUSE_WHEEL)
+			{
+				return new MouseWheelEvent(source, id, when, modifiers, x, y,
+				                           0, false,
+				                           MouseWheelEvent.WHEEL_UNIT_SCROLL,
+				                           1, count);
+			}
+			return new MouseEvent(source, id, when, modifiers, x, y,
+			                      count, false, code);
+		}
+	}
+
+	/**
+	 * Enregistrement de l'invocation d'une action de l'éditeur
+	 */
+	public static class ActionRecord extends Record
+	{
+		/**
+		 * Type des enregistrements d'actions
+		 */
+		private final static int Kind = 2;
+
+		/**
+		 * Nom de l'action
+		 */
+		private final String name;
+
+		/**
+		 * Etat du bouton à bascule ayant déclenché l'action (ou null si
+		 * l'action n'a pas été déclenchée par un bouton à bascule)
+		 */
+		private final Boolean selected;
+
+		/**
+		 * Constructeur
+		 * @param time la date de l'invocation (en nanosecondes depuis le
+		 * début de la session)
+		 * @param name le nom de l'action
+		 * @param selected l'état du bouton à bascule ayant déclenché l'action
+		 * (ou null si l'action n'a pas été déclenchée par un bouton à bascule)
+		 */
+		public ActionRecord(long time, String name, Boolean selected)
+		{
+			super(time);
+			this.name = name;
+			this.selected = selected;
+		}
+
+		/**
+		 * Constructeur à partir d'un flux
+		 * @param time la date de l'enregistrement
+		 * @param in le flux dans lequel lire le contenu de l'enregistrement
+		 * @throws IOException si la lecture échoue
+		 */
+		private ActionRecord(long time, DataInput in) throws IOException
+		{
+			super(time);
+			name = in.readUTF();
+			int state = in.readByte();
+			selected = state < 0 ? null : Boolean.valueOf(state != 0);
+		}
+
+		@Override
+		protected int getKind()
+		{
+			return Kind;
+		}
+
+		@Override
+		protected void write(DataOutput out) throws IOException
+		{
+			out.writeUTF(name);
+			out.writeByte(selected == null ? -1
+			    : (selected.booleanValue() ? 1 : 0));
+		}
+
+		/**
+		 * Nom de l'action
+		 * @return le nom de l'action
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * Etat du bouton à bascule ayant déclenché l'action
+		 * @return l'état du bouton à bascule ayant déclenché l'action (ou
+		 * null si l'action n'a pas été déclenchée par un bouton à bascule)
+		 */
+		public Boolean getSelected()
+		{
+			return selected;
+		}
+	}
+
+	/**
+	 * Enregistrement du style courant du dessin (type de figure, couleurs et
+	 * trait utilisés pour les prochaines figures)
+	 */
+	public static class StyleRecord extends Record
+	{
+		/**
+		 * Type des enregistrements de style
+		 */
+		private final static int Kind = 3;
+
+		/**
+		 * Le type de figure (ou null s'il n'a pas encore été choisi)
+		 */
+		private final FigureType type;
+
+		/**
+		 * La couleur de remplissage (ou null si pas de remplissage ou si le
+		 * remplissage n'est pas une couleur unie)
+		 */
+		private final Color fill;
+
+		/**
+		 * La couleur de trait (ou null si pas de trait ou si le trait n'est
+		 * pas une couleur unie)
+		 */
+		private final Color edge;
+
+		/**
+		 * Etat de présence d'un remplissage
+		 */
+		private final boolean filled;
+
+		/**
+		 * Etat de présence d'une couleur de trait
+		 */
+		private final boolean edged;
+
+		/**
+		 * Le type de trait
+		 */
+		private final LineType lineType;
+
+		/**
+		 * L'épaisseur de trait
+		 */
+		private final float width;
+
+		/**
+		 * Constructeur à partir du style courant d'un dessin
+		 * @param time la date de l'enregistrement (en nanosecondes depuis le
+		 * début de la session)
+		 * @param drawing le dessin dont on enregistre le style courant
+		 */
+		public StyleRecord(long time, Drawing drawing)
+		{
+			super(time);
+			type = drawing.getFigureType();
+			Paint fillPaint = drawing.getFillpaint();
+			Paint edgePaint = drawing.getEdgePaint();
+			filled = fillPaint != null;
+			edged = edgePaint != null;
+			fill = fillPaint instanceof Color ? (Color) fillPaint : null;
+			edge = edgePaint instanceof Color ? (Color) edgePaint : null;
+			lineType = drawing.getEdgeType();
+			width = drawing.getEdgeWidth();
+		}
+
+		/**
+		 * Constructeur à partir d'un flux
+		 * @param time la date de l'enregistrement
+		 * @param in le flux dans lequel lire le contenu de l'enregistrement
+		 * @throws IOException si la lecture échoue
+		 */
+		private StyleRecord(long time, DataInput in) throws IOException
+		{
+			super(time);
+			int typeIndex = in.readByte();
+			type = typeIndex >= 0 ? FigureType.fromInteger(typeIndex) : null;
+			filled = in.readBoolean();
+			fill = in.readBoolean() ? new Color(in.readInt(), true) : null;
+			edged = in.readBoolean();
+			edge = in.readBoolean() ? new Color(in.readInt(), true) : null;
+			lineType = LineType.fromInteger(in.readByte());
+			width = in.readFloat();
+		}
+
+		@Override
+		protected int getKind()
+		{
+			return Kind;
+		}
+
+		@Override
+		protected void write(DataOutput out) throws IOException
+		{
+			out.writeByte(type != null ? type.intValue() : -1);
+			out.writeBoolean(filled);
+			out.writeBoolean(fill != null);
+			if (fill != null)
+			{
+				out.writeInt(fill.getRGB());
+			}
+			out.writeBoolean(edged);
+			out.writeBoolean(edge != null);
+			if (edge != null)
+			{
+				out.writeInt(edge.getRGB());
+			}
+			out.writeByte(lineType.intValue());
+			out.writeFloat(width);
+		}
+
+		/**
+		 * Le type de figure
+		 * @return le type de figure (ou null s'il n'a pas encore été choisi)
+		 */
+		public FigureType getType()
+		{
+			return type;
+		}
+
+		/**
+		 * Comparaison de styles
+		 * @param other l'autre enregistrement de style (éventuellement null)
+		 * @return true si other représente le même style que cet
+		 * enregistrement
+		 */
+		public boolean sameStyle(StyleRecord other)
+		{
+			return (other != null)
+			    && (type == other.type)
+			    && (filled == other.filled)
+			    && Objects.equals(fill, other.fill)
+			    && (edged == other.edged)
+			    && Objects.equals(edge, other.edge)
+			    && (lineType == other.lineType)
+			    && (width == other.width);
+		}
+
+		/**
+		 * Mise en place de ce style comme style courant d'un dessin
+		 * @param drawing le dessin dont on modifie le style courant
+		 */
+		public void applyTo(Drawing drawing)
+		{
+			drawing.setFigureType(type);
+			if (!filled)
+			{
+				drawing.setFillPaint(null);
+			}
+			else if (fill != null)
+			{
+				drawing.setFillPaint(fill);
+			}
+			if (!edged)
+			{
+				drawing.setEdgePaint(null);
+			}
+			else if (edge != null)
+			{
+				drawing.setEdgePaint(edge);
+			}
+			drawing.setEdgeType(lineType);
+			drawing.setEdgeWidth(width);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package metrics;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+
+import javax.swing.AbstractButton;
+import javax.swing.Action;
+import javax.swing.JToggleButton;
+
+import figures.Drawing;
+import utils.Log;
+
+/**
+ * Enregistreur de sessions d'édition ({@link Session}) : enregistre avec
+ * leur date les évènements souris et clavier reçus par la zone de dessin
+ * (ceux là même que reçoivent les listeners de figures), les invocations des
+ * actions de l'éditeur (transmises par {@link ActionMetrics}) ainsi que les
+ * changements du style courant du dessin, relevés juste avant chaque
+ * évènement ou action.
+ * Les évènements de la molette ne sont pas enregistrés : un listener de
+ * molette sur la zone de dessin empêcherait ces évènements de parvenir au
+ * JScrollPane englobant (et donc le défilement) pendant l'enregistrement, et
+ * aucun listener de figures ne les utilise.
+ * La session enregistrée peut ensuite être rejouée sur un nouveau dessin
+ * afin de constituer un test de performances reproductible. Le rejeu
+ * partant d'un dessin vide, l'enregistrement doit débuter alors que le
+ * dessin est vide pour que le rejeu soit fidèle.
+ * L'enregistreur est inactif par défaut auquel cas son coût se réduit à la
+ * lecture d'un booléen.
+ * @author davidroussel
+ */
+public class SessionRecorder
+{
+	/**
+	 * Etat d'enregistrement
+	 */
+	private static volatile boolean recording = false;
+
+	/**
+	 * La session en cours d'enregistrement (ou null)
+	 */
+	private static Session session = null;
+
+	/**
+	 * Date (en nanosecondes) du début de l'enregistrement
+	 */
+	private static long origin = 0L;
+
+	/**
+	 * Le dessin dont on relève le style courant
+	 */
+	private static Drawing drawing = null;
+
+	/**
+	 * Le composant (zone de dessin) dont on enregistre les évènements
+	 */
+	private static Component component = null;
+
+	/**
+	 * Le dernier style enregistré
+	 */
+	private static Session.StyleRecord style = null;
+
+	/**
+	 * Le listener enregistrant les évènements de la zone de dessin
+	 */
+	private static final InputListener listener = new InputListener();
+
+	/**
+	 * Etat d'enregistrement
+	 * @return true si une session est en cours d'enregistrement
+	 */
+	public static boolean isRecording()
+	{
+		return recording;
+	}
+
+	/**
+	 * Début de l'enregistrement d'une session (une éventuelle session en
+	 * cours d'enregistrement est abandonnée)
+	 * @param model le dessin dont on enregistre le style courant
+	 * @param panel la zone de dessin dont on enregistre les évènements
+	 */
+	public static synchronized void start(Drawing model, Component panel)
+	{
+		if (recording)
+		{
+			stop();
+		}
+		if (model.getFigureCount() > 0)
+		{
+			Log.warning("recording starts with {} figure(s) which will not be "
+			    + "replayed", model.getFigureCount());
+		}
+		drawing = model;
+		component = panel;
+		session = new Session(panel.getWidth(), panel.getHeight());
+		origin = System.nanoTime();
+		style = null;
+		component.addMouseListener(listener);
+		component.addMouseMotionListener(listener);
+		component.addKeyListener(listener);
+		recording = true;
+		Log.info("session recording started");
+	}
+
+	/**
+	 * Fin de l'enregistrement de la session
+	 * @return la session enregistrée ou bien null si aucune session n'était
+	 * en cours d'enregistrement
+	 */
+	public static synchronized Session stop()
+	{
+		if (!recording)
+		{
+			return null;
+		}
+		recording = false;
+		component.removeMouseListener(listener);
+		component.removeMouseMotionListener(listener);
+		component.removeKeyListener(listener);
+		Session result = session;
+		session = null;
+		drawing = null;
+		component = null;
+		style = null;
+		Log.info("session recording stopped: {} record(s) in {} ms",
+		    result.getRecords().size(), result.getDuration() / 1000000L);
+		return result;
+	}
+
+	/**
+	 * Enregistrement de l'invocation d'une action (à appeler avant
+	 * l'exécution de l'action, uniquement lorsque l'enregistrement est actif)
+	 * @param action l'action invoquée
+	 * @param event l'évènement déclenchant l'action
+	 */
+	public static synchronized void actionPerformed(Action action,
+	                                                ActionEvent event)
+	{
+		if (!recording)
+		{
+			return;
+		}
+		long time = System.nanoTime() - origin;
+		Object name = action.getValue(Action.NAME);
+		Boolean selected = null;
+		Object source = event.getSource();
+		if ((source instanceof AbstractButton)
+		    && (((AbstractButton) source)
+		        .getModel() instanceof JToggleButton.ToggleButtonModel))
+		{
+			selected = Boolean
+			    .valueOf(((AbstractButton) source).getModel().isSelected());
+		}
+		captureStyle(time);
+		session.add(new Session.ActionRecord(time,
+		    name != null ? name.toString() : action.getClass().getSimpleName(),
+		    selected));
+	}
+
+	/**
+	 * Enregistrement d'un évènement souris ou clavier de la zone de dessin
+	 * @param event l'évènement
+	 */
+	private static synchronized void input(InputEvent event)
+	{
+		if (!recording)
+		{
+			return;
+		}
+		long time = System.nanoTime() - origin;
+		captureStyle(time);
+		session.add(new Session.InputRecord(time, event));
+	}
+
+	/**
+	 * Enregistrement du style courant du dessin s'il a changé depuis le
+	 * dernier style enregistré
+	 * @param time la date de l'enregistrement
+	 */
+	private static void captureStyle(long time)
+	{
+		Session.StyleRecord current = new Session.StyleRecord(time, drawing);
+		if (!current.sameStyle(style))
+		{
+			session.add(current);
+			style = current;
+		}
+	}
+
+	/**
+	 * Listener transmettant à l'enregistreur les évènements de la zone de
+	 * dessin
+	 */
+	private static class InputListener implements MouseListener,
+	    MouseMotionListener, KeyListener
+	{
+		@Override
+		public void mouseClicked(MouseEvent e)
+		{
+			input(e);
+		}
+
+		@Override
+		public void mousePressed(MouseEvent e)
+		{
+			input(e);
+		}
+
+		@Override
+		public void mouseReleased(MouseEvent e)
+		{
+			input(e);
+		}
+
+		@Override
+		public void mouseEntered(MouseEvent e)
+		{
+			input(e);
+		}
+
+		@Override
+		public void mouseExited(MouseEvent e)
+		{
+			input(e);
+		}
+
+		@Override
+		public void mouseDragged(MouseEvent e)
+		{
+			input(e);
+		}
+
+		@Override
+		public void mouseMoved(MouseEvent e)
+		{
+			input(e);
+		}
+
+		@Override
+		public void keyTyped(KeyEvent e)
+		{
+			input(e);
+		}
+
+		@Override
+		public void keyPressed(KeyEvent e)
+		{
+			input(e);
+		}
+
+		@Override
+		public void keyReleased(KeyEvent e)
+		{
+			input(e);
+		}
+	}
+}
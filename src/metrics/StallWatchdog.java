@@ -0,0 +1,474 @@
+package metrics;
+
+import java.awt.EventQueue;
+import java.awt.Window;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import utils.Log;
+
+/**
+ * Chien de garde détectant les blocages de l'EDT (Event Dispatch Thread) :
+ * un thread (démon) dépose régulièrement un évènement minimal ("ping") dans
+ * la file des évènements et mesure le temps qu'il met à être traité. Lorsque
+ * ce temps dépasse un seuil, la pile de l'EDT est capturée et étiquetée avec
+ * le point d'entrée de l'éditeur en cours d'exécution (l'action de
+ * l'{@code EditorFrame}, le listener ou la méthode de dessin la plus proche
+ * de la distribution de l'évènement). Les blocages sont conservés dans un
+ * tampon circulaire borné ({@link #getStalls()}) qui peut être exporté
+ * ({@link #export(Writer)}).
+ * L'EDT n'est jamais instrumenté : il ne traite que les pings (un par
+ * période d'observation, et seulement lorsqu'une fenêtre est affichée) et
+ * n'est interrompu pour la capture de sa pile que lorsqu'il est déjà bloqué.
+ * Le seuil (en ms) est fourni par la propriété système "watchdog.threshold"
+ * (250 ms par défaut, 0 pour désactiver le chien de garde) et la taille du
+ * tampon par "watchdog.capacity" (32 blocages par défaut).
+ * @author davidroussel
+ */
+public class StallWatchdog
+{
+	/**
+	 * Seuil (en ms) au delà duquel l'EDT est considéré comme bloqué
+	 */
+	private final static long Threshold =
+	    Long.getLong("watchdog.threshold", 250L);
+
+	/**
+	 * Nombre maximum de blocages conservés
+	 */
+	private final static int Capacity =
+	    Math.max(1, Integer.getInteger("watchdog.capacity", 32));
+
+	/**
+	 * Nombre d'observations de l'EDT par seuil
+	 */
+	private final static int SamplesPerThreshold = 4;
+
+	/**
+	 * Préfixes des classes n'appartenant pas à l'éditeur (ignorées, comme
+	 * les classes générées pour les lambdas, lors de la recherche du point
+	 * d'entrée d'un blocage). Les actions mesurées par {@link ActionMetrics}
+	 * en font partie afin que le point d'entrée soit l'action décorée et non
+	 * le décorateur.
+	 */
+	private final static String[] PlatformPrefixes = {"java.", "javax.",
+	    "sun.", "jdk.", "com.sun.", "com.apple.", "apple.",
+	    StallWatchdog.class.getName(), ActionMetrics.class.getName()};
+
+	/**
+	 * Le thread d'observation de l'EDT (ou null s'il n'est pas démarré)
+	 */
+	private static Thread watcher = null;
+
+	/**
+	 * L'EDT (mis à jour à chaque ping puisque l'EDT peut être remplacé
+	 * après une exception)
+	 */
+	private static volatile Thread edt = null;
+
+	/**
+	 * L'instant (en ns) de dépôt du ping en attente ou bien 0 si le dernier
+	 * ping a été traité
+	 */
+	private static volatile long pending = 0L;
+
+	/**
+	 * Le ping déposé dans la file des évènements : enregistre l'EDT et
+	 * acquitte le ping en attente
+	 */
+	private final static Runnable Ping = () ->
+	{
+		edt = Thread.currentThread();
+		pending = 0L;
+	};
+
+	/**
+	 * Le tampon circulaire des blocages
+	 */
+	private final static Stall[] stalls = new Stall[Capacity];
+
+	/**
+	 * Le nombre total de blocages détectés (le prochain blocage est rangé à
+	 * l'index count % Capacity du tampon)
+	 */
+	private static long count = 0L;
+
+	/**
+	 * L'histogramme des durées des blocages
+	 */
+	private final static Histogram stallTime = Metrics.histogram("edt.stall");
+
+	/**
+	 * Démarrage du chien de garde (sans effet s'il est déjà démarré ou
+	 * désactivé)
+	 */
+	public static synchronized void start()
+	{
+		if ((watcher != null) || (Threshold <= 0))
+		{
+			return;
+		}
+		watcher = new Thread(StallWatchdog::watch, "EDT watchdog");
+		watcher.setDaemon(true);
+		watcher.setPriority(Thread.MAX_PRIORITY);
+		watcher.start();
+		Log.debug("EDT watchdog started with a {} ms threshold", Threshold);
+	}
+
+	/**
+	 * Arrêt du chien de garde
+	 */
+	public static synchronized void stop()
+	{
+		if (watcher != null)
+		{
+			watcher.interrupt();
+			watcher = null;
+		}
+	}
+
+	/**
+	 * Seuil de détection des blocages
+	 * @return le seuil (en ms) au delà duquel l'EDT est considéré comme
+	 * bloqué
+	 */
+	public static long getThreshold()
+	{
+		return Threshold;
+	}
+
+	/**
+	 * Nombre total de blocages détectés depuis le démarrage (y compris ceux
+	 * qui ne sont plus dans le tampon)
+	 * @return le nombre total de blocages détectés
+	 */
+	public static synchronized long getStallCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Les blocages conservés dans le tampon
+	 * @return une copie des blocages conservés, du plus ancien au plus
+	 * récent
+	 */
+	public static synchronized List<Stall> getStalls()
+	{
+		int size = (int) Math.min(count, Capacity);
+		List<Stall> list = new ArrayList<Stall>(size);
+		for (long i = count - size; i < count; i++)
+		{
+			list.add(stalls[(int) (i % Capacity)]);
+		}
+		return list;
+	}
+
+	/**
+	 * Vidage du tampon des blocages
+	 */
+	public static synchronized void clear()
+	{
+		for (int i = 0; i < Capacity; i++)
+		{
+			stalls[i] = null;
+		}
+		count = 0L;
+	}
+
+	/**
+	 * Export des blocages conservés (du plus ancien au plus récent) avec
+	 * leurs piles
+	 * @param writer le flux de sortie
+	 */
+	public static void export(Writer writer)
+	{
+		PrintWriter out = new PrintWriter(writer);
+		List<Stall> list = getStalls();
+		out.println("# " + list.size() + " EDT stall(s) over " + Threshold
+		    + " ms (" + getStallCount() + " detected)");
+		for (Stall stall : list)
+		{
+			out.println();
+			stall.print(out);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Export des blocages conservés dans un fichier
+	 * @param path le chemin du fichier
+	 * @throws IOException si le fichier ne peut pas être écrit
+	 */
+	public static void export(Path path) throws IOException
+	{
+		try (Writer writer =
+		    Files.newBufferedWriter(path, StandardCharsets.UTF_8))
+		{
+			export(writer);
+		}
+	}
+
+	/**
+	 * Boucle d'observation de l'EDT exécutée par le thread du chien de garde
+	 */
+	private static void watch()
+	{
+		long thresholdNanos = Threshold * 1000000L;
+		long period = Math.max(1L, Threshold / SamplesPerThreshold);
+		Stall current = null;
+		while (!Thread.currentThread().isInterrupted())
+		{
+			long posted = pending;
+			long now = System.nanoTime();
+			if (posted == 0L)
+			{
+				if (current != null)
+				{
+					end(current);
+					current = null;
+				}
+				if (isShowing())
+				{
+					pending = now;
+					EventQueue.invokeLater(Ping);
+				}
+			}
+			else if (now - posted > thresholdNanos)
+			{
+				if (current == null)
+				{
+					current = begin(posted, now);
+				}
+				else
+				{
+					current.duration = now - posted;
+				}
+			}
+
+			try
+			{
+				Thread.sleep(period);
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Présence d'au moins une fenêtre affichable : l'EDT n'est observé que
+	 * dans ce cas afin que les pings ne l'empêchent pas de s'arrêter
+	 * lorsque toutes les fenêtres sont fermées
+	 * @return true si au moins une fenêtre est affichable
+	 */
+	private static boolean isShowing()
+	{
+		for (Window window : Window.getWindows())
+		{
+			if (window.isDisplayable())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Début d'un blocage : capture de la pile de l'EDT et rangement du
+	 * blocage dans le tampon
+	 * @param posted l'instant (en ns) de dépôt du ping non traité
+	 * @param now l'instant courant (en ns)
+	 * @return le nouveau blocage ou bien null si l'EDT n'est pas encore
+	 * connu
+	 */
+	private static Stall begin(long posted, long now)
+	{
+		Thread thread = edt;
+		if (thread == null)
+		{
+			return null;
+		}
+		StackTraceElement[] stack = thread.getStackTrace();
+		long elapsed = now - posted;
+		Stall stall = new Stall(System.currentTimeMillis() - (elapsed / 1000000L),
+		                        elapsed,
+		                        entryPoint(stack),
+		                        thread.getName(),
+		                        stack);
+		synchronized (StallWatchdog.class)
+		{
+			stalls[(int) (count % Capacity)] = stall;
+			count++;
+		}
+		Log.warning("EDT stalled for more than {} ms in {}", Threshold,
+		    stall.getTag());
+		return stall;
+	}
+
+	/**
+	 * Fin d'un blocage : l'EDT a traité le ping
+	 * @param stall le blocage terminé (sa durée est celle observée lors de
+	 * la dernière observation où l'EDT était encore bloqué)
+	 */
+	private static void end(Stall stall)
+	{
+		stallTime.record(stall.duration);
+		Log.info("EDT stall in {} lasted {} ms", stall.getTag(),
+		    stall.getDurationMillis());
+	}
+
+	/**
+	 * Point d'entrée de l'éditeur dans une pile : la méthode de l'éditeur
+	 * la plus proche de la distribution de l'évènement (la plus basse dans
+	 * la pile)
+	 * @param stack la pile de l'EDT
+	 * @return le point d'entrée sous la forme "Classe.méthode" ou bien
+	 * "<platform>" si aucune méthode de l'éditeur n'est dans la pile
+	 */
+	static String entryPoint(StackTraceElement[] stack)
+	{
+		for (int i = stack.length - 1; i >= 0; i--)
+		{
+			String className = stack[i].getClassName();
+			boolean platform = className.contains("$$Lambda");
+			for (String prefix : PlatformPrefixes)
+			{
+				if (className.startsWith(prefix))
+				{
+					platform = true;
+					break;
+				}
+			}
+			if (!platform)
+			{
+				return className.substring(className.lastIndexOf('.') + 1)
+				    + "." + stack[i].getMethodName();
+			}
+		}
+		return "<platform>";
+	}
+
+	/**
+	 * Blocage de l'EDT
+	 */
+	public static class Stall
+	{
+		/**
+		 * L'instant (en ms depuis l'epoch) du début du blocage
+		 */
+		private final long start;
+
+		/**
+		 * La durée (en ns) du blocage, mise à jour par le chien de garde
+		 * tant que le blocage dure
+		 */
+		private volatile long duration;
+
+		/**
+		 * Le point d'entrée de l'éditeur en cours d'exécution lors du blocage
+		 */
+		private final String tag;
+
+		/**
+		 * Le nom de l'EDT
+		 */
+		private final String threadName;
+
+		/**
+		 * La pile de l'EDT lors de la détection du blocage
+		 */
+		private final StackTraceElement[] stack;
+
+		/**
+		 * Constructeur d'un blocage
+		 * @param start l'instant (en ms depuis l'epoch) du début du blocage
+		 * @param duration la durée (en ns) du blocage lors de sa détection
+		 * @param tag le point d'entrée de l'éditeur en cours d'exécution
+		 * @param threadName le nom de l'EDT
+		 * @param stack la pile de l'EDT
+		 */
+		private Stall(long start,
+		              long duration,
+		              String tag,
+		              String threadName,
+		              StackTraceElement[] stack)
+		{
+			this.start = start;
+			this.duration = duration;
+			this.tag = tag;
+			this.threadName = threadName;
+			this.stack = stack;
+		}
+
+		/**
+		 * Début du blocage
+		 * @return l'instant (en ms depuis l'epoch) du début du blocage
+		 */
+		public long getStart()
+		{
+			return start;
+		}
+
+		/**
+		 * Durée du blocage
+		 * @return la durée (en ms) du blocage (ou la durée observée jusqu'ici
+		 * si le blocage dure encore)
+		 */
+		public long getDurationMillis()
+		{
+			return duration / 1000000L;
+		}
+
+		/**
+		 * Point d'entrée de l'éditeur en cours d'exécution lors du blocage
+		 * @return le point d'entrée sous la forme "Classe.méthode"
+		 */
+		public String getTag()
+		{
+			return tag;
+		}
+
+		/**
+		 * Pile de l'EDT lors de la détection du blocage
+		 * @return une copie de la pile de l'EDT
+		 */
+		public StackTraceElement[] getStack()
+		{
+			return stack.clone();
+		}
+
+		/**
+		 * Impression du blocage et de la pile de l'EDT
+		 * @param out le flux de sortie
+		 */
+		public void print(PrintWriter out)
+		{
+			out.println(this);
+			for (StackTraceElement element : stack)
+			{
+				out.println("\tat " + element);
+			}
+		}
+
+		/**
+		 * Représentation sous forme de chaîne de caractères
+		 * @return la date, la durée et le point d'entrée du blocage
+		 */
+		@Override
+		public String toString()
+		{
+			return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS")
+			    .format(new Date(start)) + " " + threadName + " stalled "
+			    + getDurationMillis() + " ms in " + tag;
+		}
+	}
+}
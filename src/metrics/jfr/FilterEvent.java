@@ -0,0 +1,36 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evènement JFR correspondant à l'évaluation des filtres sur le flux des
+ * figures ({@link figures.Drawing#stream()})
+ * @author davidroussel
+ */
+@Name("editor.Filter")
+@Label("Filter Evaluation")
+@Category({"Figures Editor", "Model"})
+@Description("Evaluation of the figure filters")
+public class FilterEvent extends jdk.jfr.Event
+{
+	/**
+	 * Nombre de figures soumises aux filtres
+	 */
+	@Label("Figures In")
+	public int figuresIn;
+
+	/**
+	 * Nombre de figures ayant passé les filtres
+	 */
+	@Label("Figures Out")
+	public int figuresOut;
+
+	/**
+	 * Les filtres actifs
+	 */
+	@Label("Filters")
+	public String filters;
+}
@@ -0,0 +1,46 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evènement JFR correspondant à une opération de l'historique
+ * ({@link history.HistoryManager#record()},
+ * {@link history.HistoryManager#undo()} ou
+ * {@link history.HistoryManager#redo()})
+ * @author davidroussel
+ */
+@Name("editor.History")
+@Label("History Operation")
+@Category({"Figures Editor", "History"})
+@Description("Record, undo or redo of the drawing history")
+public class HistoryEvent extends jdk.jfr.Event
+{
+	/**
+	 * L'opération réalisée : "record", "undo" ou "redo"
+	 */
+	@Label("Operation")
+	public String operation;
+
+	/**
+	 * Nombre d'éléments (figures) de l'entrée enregistrée ou restituée
+	 */
+	@Label("Entry Size")
+	public int elements;
+
+	/**
+	 * Indique si l'enregistrement a été ignoré (état identique au précédent)
+	 */
+	@Label("Skipped")
+	public boolean skipped;
+
+	/**
+	 * Mémoire occupée par l'historique après l'opération
+	 */
+	@Label("History Size")
+	@DataAmount
+	public long usedBytes;
+}
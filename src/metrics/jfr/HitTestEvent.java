@@ -0,0 +1,42 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evènement JFR correspondant à la recherche de la figure située sous un
+ * point ({@link figures.Drawing#getFigureAt(java.awt.geom.Point2D)})
+ * @author davidroussel
+ */
+@Name("editor.HitTest")
+@Label("Hit Test")
+@Category({"Figures Editor", "Model"})
+@Description("Search of the figure under a point")
+public class HitTestEvent extends jdk.jfr.Event
+{
+	/**
+	 * Abscisse du point testé
+	 */
+	@Label("X")
+	public double x;
+
+	/**
+	 * Ordonnée du point testé
+	 */
+	@Label("Y")
+	public double y;
+
+	/**
+	 * Nombre de figures testées
+	 */
+	@Label("Figures Tested")
+	public int figures;
+
+	/**
+	 * Indique si une figure a été trouvée sous le point
+	 */
+	@Label("Hit")
+	public boolean hit;
+}
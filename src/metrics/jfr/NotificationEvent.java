@@ -0,0 +1,50 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evènement JFR correspondant à la notification des observateurs du modèle
+ * de dessin ({@link figures.Drawing})
+ * @author davidroussel
+ */
+@Name("editor.Notification")
+@Label("Model Notification")
+@Category({"Figures Editor", "Model"})
+@Description("Notification of the drawing observers")
+public class NotificationEvent extends jdk.jfr.Event
+{
+	/**
+	 * Nombre d'observateurs notifiés
+	 */
+	@Label("Observers")
+	public int observers;
+
+	/**
+	 * Nombre de figures ajoutées (si la notification les précise)
+	 */
+	@Label("Added")
+	public int added;
+
+	/**
+	 * Nombre de figures retirées (si la notification les précise)
+	 */
+	@Label("Removed")
+	public int removed;
+
+	/**
+	 * Nombre de figures modifiées (si la notification les précise)
+	 */
+	@Label("Changed")
+	public int changed;
+
+	/**
+	 * Indique si la notification précise les figures modifiées
+	 * (notification par {@link figures.DrawingEvent}) ou bien si tout le
+	 * dessin doit être reconsidéré
+	 */
+	@Label("Detailed")
+	public boolean detailed;
+}
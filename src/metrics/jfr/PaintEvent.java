@@ -0,0 +1,42 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evènement JFR correspondant au dessin d'une image de la zone de dessin
+ * ({@link widgets.DrawingPanel#paintComponent(java.awt.Graphics)})
+ * @author davidroussel
+ */
+@Name("editor.Paint")
+@Label("Paint Frame")
+@Category({"Figures Editor", "Rendering"})
+@Description("Painting of the drawing panel")
+public class PaintEvent extends jdk.jfr.Event
+{
+	/**
+	 * Nombre de figures dessinées
+	 */
+	@Label("Figures Drawn")
+	public int figures;
+
+	/**
+	 * Nombre de figures ignorées car en dehors de la zone à redessiner
+	 */
+	@Label("Figures Culled")
+	public int culled;
+
+	/**
+	 * Largeur de la zone redessinée
+	 */
+	@Label("Clip Width")
+	public int clipWidth;
+
+	/**
+	 * Hauteur de la zone redessinée
+	 */
+	@Label("Clip Height")
+	public int clipHeight;
+}
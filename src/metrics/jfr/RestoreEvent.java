@@ -0,0 +1,44 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evènement JFR correspondant à la réhydratation d'une entrée compressée ou
+ * déversée de l'historique lors d'un undo ou d'un redo
+ * @author davidroussel
+ */
+@Name("editor.HistoryRestore")
+@Label("History Restore")
+@Category({"Figures Editor", "History"})
+@Description("Rehydration of a compressed or spilled history entry")
+public class RestoreEvent extends jdk.jfr.Event
+{
+	/**
+	 * Le niveau de stockage de l'entrée avant sa réhydratation
+	 */
+	@Label("Tier")
+	public String tier;
+
+	/**
+	 * Nombre d'éléments (figures) de l'entrée
+	 */
+	@Label("Entry Size")
+	public int elements;
+
+	/**
+	 * Taille des données compressées de l'entrée
+	 */
+	@Label("Compressed Size")
+	@DataAmount
+	public long compressedBytes;
+
+	/**
+	 * Indique si la réhydratation a réussi
+	 */
+	@Label("Succeeded")
+	public boolean succeeded;
+}
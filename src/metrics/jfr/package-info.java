@@ -0,0 +1,13 @@
+/**
+ * Package contenant les évènements Java Flight Recorder émis par l'éditeur
+ * sur ses chemins critiques (dessin, recherche de figures, historique,
+ * filtrage et notifications du modèle). Ces évènements ne coûtent
+ * (presque) rien tant qu'aucun enregistrement n'est en cours et permettent
+ * d'analyser a posteriori une session enregistrée avec
+ * <code>jcmd &lt;pid&gt; JFR.start</code> (ou l'option
+ * <code>-XX:StartFlightRecording</code>).
+ * Ils apparaissent dans la catégorie "Figures Editor" de JDK Mission
+ * Control.
+ * @author davidroussel
+ */
+package metrics.jfr;
@@ -0,0 +1,88 @@
+package metrics.jmx;
+
+/**
+ * Interface d'administration des caches de l'éditeur : flyweights des
+ * paints, traits et icônes, tuiles des paints mis en cache et contours des
+ * figures
+ * @author davidroussel
+ */
+public interface CachesMXBean
+{
+	/**
+	 * Nombre de paints partagés
+	 * @return le nombre de paints de la {@link utils.PaintFactory}
+	 */
+	public abstract int getPaintCount();
+
+	/**
+	 * Taux de succès de la {@link utils.PaintFactory}
+	 * @return la proportion (entre 0 et 1) des demandes satisfaites par un
+	 * paint déjà présent
+	 */
+	public abstract double getPaintHitRate();
+
+	/**
+	 * Nombre de traits partagés
+	 * @return le nombre de traits de la {@link utils.StrokeFactory}
+	 */
+	public abstract int getStrokeCount();
+
+	/**
+	 * Taux de succès de la {@link utils.StrokeFactory}
+	 * @return la proportion (entre 0 et 1) des demandes satisfaites par un
+	 * trait déjà présent
+	 */
+	public abstract double getStrokeHitRate();
+
+	/**
+	 * Nombre d'icônes chargées
+	 * @return le nombre d'icônes de l'{@link utils.IconFactory}
+	 */
+	public abstract int getIconCount();
+
+	/**
+	 * Nombre de tuiles du cache des paints
+	 * @return le nombre de tuiles conservées par {@link utils.CachedPaint}
+	 */
+	public abstract int getTileCount();
+
+	/**
+	 * Taille des tuiles du cache des paints
+	 * @return la taille (en octets) des tuiles conservées par
+	 * {@link utils.CachedPaint}
+	 */
+	public abstract long getTileBytes();
+
+	/**
+	 * Taux de succès du cache des tuiles
+	 * @return la proportion (entre 0 et 1) des contextes servis à partir
+	 * d'une tuile existante
+	 */
+	public abstract double getTileHitRate();
+
+	/**
+	 * Nombre de contours du cache des contours de figures
+	 * @return le nombre de contours conservés par
+	 * {@link figures.OutlineCache}
+	 */
+	public abstract int getOutlineCount();
+
+	/**
+	 * Mémoire occupée par le cache des contours
+	 * @return la taille estimée (en octets) des contours conservés
+	 */
+	public abstract long getOutlineBytes();
+
+	/**
+	 * Taux de succès du cache des contours
+	 * @return la proportion (entre 0 et 1) des tests pour lesquels le
+	 * contour n'a pas été recalculé
+	 */
+	public abstract double getOutlineHitRate();
+
+	/**
+	 * Vidage des caches de rendu (tuiles et contours). Les flyweights ne
+	 * sont pas vidés puisque les figures partagent leurs éléments
+	 */
+	public abstract void clearRenderCaches();
+}
@@ -0,0 +1,26 @@
+package metrics.jmx;
+
+/**
+ * Interface d'administration du modèle de dessin
+ * @author davidroussel
+ */
+public interface DrawingMXBean
+{
+	/**
+	 * Nombre de figures du dessin
+	 * @return le nombre de figures du dessin
+	 */
+	public abstract int getFigureCount();
+
+	/**
+	 * Nombre de figures sélectionnées
+	 * @return le nombre de figures sélectionnées
+	 */
+	public abstract int getSelectionCount();
+
+	/**
+	 * Etat du filtrage des figures
+	 * @return true si les figures sont filtrées
+	 */
+	public abstract boolean isFiltering();
+}
@@ -0,0 +1,63 @@
+package metrics.jmx;
+
+/**
+ * Interface d'administration de l'historique (undo / redo)
+ * @author davidroussel
+ */
+public interface HistoryMXBean
+{
+	/**
+	 * Nombre d'entrées de la pile des undo
+	 * @return le nombre d'entrées de la pile des undo
+	 */
+	public abstract int getUndoDepth();
+
+	/**
+	 * Nombre d'entrées de la pile des redo
+	 * @return le nombre d'entrées de la pile des redo
+	 */
+	public abstract int getRedoDepth();
+
+	/**
+	 * Mémoire occupée par l'historique
+	 * @return la taille estimée (en octets) de l'historique
+	 */
+	public abstract long getUsedBytes();
+
+	/**
+	 * Budget mémoire de l'historique
+	 * @return le budget mémoire (en octets) de l'historique
+	 */
+	public abstract long getByteBudget();
+
+	/**
+	 * Changement du budget mémoire de l'historique. Les entrées les plus
+	 * anciennes sont oubliées si le nouveau budget est dépassé
+	 * @param byteBudget le nouveau budget mémoire (en octets)
+	 */
+	public abstract void setByteBudget(long byteBudget);
+
+	/**
+	 * Taille des entrées compressées en mémoire
+	 * @return la taille (en octets) des entrées compressées
+	 */
+	public abstract long getCompressedBytes();
+
+	/**
+	 * Taille des entrées déversées dans le fichier d'échange
+	 * @return la taille (en octets) des entrées déversées
+	 */
+	public abstract long getSpilledBytes();
+
+	/**
+	 * Nombre d'entrées oubliées pour respecter le budget ou la profondeur
+	 * @return le nombre d'entrées oubliées
+	 */
+	public abstract long getEvictionCount();
+
+	/**
+	 * Nombre d'enregistrements ignorés car identiques au précédent
+	 * @return le nombre d'enregistrements ignorés
+	 */
+	public abstract long getSkippedRecordCount();
+}
@@ -0,0 +1,428 @@
+package metrics.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.swing.SwingUtilities;
+
+import figures.Drawing;
+import figures.OutlineCache;
+import history.HistoryManager;
+import metrics.Histogram;
+import metrics.Metrics;
+import utils.CachedPaint;
+import utils.FlyweightFactory;
+import utils.IconFactory;
+import utils.Log;
+import utils.PaintFactory;
+import utils.StrokeFactory;
+import widgets.DrawingPanel;
+import widgets.enums.RenderQuality;
+
+/**
+ * Enregistrement des MXBeans de l'éditeur dans le serveur de MBeans de la
+ * plateforme :
+ * <ul>
+ * <li>"editor:type=Drawing" : {@link DrawingMXBean}</li>
+ * <li>"editor:type=History" : {@link HistoryMXBean}</li>
+ * <li>"editor:type=Caches" : {@link CachesMXBean}</li>
+ * <li>"editor:type=Rendering" : {@link RenderingMXBean}</li>
+ * </ul>
+ * Les MXBeans sont appelés depuis les threads du serveur JMX : les lectures
+ * se contentent de valeurs éventuellement légèrement périmées, et les
+ * modifications du dessin ou de l'historique sont confiées à l'EDT.
+ * @author davidroussel
+ */
+public class Management
+{
+	/**
+	 * Domaine des noms des MXBeans de l'éditeur
+	 */
+	public final static String Domain = "editor";
+
+	/**
+	 * Les noms des MXBeans enregistrés
+	 */
+	private static final List<ObjectName> registered =
+	    new ArrayList<ObjectName>();
+
+	/**
+	 * Enregistrement des MXBeans d'un éditeur (ceux d'un éventuel éditeur
+	 * précédent sont retirés)
+	 * @param drawing le modèle de dessin
+	 * @param history l'historique du dessin
+	 * @param panel la zone de dessin
+	 * @return true si les MXBeans ont été enregistrés
+	 */
+	public static synchronized boolean register(Drawing drawing,
+	                                            HistoryManager<?> history,
+	                                            DrawingPanel panel)
+	{
+		unregister();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			register(server, "Drawing", new DrawingBean(drawing));
+			register(server, "History", new HistoryBean(history));
+			register(server, "Caches", new CachesBean());
+			register(server, "Rendering", new RenderingBean(panel));
+			return true;
+		}
+		catch (JMException e)
+		{
+			Log.warning("unable to register MXBeans : {}",
+			    e.getLocalizedMessage());
+			unregister();
+			return false;
+		}
+	}
+
+	/**
+	 * Retrait des MXBeans enregistrés
+	 */
+	public static synchronized void unregister()
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : registered)
+		{
+			try
+			{
+				server.unregisterMBean(name);
+			}
+			catch (JMException e)
+			{
+				Log.warning("unable to unregister {} : {}", name,
+				    e.getLocalizedMessage());
+			}
+		}
+		registered.clear();
+	}
+
+	/**
+	 * Enregistrement d'un MXBean
+	 * @param server le serveur de MBeans
+	 * @param type le type du MXBean (utilisé dans son nom)
+	 * @param bean le MXBean
+	 * @throws JMException si le MXBean n'a pas pu être enregistré
+	 */
+	private static void register(MBeanServer server, String type, Object bean)
+	    throws JMException
+	{
+		ObjectName name = new ObjectName(Domain + ":type=" + type);
+		if (server.isRegistered(name))
+		{
+			server.unregisterMBean(name);
+		}
+		server.registerMBean(bean, name);
+		registered.add(name);
+	}
+
+	/**
+	 * Taux de succès d'un cache
+	 * @param hits le nombre de succès
+	 * @param misses le nombre d'échecs
+	 * @return la proportion (entre 0 et 1) de succès ou bien 0 si le cache
+	 * n'a jamais été utilisé
+	 */
+	private static double hitRate(long hits, long misses)
+	{
+		long total = hits + misses;
+		return total > 0 ? (double) hits / (double) total : 0.0;
+	}
+
+	/**
+	 * MXBean du modèle de dessin
+	 */
+	private static class DrawingBean implements DrawingMXBean
+	{
+		/**
+		 * Le modèle de dessin
+		 */
+		private final Drawing drawing;
+
+		/**
+		 * Constructeur
+		 * @param drawing le modèle de dessin
+		 */
+		public DrawingBean(Drawing drawing)
+		{
+			this.drawing = drawing;
+		}
+
+		@Override
+		public int getFigureCount()
+		{
+			return drawing.getFigureCount();
+		}
+
+		@Override
+		public int getSelectionCount()
+		{
+			return drawing.getSelectionCount();
+		}
+
+		@Override
+		public boolean isFiltering()
+		{
+			return drawing.getFiltering();
+		}
+	}
+
+	/**
+	 * MXBean de l'historique
+	 */
+	private static class HistoryBean implements HistoryMXBean
+	{
+		/**
+		 * L'historique
+		 */
+		private final HistoryManager<?> history;
+
+		/**
+		 * Constructeur
+		 * @param history l'historique
+		 */
+		public HistoryBean(HistoryManager<?> history)
+		{
+			this.history = history;
+		}
+
+		@Override
+		public int getUndoDepth()
+		{
+			return history.undoSize();
+		}
+
+		@Override
+		public int getRedoDepth()
+		{
+			return history.redoSize();
+		}
+
+		@Override
+		public long getUsedBytes()
+		{
+			return history.getUsedBytes();
+		}
+
+		@Override
+		public long getByteBudget()
+		{
+			return history.getByteBudget();
+		}
+
+		@Override
+		public void setByteBudget(long byteBudget)
+		{
+			if (byteBudget > 0)
+			{
+				SwingUtilities.invokeLater(() ->
+				{
+					history.setByteBudget(byteBudget);
+				});
+			}
+		}
+
+		@Override
+		public long getCompressedBytes()
+		{
+			return history.getCompressedBytes();
+		}
+
+		@Override
+		public long getSpilledBytes()
+		{
+			return history.getSpilledBytes();
+		}
+
+		@Override
+		public long getEvictionCount()
+		{
+			return history.getEvictionCount();
+		}
+
+		@Override
+		public long getSkippedRecordCount()
+		{
+			return history.getSkippedRecordCount();
+		}
+	}
+
+	/**
+	 * MXBean des caches
+	 */
+	private static class CachesBean implements CachesMXBean
+	{
+		@Override
+		public int getPaintCount()
+		{
+			return PaintFactory.getFactory().size();
+		}
+
+		@Override
+		public double getPaintHitRate()
+		{
+			FlyweightFactory<?> factory = PaintFactory.getFactory();
+			return hitRate(factory.getHitCount(), factory.getMissCount());
+		}
+
+		@Override
+		public int getStrokeCount()
+		{
+			return StrokeFactory.getFactory().size();
+		}
+
+		@Override
+		public double getStrokeHitRate()
+		{
+			FlyweightFactory<?> factory = StrokeFactory.getFactory();
+			return hitRate(factory.getHitCount(), factory.getMissCount());
+		}
+
+		@Override
+		public int getIconCount()
+		{
+			return IconFactory.getFactory().size();
+		}
+
+		@Override
+		public int getTileCount()
+		{
+			return CachedPaint.getCacheSize();
+		}
+
+		@Override
+		public long getTileBytes()
+		{
+			return CachedPaint.getCacheBytes();
+		}
+
+		@Override
+		public double getTileHitRate()
+		{
+			return hitRate(CachedPaint.getHitCount(),
+			               CachedPaint.getMissCount());
+		}
+
+		@Override
+		public int getOutlineCount()
+		{
+			return OutlineCache.size();
+		}
+
+		@Override
+		public long getOutlineBytes()
+		{
+			return OutlineCache.getUsedBytes();
+		}
+
+		@Override
+		public double getOutlineHitRate()
+		{
+			return hitRate(OutlineCache.getHitCount(),
+			               OutlineCache.getMissCount());
+		}
+
+		@Override
+		public void clearRenderCaches()
+		{
+			CachedPaint.clearCache();
+			OutlineCache.clear();
+		}
+	}
+
+	/**
+	 * MXBean du rendu
+	 */
+	private static class RenderingBean implements RenderingMXBean
+	{
+		/**
+		 * La zone de dessin
+		 */
+		private final DrawingPanel panel;
+
+		/**
+		 * L'histogramme des durées de dessin de la zone de dessin
+		 */
+		private final Histogram paintTime;
+
+		/**
+		 * Constructeur
+		 * @param panel la zone de dessin
+		 */
+		public RenderingBean(DrawingPanel panel)
+		{
+			this.panel = panel;
+			paintTime = Metrics.histogram("panel.paint");
+		}
+
+		@Override
+		public String getRenderQuality()
+		{
+			return panel.getRenderQuality().name();
+		}
+
+		@Override
+		public void setRenderQuality(String quality)
+		    throws IllegalArgumentException
+		{
+			panel.setRenderQuality(
+			    RenderQuality.valueOf(quality.trim().toUpperCase()));
+		}
+
+		@Override
+		public String[] getRenderQualities()
+		{
+			RenderQuality[] values = RenderQuality.values();
+			String[] names = new String[values.length];
+			for (int i = 0; i < values.length; i++)
+			{
+				names[i] = values[i].name();
+			}
+			return names;
+		}
+
+		@Override
+		public boolean isOverlayVisible()
+		{
+			return panel.isOverlayVisible();
+		}
+
+		@Override
+		public void setOverlayVisible(boolean visible)
+		{
+			SwingUtilities.invokeLater(() ->
+			{
+				panel.setOverlayVisible(visible);
+			});
+		}
+
+		@Override
+		public long getFrameCount()
+		{
+			return paintTime.snapshot().getCount();
+		}
+
+		@Override
+		public double getPaintP50Millis()
+		{
+			return paintTime.snapshot().getValueAtPercentile(50.0) / 1e6;
+		}
+
+		@Override
+		public double getPaintP99Millis()
+		{
+			return paintTime.snapshot().getValueAtPercentile(99.0) / 1e6;
+		}
+
+		@Override
+		public void repaint()
+		{
+			panel.repaint();
+		}
+	}
+}
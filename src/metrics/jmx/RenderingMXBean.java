@@ -0,0 +1,64 @@
+package metrics.jmx;
+
+/**
+ * Interface d'administration du rendu de la zone de dessin
+ * @author davidroussel
+ */
+public interface RenderingMXBean
+{
+	/**
+	 * Niveau de qualité du rendu
+	 * @return le nom du niveau de qualité du rendu courant
+	 */
+	public abstract String getRenderQuality();
+
+	/**
+	 * Changement du niveau de qualité du rendu
+	 * @param quality le nom du nouveau niveau de qualité (cf.
+	 * {@link #getRenderQualities()})
+	 * @throws IllegalArgumentException si le niveau est inconnu
+	 */
+	public abstract void setRenderQuality(String quality)
+	    throws IllegalArgumentException;
+
+	/**
+	 * Niveaux de qualité du rendu disponibles
+	 * @return les noms des niveaux de qualité du rendu
+	 */
+	public abstract String[] getRenderQualities();
+
+	/**
+	 * Etat d'affichage des performances par dessus le dessin
+	 * @return true si les performances sont affichées
+	 */
+	public abstract boolean isOverlayVisible();
+
+	/**
+	 * Affichage ou masquage des performances par dessus le dessin
+	 * @param visible true pour afficher les performances
+	 */
+	public abstract void setOverlayVisible(boolean visible);
+
+	/**
+	 * Nombre d'images dessinées depuis le lancement
+	 * @return le nombre d'images dessinées
+	 */
+	public abstract long getFrameCount();
+
+	/**
+	 * Durée médiane de dessin d'une image depuis le lancement
+	 * @return la durée médiane (en ms) de dessin d'une image
+	 */
+	public abstract double getPaintP50Millis();
+
+	/**
+	 * Percentile 99 de la durée de dessin d'une image depuis le lancement
+	 * @return le percentile 99 (en ms) de la durée de dessin d'une image
+	 */
+	public abstract double getPaintP99Millis();
+
+	/**
+	 * Redessin complet de la zone de dessin
+	 */
+	public abstract void repaint();
+}
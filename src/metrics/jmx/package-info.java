@@ -0,0 +1,9 @@
+/**
+ * Package contenant les MXBeans permettant d'inspecter et de régler un
+ * éditeur en cours d'exécution avec une console JMX (jconsole, JDK Mission
+ * Control, etc.) : dessin, historique, caches et rendu. Les MXBeans sont
+ * enregistrés dans le serveur de MBeans de la plateforme sous le domaine
+ * "editor" par {@link metrics.jmx.Management}.
+ * @author davidroussel
+ */
+package metrics.jmx;
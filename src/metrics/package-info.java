@@ -0,0 +1,8 @@
+/**
+ * Package contenant un petit système de mesures (compteurs, jauges et
+ * histogrammes de durées) permettant de savoir où passe le temps lors de
+ * l'utilisation de l'éditeur. Les mesures sont enregistrées par nom dans le
+ * registre {@link metrics.Metrics}.
+ * @author davidroussel
+ */
+package metrics;
@@ -120,74 +120,33 @@ public class CColor extends Color implements Comparable<CColor>
 		super(r, g, b, a);
 	}
 
+	/**
+	 * Comparaison avec une autre couleur comparable : par composante rouge,
+	 * puis verte, puis bleue et enfin alpha
+	 * @param o la couleur à comparer
+	 * @return un entier négatif, nul ou positif selon que cette couleur est
+	 * inférieure, égale ou supérieure à o
+	 */
 	@Override
 	public int compareTo(CColor o)
 	{
-		int red1 = getRed();
-		int red2 = o.getRed();
-		if (red1 < red2)
-		{
-			return -1;
-		}
-		else // red >= o.red
-		{
-			if (red1 > red2)
-			{
-				return 1;
-			}
-			else // red1 == red2
-			{
-				int green1 = getGreen();
-				int green2 = o.getGreen();
-				if (green1 < green2)
-				{
-					return -1;
-				}
-				else // green1 >= green2
-				{
-					if (green1 > green2)
-					{
-						return 1;
-					}
-					else // green1 == green2
-					{
-						int blue1 = getBlue();
-						int blue2 = o.getBlue();
-						if (blue1 < blue2)
-						{
-							return -1;
-						}
-						else // blue1 >= blue2
-						{
-							if (blue1 > blue2)
-							{
-								return 1;
-							}
-							else // blue1 == blue2
-							{
-								int alpha1 = getAlpha();
-								int alpha2 = o.getAlpha();
-								if (alpha1 < alpha2)
-								{
-									return -1;
-								}
-								else // alpha1 >= alpha2
-								{
-									if (alpha1 > alpha2)
-									{
-										return 1;
-									}
-									else
-									{
-										return 0;
-									}
-								}
-							}
-						}
-					}
-				}
-			}
-		}
+		return compareARGB(getRGB(), o.getRGB());
+	}
+
+	/**
+	 * Comparaison de deux couleurs empaquetées au format ARGB dans l'ordre
+	 * de {@link #compareTo(CColor)} : les composantes sont réordonnées en
+	 * RGBA par une rotation de 8 bits afin de n'effectuer qu'une seule
+	 * comparaison (non signée)
+	 * @param argb1 la première couleur
+	 * @param argb2 la seconde couleur
+	 * @return un entier négatif, nul ou positif selon que la première
+	 * couleur est inférieure, égale ou supérieure à la seconde
+	 */
+	public static int compareARGB(int argb1, int argb2)
+	{
+		return Integer.compareUnsigned(Integer.rotateLeft(argb1, 8),
+		                               Integer.rotateLeft(argb2, 8));
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,595 @@
+package utils;
+
+import java.awt.Paint;
+import java.awt.PaintContext;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Paint} (dégradé, texture, hachures, etc.) dont les rasters produits
+ * par le {@link PaintContext} sont mis en cache.
+ * Chaque figure étant définie autour de son centre puis translatée, le
+ * raster d'un même {@link Paint} utilisé par plusieurs figures ne diffère
+ * d'une figure à l'autre que d'une translation entière lorsque les figures
+ * ne sont ni tournées ni mises à l'échelle différemment. Le cache est donc
+ * indexé par le paint et par la partie linéaire (et fractionnaire) de la
+ * transformation vers le périphérique : la partie entière de la translation
+ * est retirée et réappliquée lors de la lecture des tuiles. Une tuile est
+ * agrandie lorsqu'une zone plus grande est demandée, jusqu'à
+ * {@link #MaxTilePixels} pixels au delà desquels le {@link Paint} d'origine
+ * est utilisé directement. Le cache est borné par la taille totale de ses
+ * tuiles ({@link #Budget} octets, propriété système "paint.tileBudget") :
+ * au delà, les tuiles les moins récemment utilisées sont oubliées.
+ * Deux CachedPaint sont égaux si leurs descriptions (type et paramètres du
+ * paint) sont égales, ce qui permet de les partager au travers de la
+ * {@link PaintFactory}.
+ * @author davidroussel
+ */
+public class CachedPaint implements Paint
+{
+	/**
+	 * Budget mémoire (en octets) du cache des tuiles
+	 */
+	public final static long Budget =
+	    Long.getLong("paint.tileBudget", 16L * 1024L * 1024L).longValue();
+
+	/**
+	 * Nombre maximum de pixels d'une tuile
+	 */
+	public final static int MaxTilePixels = 1024 * 1024;
+
+	/**
+	 * Le modèle de couleurs des tuiles
+	 */
+	private final static ColorModel TileModel = ColorModel.getRGBdefault();
+
+	/**
+	 * Nombre d'octets d'un pixel de tuile
+	 */
+	private final static int BytesPerPixel = 4;
+
+	/**
+	 * Cache (LRU) des tuiles déjà calculées
+	 */
+	private static final LinkedHashMap<TileKey, Tile> tiles =
+	    new LinkedHashMap<TileKey, Tile>(16, 0.75f, true);
+
+	/**
+	 * Taille totale (en octets) des tuiles du cache
+	 */
+	private static long usedBytes = 0L;
+
+	/**
+	 * Nombre de contextes servis à partir d'une tuile existante
+	 */
+	private static final LongAdder hits = new LongAdder();
+
+	/**
+	 * Nombre de tuiles calculées (ou agrandies)
+	 */
+	private static final LongAdder misses = new LongAdder();
+
+	/**
+	 * Le paint dont on met en cache les rasters
+	 */
+	private final Paint delegate;
+
+	/**
+	 * La description du paint (type et paramètres) servant à comparer les
+	 * CachedPaint
+	 */
+	private final Object[] description;
+
+	/**
+	 * Le hachage de {@link #description}
+	 */
+	private final int hash;
+
+	/**
+	 * Constructeur d'un paint mis en cache
+	 * @param delegate le paint dont on met en cache les rasters
+	 * @param description la description du paint (son type et ses
+	 * paramètres) : deux paints de même description doivent produire les
+	 * mêmes couleurs
+	 */
+	public CachedPaint(Paint delegate, Object... description)
+	{
+		this.delegate = delegate;
+		this.description = description;
+		hash = Arrays.deepHashCode(description);
+	}
+
+	/**
+	 * Accès au paint d'origine
+	 * @return le paint dont on met en cache les rasters
+	 */
+	public Paint getDelegate()
+	{
+		return delegate;
+	}
+
+	/**
+	 * Transparence du paint
+	 * @return la transparence du paint d'origine
+	 * @see java.awt.Transparency#getTransparency()
+	 */
+	@Override
+	public int getTransparency()
+	{
+		return delegate.getTransparency();
+	}
+
+	/**
+	 * Création du contexte de remplissage : les rasters sont extraits d'une
+	 * tuile du cache (calculée au besoin par le contexte du paint d'origine)
+	 * @see java.awt.Paint#createContext(java.awt.image.ColorModel,
+	 * java.awt.Rectangle, java.awt.geom.Rectangle2D,
+	 * java.awt.geom.AffineTransform, java.awt.RenderingHints)
+	 */
+	@Override
+	public PaintContext createContext(ColorModel cm,
+	                                  Rectangle deviceBounds,
+	                                  Rectangle2D userBounds,
+	                                  AffineTransform xform,
+	                                  RenderingHints hints)
+	{
+		if (deviceBounds.isEmpty()
+		    || (((long) deviceBounds.width * deviceBounds.height)
+		        > maxPixels()))
+		{
+			return delegate.createContext(cm,
+			                              deviceBounds,
+			                              userBounds,
+			                              xform,
+			                              hints);
+		}
+
+		// Séparation de la partie entière de la translation
+		int dx = (int) Math.floor(xform.getTranslateX());
+		int dy = (int) Math.floor(xform.getTranslateY());
+		AffineTransform local = new AffineTransform(xform);
+		local.preConcatenate(AffineTransform.getTranslateInstance(-dx, -dy));
+		Rectangle needed = new Rectangle(deviceBounds);
+		needed.translate(-dx, -dy);
+
+		TileKey key = new TileKey(this, local);
+		Tile tile;
+		synchronized (tiles)
+		{
+			tile = tiles.get(key);
+		}
+		if ((tile != null) && tile.bounds.contains(needed))
+		{
+			hits.increment();
+		}
+		else
+		{
+			Rectangle bounds = (tile != null ? tile.bounds.union(needed)
+			    : needed);
+			if (((long) bounds.width * bounds.height) > maxPixels())
+			{
+				bounds = needed;
+			}
+			tile = render(bounds, local, hints);
+			misses.increment();
+			store(key, tile);
+		}
+		return new TileContext(tile, dx, dy);
+	}
+
+	/**
+	 * Nombre maximum de pixels d'une tuile mise en cache
+	 * @return le plus petit nombre de pixels entre {@link #MaxTilePixels} et
+	 * le nombre de pixels correspondant au {@link #Budget}
+	 */
+	private static long maxPixels()
+	{
+		return Math.min(MaxTilePixels, Budget / BytesPerPixel);
+	}
+
+	/**
+	 * Ajout (ou remplacement) d'une tuile dans le cache puis oubli des tuiles
+	 * les moins récemment utilisées tant que le budget est dépassé
+	 * @param key la clé de la tuile
+	 * @param tile la tuile
+	 */
+	private static void store(TileKey key, Tile tile)
+	{
+		synchronized (tiles)
+		{
+			Tile previous = tiles.put(key, tile);
+			if (previous != null)
+			{
+				usedBytes -= previous.bytes();
+			}
+			usedBytes += tile.bytes();
+			for (Iterator<Tile> it = tiles.values().iterator();
+			    (usedBytes > Budget) && it.hasNext();)
+			{
+				usedBytes -= it.next().bytes();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Calcul d'une tuile par le contexte du paint d'origine
+	 * @param bounds la zone (dans l'espace du périphérique sans la partie
+	 * entière de la translation) couverte par la tuile
+	 * @param local la transformation sans la partie entière de la translation
+	 * @param hints les indications de rendu
+	 * @return une nouvelle tuile
+	 */
+	private Tile render(Rectangle bounds,
+	                    AffineTransform local,
+	                    RenderingHints hints)
+	{
+		Rectangle2D userBounds;
+		try
+		{
+			userBounds = local.createInverse()
+			    .createTransformedShape(bounds).getBounds2D();
+		}
+		catch (NoninvertibleTransformException e)
+		{
+			userBounds = bounds;
+		}
+		PaintContext context = delegate.createContext(TileModel,
+		                                              bounds,
+		                                              userBounds,
+		                                              local,
+		                                              hints);
+		BufferedImage image = new BufferedImage(bounds.width,
+		                                        bounds.height,
+		                                        BufferedImage.TYPE_INT_ARGB);
+		WritableRaster target = image.getRaster();
+		ColorModel model = context.getColorModel();
+		Raster raster = context.getRaster(bounds.x,
+		                                  bounds.y,
+		                                  bounds.width,
+		                                  bounds.height);
+		if (model.equals(TileModel))
+		{
+			target.setDataElements(0, 0, bounds.width, bounds.height,
+			                       raster.getDataElements(raster.getMinX(),
+			                                              raster.getMinY(),
+			                                              bounds.width,
+			                                              bounds.height,
+			                                              null));
+		}
+		else
+		{
+			for (int y = 0; y < bounds.height; y++)
+			{
+				for (int x = 0; x < bounds.width; x++)
+				{
+					Object pixel = raster.getDataElements(raster.getMinX() + x,
+					                                      raster.getMinY() + y,
+					                                      null);
+					image.setRGB(x, y, model.getRGB(pixel));
+				}
+			}
+		}
+		context.dispose();
+		return new Tile(bounds, image);
+	}
+
+	/**
+	 * Nombre de contextes servis à partir d'une tuile existante
+	 * @return le nombre de contextes servis sans calculer de raster
+	 */
+	public static long getHitCount()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Nombre de tuiles calculées
+	 * @return le nombre de tuiles calculées ou agrandies
+	 */
+	public static long getMissCount()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Nombre de tuiles du cache
+	 * @return le nombre de tuiles actuellement conservées dans le cache
+	 */
+	public static int getCacheSize()
+	{
+		synchronized (tiles)
+		{
+			return tiles.size();
+		}
+	}
+
+	/**
+	 * Taille des tuiles du cache
+	 * @return la taille totale (en octets) des tuiles actuellement conservées
+	 * dans le cache
+	 */
+	public static long getCacheBytes()
+	{
+		synchronized (tiles)
+		{
+			return usedBytes;
+		}
+	}
+
+	/**
+	 * Vidage du cache des tuiles
+	 */
+	public static void clearCache()
+	{
+		synchronized (tiles)
+		{
+			tiles.clear();
+			usedBytes = 0L;
+		}
+	}
+
+	/**
+	 * Hachage du paint
+	 * @return le hachage de la description du paint
+	 */
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	/**
+	 * Comparaison avec un autre objet
+	 * @param o l'objet à comparer
+	 * @return true si o est un CachedPaint de même description
+	 */
+	@Override
+	public boolean equals(Object o)
+	{
+		if (o == this)
+		{
+			return true;
+		}
+		if (!(o instanceof CachedPaint))
+		{
+			return false;
+		}
+		CachedPaint other = (CachedPaint) o;
+		return (hash == other.hash)
+		    && Arrays.deepEquals(description, other.description);
+	}
+
+	/**
+	 * Représentation sous forme de chaîne de caractères
+	 * @return la description du paint
+	 */
+	@Override
+	public String toString()
+	{
+		return Arrays.deepToString(description);
+	}
+
+	/**
+	 * Clé du cache de tuiles : un paint et une transformation (sans la partie
+	 * entière de sa translation)
+	 */
+	private static class TileKey
+	{
+		/**
+		 * Le paint
+		 */
+		private final CachedPaint paint;
+
+		/**
+		 * Les coefficients de la transformation
+		 */
+		private final double[] matrix;
+
+		/**
+		 * Le hachage de la clé
+		 */
+		private final int hash;
+
+		/**
+		 * Constructeur d'une clé
+		 * @param paint le paint
+		 * @param transform la transformation
+		 */
+		public TileKey(CachedPaint paint, AffineTransform transform)
+		{
+			this.paint = paint;
+			matrix = new double[6];
+			transform.getMatrix(matrix);
+			hash = (31 * paint.hash) + Arrays.hashCode(matrix);
+		}
+
+		/**
+		 * Hachage de la clé
+		 * @return le hachage du paint et de la transformation
+		 */
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		/**
+		 * Comparaison avec une autre clé
+		 * @param o l'objet à comparer
+		 * @return true si o est une clé de même paint et de même
+		 * transformation
+		 */
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof TileKey))
+			{
+				return false;
+			}
+			TileKey other = (TileKey) o;
+			return (hash == other.hash) && paint.equals(other.paint)
+			    && Arrays.equals(matrix, other.matrix);
+		}
+	}
+
+	/**
+	 * Tuile : image calculée d'un paint sur une zone (non modifiée après sa
+	 * création)
+	 */
+	private static class Tile
+	{
+		/**
+		 * La zone couverte par la tuile
+		 */
+		private final Rectangle bounds;
+
+		/**
+		 * L'image de la tuile
+		 */
+		private final BufferedImage image;
+
+		/**
+		 * Constructeur d'une tuile
+		 * @param bounds la zone couverte par la tuile
+		 * @param image l'image de la tuile
+		 */
+		public Tile(Rectangle bounds, BufferedImage image)
+		{
+			this.bounds = bounds;
+			this.image = image;
+		}
+
+		/**
+		 * Taille de la tuile
+		 * @return la taille (en octets) des pixels de la tuile
+		 */
+		public long bytes()
+		{
+			return (long) bounds.width * bounds.height * BytesPerPixel;
+		}
+	}
+
+	/**
+	 * Contexte de remplissage copiant les pixels d'une tuile dans un raster
+	 * propre au contexte (le pipeline de rendu pouvant modifier les rasters
+	 * qui lui sont fournis)
+	 */
+	private static class TileContext implements PaintContext
+	{
+		/**
+		 * La tuile dont on copie les pixels
+		 */
+		private final Tile tile;
+
+		/**
+		 * Partie entière de la translation en x
+		 */
+		private final int dx;
+
+		/**
+		 * Partie entière de la translation en y
+		 */
+		private final int dy;
+
+		/**
+		 * Le raster fourni au pipeline de rendu (réutilisé tant qu'il est
+		 * assez grand)
+		 */
+		private WritableRaster raster;
+
+		/**
+		 * Tampon de copie des pixels (réutilisé tant qu'il est assez grand)
+		 */
+		private int[] buffer;
+
+		/**
+		 * Constructeur d'un contexte
+		 * @param tile la tuile dont on copie les pixels
+		 * @param dx partie entière de la translation en x
+		 * @param dy partie entière de la translation en y
+		 */
+		public TileContext(Tile tile, int dx, int dy)
+		{
+			this.tile = tile;
+			this.dx = dx;
+			this.dy = dy;
+			raster = null;
+			buffer = null;
+		}
+
+		/**
+		 * Libération du contexte
+		 * @see java.awt.PaintContext#dispose()
+		 */
+		@Override
+		public void dispose()
+		{
+			raster = null;
+			buffer = null;
+		}
+
+		/**
+		 * Modèle de couleurs des rasters
+		 * @see java.awt.PaintContext#getColorModel()
+		 */
+		@Override
+		public ColorModel getColorModel()
+		{
+			return TileModel;
+		}
+
+		/**
+		 * Raster d'une zone
+		 * @see java.awt.PaintContext#getRaster(int, int, int, int)
+		 */
+		@Override
+		public Raster getRaster(int x, int y, int w, int h)
+		{
+			if ((raster == null) || (raster.getWidth() < w)
+			    || (raster.getHeight() < h))
+			{
+				raster = TileModel.createCompatibleWritableRaster(w, h);
+			}
+
+			// Zone demandée dans l'espace de la tuile
+			int tx = x - dx - tile.bounds.x;
+			int ty = y - dy - tile.bounds.y;
+			Rectangle inside = new Rectangle(tx, ty, w, h)
+			    .intersection(new Rectangle(0,
+			                                0,
+			                                tile.bounds.width,
+			                                tile.bounds.height));
+			if (!inside.isEmpty())
+			{
+				int size = inside.width * inside.height;
+				if ((buffer == null) || (buffer.length < size))
+				{
+					buffer = new int[size];
+				}
+				tile.image.getRaster().getDataElements(inside.x,
+				                                       inside.y,
+				                                       inside.width,
+				                                       inside.height,
+				                                       buffer);
+				raster.setDataElements(inside.x - tx,
+				                       inside.y - ty,
+				                       inside.width,
+				                       inside.height,
+				                       buffer);
+			}
+			return raster;
+		}
+	}
+}
@@ -1,84 +1,163 @@
 package utils;
 
-import java.util.HashMap;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import metrics.Metrics;
 
 /**
  * Flyweight gérant les différents éléments utilisés dans la zone de dessin.
  * Utilisable avec les {@link Paint} et avec les {@link BasicStroke} des figures
- * Gère les éléments dans une HashMap<Integer, T> dont la clé correspond au
- * hashCode de l'élément correspondant. Lorsque l'on demande un élément à la
- * Factory, celui ci le recherche dans sa table de hachage : Si l'élément n'est
- * pas déjà présent dans la table de hachage il est ajouté, puis renvoyé, s'il
- * est déjà présent dans la table de hachage il est directement renvoyé et celui
- * demandé est alors destructible par le garbage collector.
+ * Gère les éléments dans une table de hachage concurrente dans laquelle les
+ * éléments sont comparés avec leur méthode equals (et pas seulement avec leur
+ * hashCode : deux éléments différents ayant le même hachage restent
+ * distincts). Lorsque l'on demande un élément à la Factory, celui ci le
+ * recherche dans sa table de hachage : Si l'élément n'est pas déjà présent
+ * dans la table de hachage il est ajouté, puis renvoyé, s'il est déjà présent
+ * dans la table de hachage il est directement renvoyé et celui demandé est
+ * alors destructible par le garbage collector.
+ * Les éléments sont référencés faiblement par la factory : un élément qui
+ * n'est plus utilisé nulle part ailleurs (une couleur choisie une seule fois
+ * par exemple) est détruit par le garbage collector et retiré de la table.
+ * La factory peut être utilisée simultanément par plusieurs threads (threads
+ * de capture de l'historique, de dessin en tâche de fond, etc.) sans
+ * synchronisation globale.
  *
  * @author davidroussel
  */
 public class FlyweightFactory<T> implements Signature
 {
 	/**
-	 * La table de hachage contenant les différentes paires <hashcode,elt> et
-	 * dont les clés sont les hashCode des différents élements.
+	 * La table des éléments obtenus par {@link #get(Object)} : chaque élément
+	 * y est à la fois la clé et la valeur (au travers d'une même référence
+	 * faible)
+	 */
+	private ConcurrentHashMap<Element<T>, Element<T>> elements;
+
+	/**
+	 * La table des éléments enregistrés avec une clé particulière par
+	 * {@link #putByKey(Object, Object)}
 	 */
-	protected HashMap<Integer, T> map;
+	private ConcurrentHashMap<Object, Keyed<T>> keyed;
+
+	/**
+	 * File des références dont l'élément a été détruit par le garbage
+	 * collector et qui doivent être retirées des tables
+	 */
+	private ReferenceQueue<T> queue;
+
+	/**
+	 * Nombre de demandes satisfaites par un élément déjà présent
+	 */
+	private LongAdder hits;
+
+	/**
+	 * Nombre de demandes ayant nécessité l'ajout d'un élément
+	 */
+	private LongAdder misses;
+
+	/**
+	 * Nombre d'éléments retirés après leur destruction par le garbage
+	 * collector
+	 */
+	private LongAdder evictions;
 
 	/**
 	 * Constructeur d'un FlyweightFactory.
-	 * Initialise la {@link HashMap}
+	 * Initialise les tables de hachage
 	 */
 	public FlyweightFactory()
 	{
-		map = new HashMap<Integer, T>();
+		elements = new ConcurrentHashMap<Element<T>, Element<T>>();
+		keyed = new ConcurrentHashMap<Object, Keyed<T>>();
+		queue = new ReferenceQueue<T>();
+		hits = new LongAdder();
+		misses = new LongAdder();
+		evictions = new LongAdder();
 	}
 
 	/**
-	 * Obtention d'un élément à partir son hashcode plutôt que par l'élément
+	 * Constructeur d'un FlyweightFactory dont la taille et les statistiques
+	 * sont publiées sous forme de jauges dans le registre {@link Metrics}
+	 * ("flyweight.&lt;name&gt;.size", ".hits", ".misses" et ".evictions")
+	 * @param name le nom de la factory dans le registre des mesures
+	 */
+	public FlyweightFactory(String name)
+	{
+		this();
+		String prefix = "flyweight." + name + ".";
+		Metrics.gauge(prefix + "size", this::size);
+		Metrics.gauge(prefix + "hits", this::getHitCount);
+		Metrics.gauge(prefix + "misses", this::getMissCount);
+		Metrics.gauge(prefix + "evictions", this::getEvictionCount);
+	}
+
+	/**
+	 * Obtention d'un élément à partir d'une clé plutôt que par l'élément
 	 * lui même
-	 * @param hash le hachage de l'élément demandé
-	 * @return l'élément correspondant au hachage demandé ou bien null si aucun
-	 * élément avec ce hachage n'est contenu dans la factory
+	 * @param key la clé de l'élément demandé
+	 * @return l'élément correspondant à la clé demandée ou bien null si aucun
+	 * élément avec cette clé n'est contenu dans la factory
 	 * @note cette méthode est nécessaire lorsque l'on veut stocker dans la
-	 * factory des éléments qui ne réimplémentent pas la méthode hashCode.
-	 * Auquel cas on fournit soi même un code de hachage.
+	 * factory des éléments qui ne réimplémentent pas les méthodes equals et
+	 * hashCode. Auquel cas on fournit soi même une clé (un nom par exemple).
 	 */
-	protected T get(int hash)
+	protected T getByKey(Object key)
 	{
-		Integer key = Integer.valueOf(hash);
-		if (map.containsKey(key))
+		expunge();
+		Keyed<T> ref = keyed.get(key);
+		T element = (ref != null ? ref.get() : null);
+		if (element != null)
 		{
-			return map.get(key);
+			hits.increment();
 		}
-
-		return null;
+		else
+		{
+			misses.increment();
+		}
+		return element;
 	}
 
 	/**
-	 * Ajout d'un élément à la factory en fournissant un hashcode particulier
-	 * @param hash le hachage voulu pour cet élément
+	 * Ajout d'un élément à la factory en fournissant une clé particulière
+	 * @param key la clé voulue pour cet élément
 	 * @param element l'élément à ajouter
-	 * @return true si aucun élément avec ce hachage n'était contenu dans la
-	 * factory et que le couple hash/value a bien été ajouté à la factory
+	 * @return true si aucun élément avec cette clé n'était contenu dans la
+	 * factory et que le couple clé/élément a bien été ajouté à la factory
 	 * @note cette méthode est nécessaire lorsque l'on veut stocker dans la
-	 * factory des éléments qui ne réimplémentent pas la méthode hashCode.
-	 * Auquel cas on fournit soi même un code de hachage.
+	 * factory des éléments qui ne réimplémentent pas les méthodes equals et
+	 * hashCode. Auquel cas on fournit soi même une clé (un nom par exemple).
 	 */
-	protected boolean put(int hash, T element)
+	protected boolean putByKey(Object key, T element)
 	{
-		Integer key = Integer.valueOf(hash);
-		if (!map.containsKey(key))
+		if (element == null)
 		{
-			if (element != null)
+			Log.warning("null element");
+			return false;
+		}
+
+		expunge();
+		Keyed<T> ref = new Keyed<T>(key, element, queue);
+		while (true)
+		{
+			Keyed<T> previous = keyed.putIfAbsent(key, ref);
+			if (previous == null)
 			{
-				map.put(key, element);
 				return true;
 			}
-			else
+			if (previous.get() != null)
 			{
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + "(...) : null element");
+				return false;
+			}
+			// L'élément précédent a été détruit : on le remplace
+			if (keyed.replace(key, previous, ref))
+			{
+				return true;
 			}
 		}
-		return false;
 	}
 
 	/**
@@ -91,18 +170,106 @@ public class FlyweightFactory<T> implements Signature
 	 */
 	public T get(T element)
 	{
-		if (element != null)
+		if (element == null)
+		{
+			return null;
+		}
+
+		expunge();
+		Element<T> probe = new Element<T>(element, null);
+		Element<T> found = elements.get(probe);
+		if (found != null)
+		{
+			T result = found.get();
+			if (result != null)
+			{
+				hits.increment();
+				return result;
+			}
+		}
+
+		Element<T> ref = new Element<T>(element, queue);
+		while (true)
+		{
+			Element<T> previous = elements.putIfAbsent(ref, ref);
+			if (previous == null)
+			{
+				misses.increment();
+				return element;
+			}
+			T result = previous.get();
+			if (result != null)
+			{
+				// Ajouté entre temps par un autre thread
+				hits.increment();
+				return result;
+			}
+			elements.remove(previous, previous);
+		}
+	}
+
+	/**
+	 * Nombre d'éléments contenus dans la factory
+	 * @return le nombre d'éléments (non encore détruits) de la factory
+	 */
+	public int size()
+	{
+		expunge();
+		return elements.size() + keyed.size();
+	}
+
+	/**
+	 * Nombre de demandes satisfaites par un élément déjà présent
+	 * @return le nombre de demandes satisfaites par un élément déjà présent
+	 */
+	public long getHitCount()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Nombre de demandes ayant nécessité l'ajout d'un élément
+	 * @return le nombre de demandes pour lesquelles aucun élément équivalent
+	 * n'était présent
+	 */
+	public long getMissCount()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Nombre d'éléments retirés de la factory après leur destruction par le
+	 * garbage collector
+	 * @return le nombre d'éléments retirés
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.sum();
+	}
+
+	/**
+	 * Retrait des tables des références dont l'élément a été détruit par le
+	 * garbage collector
+	 */
+	private void expunge()
+	{
+		Reference<? extends T> ref;
+		while ((ref = queue.poll()) != null)
 		{
-			int hash = element.hashCode();
-			T result = get(hash);
-			if (result == null)
+			boolean removed;
+			if (ref instanceof Keyed<?>)
 			{
-				put(hash, element);
-				result = get(hash);
+				removed = keyed.remove(((Keyed<?>) ref).key, ref);
+			}
+			else
+			{
+				removed = elements.remove(ref, ref);
+			}
+			if (removed)
+			{
+				evictions.increment();
 			}
-			return result;
 		}
-		return null;
 	}
 
 	/**
@@ -110,7 +277,24 @@ public class FlyweightFactory<T> implements Signature
 	 */
 	public void clear()
 	{
-		map.clear();
+		elements.clear();
+		keyed.clear();
+		while (queue.poll() != null)
+		{
+			// Rien : les références ne sont plus dans les tables
+		}
+	}
+
+	/**
+	 * Représentation sous forme de chaîne de caractères
+	 * @return le nombre d'éléments et les statistiques de la factory
+	 */
+	@Override
+	public String toString()
+	{
+		return getClassName() + "[" + size() + " elements, " + getHitCount()
+		    + " hits, " + getMissCount() + " misses, " + getEvictionCount()
+		    + " evictions]";
 	}
 
 	/**
@@ -121,4 +305,94 @@ public class FlyweightFactory<T> implements Signature
 	{
 		clear();
 	}
+
+	/**
+	 * Référence faible vers un élément servant à la fois de clé et de valeur
+	 * dans {@link FlyweightFactory#elements}. Deux références sont égales si
+	 * elles sont identiques ou si leurs éléments (non détruits) sont égaux
+	 * au sens de equals.
+	 * @param T le type de l'élément référencé
+	 */
+	private static class Element<T> extends WeakReference<T>
+	{
+		/**
+		 * Le hachage de l'élément (conservé après sa destruction afin de
+		 * pouvoir retirer la référence de la table)
+		 */
+		private final int hash;
+
+		/**
+		 * Constructeur d'une référence
+		 * @param element l'élément référencé
+		 * @param queue la file dans laquelle placer la référence lorsque
+		 * l'élément est détruit (ou null pour une référence de recherche)
+		 */
+		public Element(T element, ReferenceQueue<T> queue)
+		{
+			super(element, queue);
+			hash = element.hashCode();
+		}
+
+		/**
+		 * Hachage de l'élément référencé
+		 * @return le hachage de l'élément
+		 */
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		/**
+		 * Comparaison de deux références
+		 * @param o l'objet à comparer
+		 * @return true si o est cette référence ou bien une référence vers un
+		 * élément égal à celui de cette référence
+		 */
+		@Override
+		public boolean equals(Object o)
+		{
+			if (o == this)
+			{
+				return true;
+			}
+			if (!(o instanceof Element<?>))
+			{
+				return false;
+			}
+			Element<?> other = (Element<?>) o;
+			if (other.hash != hash)
+			{
+				return false;
+			}
+			Object element = get();
+			return (element != null) && element.equals(other.get());
+		}
+	}
+
+	/**
+	 * Référence faible vers un élément enregistré avec une clé particulière
+	 * dans {@link FlyweightFactory#keyed}
+	 * @param T le type de l'élément référencé
+	 */
+	private static class Keyed<T> extends WeakReference<T>
+	{
+		/**
+		 * La clé de l'élément
+		 */
+		private final Object key;
+
+		/**
+		 * Constructeur d'une référence
+		 * @param key la clé de l'élément
+		 * @param element l'élément référencé
+		 * @param queue la file dans laquelle placer la référence lorsque
+		 * l'élément est détruit
+		 */
+		public Keyed(Object key, T element, ReferenceQueue<T> queue)
+		{
+			super(element, queue);
+			this.key = key;
+		}
+	}
 }
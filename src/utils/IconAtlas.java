@@ -0,0 +1,547 @@
+package utils;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.AbstractMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * Atlas d'icônes : toutes les images du package "images" sont regroupées
+ * dans une seule image ({@link #AtlasImage}) accompagnée d'un index
+ * ({@link #AtlasIndex}) donnant la position de chaque icône dans l'atlas.
+ * L'atlas est décodé une seule fois, en tâche de fond, dès le lancement du
+ * programme ({@link #preload()}) puis découpé en icônes à la demande par
+ * l'{@link IconFactory}. Les icônes "_small" ne sont pas stockées dans
+ * l'atlas lorsque l'icône de grande taille de même nom existe : elles en
+ * sont dérivées par réduction lors de leur première utilisation.
+ * Chaque icône dispose de variantes pour les écrans à haute résolution
+ * (HiDPI) : l'icône de grande taille de même nom pour les icônes "_small" ou
+ * bien à défaut une version agrandie, calculée lors de sa première
+ * utilisation puis conservée.
+ * L'atlas et son index sont produits par la méthode {@link #main(String[])}
+ * (cf. cible "atlas" du Makefile). En leur absence, si leur chargement
+ * échoue ou s'il dure plus de {@link #LoadTimeout} ms, l'{@link IconFactory}
+ * charge les images une par une.
+ * @author davidroussel
+ */
+public class IconAtlas
+{
+	/**
+	 * Nom de la ressource contenant l'image de l'atlas
+	 */
+	public final static String AtlasImage = "/images/atlas/Atlas.png";
+
+	/**
+	 * Nom de la ressource contenant l'index de l'atlas
+	 */
+	public final static String AtlasIndex = "/images/atlas/Atlas.idx";
+
+	/**
+	 * Suffixe des icônes de petite taille
+	 */
+	private final static String SmallSuffix = "_small";
+
+	/**
+	 * Taille (largeur et hauteur en pixels) des icônes "_small" dérivées des
+	 * icônes de grande taille
+	 */
+	private final static int SmallSize = 16;
+
+	/**
+	 * Durée maximum (en ms) d'attente de la fin du chargement de l'atlas
+	 */
+	private final static long LoadTimeout = 2000L;
+
+	/**
+	 * Marge (en pixels) entre les icônes de l'atlas
+	 */
+	private final static int Padding = 1;
+
+	/**
+	 * Largeur de l'atlas produit par {@link #main(String[])}
+	 */
+	private final static int AtlasWidth = 256;
+
+	/**
+	 * Le chargement de l'atlas (null tant que {@link #preload()} n'a pas
+	 * été appelée)
+	 */
+	private static volatile CompletableFuture<IconAtlas> loading = null;
+
+	/**
+	 * L'image de l'atlas
+	 */
+	private final BufferedImage image;
+
+	/**
+	 * Position des icônes dans l'atlas indexées par leur nom
+	 */
+	private final Map<String, int[]> index;
+
+	/**
+	 * Les icônes déjà découpées indexées par leur nom
+	 */
+	private final Map<String, BufferedImage> slices;
+
+	/**
+	 * Constructeur d'un atlas
+	 * @param image l'image de l'atlas
+	 * @param index la position des icônes dans l'atlas
+	 */
+	private IconAtlas(BufferedImage image, Map<String, int[]> index)
+	{
+		this.image = image;
+		this.index = index;
+		slices = new ConcurrentHashMap<String, BufferedImage>();
+	}
+
+	/**
+	 * Etat de l'attente du chargement de l'atlas : true si une attente a
+	 * déjà dépassé {@link #LoadTimeout}, auquel cas l'atlas n'est plus
+	 * attendu mais seulement utilisé s'il a été chargé entre temps
+	 */
+	private static volatile boolean timedOut = false;
+
+	/**
+	 * Lancement du chargement de l'atlas dans un thread d'arrière plan. A
+	 * appeler le plus tôt possible afin que le décodage de l'atlas ait lieu
+	 * pendant la construction de l'interface graphique. Le chargement se
+	 * termine toujours, éventuellement en erreur (par exemple si la mémoire
+	 * manque pour décoder l'atlas).
+	 */
+	public static synchronized void preload()
+	{
+		if (loading == null)
+		{
+			loading = CompletableFuture.supplyAsync(IconAtlas::load);
+		}
+	}
+
+	/**
+	 * Obtention de l'atlas, en attendant si nécessaire (au plus
+	 * {@link #LoadTimeout} ms) la fin de son chargement
+	 * @return l'atlas ou bien null s'il n'a pas pu être chargé (à temps)
+	 */
+	private static IconAtlas get()
+	{
+		preload();
+		try
+		{
+			if (timedOut)
+			{
+				return loading.getNow(null);
+			}
+			return loading.get(LoadTimeout, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException e)
+		{
+			Log.warning("unable to load " + AtlasImage + " : {}",
+			    e.getCause());
+			return null;
+		}
+		catch (TimeoutException e)
+		{
+			timedOut = true;
+			Log.warning("{} not loaded after {} ms, loading icon files",
+			    AtlasImage, LoadTimeout);
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			// CompletionException de getNow lorsque le chargement a échoué
+			return null;
+		}
+	}
+
+	/**
+	 * Chargement de l'atlas et de son index
+	 * @return l'atlas ou bien null si l'atlas ou son index n'ont pas été
+	 * trouvés
+	 */
+	private static IconAtlas load()
+	{
+		URL imageURL = IconAtlas.class.getResource(AtlasImage);
+		InputStream indexStream = IconAtlas.class.getResourceAsStream(AtlasIndex);
+		if ((imageURL == null) || (indexStream == null))
+		{
+			return null;
+		}
+
+		Map<String, int[]> index = new HashMap<String, int[]>();
+		try (BufferedReader reader = new BufferedReader(
+		    new InputStreamReader(indexStream, StandardCharsets.UTF_8)))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.isEmpty() || line.startsWith("#"))
+				{
+					continue;
+				}
+				String[] fields = line.split("\t");
+				int[] bounds = new int[4];
+				for (int i = 0; i < 4; i++)
+				{
+					bounds[i] = Integer.parseInt(fields[i + 1]);
+				}
+				index.put(fields[0], bounds);
+			}
+			BufferedImage image = ImageIO.read(imageURL);
+			return image != null ? new IconAtlas(image, index) : null;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			Log.warning("unable to load " + AtlasImage + " : {}",
+			    e.getLocalizedMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Obtention d'une icône de l'atlas
+	 * @param name le nom de l'icône (celui du fichier image sans son
+	 * extension)
+	 * @return une nouvelle icône (avec ses variantes HiDPI) ou bien null si
+	 * l'atlas n'est pas disponible ou ne contient pas d'icône de ce nom
+	 */
+	public static ImageIcon getIcon(String name)
+	{
+		IconAtlas atlas = get();
+		if (atlas == null)
+		{
+			return null;
+		}
+
+		BufferedImage large = null;
+		if (name.endsWith(SmallSuffix))
+		{
+			large = atlas.slice(name.substring(0,
+			    name.length() - SmallSuffix.length()));
+		}
+		BufferedImage base = atlas.slice(name);
+		if ((base == null) && (large != null))
+		{
+			base = atlas.derive(name, large);
+		}
+		if (base == null)
+		{
+			return null;
+		}
+		ImageIcon icon = new ImageIcon(new HiDPIImage(base, large));
+		icon.setDescription(name);
+		return icon;
+	}
+
+	/**
+	 * Découpage (une seule fois) d'une icône de l'atlas
+	 * @param name le nom de l'icône
+	 * @return l'image de l'icône ou bien null si l'atlas ne contient pas
+	 * d'icône de ce nom
+	 */
+	private BufferedImage slice(String name)
+	{
+		int[] bounds = index.get(name);
+		if (bounds == null)
+		{
+			return null;
+		}
+		return slices.computeIfAbsent(name, (String n) ->
+		{
+			BufferedImage slice = new BufferedImage(bounds[2],
+			                                        bounds[3],
+			                                        BufferedImage.TYPE_INT_ARGB);
+			copy(image, bounds[0], bounds[1], slice, 0, 0, bounds[2], bounds[3]);
+			return slice;
+		});
+	}
+
+	/**
+	 * Dérivation (une seule fois) d'une icône "_small" absente de l'atlas
+	 * par réduction de l'icône de grande taille de même nom
+	 * @param name le nom de l'icône "_small"
+	 * @param large l'icône de grande taille
+	 * @return l'image de l'icône "_small"
+	 */
+	private BufferedImage derive(String name, BufferedImage large)
+	{
+		return slices.computeIfAbsent(name, (String n) ->
+		{
+			int width = Math.max(1, (SmallSize * large.getWidth())
+			    / Math.max(large.getWidth(), large.getHeight()));
+			int height = Math.max(1, (SmallSize * large.getHeight())
+			    / Math.max(large.getWidth(), large.getHeight()));
+			return resize(large, width, height);
+		});
+	}
+
+	/**
+	 * Redimensionnement (interpolation bicubique) d'une image
+	 * @param source l'image à redimensionner
+	 * @param width la largeur voulue
+	 * @param height la hauteur voulue
+	 * @return une nouvelle image de la taille voulue
+	 */
+	private static BufferedImage resize(Image source, int width, int height)
+	{
+		BufferedImage resized =
+		    new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2D = resized.createGraphics();
+		g2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+		                     RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+		g2D.setRenderingHint(RenderingHints.KEY_RENDERING,
+		                     RenderingHints.VALUE_RENDER_QUALITY);
+		g2D.drawImage(source, 0, 0, width, height, null);
+		g2D.dispose();
+		return resized;
+	}
+
+	/**
+	 * Copie exacte (sans composition ni arrondi des pixels semi-transparents)
+	 * d'une zone d'une image dans une autre
+	 * @param source l'image source
+	 * @param sx abscisse de la zone dans l'image source
+	 * @param sy ordonnée de la zone dans l'image source
+	 * @param target l'image destination
+	 * @param tx abscisse de la zone dans l'image destination
+	 * @param ty ordonnée de la zone dans l'image destination
+	 * @param width largeur de la zone
+	 * @param height hauteur de la zone
+	 */
+	private static void copy(BufferedImage source, int sx, int sy,
+	                         BufferedImage target, int tx, int ty,
+	                         int width, int height)
+	{
+		int[] pixels = source.getRGB(sx, sy, width, height, null, 0, width);
+		target.setRGB(tx, ty, width, height, pixels, 0, width);
+	}
+
+	/**
+	 * Image multi résolution d'une icône : l'image de base, éventuellement
+	 * une image de plus grande taille fournie, et les agrandissements
+	 * calculés à la demande (puis conservés) pour les autres résolutions
+	 */
+	private static class HiDPIImage extends AbstractMultiResolutionImage
+	{
+		/**
+		 * L'image de base
+		 */
+		private final BufferedImage base;
+
+		/**
+		 * Les variantes de l'image indexées par leur largeur
+		 */
+		private final Map<Integer, Image> variants;
+
+		/**
+		 * Constructeur d'une image multi résolution
+		 * @param base l'image de base
+		 * @param large une variante de plus grande taille (ou null)
+		 */
+		public HiDPIImage(BufferedImage base, BufferedImage large)
+		{
+			this.base = base;
+			variants = new ConcurrentHashMap<Integer, Image>();
+			variants.put(Integer.valueOf(base.getWidth()), base);
+			if ((large != null) && (large.getWidth() > base.getWidth()))
+			{
+				variants.put(Integer.valueOf(large.getWidth()), large);
+			}
+		}
+
+		/**
+		 * Image de base
+		 * @see java.awt.image.AbstractMultiResolutionImage#getBaseImage()
+		 */
+		@Override
+		protected Image getBaseImage()
+		{
+			return base;
+		}
+
+		/**
+		 * Variante de l'image pour une taille donnée : une variante existante
+		 * si elle a la largeur voulue, sinon un agrandissement de la plus
+		 * grande variante existante
+		 * @see java.awt.image.MultiResolutionImage#getResolutionVariant(double, double)
+		 */
+		@Override
+		public Image getResolutionVariant(double destImageWidth,
+		                                  double destImageHeight)
+		{
+			int width = (int) Math.ceil(destImageWidth);
+			int height = (int) Math.ceil(destImageHeight);
+			if ((width <= base.getWidth()) || (height <= 0))
+			{
+				return base;
+			}
+			return variants.computeIfAbsent(Integer.valueOf(width),
+			                                (Integer w) -> scale(width, height));
+		}
+
+		/**
+		 * Agrandissement de la plus grande variante existante
+		 * @param width la largeur voulue
+		 * @param height la hauteur voulue
+		 * @return une nouvelle image de la taille voulue
+		 */
+		private Image scale(int width, int height)
+		{
+			Image source = base;
+			for (Image variant : variants.values())
+			{
+				if (variant.getWidth(null) > source.getWidth(null))
+				{
+					source = variant;
+				}
+			}
+			return resize(source, width, height);
+		}
+
+		/**
+		 * Variantes déjà disponibles
+		 * @see java.awt.image.MultiResolutionImage#getResolutionVariants()
+		 */
+		@Override
+		public List<Image> getResolutionVariants()
+		{
+			List<Image> list = new ArrayList<Image>(variants.values());
+			list.sort((Image i1, Image i2) ->
+			    Integer.compare(i1.getWidth(null), i2.getWidth(null)));
+			return Collections.unmodifiableList(list);
+		}
+	}
+
+	/**
+	 * Construction de l'atlas et de son index à partir des images d'un
+	 * répertoire : les images sont rangées par hauteur décroissante sur des
+	 * étagères successives. Les images "_small" dont l'image de grande taille
+	 * existe ne sont pas rangées dans l'atlas puisqu'elles en sont dérivées.
+	 * @param args le répertoire des images (src/images par défaut) puis le
+	 * répertoire dans lequel écrire l'atlas et son index (le sous répertoire
+	 * "atlas" du répertoire des images par défaut)
+	 * @throws IOException si les images ne peuvent pas être lues ou l'atlas
+	 * ne peut pas être écrit
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		File source = new File(args.length > 0 ? args[0] : "src/images");
+		File target = (args.length > 1 ? new File(args[1])
+		    : new File(source, "atlas"));
+		File[] files = source.listFiles((File dir, String name) ->
+		    name.endsWith(".png"));
+		if (files == null)
+		{
+			throw new FileNotFoundException(source.getPath());
+		}
+		Arrays.sort(files);
+		List<String> available = new ArrayList<String>();
+		for (File file : files)
+		{
+			available.add(file.getName());
+		}
+
+		List<String> names = new ArrayList<String>();
+		List<BufferedImage> images = new ArrayList<BufferedImage>();
+		for (File file : files)
+		{
+			String name = file.getName();
+			String stem = name.substring(0, name.length() - ".png".length());
+			if (stem.endsWith(SmallSuffix)
+			    && available.contains(stem.substring(0, stem.length()
+			        - SmallSuffix.length()) + ".png"))
+			{
+				continue;
+			}
+			BufferedImage image = ImageIO.read(file);
+			if (image != null)
+			{
+				names.add(stem);
+				images.add(image);
+			}
+		}
+
+		// Rangement sur des étagères par hauteur décroissante
+		Integer[] order = new Integer[images.size()];
+		for (int i = 0; i < order.length; i++)
+		{
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, (Integer i1, Integer i2) ->
+		    Integer.compare(images.get(i2).getHeight(),
+		                    images.get(i1).getHeight()));
+		int[][] bounds = new int[images.size()][];
+		int x = 0;
+		int y = 0;
+		int shelfHeight = 0;
+		for (Integer i : order)
+		{
+			BufferedImage image = images.get(i);
+			if ((x + image.getWidth()) > AtlasWidth)
+			{
+				x = 0;
+				y += shelfHeight + Padding;
+				shelfHeight = 0;
+			}
+			bounds[i] = new int[] {x, y, image.getWidth(), image.getHeight()};
+			x += image.getWidth() + Padding;
+			shelfHeight = Math.max(shelfHeight, image.getHeight());
+		}
+
+		BufferedImage atlas = new BufferedImage(AtlasWidth,
+		                                        y + shelfHeight,
+		                                        BufferedImage.TYPE_INT_ARGB);
+		for (int i = 0; i < images.size(); i++)
+		{
+			copy(images.get(i), 0, 0, atlas, bounds[i][0], bounds[i][1],
+			     bounds[i][2], bounds[i][3]);
+		}
+
+		if (!target.isDirectory() && !target.mkdirs())
+		{
+			throw new IOException("Unable to create " + target.getPath());
+		}
+		ImageIO.write(atlas, "png", new File(target, "Atlas.png"));
+		try (PrintWriter writer = new PrintWriter(new File(target, "Atlas.idx"),
+		                                          "UTF-8"))
+		{
+			writer.println("# name\tx\ty\twidth\theight");
+			for (int i = 0; i < images.size(); i++)
+			{
+				writer.println(names.get(i) + "\t" + bounds[i][0] + "\t"
+				    + bounds[i][1] + "\t" + bounds[i][2] + "\t"
+				    + bounds[i][3]);
+			}
+		}
+		System.out.println(images.size() + " images packed into "
+		    + new File(target, "Atlas.png").getPath());
+	}
+}
@@ -8,6 +8,9 @@ import javax.swing.ImageIcon;
  * Classe contenant une FlyweigtFactory pour les icônes, afin de pouvoir
  * réutiliser une même icône (chargée à partir d'un fichier image contenu dans
  * le package "images") à plusieurs endroits de l'interface graphique.
+ * Les icônes sont enregistrées dans la factory avec leur nom pour clé.
+ * Les icônes sont découpées dans l'{@link IconAtlas} lorsqu'il est
+ * disponible, sinon chargées une par une à partir de leur fichier.
  * @author davidroussel
  */
 public class IconFactory implements Signature
@@ -26,7 +29,16 @@ public class IconFactory implements Signature
 	 * La factory stockant et fournissant les icônes
 	 */
 	static private FlyweightFactory<ImageIcon> iconFactory =
-		new FlyweightFactory<ImageIcon>();
+		new FlyweightFactory<ImageIcon>("icon");
+
+	/**
+	 * Accès à la factory (pour en consulter les statistiques)
+	 * @return la factory stockant les icônes
+	 */
+	public static FlyweightFactory<ImageIcon> getFactory()
+	{
+		return iconFactory;
+	}
 
 	/**
 	 * Méthode d'obtention d'une icône pour un nom donné
@@ -40,31 +52,54 @@ public class IconFactory implements Signature
 		// checks if there is an icon with this name in the "images" directory
 		if (name.length() > 0)
 		{
-			int hash = name.hashCode();
-			ImageIcon icon = iconFactory.get(hash);
+			ImageIcon icon = iconFactory.getByKey(name);
 			if (icon == null)
 			{
-				URL url = IconFactory.class.getResource(ImageBase + name + ImageType);
-				if (url != null)
+				icon = IconAtlas.getIcon(name);
+				URL url = (icon == null ?
+					IconFactory.class.getResource(ImageBase + name + ImageType) :
+					null);
+				if (icon != null)
+				{
+					if (!iconFactory.putByKey(name, icon))
+					{
+						// découpée entre temps par un autre thread
+						ImageIcon sliced = iconFactory.getByKey(name);
+						if (sliced != null)
+						{
+							icon = sliced;
+						}
+					}
+				}
+				else if (url != null)
 				{
 					icon = new ImageIcon(url);
 					if ((icon != null) &&
 						(icon.getImageLoadStatus() == java.awt.MediaTracker.COMPLETE))
 					{
 						icon.setDescription(name);
-						iconFactory.put(hash, icon);
+						if (!iconFactory.putByKey(name, icon))
+						{
+							// chargée entre temps par un autre thread
+							ImageIcon loaded = iconFactory.getByKey(name);
+							if (loaded != null)
+							{
+								icon = loaded;
+							}
+						}
+					}
+					else
+					{
+						icon = null;
 					}
 				}
 				else
 				{
-					System.err.println(Signature.getClassName(IconFactory.class)
-					    + "::" + Signature.getStaticMethodName()
-					    + "IconFactory::getIcon(" + name
-					    + ") : could'nt find file " + ImageBase + name
-					    + ImageType);
+					Log.warning("could'nt find file {}{}", ImageBase + name,
+					    ImageType);
 				}
 
-				return iconFactory.get(hash);
+				return icon;
 			}
 			else
 			{
@@ -73,9 +108,7 @@ public class IconFactory implements Signature
 		}
 		else
 		{
-			System.err.println(Signature.getClassName(IconFactory.class)
-							    + "::" + Signature.getStaticMethodName()
-							    + "(<EMPTY NAME>)");
+			Log.warning("<EMPTY NAME>");
 		}
 
 		return null;
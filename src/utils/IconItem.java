@@ -29,8 +29,7 @@ public class IconItem implements Signature
 		icon = IconFactory.getIcon(caption);
 		if (icon == null)
 		{
-			System.err.println(getClassName() + "(" + caption
-			    + ") : could not find corresponding icon");
+			Log.warning("{} : could not find corresponding icon", caption);
 		}
 	}
 
@@ -0,0 +1,432 @@
+package utils;
+
+import java.io.PrintStream;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Façade de journalisation à niveaux utilisée pour tous les messages de
+ * diagnostic du programme.
+ * Un message dont le niveau est inférieur au seuil courant ne coûte rien :
+ * ni construction de chaîne, ni parcours de la pile. Pour cela les messages
+ * sont soit des chaînes constantes, soit des modèles dans lesquels chaque
+ * "{}" est remplacé par l'argument correspondant (converti en chaîne
+ * uniquement si le message est émis), soit des {@link Supplier} évalués
+ * uniquement si le message est émis.
+ * Le nom de la classe et de la méthode émettant le message est obtenu
+ * (paresseusement, lors de l'émission) à l'aide d'un {@link StackWalker}.
+ * Le seuil initial est donné par la propriété système "log.level" (l'un des
+ * noms de {@link Level}, {@link Level#INFO} par défaut). Les messages de
+ * niveau {@link Level#WARNING} ou plus sont écrits sur la sortie d'erreur,
+ * les autres sur la sortie standard.
+ * @author davidroussel
+ */
+public class Log
+{
+	/**
+	 * Niveaux des messages par ordre croissant de gravité
+	 */
+	public enum Level
+	{
+		/**
+		 * Traces détaillées (chemins fréquents)
+		 */
+		TRACE,
+		/**
+		 * Messages de mise au point
+		 */
+		DEBUG,
+		/**
+		 * Messages d'information
+		 */
+		INFO,
+		/**
+		 * Avertissements : situation anormale dont le programme se remet
+		 */
+		WARNING,
+		/**
+		 * Erreurs
+		 */
+		ERROR,
+		/**
+		 * Seuil désactivant tous les messages
+		 */
+		OFF;
+	}
+
+	/**
+	 * Marqueur remplacé par un argument dans les modèles de messages
+	 */
+	private final static String Placeholder = "{}";
+
+	/**
+	 * Parcours de la pile utilisé pour retrouver l'émetteur d'un message
+	 */
+	private final static StackWalker walker =
+	    StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+	/**
+	 * Rang ({@link Level#ordinal()}) du niveau minimum des messages émis
+	 */
+	private static volatile int threshold = initialLevel().ordinal();
+
+	/**
+	 * Niveau initial lu dans la propriété système "log.level"
+	 * @return le niveau correspondant à la propriété ou bien
+	 * {@link Level#INFO} si elle est absente ou invalide
+	 */
+	private static Level initialLevel()
+	{
+		String property = System.getProperty("log.level");
+		if (property != null)
+		{
+			try
+			{
+				return Level.valueOf(property.trim().toUpperCase());
+			}
+			catch (IllegalArgumentException e)
+			{
+				System.err.println("Log : unknown level " + property);
+			}
+		}
+		return Level.INFO;
+	}
+
+	/**
+	 * Niveau minimum des messages émis
+	 * @return le niveau minimum des messages émis
+	 */
+	public static Level getLevel()
+	{
+		return Level.values()[threshold];
+	}
+
+	/**
+	 * Mise en place du niveau minimum des messages émis
+	 * @param level le nouveau niveau minimum ({@link Level#OFF} pour ne plus
+	 * rien émettre)
+	 */
+	public static void setLevel(Level level)
+	{
+		if (level != null)
+		{
+			threshold = level.ordinal();
+		}
+	}
+
+	/**
+	 * Teste si les messages d'un niveau sont émis. A utiliser pour éviter
+	 * de calculer les arguments d'un message qui ne serait pas émis
+	 * @param level le niveau à tester
+	 * @return true si les messages de ce niveau sont émis
+	 */
+	public static boolean isEnabled(Level level)
+	{
+		return level.ordinal() >= threshold;
+	}
+
+	/**
+	 * Message de niveau {@link Level#TRACE}
+	 * @param message le message
+	 */
+	public static void trace(String message)
+	{
+		if (Level.TRACE.ordinal() >= threshold)
+		{
+			emit(Level.TRACE, message, null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#TRACE}
+	 * @param format le modèle du message
+	 * @param arg l'argument remplaçant le premier "{}" du modèle
+	 */
+	public static void trace(String format, Object arg)
+	{
+		if (Level.TRACE.ordinal() >= threshold)
+		{
+			emit(Level.TRACE, format(format, arg, null, 1), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#TRACE} dont l'argument est un entier
+	 * (sans conversion en objet lorsque le message n'est pas émis)
+	 * @param format le modèle du message
+	 * @param arg l'argument remplaçant le premier "{}" du modèle
+	 */
+	public static void trace(String format, long arg)
+	{
+		if (Level.TRACE.ordinal() >= threshold)
+		{
+			emit(Level.TRACE, format(format, Long.valueOf(arg), null, 1), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#TRACE}
+	 * @param format le modèle du message
+	 * @param arg1 l'argument remplaçant le premier "{}" du modèle
+	 * @param arg2 l'argument remplaçant le second "{}" du modèle
+	 */
+	public static void trace(String format, Object arg1, Object arg2)
+	{
+		if (Level.TRACE.ordinal() >= threshold)
+		{
+			emit(Level.TRACE, format(format, arg1, arg2, 2), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#TRACE}
+	 * @param message le fournisseur du message (évalué uniquement si le
+	 * message est émis)
+	 */
+	public static void trace(Supplier<String> message)
+	{
+		if (Level.TRACE.ordinal() >= threshold)
+		{
+			emit(Level.TRACE, message.get(), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#DEBUG}
+	 * @param message le message
+	 */
+	public static void debug(String message)
+	{
+		if (Level.DEBUG.ordinal() >= threshold)
+		{
+			emit(Level.DEBUG, message, null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#DEBUG}
+	 * @param format le modèle du message
+	 * @param arg l'argument remplaçant le premier "{}" du modèle
+	 */
+	public static void debug(String format, Object arg)
+	{
+		if (Level.DEBUG.ordinal() >= threshold)
+		{
+			emit(Level.DEBUG, format(format, arg, null, 1), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#DEBUG} dont l'argument est un entier
+	 * (sans conversion en objet lorsque le message n'est pas émis)
+	 * @param format le modèle du message
+	 * @param arg l'argument remplaçant le premier "{}" du modèle
+	 */
+	public static void debug(String format, long arg)
+	{
+		if (Level.DEBUG.ordinal() >= threshold)
+		{
+			emit(Level.DEBUG, format(format, Long.valueOf(arg), null, 1), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#DEBUG}
+	 * @param format le modèle du message
+	 * @param arg1 l'argument remplaçant le premier "{}" du modèle
+	 * @param arg2 l'argument remplaçant le second "{}" du modèle
+	 */
+	public static void debug(String format, Object arg1, Object arg2)
+	{
+		if (Level.DEBUG.ordinal() >= threshold)
+		{
+			emit(Level.DEBUG, format(format, arg1, arg2, 2), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#DEBUG}
+	 * @param message le fournisseur du message (évalué uniquement si le
+	 * message est émis)
+	 */
+	public static void debug(Supplier<String> message)
+	{
+		if (Level.DEBUG.ordinal() >= threshold)
+		{
+			emit(Level.DEBUG, message.get(), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#INFO}
+	 * @param message le message
+	 */
+	public static void info(String message)
+	{
+		if (Level.INFO.ordinal() >= threshold)
+		{
+			emit(Level.INFO, message, null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#INFO}
+	 * @param format le modèle du message
+	 * @param arg l'argument remplaçant le premier "{}" du modèle
+	 */
+	public static void info(String format, Object arg)
+	{
+		if (Level.INFO.ordinal() >= threshold)
+		{
+			emit(Level.INFO, format(format, arg, null, 1), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#INFO}
+	 * @param format le modèle du message
+	 * @param arg1 l'argument remplaçant le premier "{}" du modèle
+	 * @param arg2 l'argument remplaçant le second "{}" du modèle
+	 */
+	public static void info(String format, Object arg1, Object arg2)
+	{
+		if (Level.INFO.ordinal() >= threshold)
+		{
+			emit(Level.INFO, format(format, arg1, arg2, 2), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#WARNING}
+	 * @param message le message
+	 */
+	public static void warning(String message)
+	{
+		if (Level.WARNING.ordinal() >= threshold)
+		{
+			emit(Level.WARNING, message, null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#WARNING}
+	 * @param format le modèle du message
+	 * @param arg l'argument remplaçant le premier "{}" du modèle
+	 */
+	public static void warning(String format, Object arg)
+	{
+		if (Level.WARNING.ordinal() >= threshold)
+		{
+			emit(Level.WARNING, format(format, arg, null, 1), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#WARNING}
+	 * @param format le modèle du message
+	 * @param arg1 l'argument remplaçant le premier "{}" du modèle
+	 * @param arg2 l'argument remplaçant le second "{}" du modèle
+	 */
+	public static void warning(String format, Object arg1, Object arg2)
+	{
+		if (Level.WARNING.ordinal() >= threshold)
+		{
+			emit(Level.WARNING, format(format, arg1, arg2, 2), null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#ERROR}
+	 * @param message le message
+	 */
+	public static void error(String message)
+	{
+		if (Level.ERROR.ordinal() >= threshold)
+		{
+			emit(Level.ERROR, message, null);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#ERROR} accompagné de la pile d'appel
+	 * d'une exception
+	 * @param message le message
+	 * @param thrown l'exception à l'origine de l'erreur
+	 */
+	public static void error(String message, Throwable thrown)
+	{
+		if (Level.ERROR.ordinal() >= threshold)
+		{
+			emit(Level.ERROR, message, thrown);
+		}
+	}
+
+	/**
+	 * Remplacement des "{}" d'un modèle par des arguments
+	 * @param format le modèle
+	 * @param arg1 le premier argument
+	 * @param arg2 le second argument
+	 * @param count le nombre d'arguments à utiliser
+	 * @return le message obtenu
+	 */
+	private static String format(String format,
+	                             Object arg1,
+	                             Object arg2,
+	                             int count)
+	{
+		StringBuilder builder = new StringBuilder(format.length() + 32);
+		int start = 0;
+		for (int i = 0; i < count; i++)
+		{
+			int found = format.indexOf(Placeholder, start);
+			if (found < 0)
+			{
+				break;
+			}
+			builder.append(format, start, found);
+			builder.append(String.valueOf(i == 0 ? arg1 : arg2));
+			start = found + Placeholder.length();
+		}
+		builder.append(format, start, format.length());
+		return builder.toString();
+	}
+
+	/**
+	 * Emission d'un message (dont le niveau a déjà été testé)
+	 * @param level le niveau du message
+	 * @param message le message
+	 * @param thrown l'exception éventuelle accompagnant le message
+	 */
+	private static void emit(Level level, String message, Throwable thrown)
+	{
+		PrintStream out = level.ordinal() >= Level.WARNING.ordinal()
+		    ? System.err : System.out;
+		String line = level + " " + caller() + " : " + message;
+		synchronized (out)
+		{
+			out.println(line);
+			if (thrown != null)
+			{
+				thrown.printStackTrace(out);
+			}
+		}
+	}
+
+	/**
+	 * Nom de l'émetteur du message : la première méthode de la pile
+	 * n'appartenant pas à cette classe
+	 * @return le nom de la classe et de la méthode ayant émis le message
+	 * sous la forme "Classe::méthode"
+	 */
+	private static String caller()
+	{
+		Optional<StackWalker.StackFrame> frame = walker.walk(frames ->
+			frames.filter(f -> f.getDeclaringClass() != Log.class).findFirst());
+		if (!frame.isPresent())
+		{
+			return "?";
+		}
+		return frame.get().getDeclaringClass().getSimpleName() + "::"
+		    + frame.get().getMethodName();
+	}
+}
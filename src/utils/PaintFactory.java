@@ -2,7 +2,15 @@ package utils;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.LinearGradientPaint;
+import java.awt.MultipleGradientPaint.CycleMethod;
 import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.TexturePaint;
+import java.awt.image.BufferedImage;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -10,7 +18,11 @@ import javax.swing.JColorChooser;
 
 /**
  * Classe contenant une FlyweightFactory pour les {@link Paint} afin de pouvoir
- * réutiliser un même {@link Paint} à plusieurs endroits du programme
+ * réutiliser un même {@link Paint} à plusieurs endroits du programme.
+ * Outre les couleurs unies, la factory fournit des dégradés (linéaires et
+ * radiaux) et des hachures sous forme de {@link CachedPaint} : les figures
+ * partageant un même dégradé ou de mêmes hachures partagent aussi les
+ * rasters calculés pour les dessiner.
  * @author davidroussel
  */
 public class PaintFactory
@@ -46,7 +58,16 @@ public class PaintFactory
 	 * Flyweight factory stockant tous les {@link Paint} déjà requis
 	 */
 	private static FlyweightFactory<Paint> paintFactory =
-		new FlyweightFactory<Paint>();
+		new FlyweightFactory<Paint>("paint");
+
+	/**
+	 * Accès à la factory (pour en consulter les statistiques)
+	 * @return la factory stockant les {@link Paint}
+	 */
+	public static FlyweightFactory<Paint> getFactory()
+	{
+		return paintFactory;
+	}
 
 	/**
 	 * Obtention d'un {@link Paint} de la factory
@@ -106,4 +127,98 @@ public class PaintFactory
 		
 		return null;
 	}
+
+	/**
+	 * Obtention d'un dégradé linéaire de la factory
+	 * @param x1 abscisse du point de départ du dégradé
+	 * @param y1 ordonnée du point de départ du dégradé
+	 * @param x2 abscisse du point d'arrivée du dégradé
+	 * @param y2 ordonnée du point d'arrivée du dégradé
+	 * @param fractions les positions (croissantes entre 0 et 1) des couleurs
+	 * le long du dégradé
+	 * @param colors les couleurs du dégradé
+	 * @param cycle la manière de prolonger le dégradé au delà de ses
+	 * extrémités
+	 * @return le dégradé demandé en provenance de la factory
+	 */
+	public static Paint getLinearGradient(float x1, float y1,
+	                                      float x2, float y2,
+	                                      float[] fractions,
+	                                      Color[] colors,
+	                                      CycleMethod cycle)
+	{
+		Paint gradient = new LinearGradientPaint(x1, y1, x2, y2,
+		                                         fractions, colors, cycle);
+		return paintFactory.get(new CachedPaint(gradient,
+		                                        "Linear",
+		                                        new float[] {x1, y1, x2, y2},
+		                                        fractions.clone(),
+		                                        colors.clone(),
+		                                        cycle));
+	}
+
+	/**
+	 * Obtention d'un dégradé radial de la factory
+	 * @param cx abscisse du centre du dégradé
+	 * @param cy ordonnée du centre du dégradé
+	 * @param radius rayon du dégradé
+	 * @param fractions les positions (croissantes entre 0 et 1) des couleurs
+	 * le long du rayon
+	 * @param colors les couleurs du dégradé
+	 * @param cycle la manière de prolonger le dégradé au delà du rayon
+	 * @return le dégradé demandé en provenance de la factory
+	 */
+	public static Paint getRadialGradient(float cx, float cy, float radius,
+	                                      float[] fractions,
+	                                      Color[] colors,
+	                                      CycleMethod cycle)
+	{
+		Paint gradient = new RadialGradientPaint(cx, cy, radius,
+		                                         fractions, colors, cycle);
+		return paintFactory.get(new CachedPaint(gradient,
+		                                        "Radial",
+		                                        new float[] {cx, cy, radius},
+		                                        fractions.clone(),
+		                                        colors.clone(),
+		                                        cycle));
+	}
+
+	/**
+	 * Obtention de hachures de la factory
+	 * @param line la couleur des traits des hachures
+	 * @param background la couleur du fond des hachures (éventuellement
+	 * transparente)
+	 * @param spacing l'espacement (en pixels) entre deux traits
+	 * @param crossed true pour des hachures croisées, false pour des hachures
+	 * diagonales simples
+	 * @return les hachures demandées en provenance de la factory
+	 */
+	public static Paint getHatch(Color line,
+	                             Color background,
+	                             int spacing,
+	                             boolean crossed)
+	{
+		int size = Math.max(2, spacing);
+		BufferedImage texture =
+		    new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2D = texture.createGraphics();
+		g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+		                     RenderingHints.VALUE_ANTIALIAS_ON);
+		g2D.setColor(background);
+		g2D.fillRect(0, 0, size, size);
+		g2D.setColor(line);
+		g2D.drawLine(0, size - 1, size - 1, 0);
+		if (crossed)
+		{
+			g2D.drawLine(0, 0, size - 1, size - 1);
+		}
+		g2D.dispose();
+		Paint hatch = new TexturePaint(texture, new Rectangle(0, 0, size, size));
+		return paintFactory.get(new CachedPaint(hatch,
+		                                        "Hatch",
+		                                        line,
+		                                        background,
+		                                        Integer.valueOf(size),
+		                                        Boolean.valueOf(crossed)));
+	}
 }
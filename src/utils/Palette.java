@@ -0,0 +1,397 @@
+package utils;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Palette attribuant un petit identifiant entier à chaque {@link Paint}
+ * distinct (au sens de equals) utilisé par les figures.
+ * Les figures, les filtres et les encodeurs manipulent ces identifiants
+ * plutôt que les {@link Paint} eux mêmes : comparer deux couleurs revient à
+ * comparer deux entiers, et la couleur comparable ({@link CColor}) associée
+ * à un identifiant est créée une seule fois lors de son enregistrement.
+ * L'identifiant {@link #NoPaint} est réservé à l'absence de couleur (null).
+ * La palette ne référence que faiblement les {@link Paint} enregistrés
+ * (ceux de la {@link PaintFactory}) : lorsque plus personne n'utilise un
+ * {@link Paint} (une couleur choisie une seule fois dans un sélecteur de
+ * couleurs par exemple) il est oublié par la palette et son identifiant est
+ * recyclé. Un identifiant n'est donc valable que tant que le {@link Paint}
+ * partagé renvoyé par {@link #intern(Paint)} est référencé : c'est ce
+ * {@link Paint} que les figures doivent conserver.
+ * La palette est commune à tous les dessins puisque les figures ne
+ * connaissent pas le dessin qui les contient.
+ * La lecture est sans verrou, seuls l'enregistrement d'un nouveau
+ * {@link Paint} et le recyclage des identifiants sont synchronisés.
+ * @author davidroussel
+ */
+public class Palette
+{
+	/**
+	 * Identifiant de l'absence de couleur
+	 */
+	public final static int NoPaint = 0;
+
+	/**
+	 * Identifiant renvoyé par {@link #find(Paint)} pour un {@link Paint}
+	 * qui n'est pas (ou plus) enregistré dans la palette et qui ne
+	 * correspond donc à aucune figure
+	 */
+	public final static int Unknown = -1;
+
+	/**
+	 * Capacité initiale des tables de la palette
+	 */
+	private final static int InitialCapacity = 32;
+
+	/**
+	 * Table associant à chaque {@link Paint} enregistré son identifiant
+	 */
+	private static final ConcurrentHashMap<PaintKey, Integer> ids =
+	    new ConcurrentHashMap<PaintKey, Integer>();
+
+	/**
+	 * File dans laquelle sont placées les clés des {@link Paint} détruits
+	 */
+	private static final ReferenceQueue<Paint> collected =
+	    new ReferenceQueue<Paint>();
+
+	/**
+	 * Les clés (faibles) des {@link Paint} enregistrés indexées par leur
+	 * identifiant
+	 */
+	private static volatile PaintKey[] keys = new PaintKey[InitialCapacity];
+
+	/**
+	 * Les couleurs comparables des {@link Paint} enregistrés indexées par
+	 * leur identifiant ({@link CColor#NoColor} pour les {@link Paint} qui ne
+	 * sont pas des couleurs unies)
+	 */
+	private static volatile CColor[] colors = new CColor[InitialCapacity];
+
+	/**
+	 * Les valeurs ARGB (empaquetées sur un entier) des {@link Paint}
+	 * enregistrés indexées par leur identifiant
+	 */
+	private static volatile int[] argbs = new int[InitialCapacity];
+
+	/**
+	 * Identifiants libérés par les {@link Paint} détruits et qui seront
+	 * réattribués en priorité
+	 */
+	private static int[] free = new int[InitialCapacity];
+
+	/**
+	 * Nombre d'identifiants libres dans {@link #free}
+	 */
+	private static int freeCount = 0;
+
+	/**
+	 * Nombre d'identifiants attribués (y compris {@link #NoPaint} et les
+	 * identifiants libres)
+	 */
+	private static int count = initialize();
+
+	/**
+	 * Génération de la palette, incrémentée à chaque fois qu'un identifiant
+	 * est attribué ou recyclé : un identifiant obtenu par
+	 * {@link #find(Paint)} reste valable tant que la génération n'a pas
+	 * changé
+	 */
+	private static volatile int generation = 0;
+
+	/**
+	 * Mise en place de l'identifiant {@link #NoPaint}
+	 * @return le nombre d'identifiants attribués
+	 */
+	private static int initialize()
+	{
+		colors[NoPaint] = CColor.NoColor;
+		argbs[NoPaint] = CColor.NoColor.getRGB();
+		return 1;
+	}
+
+	/**
+	 * {@link Paint} partagé de la palette égal à un {@link Paint}, qui est
+	 * enregistré dans la palette s'il ne l'était pas encore.
+	 * Tant que le {@link Paint} renvoyé est référencé, son identifiant
+	 * ({@link #idOf(Paint)}) ne change pas.
+	 * @param paint le paint recherché (éventuellement null)
+	 * @return le paint partagé égal à paint ou bien null si paint est null
+	 */
+	public static Paint intern(Paint paint)
+	{
+		if (paint == null)
+		{
+			return null;
+		}
+
+		Integer id = ids.get(new PaintKey(paint, null));
+		if (id != null)
+		{
+			Paint shared = getPaint(id.intValue());
+			if (paint.equals(shared))
+			{
+				return shared;
+			}
+		}
+		return register(paint);
+	}
+
+	/**
+	 * Identifiant d'un {@link Paint}, qui est enregistré dans la palette
+	 * s'il ne l'était pas encore.
+	 * L'identifiant n'est garanti que pour un paint obtenu par
+	 * {@link #intern(Paint)} (qui le maintient en vie).
+	 * @param paint le paint dont on veut l'identifiant (éventuellement null)
+	 * @return l'identifiant du paint ou bien {@link #NoPaint} si paint est
+	 * null
+	 */
+	public static int idOf(Paint paint)
+	{
+		if (paint == null)
+		{
+			return NoPaint;
+		}
+
+		Integer id = ids.get(new PaintKey(paint, null));
+		if (id != null)
+		{
+			return id.intValue();
+		}
+		return idOf(register(paint));
+	}
+
+	/**
+	 * Recherche de l'identifiant d'un {@link Paint} sans l'enregistrer
+	 * @param paint le paint recherché (éventuellement null)
+	 * @return l'identifiant du paint, {@link #NoPaint} si paint est null ou
+	 * bien {@link #Unknown} si le paint n'est pas enregistré (aucune figure
+	 * ne l'utilise alors)
+	 */
+	public static int find(Paint paint)
+	{
+		if (paint == null)
+		{
+			return NoPaint;
+		}
+
+		Integer id = ids.get(new PaintKey(paint, null));
+		return id != null ? id.intValue() : Unknown;
+	}
+
+	/**
+	 * Génération courante de la palette
+	 * @return la génération courante de la palette
+	 * @see #find(Paint)
+	 */
+	public static int generation()
+	{
+		return generation;
+	}
+
+	/**
+	 * Enregistrement d'un nouveau {@link Paint}
+	 * @param paint le paint à enregistrer
+	 * @return le paint partagé enregistré (éventuellement par un autre
+	 * thread entre temps)
+	 */
+	private static synchronized Paint register(Paint paint)
+	{
+		purge();
+		Integer existing = ids.get(new PaintKey(paint, null));
+		if (existing != null)
+		{
+			Paint shared = getPaint(existing.intValue());
+			if (paint.equals(shared))
+			{
+				return shared;
+			}
+		}
+
+		Paint shared = PaintFactory.getPaint(paint);
+		int id;
+		if (freeCount > 0)
+		{
+			id = free[--freeCount];
+		}
+		else
+		{
+			id = count;
+			if (id == keys.length)
+			{
+				int capacity = 2 * keys.length;
+				colors = Arrays.copyOf(colors, capacity);
+				argbs = Arrays.copyOf(argbs, capacity);
+				keys = Arrays.copyOf(keys, capacity);
+			}
+			count = id + 1;
+		}
+		PaintKey key = new PaintKey(shared, collected);
+		keys[id] = key;
+		if (shared instanceof Color)
+		{
+			colors[id] = new CColor((Color) shared);
+			argbs[id] = ((Color) shared).getRGB();
+		}
+		else
+		{
+			colors[id] = CColor.NoColor;
+			argbs[id] = CColor.NoColor.getRGB();
+		}
+		ids.put(key, Integer.valueOf(id));
+		generation++;
+		return shared;
+	}
+
+	/**
+	 * Recyclage des identifiants des {@link Paint} détruits
+	 */
+	private static void purge()
+	{
+		for (Reference<? extends Paint> ref = collected.poll(); ref != null;
+		    ref = collected.poll())
+		{
+			Integer id = ids.remove(ref);
+			if (id != null)
+			{
+				int index = id.intValue();
+				keys[index] = null;
+				if (freeCount == free.length)
+				{
+					free = Arrays.copyOf(free, 2 * free.length);
+				}
+				free[freeCount++] = index;
+				generation++;
+			}
+		}
+	}
+
+	/**
+	 * {@link Paint} correspondant à un identifiant
+	 * @param id l'identifiant
+	 * @return le paint correspondant à l'identifiant ou bien null si
+	 * l'identifiant est {@link #NoPaint} ou n'est pas attribué
+	 */
+	public static Paint getPaint(int id)
+	{
+		PaintKey[] table = keys;
+		PaintKey key = ((id > NoPaint) && (id < table.length)) ? table[id]
+		    : null;
+		return key != null ? key.get() : null;
+	}
+
+	/**
+	 * Couleur comparable correspondant à un identifiant (sans allocation)
+	 * @param id l'identifiant
+	 * @return la couleur comparable correspondant à l'identifiant ou bien
+	 * {@link CColor#NoColor} s'il ne correspond pas à une couleur unie
+	 */
+	public static CColor getCColor(int id)
+	{
+		CColor[] table = colors;
+		CColor color = ((id >= NoPaint) && (id < table.length)) ? table[id]
+		    : null;
+		return color != null ? color : CColor.NoColor;
+	}
+
+	/**
+	 * Valeur ARGB empaquetée correspondant à un identifiant
+	 * @param id l'identifiant
+	 * @return la valeur ARGB de la couleur correspondant à l'identifiant
+	 * (celle de {@link CColor#NoColor} s'il ne correspond pas à une couleur
+	 * unie)
+	 */
+	public static int getARGB(int id)
+	{
+		int[] table = argbs;
+		return ((id >= NoPaint) && (id < table.length)) ? table[id]
+		    : table[NoPaint];
+	}
+
+	/**
+	 * Comparaison des couleurs correspondant à deux identifiants dans
+	 * l'ordre de {@link CColor#compareTo(CColor)}
+	 * @param id1 le premier identifiant
+	 * @param id2 le second identifiant
+	 * @return un entier négatif, nul ou positif selon que la première
+	 * couleur est inférieure, égale ou supérieure à la seconde
+	 */
+	public static int compare(int id1, int id2)
+	{
+		if (id1 == id2)
+		{
+			return 0;
+		}
+		return CColor.compareARGB(getARGB(id1), getARGB(id2));
+	}
+
+	/**
+	 * Nombre d'identifiants en usage
+	 * @return le nombre d'identifiants en usage (y compris
+	 * {@link #NoPaint})
+	 */
+	public static int size()
+	{
+		return ids.size() + 1;
+	}
+
+	/**
+	 * Clé (faible) d'un {@link Paint} dans la table des identifiants :
+	 * deux clés sont égales si leurs {@link Paint} sont égaux au sens de
+	 * equals
+	 */
+	private static class PaintKey extends WeakReference<Paint>
+	{
+		/**
+		 * Le hachage du paint
+		 */
+		private final int hash;
+
+		/**
+		 * Constructeur d'une clé
+		 * @param paint le paint
+		 * @param queue la file dans laquelle placer la clé lorsque le paint
+		 * est détruit (ou null pour une clé de recherche)
+		 */
+		public PaintKey(Paint paint, ReferenceQueue<Paint> queue)
+		{
+			super(paint, queue);
+			hash = paint.hashCode();
+		}
+
+		/**
+		 * Hachage de la clé
+		 * @return le hachage du paint
+		 */
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		/**
+		 * Comparaison avec une autre clé
+		 * @param o l'objet à comparer
+		 * @return true si o est cette clé ou une clé vers un paint égal
+		 */
+		@Override
+		public boolean equals(Object o)
+		{
+			if (o == this)
+			{
+				return true;
+			}
+			if (!(o instanceof PaintKey))
+			{
+				return false;
+			}
+			Paint paint = get();
+			return (paint != null) && paint.equals(((PaintKey) o).get());
+		}
+	}
+}
@@ -31,37 +31,29 @@ public interface Signature
 	 * Method name accessor.
 	 * To be called from static methods
 	 * @return the name of the method calling this method based on
-	 * the stack trace
+	 * a {@link StackWalker} (only the caller's frame is materialized)
+	 * @see Log for diagnostics messages which should not call this method
 	 */
 	public static String getStaticMethodName()
 	{
-		StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-		if (stackTrace.length >= 2)
-		{
-			return stackTrace[2].getMethodName();
-		}
-		else
-		{
-			return new String();
-		}
+		return StackWalker.getInstance()
+		    .walk(frames -> frames.skip(1).findFirst())
+		    .map(StackWalker.StackFrame::getMethodName)
+		    .orElse("");
 	}
 
 	/**
 	 * Method name accessor.
 	 * To be called from instance methods
 	 * @return the name of the method calling this method based on
-	 * the stack trace
+	 * a {@link StackWalker} (only the caller's frame is materialized)
+	 * @see Log for diagnostics messages which should not call this method
 	 */
 	public default String getMethodName()
 	{
-		StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-		if (stackTrace.length >= 2)
-		{
-			return stackTrace[2].getMethodName();
-		}
-		else
-		{
-			return new String();
-		}
+		return StackWalker.getInstance()
+		    .walk(frames -> frames.skip(1).findFirst())
+		    .map(StackWalker.StackFrame::getMethodName)
+		    .orElse("");
 	}
 }
@@ -15,7 +15,16 @@ public class StrokeFactory
 	 * Flyweight factory stockant tous les {@link BasicStroke} déjà requis
 	 */
 	private static FlyweightFactory<BasicStroke> strokeFactory =
-		new FlyweightFactory<BasicStroke>();
+		new FlyweightFactory<BasicStroke>("stroke");
+
+	/**
+	 * Accès à la factory (pour en consulter les statistiques)
+	 * @return la factory stockant les {@link BasicStroke}
+	 */
+	public static FlyweightFactory<BasicStroke> getFactory()
+	{
+		return strokeFactory;
+	}
 
 	/**
 	 * Obtention d'un {@link BasicStroke} de la factory
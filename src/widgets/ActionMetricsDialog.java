@@ -0,0 +1,241 @@
+package widgets;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+
+import metrics.ActionMetrics;
+import metrics.Metrics;
+import utils.Log;
+
+/**
+ * Boite de dialogue présentant les statistiques des actions de l'éditeur
+ * ({@link ActionMetrics}) : nombre d'invocations, durées (cumulée, moyenne,
+ * médiane, p99 et maximale) et octets alloués. Les mesures (désactivées par
+ * défaut) peuvent être activées depuis la boite de dialogue et les
+ * statistiques peuvent être rafraichies, remises à zéro ou exportées au
+ * format CSV.
+ * @author davidroussel
+ */
+public class ActionMetricsDialog extends JDialog
+{
+	/**
+	 * Serializable class must have a serial version UID
+	 */
+	private static final long serialVersionUID = 7318540926128342215L;
+
+	/**
+	 * Le modèle de la table des statistiques
+	 */
+	private final StatsModel model;
+
+	/**
+	 * Constructeur de la boite de dialogue
+	 * @param owner la fenêtre propriétaire de la boite de dialogue
+	 */
+	public ActionMetricsDialog(Frame owner)
+	{
+		super(owner, "Action metrics", false);
+		model = new StatsModel();
+
+		JTable table = new JTable(model);
+		table.setAutoCreateRowSorter(true);
+		JScrollPane scrollPane = new JScrollPane(table);
+		scrollPane.setPreferredSize(new Dimension(760, 300));
+		getContentPane().add(scrollPane, BorderLayout.CENTER);
+
+		JLabel allocationLabel =
+		    new JLabel(ActionMetrics.isAllocationMeasured()
+		        ? "Allocations measured on the invoking thread"
+		        : "Allocations are not measured by this JVM");
+		getContentPane().add(allocationLabel, BorderLayout.NORTH);
+
+		JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		JCheckBox measureBox = new JCheckBox("Measure", Metrics.isEnabled());
+		measureBox.addActionListener(e ->
+		{
+			Metrics.setEnabled(measureBox.isSelected());
+		});
+		buttonsPanel.add(measureBox);
+		JButton refreshButton = new JButton("Refresh");
+		refreshButton.addActionListener(e -> refresh());
+		buttonsPanel.add(refreshButton);
+		JButton resetButton = new JButton("Reset");
+		resetButton.addActionListener(e ->
+		{
+			ActionMetrics.reset();
+			refresh();
+		});
+		buttonsPanel.add(resetButton);
+		JButton exportButton = new JButton("Export CSV...");
+		exportButton.addActionListener(e -> exportCsv());
+		buttonsPanel.add(exportButton);
+		JButton closeButton = new JButton("Close");
+		closeButton.addActionListener(e -> setVisible(false));
+		buttonsPanel.add(closeButton);
+		getContentPane().add(buttonsPanel, BorderLayout.SOUTH);
+
+		pack();
+		setLocationRelativeTo(owner);
+	}
+
+	/**
+	 * Rafraichissement des statistiques affichées
+	 */
+	public void refresh()
+	{
+		model.setStats(ActionMetrics.getStats());
+	}
+
+	/**
+	 * Choix d'un fichier puis export des statistiques au format CSV
+	 */
+	private void exportCsv()
+	{
+		JFileChooser chooser = new JFileChooser();
+		chooser.setSelectedFile(new File("actions.csv"));
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+		{
+			return;
+		}
+		File file = chooser.getSelectedFile();
+		try
+		{
+			ActionMetrics.exportCsv(file.toPath());
+			Log.info("action metrics exported to {}", file);
+		}
+		catch (IOException ex)
+		{
+			Log.error("unable to export action metrics to " + file, ex);
+			JOptionPane.showMessageDialog(this, ex.getLocalizedMessage(),
+			    "Export CSV", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	/**
+	 * Modèle de la table des statistiques des actions
+	 */
+	private static class StatsModel extends AbstractTableModel
+	{
+		/**
+		 * Serializable class must have a serial version UID
+		 */
+		private static final long serialVersionUID = -5162947780314069823L;
+
+		/**
+		 * Les noms des colonnes
+		 */
+		private final static String[] Columns = {"Action", "Count",
+		    "Total (ms)", "Mean (ms)", "p50 (ms)", "p99 (ms)", "Max (ms)",
+		    "Mean (kB)", "Max (kB)"};
+
+		/**
+		 * Les types des colonnes (pour le tri)
+		 */
+		private final static Class<?>[] Types = {String.class, Long.class,
+		    Double.class, Double.class, Double.class, Double.class,
+		    Double.class, Double.class, Double.class};
+
+		/**
+		 * Les statistiques affichées
+		 */
+		private List<ActionMetrics.Stats> stats;
+
+		/**
+		 * Constructeur du modèle
+		 */
+		public StatsModel()
+		{
+			stats = new ArrayList<ActionMetrics.Stats>();
+		}
+
+		/**
+		 * Changement des statistiques affichées
+		 * @param stats les nouvelles statistiques
+		 */
+		public void setStats(List<ActionMetrics.Stats> stats)
+		{
+			this.stats = stats;
+			fireTableDataChanged();
+		}
+
+		@Override
+		public int getRowCount()
+		{
+			return stats.size();
+		}
+
+		@Override
+		public int getColumnCount()
+		{
+			return Columns.length;
+		}
+
+		@Override
+		public String getColumnName(int column)
+		{
+			return Columns[column];
+		}
+
+		@Override
+		public Class<?> getColumnClass(int column)
+		{
+			return Types[column];
+		}
+
+		@Override
+		public Object getValueAt(int row, int column)
+		{
+			ActionMetrics.Stats s = stats.get(row);
+			switch (column)
+			{
+				case 0:
+					return s.getName();
+				case 1:
+					return s.getCount();
+				case 2:
+					return round(s.getTotalMillis());
+				case 3:
+					return round(s.getMeanMillis());
+				case 4:
+					return round(s.getP50Millis());
+				case 5:
+					return round(s.getP99Millis());
+				case 6:
+					return round(s.getMaxMillis());
+				case 7:
+					return round(s.getMeanBytes() / 1024.0);
+				case 8:
+					return round(s.getMaxBytes() / 1024.0);
+				default:
+					return null;
+			}
+		}
+
+		/**
+		 * Arrondi d'une valeur au millième pour l'affichage
+		 * @param value la valeur à arrondir
+		 * @return la valeur arrondie
+		 */
+		private static Double round(double value)
+		{
+			return Math.round(value * 1000.0) / 1000.0;
+		}
+	}
+}
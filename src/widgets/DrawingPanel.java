@@ -6,7 +6,7 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
-import java.awt.RenderingHints;
+import java.awt.Rectangle;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
@@ -21,9 +21,16 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import figures.Drawing;
+import figures.DrawingEvent;
 import figures.Figure;
 import figures.listeners.AbstractFigureListener;
 import figures.listeners.creation.AbstractCreationListener;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.NotificationProfiler;
+import metrics.jfr.PaintEvent;
+import widgets.enums.RenderQuality;
+import utils.Log;
 import utils.Signature;
 
 /**
@@ -116,6 +123,22 @@ public class DrawingPanel extends JPanel
 	 */
 	private boolean sendInfoState;
 
+	/**
+	 * Durées de dessin du panel ({@link #paintComponent(Graphics)})
+	 */
+	private static final Histogram paintTime = Metrics.histogram("panel.paint");
+
+	/**
+	 * L'affichage des performances superposé au dessin ou bien null
+	 * lorsqu'il est masqué
+	 */
+	private PerformanceOverlay overlay;
+
+	/**
+	 * Le niveau de qualité du rendu des figures
+	 */
+	private volatile RenderQuality renderQuality;
+
 	/**
 	 * Constructeur de la zone de dessin à partir d'un modèle de dessin.
 	 * @param drawing le modèle de dessin
@@ -143,8 +166,7 @@ public class DrawingPanel extends JPanel
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null drawing");
+			Log.warning("null drawing");
 		}
 
 		this.coordLabel = coordLabel;
@@ -155,8 +177,7 @@ public class DrawingPanel extends JPanel
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null coordLabel");
+			Log.warning("null coordLabel");
 		}
 
 		this.infoPanel = infoPanel;
@@ -167,10 +188,12 @@ public class DrawingPanel extends JPanel
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null infoPanel");
+			Log.warning("null infoPanel");
 		}
 
+		overlay = null;
+		renderQuality = RenderQuality.MEDIUM;
+
 		// DrawingPanel est son propre listener d'évènements souris
 		addMouseListener(this);
 		addMouseMotionListener(this);
@@ -247,12 +270,18 @@ public class DrawingPanel extends JPanel
 	@Override
 	protected void paintComponent(Graphics g)
 	{
+		long start = Metrics.now();
+		PaintEvent event = new PaintEvent();
+		event.begin();
+		if (NotificationProfiler.isEnabled())
+		{
+			NotificationProfiler.painted();
+		}
 		super.paintComponent(g); // Inutile
 
-		// caractéristiques graphiques : mise en place de l'antialiasing
+		// caractéristiques graphiques : antialiasing, etc. suivant la qualité
 		Graphics2D g2D = (Graphics2D) g;
-		g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-		                     RenderingHints.VALUE_ANTIALIAS_ON);
+		renderQuality.applyTo(g2D);
 
 		// taille de la zone de dessin
 		Dimension d = getSize();
@@ -260,6 +289,16 @@ public class DrawingPanel extends JPanel
 		g2D.setColor(getBackground());
 		g2D.fillRect(0, 0, d.width, d.height);
 
+		/*
+		 * Lorsque seule une partie du panel doit être redessinée, les figures
+		 * situées en dehors de cette zone ne sont pas dessinées
+		 */
+		Rectangle clip = g2D.getClipBounds();
+		boolean culling = (clip != null)
+		    && !clip.contains(0, 0, d.width, d.height);
+		// Nombre de figures dessinées [0] et ignorées [1]
+		int[] counts = new int[2];
+
 		// Puis on dessine l'ensemble des figures
 		if (drawingModel != null)
 		{
@@ -268,7 +307,18 @@ public class DrawingPanel extends JPanel
 			 * sur le flux (éventuellement filtré) des figures permettant
 			 * de dessiner les figures
 			 */
-			drawingModel.stream().forEach((Figure f) -> f.draw(g2D));
+			drawingModel.stream().forEach((Figure f) ->
+			{
+				if (culling && !clip.intersects(Drawing.getPaintBounds(f)))
+				{
+					counts[1]++;
+				}
+				else
+				{
+					f.draw(g2D);
+					counts[0]++;
+				}
+			});
 
 			/*
 			 * Soulignement des figures sélectionnées (s'il y en a).
@@ -283,9 +333,76 @@ public class DrawingPanel extends JPanel
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null model");
+			Log.warning("null model");
+		}
+
+		paintTime.recordSince(start);
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.figures = counts[0];
+			event.culled = counts[1];
+			event.clipWidth = clip != null ? clip.width : d.width;
+			event.clipHeight = clip != null ? clip.height : d.height;
+			event.commit();
+		}
+
+		// Affichage des performances (par dessus tout le reste)
+		if (overlay != null)
+		{
+			overlay.paint(g2D);
+		}
+	}
+
+	/**
+	 * Niveau de qualité du rendu des figures
+	 * @return le niveau de qualité du rendu
+	 */
+	public RenderQuality getRenderQuality()
+	{
+		return renderQuality;
+	}
+
+	/**
+	 * Changement du niveau de qualité du rendu des figures (peut être
+	 * appelé depuis n'importe quel thread)
+	 * @param quality le nouveau niveau de qualité du rendu
+	 */
+	public void setRenderQuality(RenderQuality quality)
+	{
+		if (quality != null)
+		{
+			renderQuality = quality;
+			repaint();
+		}
+	}
+
+	/**
+	 * Affichage ou masquage des performances superposées au dessin
+	 * @param visible true pour afficher les performances
+	 */
+	public void setOverlayVisible(boolean visible)
+	{
+		if (visible && (overlay == null))
+		{
+			overlay = new PerformanceOverlay(this, paintTime);
+			overlay.start();
 		}
+		else if (!visible && (overlay != null))
+		{
+			overlay.stop();
+			overlay = null;
+		}
+		repaint();
+	}
+
+	/**
+	 * Etat d'affichage des performances
+	 * @return true si les performances sont affichées par dessus le dessin
+	 */
+	public boolean isOverlayVisible()
+	{
+		return overlay != null;
 	}
 
 	/**
@@ -301,8 +418,7 @@ public class DrawingPanel extends JPanel
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-				+ "(null)");
+			Log.warning("null figure listener");
 		}
 	}
 
@@ -323,9 +439,10 @@ public class DrawingPanel extends JPanel
 	 * Mise à jour déclenchée par un {@link Observable#notifyObservers()} : en
 	 * l'occurence le modèle de dessin ({@link Drawing}) lorsque celui ci est
 	 * modifié. Cette mise à jour déclenche une requête de redessin du panel.
+	 * Lorsque le modèle précise la zone modifiée ({@link DrawingEvent}) seule
+	 * cette zone est redessinée.
 	 * @param observable l'observable ayant déclenché cette MAJ
-	 * @param data les données (evt) transmises par l'observable [non utilisé
-	 * ici]
+	 * @param data les données (evt) transmises par l'observable
 	 * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
 	 */
 	@Override
@@ -333,8 +450,23 @@ public class DrawingPanel extends JPanel
 	{
 		if (observable instanceof Drawing)
 		{
+			if (NotificationProfiler.isEnabled())
+			{
+				NotificationProfiler.repaintRequested();
+			}
 			// Le modèle à changé il faut redessiner les figures
-			repaint();
+			if ((data instanceof DrawingEvent)
+			    && (((DrawingEvent) data).getDirtyBounds() != null))
+			{
+				Rectangle dirty =
+				    ((DrawingEvent) data).getDirtyBounds().getBounds();
+				dirty.grow(1, 1);
+				repaint(dirty);
+			}
+			else
+			{
+				repaint();
+			}
 		}
 	}
 
@@ -4,6 +4,7 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.HeadlessException;
 import java.awt.Paint;
 import java.awt.Toolkit;
@@ -12,6 +13,8 @@ import java.awt.event.InputEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.EventObject;
@@ -26,14 +29,18 @@ import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JColorChooser;
 import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
+import javax.swing.JSpinner;
+import javax.swing.JTextArea;
 import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
@@ -41,16 +48,26 @@ import javax.swing.SpinnerNumberModel;
 
 import figures.Drawing;
 import figures.Figure;
+import figures.FigureCodec;
 import figures.enums.FigureType;
 import figures.enums.LineType;
 import figures.listeners.AbstractFigureListener;
 import figures.listeners.creation.AbstractCreationListener;
 import figures.listeners.transform.AbstractTransformShapeListener;
 import history.HistoryManager;
+import metrics.ActionMetrics;
+import metrics.NotificationProfiler;
+import metrics.Session;
+import metrics.SessionRecorder;
+import metrics.StallWatchdog;
+import metrics.jmx.Management;
 import utils.IconFactory;
+import utils.Log;
 import utils.PaintFactory;
 import utils.Signature;
+import widgets.enums.FillStyle;
 import widgets.enums.OperationMode;
+import widgets.enums.RenderQuality;
 
 /**
  * Classe de la fenêtre principale de l'éditeur de figures
@@ -75,9 +92,17 @@ public class EditorFrame extends JFrame implements Signature
 	protected HistoryManager<Figure> history;
 
 	/**
-	 * Taille de l'historique
+	 * Nombre maximum de memento par pile de l'historique. La taille de
+	 * l'historique est essentiellement limitée par {@link #historyBudget}
 	 */
-	protected static final int historyLength = 32;
+	protected static final int historyLength = 1024;
+
+	/**
+	 * Budget mémoire (en octets) de l'historique : 64 Mo par défaut,
+	 * configurable avec la propriété système "history.budget"
+	 */
+	protected static final long historyBudget =
+	    Long.getLong("history.budget", 64L * 1024L * 1024L).longValue();
 
 	/**
 	 * Indique si l'éditeur est en mode Création de figures ou édition
@@ -228,152 +253,207 @@ public class EditorFrame extends JFrame implements Signature
 	 * Action déclenchée lorsque l'on clique sur le bouton quit ou sur l'item
 	 * de menu quit
 	 */
-	private final Action quitAction = new QuitAction();
+	private final Action quitAction =
+	    ActionMetrics.measure(new QuitAction());
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur le bouton undo ou sur l'item
 	 * de menu undo
 	 */
-	private final Action undoAction = new UndoAction();
+	private final Action undoAction =
+	    ActionMetrics.measure(new UndoAction());
 
 	/**
 	 * Action réalisée lorsque l'on souhaite refaire une action qui vient
 	 * d'être annulée
 	 */
-	private final Action redoAction = new RedoAction();
+	private final Action redoAction =
+	    ActionMetrics.measure(new RedoAction());
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur le bouton clear ou sur l'item
 	 * de menu clear
 	 */
-	private final Action clearAction = new ClearAction();
+	private final Action clearAction =
+	    ActionMetrics.measure(new ClearAction());
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur le bouton about ou sur l'item
 	 * de menu about
 	 */
-	private final Action aboutAction = new AboutAction();
+	private final Action aboutAction =
+	    ActionMetrics.measure(new AboutAction());
 
 	/**
 	 * Action déclenchée lorsque l'on sélectionne de mode édition des figures
 	 */
-	private final Action toggleCreateEditAction = new ToggleCreateEditAction();
+	private final ToggleCreateEditAction toggleCreateEdit =
+	    new ToggleCreateEditAction();
+
+	/**
+	 * Action (mesurée) de sélection du mode édition des figures
+	 */
+	private final Action toggleCreateEditAction =
+	    ActionMetrics.measure(toggleCreateEdit);
 
 	/**
 	 * Action déclenchée pour mettre filter ou non les figures
 	 */
-	private final Action filterAction = new FilterAction();
+	private final Action filterAction =
+	    ActionMetrics.measure(new FilterAction());
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des cercles
 	 */
 	private final Action circleFilterAction =
-	    new ShapeFilterAction(FigureType.CIRCLE);
+	    ActionMetrics.measure(new ShapeFilterAction(FigureType.CIRCLE));
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des ellipses
 	 */
 	private final Action ellipseFilterAction =
-	    new ShapeFilterAction(FigureType.ELLIPSE);
+	    ActionMetrics.measure(new ShapeFilterAction(FigureType.ELLIPSE));
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des rectangles
 	 */
 	private final Action rectangleFilterAction =
-	    new ShapeFilterAction(FigureType.RECTANGLE);
+	    ActionMetrics.measure(new ShapeFilterAction(FigureType.RECTANGLE));
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des rectangles arrondis
 	 */
 	private final Action rRectangleFilterAction =
-	    new ShapeFilterAction(FigureType.ROUNDED_RECTANGLE);
+	    ActionMetrics
+	        .measure(new ShapeFilterAction(FigureType.ROUNDED_RECTANGLE));
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des polygones
 	 */
 	private final Action polyFilterAction =
-	    new ShapeFilterAction(FigureType.POLYGON);
+	    ActionMetrics.measure(new ShapeFilterAction(FigureType.POLYGON));
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des polygones réguliers
 	 */
 	private final Action ngonFilterAction =
-	    new ShapeFilterAction(FigureType.NGON);
+	    ActionMetrics.measure(new ShapeFilterAction(FigureType.NGON));
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des étoiles
 	 */
 	private final Action starFilterAction =
-	    new ShapeFilterAction(FigureType.STAR);
+	    ActionMetrics.measure(new ShapeFilterAction(FigureType.STAR));
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des type de lignes vides
 	 */
 	private final Action noneLineFilterAction =
-	    new LineFilterAction(LineType.NONE);
+	    ActionMetrics.measure(new LineFilterAction(LineType.NONE));
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des type de lignes pleines
 	 */
 	private final Action solidLineFilterAction =
-	    new LineFilterAction(LineType.SOLID);
+	    ActionMetrics.measure(new LineFilterAction(LineType.SOLID));
 
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des type de lignes pointillées
 	 */
 	private final Action dashedLineFilterAction =
-	    new LineFilterAction(LineType.DASHED);
+	    ActionMetrics.measure(new LineFilterAction(LineType.DASHED));
 
 	/**
 	 * Action déclenchée pour filter ou non les figures suivant
 	 * la couleur de replissage courante
 	 */
-	private final Action fillColorFilterAction = new FillColorFilterAction();
+	private final Action fillColorFilterAction =
+	    ActionMetrics.measure(new FillColorFilterAction());
 
 	/**
 	 * Action déclenchée pour filter ou non les figures suivant
 	 * la couleur de trait courante
 	 */
-	private final Action edgeColorFilterAction = new EdgeColorFilterAction();
+	private final Action edgeColorFilterAction =
+	    ActionMetrics.measure(new EdgeColorFilterAction());
 
 	/**
 	 * Action réalisée pour détruire les figures sélectionnées
 	 */
-	private final Action deleteAction = new DeleteAction();
+	private final Action deleteAction =
+	    ActionMetrics.measure(new DeleteAction());
 
 	/**
 	 * Action réalisée pour monter les figures sélectionnées en tête de liste
 	 * des figures
 	 */
-	private final Action moveUpAction = new MoveUpAction();
+	private final Action moveUpAction =
+	    ActionMetrics.measure(new MoveUpAction());
 
 	/**
 	 * Action réalisée pour descendre les figures sélectionnées en fin de liste
 	 * des figures
 	 */
-	private final Action moveDownAction = new MoveDownAction();
+	private final Action moveDownAction =
+	    ActionMetrics.measure(new MoveDownAction());
 
 	/**
 	 * Action réalisée pour appliquer le style courant (couleur de remplissage,
 	 * couleur de trait et style de trait) aux figures sélectionnées
 	 */
-	private final Action styleAction = new StyleAction();
+	private final Action styleAction =
+	    ActionMetrics.measure(new StyleAction());
+
+	/**
+	 * Action permettant de lancer un test de charge du rendu avec des
+	 * figures animées ({@link StressTest})
+	 */
+	private final Action magicDrawAction =
+	    ActionMetrics.measure(new MagicDrawAction());
+
+	/**
+	 * Action permettant d'afficher ou de masquer les performances par dessus
+	 * la zone de dessin
+	 */
+	private final Action performanceAction =
+	    ActionMetrics.measure(new PerformanceAction());
+
+	/**
+	 * Action permettant d'exporter les blocages de l'EDT détectés par le
+	 * chien de garde
+	 */
+	private final Action exportStallsAction =
+	    ActionMetrics.measure(new ExportStallsAction());
+
+	/**
+	 * Action permettant d'activer ou de désactiver le profilage des
+	 * notifications du modèle de dessin
+	 */
+	private final Action profileNotificationsAction =
+	    ActionMetrics.measure(new ProfileNotificationsAction());
+
+	/**
+	 * Action permettant de démarrer ou d'arrêter l'enregistrement d'une
+	 * session d'édition
+	 */
+	private final Action recordSessionAction =
+	    ActionMetrics.measure(new RecordSessionAction());
 
 	/**
-	 * Action permettant de dessiner l'ensemble des figures afin de
-	 * montrer leurs possibilités
+	 * Action permettant d'afficher les durées et allocations des actions
 	 */
-	private final Action magicDrawAction = new MagicDrawAction();
+	private final Action actionMetricsAction =
+	    ActionMetrics.measure(new ActionMetricsAction());
 
 	/**
 	 * Constructeur de la fenètre de l'éditeur.
@@ -384,7 +464,10 @@ public class EditorFrame extends JFrame implements Signature
 	public EditorFrame() throws HeadlessException
 	{
 		drawingModel = new Drawing();
-		history = new HistoryManager<Figure>(drawingModel, historyLength);
+		history = new HistoryManager<Figure>(drawingModel,
+		                                     historyLength,
+		                                     historyBudget);
+		history.setCodec(new FigureCodec());
 		operationMode = OperationMode.CREATION;
 
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -395,7 +478,7 @@ public class EditorFrame extends JFrame implements Signature
 		 * Menu Contextuel -> Open With -> WindowBuilder Editor puis
 		 * aller dans l'onglet Design
 		 */
-		setPreferredSize(new Dimension(650, 450));
+		setPreferredSize(new Dimension(850, 450));
 		creationListener = null;
 
 		setTitle("Figure Editor v5.2");
@@ -408,8 +491,7 @@ public class EditorFrame extends JFrame implements Signature
 			}
 			else
 			{
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + "() : Could not find /images/Logo.png");
+				Log.warning("Could not find /images/Logo.png");
 			}
 		}
 
@@ -422,8 +504,7 @@ public class EditorFrame extends JFrame implements Signature
 
 		JToggleButton tglbtnMove = new JToggleButton("Move");
 		tglbtnMove.setAction(toggleCreateEditAction);
-		((ToggleCreateEditAction) toggleCreateEditAction)
-		    .registerButton(tglbtnMove);
+		toggleCreateEdit.registerButton(tglbtnMove);
 		toolBar.add(tglbtnMove);
 
 		Component toolBoxSpringer = Box.createHorizontalGlue();
@@ -490,6 +571,16 @@ public class EditorFrame extends JFrame implements Signature
 		getContentPane().add(scrollPane, BorderLayout.CENTER);
 		scrollPane.setViewportView(drawingPanel);
 
+		// Introspection du dessin, de l'historique, des caches et du rendu
+		// par JMX (jconsole, VisualVM, ...)
+		Management.register(drawingModel, history, drawingPanel);
+
+		// --------------------------------------------------------------------
+		// Navigateur d'historique à droite
+		// --------------------------------------------------------------------
+		HistoryPanel historyPanel = new HistoryPanel(history);
+		getContentPane().add(historyPanel, BorderLayout.EAST);
+
 		// --------------------------------------------------------------------
 		// Barre de menus
 		// --------------------------------------------------------------------
@@ -508,8 +599,7 @@ public class EditorFrame extends JFrame implements Signature
 
 		JCheckBoxMenuItem chckbxmntmEdit = new JCheckBoxMenuItem("Edit");
 		chckbxmntmEdit.setAction(toggleCreateEditAction);
-		((ToggleCreateEditAction) toggleCreateEditAction)
-		    .registerButton(chckbxmntmEdit);
+		toggleCreateEdit.registerButton(chckbxmntmEdit);
 		menuEdition.add(chckbxmntmEdit);
 
 		JMenu menuFilter = new JMenu("Filter");
@@ -548,6 +638,31 @@ public class EditorFrame extends JFrame implements Signature
 		mntmAbout.setAction(aboutAction);
 		menuHelp.add(mntmAbout);
 
+		JCheckBoxMenuItem chckbxmntmPerformance =
+		    new JCheckBoxMenuItem("Performances");
+		chckbxmntmPerformance.setAction(performanceAction);
+		menuHelp.add(chckbxmntmPerformance);
+
+		JMenuItem mntmExportStalls = new JMenuItem("Export EDT stalls...");
+		mntmExportStalls.setAction(exportStallsAction);
+		menuHelp.add(mntmExportStalls);
+
+		JCheckBoxMenuItem chckbxmntmProfileNotifications =
+		    new JCheckBoxMenuItem("Profile notifications");
+		chckbxmntmProfileNotifications.setAction(profileNotificationsAction);
+		chckbxmntmProfileNotifications
+		    .setSelected(NotificationProfiler.isEnabled());
+		menuHelp.add(chckbxmntmProfileNotifications);
+
+		JCheckBoxMenuItem chckbxmntmRecordSession =
+		    new JCheckBoxMenuItem("Record session");
+		chckbxmntmRecordSession.setAction(recordSessionAction);
+		menuHelp.add(chckbxmntmRecordSession);
+
+		JMenuItem mntmActionMetrics = new JMenuItem("Action metrics...");
+		mntmActionMetrics.setAction(actionMetricsAction);
+		menuHelp.add(mntmActionMetrics);
+
 		// --------------------------------------------------------------------
 		// Ajout des contrôleurs aux widgets
 		// pour connaître les Listeners applicable à un widget
@@ -1222,13 +1337,23 @@ public class EditorFrame extends JFrame implements Signature
 	}
 
 	/**
-	 * Action pour montrer l'ensemble des figures
+	 * Action permettant de lancer un test de charge du rendu
+	 * ({@link StressTest}) : un nombre paramétrable de figures animées sont
+	 * ajoutées au dessin pendant une durée fixée avec la qualité de rendu et
+	 * le style de remplissage (couleurs unies, dégradés ou hachures) choisis,
+	 * puis le rapport du test (images par seconde, durées des images et
+	 * pauses du ramasse miettes) est affiché.
 	 * @author davidroussel
 	 */
 	private class MagicDrawAction extends AbstractAction
 	{
 		/**
-		 * Constructeur de l'action pour dessiner toutes les figures
+		 * Le test de charge en cours (ou null)
+		 */
+		private StressTest test;
+
+		/**
+		 * Constructeur de l'action pour lancer un test de charge du rendu.
 		 * Met en place le raccourci clavier, l'icône et la description
 		 * de l'action
 		 */
@@ -1247,28 +1372,289 @@ public class EditorFrame extends JFrame implements Signature
 			                                    .getMenuShortcutKeyMask()));
 			putValue(LARGE_ICON_KEY, IconFactory.getIcon(name));
 			putValue(SMALL_ICON, IconFactory.getIcon(name + "_small"));
-			putValue(SHORT_DESCRIPTION, "Show figures demo");
+			putValue(SHORT_DESCRIPTION,
+			         "Benchmark rendering with animated figures");
+			test = null;
 		}
 
 		/**
-		 * Opérations réalisées par l'action
+		 * Opérations réalisées par l'action : choix du nombre de figures, de
+		 * la durée et de la qualité de rendu du test, puis lancement du test.
+		 * L'action est désactivée pendant le test.
 		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
 		 * ou d'un item de menu
 		 */
 		@Override
 		public void actionPerformed(ActionEvent e)
 		{
-			// AbstractButton button = (AbstractButton) e.getSource();
-			// boolean selected = button.getModel().isSelected();
+			if ((test != null) && test.isRunning())
+			{
+				return;
+			}
+			JSpinner figuresSpinner = new JSpinner(new SpinnerNumberModel(
+			    Math.max(StressTest.DefaultFigures, 1), 1, 1000000, 100));
+			JSpinner durationSpinner = new JSpinner(new SpinnerNumberModel(
+			    Math.max(StressTest.DefaultDuration, 1), 1, 3600, 1));
+			JComboBox<RenderQuality> qualityCombo =
+			    new JComboBox<RenderQuality>(RenderQuality.values());
+			qualityCombo.setSelectedItem(drawingPanel.getRenderQuality());
+			JComboBox<FillStyle> fillCombo =
+			    new JComboBox<FillStyle>(FillStyle.values());
+			Object[] message = {"Figures", figuresSpinner, "Duration (s)",
+			    durationSpinner, "Render quality", qualityCombo, "Fill",
+			    fillCombo};
+			if (JOptionPane.showConfirmDialog(EditorFrame.this, message,
+			    "MagicDraw", JOptionPane.OK_CANCEL_OPTION,
+			    JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+			{
+				return;
+			}
 
-			/*
-			 * TODO Dessinez un exemple de chacune de vos figures
-			 * Chaque figure à un endroit différent
-			 * Chaque figure avec un fillPaint, edgePaint, edgeWidth et edgeType
-			 * différents
-			 */
+			test = new StressTest(drawingModel, drawingPanel,
+			    ((Number) figuresSpinner.getValue()).intValue(),
+			    ((Number) durationSpinner.getValue()).intValue(),
+			    (RenderQuality) qualityCombo.getSelectedItem(),
+			    StressTest.DefaultSeed);
+			test.setFillStyle((FillStyle) fillCombo.getSelectedItem());
+			setEnabled(false);
+			test.start((String report) ->
+			{
+				setEnabled(true);
+				JTextArea area = new JTextArea(report);
+				area.setEditable(false);
+				area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+				JOptionPane.showMessageDialog(EditorFrame.this, area,
+				    "MagicDraw", JOptionPane.INFORMATION_MESSAGE);
+			});
+		}
+	}
+
+	/**
+	 * Action permettant d'afficher ou de masquer les performances (images
+	 * par seconde, durées de dessin, etc.) par dessus la zone de dessin
+	 * @author davidroussel
+	 */
+	private class PerformanceAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action pour afficher les performances.
+		 * Met en place le raccourci clavier et la description de l'action
+		 */
+		public PerformanceAction()
+		{
+			putValue(NAME, "Performances");
+			putValue(ACCELERATOR_KEY,
+			         KeyStroke.getKeyStroke(KeyEvent.VK_P,
+			                                Toolkit.getDefaultToolkit()
+			                                    .getMenuShortcutKeyMask()
+			                                    | InputEvent.SHIFT_MASK));
+			putValue(SHORT_DESCRIPTION, "Show/hide performances overlay");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : affichage ou masquage des
+		 * performances suivant l'état du bouton
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			AbstractButton button = (AbstractButton) e.getSource();
+			drawingPanel.setOverlayVisible(button.getModel().isSelected());
+		}
+	}
+
+	/**
+	 * Action permettant d'exporter dans un fichier texte les blocages de
+	 * l'EDT détectés par le chien de garde ({@link StallWatchdog}) avec les
+	 * piles de l'EDT
+	 * @author davidroussel
+	 */
+	private class ExportStallsAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action pour exporter les blocages de l'EDT.
+		 * Met en place la description de l'action
+		 */
+		public ExportStallsAction()
+		{
+			putValue(NAME, "Export EDT stalls...");
+			putValue(SHORT_DESCRIPTION,
+			         "Export the event dispatch thread stalls and their stacks");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : choix du fichier puis export
+		 * des blocages
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			JFileChooser chooser = new JFileChooser();
+			chooser.setSelectedFile(new File("stalls.txt"));
+			if (chooser.showSaveDialog(EditorFrame.this) !=
+			    JFileChooser.APPROVE_OPTION)
+			{
+				return;
+			}
+			File file = chooser.getSelectedFile();
+			try
+			{
+				StallWatchdog.export(file.toPath());
+				Log.info("{} EDT stall(s) exported to {}",
+				    StallWatchdog.getStalls().size(), file);
+			}
+			catch (IOException ex)
+			{
+				Log.error("unable to export EDT stalls to " + file, ex);
+				JOptionPane.showMessageDialog(EditorFrame.this,
+				    ex.getLocalizedMessage(), "Export EDT stalls",
+				    JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
+
+	/**
+	 * Action permettant d'activer ou de désactiver le profilage des
+	 * notifications du modèle de dessin ({@link NotificationProfiler}). Les
+	 * évènements comportant des notifications redondantes sont journalisés
+	 * au fur et à mesure et le rapport complet est journalisé lors de la
+	 * désactivation
+	 * @author davidroussel
+	 */
+	private class ProfileNotificationsAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action pour profiler les notifications.
+		 * Met en place la description de l'action
+		 */
+		public ProfileNotificationsAction()
+		{
+			putValue(NAME, "Profile notifications");
+			putValue(SHORT_DESCRIPTION,
+			         "Count drawing notifications and repaints per user action");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : activation ou désactivation du
+		 * profilage suivant l'état du bouton
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			AbstractButton button = (AbstractButton) e.getSource();
+			NotificationProfiler.setEnabled(button.getModel().isSelected());
+		}
+	}
 
-			drawingModel.update();
+	/**
+	 * Action permettant de démarrer ou d'arrêter l'enregistrement d'une
+	 * session d'édition ({@link SessionRecorder}). A l'arrêt, la session
+	 * enregistrée est sauvegardée dans le fichier choisi afin d'être rejouée
+	 * par la suite
+	 * @author davidroussel
+	 */
+	private class RecordSessionAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action pour enregistrer une session.
+		 * Met en place la description de l'action
+		 */
+		public RecordSessionAction()
+		{
+			putValue(NAME, "Record session");
+			putValue(SHORT_DESCRIPTION,
+			         "Record drawing events and commands to replay them later");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : démarrage de l'enregistrement
+		 * ou bien arrêt de l'enregistrement puis choix du fichier et
+		 * sauvegarde de la session suivant l'état du bouton
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			AbstractButton button = (AbstractButton) e.getSource();
+			if (button.getModel().isSelected())
+			{
+				SessionRecorder.start(drawingModel, drawingPanel);
+				return;
+			}
+			Session session = SessionRecorder.stop();
+			if (session == null)
+			{
+				return;
+			}
+			JFileChooser chooser = new JFileChooser();
+			chooser.setSelectedFile(new File("session.rec"));
+			if (chooser.showSaveDialog(EditorFrame.this) !=
+			    JFileChooser.APPROVE_OPTION)
+			{
+				return;
+			}
+			File file = chooser.getSelectedFile();
+			try
+			{
+				session.write(file.toPath());
+				Log.info("session saved to {}", file);
+			}
+			catch (IOException ex)
+			{
+				Log.error("unable to save session to " + file, ex);
+				JOptionPane.showMessageDialog(EditorFrame.this,
+				    ex.getLocalizedMessage(), "Record session",
+				    JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
+
+	/**
+	 * Action permettant d'afficher la boite de dialogue des durées et
+	 * allocations des actions ({@link ActionMetricsDialog})
+	 * @author davidroussel
+	 */
+	private class ActionMetricsAction extends AbstractAction
+	{
+		/**
+		 * La boite de dialogue (créée lors de la première invocation)
+		 */
+		private ActionMetricsDialog dialog;
+
+		/**
+		 * Constructeur de l'action pour afficher les durées et allocations
+		 * des actions. Met en place la description de l'action
+		 */
+		public ActionMetricsAction()
+		{
+			putValue(NAME, "Action metrics...");
+			putValue(SHORT_DESCRIPTION,
+			         "Show the time and memory spent by each command");
+			dialog = null;
+		}
+
+		/**
+		 * Opérations réalisées par l'action : rafraichissement puis
+		 * affichage de la boite de dialogue
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			if (dialog == null)
+			{
+				dialog = new ActionMetricsDialog(EditorFrame.this);
+			}
+			dialog.refresh();
+			dialog.setVisible(true);
 		}
 	}
 
@@ -0,0 +1,653 @@
+package widgets;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import figures.Figure;
+import history.HistoryEntry;
+import history.HistoryManager;
+import history.UndoNode;
+import history.UndoTree;
+import utils.Log;
+import utils.Signature;
+
+/**
+ * Panneau de navigation dans l'historique (Vue) : liste les entrées des
+ * piles de undo et de redo d'un {@link HistoryManager} (mis à jour au
+ * travers d'un observateur) accompagnées d'un aperçu du dessin
+ * correspondant. Un double clic sur une entrée annule (ou refait) les
+ * actions nécessaires pour revenir à cet état.
+ * Les branches de l'historique abandonnées par de nouvelles actions
+ * (conservées dans l'{@link UndoTree} de l'historique) sont listées sous les
+ * entrées : un double clic sur une branche restitue l'état de son extrémité.
+ * Les aperçus sont dessinés à la demande, en tâche de fond, et uniquement
+ * pour les lignes visibles : la taille des lignes étant fixe, la liste
+ * n'invoque son renderer que pour les lignes affichées, et une requête dont
+ * la ligne n'est plus visible lorsqu'elle est traitée est abandonnée. Les
+ * aperçus dessinés sont conservés dans un cache de taille bornée indexé par
+ * l'identifiant des entrées (qui ne change pas lorsque l'entrée est
+ * compressée ou déversée sur disque).
+ * @author davidroussel
+ */
+public class HistoryPanel extends JPanel implements Observer, Signature
+{
+	/**
+	 * Serializable class must have a serial version UID
+	 */
+	private static final long serialVersionUID = 3905312694285170121L;
+
+	/**
+	 * Largeur des aperçus
+	 */
+	public final static int ThumbnailWidth = 64;
+
+	/**
+	 * Hauteur des aperçus
+	 */
+	public final static int ThumbnailHeight = 48;
+
+	/**
+	 * Nombre maximum d'aperçus conservés dans le cache
+	 */
+	public final static int CacheSize = 128;
+
+	/**
+	 * Largeur des lignes de la liste
+	 */
+	private final static int RowWidth = 180;
+
+	/**
+	 * Marge autour des figures dans les aperçus
+	 */
+	private final static int ThumbnailMargin = 3;
+
+	/**
+	 * Aperçu affiché tant que l'aperçu d'une entrée n'est pas prêt
+	 */
+	private final static ImageIcon placeholder =
+	    new ImageIcon(blankImage(new Color(230, 230, 230)));
+
+	/**
+	 * L'historique à parcourir
+	 */
+	private HistoryManager<Figure> history;
+
+	/**
+	 * Le modèle de la liste des entrées : les undo du plus ancien au plus
+	 * récent suivis des redo du plus proche au plus lointain
+	 */
+	private DefaultListModel<Row> listModel;
+
+	/**
+	 * La liste des entrées
+	 */
+	private JList<Row> list;
+
+	/**
+	 * Le modèle de la liste des branches : les extrémités des branches de
+	 * l'arbre de l'historique autres que la branche courante
+	 */
+	private DefaultListModel<UndoNode<Figure>> branchModel;
+
+	/**
+	 * La liste des branches
+	 */
+	private JList<UndoNode<Figure>> branchList;
+
+	/**
+	 * Nombre d'entrées de undo en tête de {@link #listModel}
+	 */
+	private int undoCount;
+
+	/**
+	 * Cache des aperçus (LRU) indexé par identifiant d'entrée.
+	 * N'est accédé que depuis l'EDT.
+	 */
+	private Map<Long, ImageIcon> thumbnails;
+
+	/**
+	 * Identifiants des entrées dont l'aperçu est en cours de calcul.
+	 * N'est accédé que depuis l'EDT.
+	 */
+	private Set<Long> requested;
+
+	/**
+	 * Identifiants des entrées actuellement visibles, lus par le thread de
+	 * dessin des aperçus pour abandonner les requêtes périmées
+	 */
+	private volatile Set<Long> visible;
+
+	/**
+	 * Le thread de dessin des aperçus
+	 */
+	private ExecutorService renderer;
+
+	/**
+	 * Nombre d'aperçus dessinés
+	 */
+	private long renderedCount;
+
+	/**
+	 * Nombre de requêtes d'aperçus abandonnées car la ligne n'était plus
+	 * visible
+	 */
+	private long skippedCount;
+
+	/**
+	 * Constructeur d'un panneau d'historique
+	 * @param history l'historique à parcourir
+	 */
+	public HistoryPanel(HistoryManager<Figure> history)
+	{
+		this.history = history;
+		undoCount = 0;
+		thumbnails = new LinkedHashMap<Long, ImageIcon>(CacheSize, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ImageIcon> e)
+			{
+				return size() > CacheSize;
+			}
+		};
+		requested = new HashSet<Long>();
+		visible = Collections.emptySet();
+		renderer = Executors.newSingleThreadExecutor((Runnable r) ->
+		{
+			Thread thread = new Thread(r, "history-thumbnails");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		renderedCount = 0;
+		skippedCount = 0;
+
+		setLayout(new BorderLayout());
+		setPreferredSize(new Dimension(200, 10));
+
+		listModel = new DefaultListModel<Row>();
+		list = new JList<Row>(listModel);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setFixedCellWidth(RowWidth);
+		list.setFixedCellHeight(ThumbnailHeight + 4);
+		list.setCellRenderer(new RowRenderer());
+		list.addMouseListener(new MouseAdapter()
+		{
+			@Override
+			public void mouseClicked(MouseEvent e)
+			{
+				if (e.getClickCount() == 2)
+				{
+					int index = list.locationToIndex(e.getPoint());
+					if (index >= 0)
+					{
+						goTo(index);
+					}
+				}
+			}
+		});
+
+		JScrollPane scrollPane = new JScrollPane(list);
+		scrollPane.getViewport().addChangeListener(new ChangeListener()
+		{
+			@Override
+			public void stateChanged(ChangeEvent e)
+			{
+				updateVisible();
+			}
+		});
+		branchModel = new DefaultListModel<UndoNode<Figure>>();
+		branchList = new JList<UndoNode<Figure>>(branchModel);
+		branchList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		branchList.setVisibleRowCount(4);
+		branchList.setCellRenderer(new BranchRenderer());
+		branchList.addMouseListener(new MouseAdapter()
+		{
+			@Override
+			public void mouseClicked(MouseEvent e)
+			{
+				if (e.getClickCount() == 2)
+				{
+					int index = branchList.locationToIndex(e.getPoint());
+					if (index >= 0)
+					{
+						history.jumpTo(branchModel.get(index));
+					}
+				}
+			}
+		});
+		JPanel branchPanel = new JPanel(new BorderLayout());
+		branchPanel.add(new JLabel("Branches"), BorderLayout.NORTH);
+		branchPanel.add(new JScrollPane(branchList), BorderLayout.CENTER);
+
+		add(new JLabel("History"), BorderLayout.NORTH);
+		add(scrollPane, BorderLayout.CENTER);
+		add(branchPanel, BorderLayout.SOUTH);
+
+		history.addObserver(this);
+		refresh();
+	}
+
+	/**
+	 * Nombre d'aperçus dessinés
+	 * @return le nombre d'aperçus dessinés depuis la création du panneau
+	 */
+	public long getRenderedCount()
+	{
+		return renderedCount;
+	}
+
+	/**
+	 * Nombre de requêtes d'aperçus abandonnées
+	 * @return le nombre de requêtes d'aperçus abandonnées car la ligne
+	 * n'était plus visible lorsqu'elles ont été traitées
+	 */
+	public long getSkippedCount()
+	{
+		return skippedCount;
+	}
+
+	/**
+	 * Mise à jour du panneau lorsque l'historique a changé
+	 * @param observable l'observable ayant déclenché cette MAJ
+	 * @param data les données transmises par l'observable (non utilisées)
+	 * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
+	 */
+	@Override
+	public void update(Observable observable, Object data)
+	{
+		if (observable == history)
+		{
+			refresh();
+		}
+	}
+
+	/**
+	 * Reconstruction de la liste à partir des piles de l'historique. Les
+	 * aperçus des entrées qui ont quitté l'historique sont retirés du cache.
+	 */
+	private void refresh()
+	{
+		List<HistoryEntry<Figure>> undos = history.getUndoEntries();
+		List<HistoryEntry<Figure>> redos = history.getRedoEntries();
+		Set<Long> ids = new HashSet<Long>();
+
+		listModel.clear();
+		for (int i = undos.size() - 1; i >= 0; i--)
+		{
+			listModel.addElement(new Row(undos.get(i), true, i + 1));
+			ids.add(undos.get(i).getId());
+		}
+		for (int i = 0; i < redos.size(); i++)
+		{
+			listModel.addElement(new Row(redos.get(i), false, i + 1));
+			ids.add(redos.get(i).getId());
+		}
+		undoCount = undos.size();
+		refreshBranches();
+
+		thumbnails.keySet().retainAll(ids);
+		if (undoCount > 0)
+		{
+			list.ensureIndexIsVisible(undoCount - 1);
+		}
+		updateVisible();
+	}
+
+	/**
+	 * Reconstruction de la liste des branches : les feuilles de l'arbre de
+	 * l'historique, hormis l'extrémité de la branche courante (celle que
+	 * l'on atteint par des redo successifs)
+	 */
+	private void refreshBranches()
+	{
+		UndoTree<Figure> tree = history.getTree();
+		UndoNode<Figure> tip = tree.getCurrent();
+		while ((tip != null) && (tip.getLastChild() != null))
+		{
+			tip = tip.getLastChild();
+		}
+
+		branchModel.clear();
+		for (UndoNode<Figure> node : tree.getNodes())
+		{
+			if (node.getChildren().isEmpty() && (node != tip))
+			{
+				branchModel.addElement(node);
+			}
+		}
+	}
+
+	/**
+	 * Mise à jour de l'ensemble des entrées visibles
+	 */
+	private void updateVisible()
+	{
+		int first = list.getFirstVisibleIndex();
+		int last = list.getLastVisibleIndex();
+		Set<Long> ids = new HashSet<Long>();
+		if (first >= 0)
+		{
+			for (int i = first; i <= last; i++)
+			{
+				ids.add(listModel.get(i).entry.getId());
+			}
+		}
+		visible = ids;
+	}
+
+	/**
+	 * Retour à l'état d'une entrée en annulant ou en refaisant le nombre
+	 * d'actions nécessaires. Si l'une des entrées ne peut pas être
+	 * réhydratée, elle reste dans l'historique, le retour s'arrête et
+	 * l'utilisateur en est averti.
+	 * @param index l'index de l'entrée dans la liste
+	 */
+	private void goTo(int index)
+	{
+		Row row = listModel.get(index);
+		for (int i = 0; i < row.steps; i++)
+		{
+			boolean restored = row.undo ? history.undo() : history.redo();
+			if (!restored)
+			{
+				JOptionPane.showMessageDialog(this,
+				    "Unable to restore this history entry (see log)",
+				    row.undo ? "Undo" : "Redo", JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Obtention de l'aperçu d'une entrée : s'il n'est pas dans le cache, son
+	 * calcul est demandé au thread de dessin et un aperçu vide est renvoyé en
+	 * attendant
+	 * @param entry l'entrée dont on veut l'aperçu
+	 * @return l'aperçu de l'entrée ou bien {@link #placeholder}
+	 */
+	private ImageIcon getThumbnail(HistoryEntry<Figure> entry)
+	{
+		Long id = Long.valueOf(entry.getId());
+		ImageIcon icon = thumbnails.get(id);
+		if (icon != null)
+		{
+			return icon;
+		}
+
+		if (requested.add(id))
+		{
+			renderer.execute(() -> render(entry));
+		}
+		return placeholder;
+	}
+
+	/**
+	 * Dessin de l'aperçu d'une entrée (dans le thread de dessin des
+	 * aperçus) puis mise en cache (dans l'EDT)
+	 * @param entry l'entrée dont on dessine l'aperçu
+	 */
+	private void render(HistoryEntry<Figure> entry)
+	{
+		Long id = Long.valueOf(entry.getId());
+		if (!visible.contains(id))
+		{
+			SwingUtilities.invokeLater(() ->
+			{
+				requested.remove(id);
+				skippedCount++;
+			});
+			return;
+		}
+
+		BufferedImage image;
+		try
+		{
+			image = drawThumbnail(history.getSnapshots(entry));
+		}
+		catch (IOException e)
+		{
+			Log.warning("unable to read {} : {}",
+			    entry, e.getLocalizedMessage());
+			image = blankImage(Color.white);
+		}
+
+		ImageIcon icon = new ImageIcon(image);
+		SwingUtilities.invokeLater(() ->
+		{
+			requested.remove(id);
+			thumbnails.put(id, icon);
+			renderedCount++;
+			repaint(id);
+		});
+	}
+
+	/**
+	 * Redessin de la ligne d'une entrée si elle est toujours dans la liste
+	 * @param id l'identifiant de l'entrée
+	 */
+	private void repaint(Long id)
+	{
+		int first = Math.max(0, list.getFirstVisibleIndex());
+		int last = list.getLastVisibleIndex();
+		for (int i = first; i <= last; i++)
+		{
+			if (listModel.get(i).entry.getId() == id.longValue())
+			{
+				Rectangle cell = list.getCellBounds(i, i);
+				if (cell != null)
+				{
+					list.repaint(cell);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Dessin d'un aperçu : les figures sont mises à l'échelle pour que leur
+	 * rectangle englobant tienne dans l'aperçu
+	 * @param figures les figures à dessiner (qui ne sont pas modifiées)
+	 * @return l'image de l'aperçu
+	 */
+	private static BufferedImage drawThumbnail(List<Figure> figures)
+	{
+		BufferedImage image = blankImage(Color.white);
+		Rectangle2D bounds = null;
+		for (Figure figure : figures)
+		{
+			Rectangle2D figureBounds = figure.getBounds2D();
+			if (bounds == null)
+			{
+				bounds = figureBounds;
+			}
+			else
+			{
+				bounds.add(figureBounds);
+			}
+		}
+		if ((bounds == null) || bounds.isEmpty())
+		{
+			return image;
+		}
+
+		double scale =
+		    Math.min((ThumbnailWidth - 2 * ThumbnailMargin) / bounds.getWidth(),
+		             (ThumbnailHeight - 2 * ThumbnailMargin)
+		                 / bounds.getHeight());
+		Graphics2D g2D = image.createGraphics();
+		g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+		                     RenderingHints.VALUE_ANTIALIAS_ON);
+		g2D.translate(ThumbnailWidth / 2.0, ThumbnailHeight / 2.0);
+		g2D.scale(scale, scale);
+		g2D.translate(-bounds.getCenterX(), -bounds.getCenterY());
+		for (Figure figure : figures)
+		{
+			figure.draw(g2D);
+		}
+		g2D.dispose();
+		return image;
+	}
+
+	/**
+	 * Création d'une image vide de la taille des aperçus
+	 * @param background la couleur de fond
+	 * @return une nouvelle image remplie de la couleur de fond et encadrée
+	 */
+	private static BufferedImage blankImage(Color background)
+	{
+		BufferedImage image = new BufferedImage(ThumbnailWidth,
+		                                        ThumbnailHeight,
+		                                        BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2D = image.createGraphics();
+		g2D.setColor(background);
+		g2D.fillRect(0, 0, ThumbnailWidth, ThumbnailHeight);
+		g2D.setColor(Color.lightGray);
+		g2D.drawRect(0, 0, ThumbnailWidth - 1, ThumbnailHeight - 1);
+		g2D.dispose();
+		return image;
+	}
+
+	/**
+	 * Ligne de la liste : une entrée de l'historique et le nombre d'undo ou
+	 * de redo nécessaires pour l'atteindre
+	 */
+	private static class Row
+	{
+		/**
+		 * L'entrée de l'historique
+		 */
+		private final HistoryEntry<Figure> entry;
+
+		/**
+		 * Indique si l'entrée est dans la pile des undo
+		 */
+		private final boolean undo;
+
+		/**
+		 * Nombre d'undo (ou de redo) nécessaires pour atteindre l'entrée
+		 */
+		private final int steps;
+
+		/**
+		 * Constructeur d'une ligne
+		 * @param entry l'entrée de l'historique
+		 * @param undo true si l'entrée est dans la pile des undo
+		 * @param steps nombre d'undo (ou de redo) nécessaires pour atteindre
+		 * l'entrée
+		 */
+		public Row(HistoryEntry<Figure> entry, boolean undo, int steps)
+		{
+			this.entry = entry;
+			this.undo = undo;
+			this.steps = steps;
+		}
+	}
+
+	/**
+	 * Renderer des lignes de la liste : texte décrivant l'entrée et aperçu
+	 * (invoqué uniquement pour les lignes affichées)
+	 */
+	private class RowRenderer extends DefaultListCellRenderer
+	{
+		/**
+		 * Serializable class must have a serial version UID
+		 */
+		private static final long serialVersionUID = -4290337217447311416L;
+
+		/**
+		 * Mise en place du texte et de l'aperçu d'une ligne
+		 * @see javax.swing.DefaultListCellRenderer#getListCellRendererComponent(javax.swing.JList, java.lang.Object, int, boolean, boolean)
+		 */
+		@Override
+		public Component getListCellRendererComponent(JList<?> list,
+		                                              Object value,
+		                                              int index,
+		                                              boolean isSelected,
+		                                              boolean cellHasFocus)
+		{
+			super.getListCellRendererComponent(list,
+			                                   value,
+			                                   index,
+			                                   isSelected,
+			                                   cellHasFocus);
+			Row row = (Row) value;
+			setText((row.undo ? "Undo " : "Redo ") + row.steps + " : "
+			    + row.entry.size() + " fig. (" + row.entry.getTier() + ")");
+			setIcon(getThumbnail(row.entry));
+			if (!row.undo && !isSelected)
+			{
+				setForeground(Color.gray);
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * Renderer des branches de l'historique : numéro du noeud extrémité de
+	 * la branche, profondeur et nombre de figures
+	 */
+	private static class BranchRenderer extends DefaultListCellRenderer
+	{
+		/**
+		 * Serializable class must have a serial version UID
+		 */
+		private static final long serialVersionUID = 6402811535209874137L;
+
+		/**
+		 * Mise en place du texte d'une branche
+		 * @see javax.swing.DefaultListCellRenderer#getListCellRendererComponent(javax.swing.JList, java.lang.Object, int, boolean, boolean)
+		 */
+		@Override
+		public Component getListCellRendererComponent(JList<?> list,
+		                                              Object value,
+		                                              int index,
+		                                              boolean isSelected,
+		                                              boolean cellHasFocus)
+		{
+			super.getListCellRendererComponent(list,
+			                                   value,
+			                                   index,
+			                                   isSelected,
+			                                   cellHasFocus);
+			UndoNode<?> node = (UndoNode<?>) value;
+			setText("Branch #" + node.getId() + " (depth " + node.getDepth()
+			    + ") : " + node.getMemento().size() + " fig.");
+			return this;
+		}
+	}
+}
@@ -15,6 +15,7 @@ import javax.swing.ListCellRenderer;
 import javax.swing.SwingConstants;
 
 import utils.IconItem;
+import utils.Log;
 import utils.Signature;
 
 /**
@@ -108,8 +109,7 @@ public class JLabeledComboBox extends JPanel implements Signature
 		}
 		else
 		{
-			System.err.println(getClassName() + "::"
-			    + getMethodName() + " null combobox");
+			Log.warning("null combobox");
 		}
 	}
 
@@ -0,0 +1,206 @@
+package widgets;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+import metrics.Histogram;
+import metrics.Metrics;
+import utils.Signature;
+
+/**
+ * Affichage tête haute (HUD) des performances superposé à la zone de dessin :
+ * nombre d'images par seconde, durées médiane (p50) et p99 du dessin de la
+ * zone, nombre de figures et mémoire occupée par l'historique.
+ * Les statistiques sont celles de la dernière seconde écoulée : elles sont
+ * échantillonnées une fois par seconde à partir des mesures du registre
+ * {@link Metrics} ("panel.paint", "drawing.figures" et "history.bytes").
+ * L'overlay n'existe que lorsqu'il est affiché et n'active les mesures que
+ * pendant son affichage ({@link Metrics#acquire()}) : lorsqu'il est masqué
+ * le dessin de la zone ne coûte qu'un test.
+ * @author davidroussel
+ */
+public class PerformanceOverlay implements Signature
+{
+	/**
+	 * Période (en ms) d'échantillonnage des statistiques
+	 */
+	private final static int Period = 1000;
+
+	/**
+	 * Marge (en pixels) entre le bord de la zone de dessin et l'overlay ainsi
+	 * qu'entre le bord de l'overlay et son texte
+	 */
+	private final static int Margin = 6;
+
+	/**
+	 * Police utilisée pour le texte de l'overlay
+	 */
+	private final static Font HudFont = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+	/**
+	 * Couleur de fond (semi transparente) de l'overlay
+	 */
+	private final static Color Background = new Color(0, 0, 0, 160);
+
+	/**
+	 * Couleur du texte de l'overlay
+	 */
+	private final static Color Foreground = new Color(120, 255, 120);
+
+	/**
+	 * Le composant sur lequel est superposé l'overlay
+	 */
+	private final JComponent component;
+
+	/**
+	 * L'histogramme des durées de dessin du composant
+	 */
+	private final Histogram paintTime;
+
+	/**
+	 * Le timer d'échantillonnage des statistiques
+	 */
+	private final Timer timer;
+
+	/**
+	 * L'instantané des durées de dessin lors de l'échantillonnage précédent
+	 */
+	private Histogram.Snapshot previous;
+
+	/**
+	 * L'instant (en ns) de l'échantillonnage précédent
+	 */
+	private long previousNanos;
+
+	/**
+	 * Les lignes de texte affichées
+	 */
+	private String[] lines;
+
+	/**
+	 * La zone occupée par l'overlay lors de son dernier dessin
+	 */
+	private Rectangle bounds;
+
+	/**
+	 * Constructeur d'un overlay
+	 * @param component le composant sur lequel superposer l'overlay
+	 * @param paintTime l'histogramme des durées de dessin du composant
+	 */
+	public PerformanceOverlay(JComponent component, Histogram paintTime)
+	{
+		this.component = component;
+		this.paintTime = paintTime;
+		timer = new Timer(Period, e -> sample());
+		previous = paintTime.snapshot();
+		previousNanos = System.nanoTime();
+		lines = new String[] {"FPS    : -",
+		                      "p50/99 : -",
+		                      "figures: -",
+		                      "history: -"};
+		bounds = null;
+	}
+
+	/**
+	 * Démarrage de l'échantillonnage des statistiques (et activation des
+	 * mesures)
+	 */
+	public void start()
+	{
+		Metrics.acquire();
+		previous = paintTime.snapshot();
+		previousNanos = System.nanoTime();
+		timer.start();
+	}
+
+	/**
+	 * Arrêt de l'échantillonnage des statistiques (et fin du besoin des
+	 * mesures)
+	 */
+	public void stop()
+	{
+		timer.stop();
+		Metrics.release();
+	}
+
+	/**
+	 * Echantillonnage des statistiques de la dernière période puis
+	 * redessin de l'overlay
+	 */
+	private void sample()
+	{
+		Histogram.Snapshot current = paintTime.snapshot();
+		long now = System.nanoTime();
+		Histogram.Snapshot interval = current.minus(previous);
+		double seconds = (now - previousNanos) / 1e9;
+		previous = current;
+		previousNanos = now;
+
+		double fps = seconds > 0.0 ? interval.getCount() / seconds : 0.0;
+		lines[0] = String.format("FPS    : %.1f", fps);
+		if (interval.getCount() > 0)
+		{
+			lines[1] = String.format("p50/99 : %.2f / %.2f ms",
+			    interval.getValueAtPercentile(50.0) / 1e6,
+			    interval.getValueAtPercentile(99.0) / 1e6);
+		}
+		else
+		{
+			lines[1] = "p50/99 : -";
+		}
+		lines[2] = "figures: " + Metrics.getGaugeValue("drawing.figures");
+		lines[3] = String.format("history: %.1f kB",
+		    Metrics.getGaugeValue("history.bytes") / 1024.0);
+
+		if (bounds != null)
+		{
+			component.repaint(bounds);
+		}
+		else
+		{
+			component.repaint();
+		}
+	}
+
+	/**
+	 * Dessin de l'overlay dans le coin supérieur gauche du composant
+	 * @param g2D le contexte graphique du composant
+	 */
+	public void paint(Graphics2D g2D)
+	{
+		Font oldFont = g2D.getFont();
+		g2D.setFont(HudFont);
+		g2D.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+		                     RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		FontMetrics fm = g2D.getFontMetrics();
+		int width = 0;
+		for (String line : lines)
+		{
+			width = Math.max(width, fm.stringWidth(line));
+		}
+		int lineHeight = fm.getHeight();
+		bounds = new Rectangle(Margin,
+		                       Margin,
+		                       width + (2 * Margin),
+		                       (lines.length * lineHeight) + (2 * Margin));
+
+		g2D.setColor(Background);
+		g2D.fillRoundRect(bounds.x, bounds.y, bounds.width, bounds.height,
+		                  Margin, Margin);
+		g2D.setColor(Foreground);
+		int y = bounds.y + Margin + fm.getAscent();
+		for (String line : lines)
+		{
+			g2D.drawString(line, bounds.x + Margin, y);
+			y += lineHeight;
+		}
+		g2D.setFont(oldFont);
+	}
+}
@@ -0,0 +1,595 @@
+package widgets;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.geom.Point2D;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.swing.Timer;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+import history.Memento;
+import metrics.Histogram;
+import metrics.Metrics;
+import utils.Log;
+import widgets.enums.FillStyle;
+import widgets.enums.RenderQuality;
+
+/**
+ * Test de charge du rendu (MagicDraw) : ajoute au dessin un nombre
+ * paramétrable de figures animées (translation avec rebonds sur les bords de
+ * la zone de dessin, rotation et facteur d'échelle oscillant) pendant une
+ * durée fixée, puis rapporte le nombre d'images par seconde soutenu, la
+ * distribution des durées entre deux images et de dessin de la zone, ainsi
+ * que les pauses du ramasse miettes survenues pendant le test.
+ * <p>
+ * L'animation est pilotée par un {@link Timer} sans délai : chaque tick fait
+ * avancer les figures en fonction du temps réellement écoulé depuis le tick
+ * précédent puis demande une seule mise à jour du dessin. Les durées entre
+ * deux ticks sont donc les durées entre deux images, et les images
+ * effectivement dessinées sont comptées grâce à l'histogramme "panel.paint"
+ * de la zone de dessin (les mesures sont activées le temps du test au moyen
+ * de {@link Metrics#acquire()}).
+ * Le dessin (sans l'historique) et la qualité de rendu de la zone de dessin
+ * sont restitués à la fin du test.
+ * </p>
+ * Toutes les méthodes doivent être appelées depuis l'EDT.
+ * @author davidroussel
+ */
+public class StressTest
+{
+	/**
+	 * Nombre de figures par défaut (propriété système "stress.figures")
+	 */
+	public final static int DefaultFigures =
+	    Integer.getInteger("stress.figures", 1000).intValue();
+
+	/**
+	 * Durée par défaut (en secondes) du test (propriété système
+	 * "stress.duration")
+	 */
+	public final static int DefaultDuration =
+	    Integer.getInteger("stress.duration", 10).intValue();
+
+	/**
+	 * Graine par défaut du générateur pseudo-aléatoire des figures animées
+	 * (propriété système "stress.seed") : deux tests de même graine, même
+	 * nombre de figures et même taille de zone de dessin animent exactement
+	 * la même scène, ce qui permet de comparer les machines et les qualités
+	 * de rendu
+	 */
+	public final static long DefaultSeed =
+	    Long.getLong("stress.seed", 20240101L).longValue();
+
+	/**
+	 * Taille minimum (largeur et hauteur) des figures animées
+	 */
+	private final static double MinSize = 10.0;
+
+	/**
+	 * Taille maximum (largeur et hauteur) des figures animées
+	 */
+	private final static double MaxSize = 60.0;
+
+	/**
+	 * Vitesse maximum (en pixels par seconde) des figures animées
+	 */
+	private final static double MaxSpeed = 200.0;
+
+	/**
+	 * Vitesse de rotation maximum (en radians par seconde) des figures animées
+	 */
+	private final static double MaxSpin = Math.PI;
+
+	/**
+	 * Amplitude de l'oscillation du facteur d'échelle des figures animées
+	 */
+	private final static double ScaleAmplitude = 0.3;
+
+	/**
+	 * Pulsation (en radians par seconde) de l'oscillation du facteur
+	 * d'échelle des figures animées
+	 */
+	private final static double ScalePulse = 2.0 * Math.PI * 0.5;
+
+	/**
+	 * Les couleurs des figures animées
+	 */
+	private final static Color[] Colors = {Color.black, Color.blue, Color.cyan,
+	    Color.green, Color.magenta, Color.orange, Color.pink, Color.red,
+	    Color.yellow};
+
+	/**
+	 * Le dessin auquel sont ajoutées les figures animées
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * La zone de dessin dont on mesure le rendu
+	 */
+	private final DrawingPanel panel;
+
+	/**
+	 * Nombre de figures animées
+	 */
+	private final int count;
+
+	/**
+	 * Durée (en secondes) du test
+	 */
+	private final int duration;
+
+	/**
+	 * Qualité de rendu utilisée pendant le test
+	 */
+	private final RenderQuality quality;
+
+	/**
+	 * Style de remplissage des figures animées
+	 */
+	private FillStyle fillStyle;
+
+	/**
+	 * La graine du générateur pseudo-aléatoire des figures animées
+	 */
+	private final long seed;
+
+	/**
+	 * Le générateur pseudo-aléatoire des figures animées
+	 */
+	private final Random random;
+
+	/**
+	 * Le timer d'animation des figures
+	 */
+	private final Timer animation;
+
+	/**
+	 * Le timer mettant fin au test
+	 */
+	private final Timer end;
+
+	/**
+	 * Le listener des notifications du ramasse miettes
+	 */
+	private final NotificationListener gcListener;
+
+	/**
+	 * L'histogramme des durées entre deux images
+	 */
+	private final Histogram frameTime;
+
+	/**
+	 * L'histogramme des durées des pauses du ramasse miettes
+	 */
+	private final Histogram gcPauses;
+
+	/**
+	 * L'histogramme des durées de dessin de la zone de dessin
+	 */
+	private final Histogram paintTime;
+
+	/**
+	 * Les figures animées
+	 */
+	private final List<Figure> animated;
+
+	/**
+	 * Vitesses horizontales (en pixels par seconde) des figures animées
+	 */
+	private double[] vx;
+
+	/**
+	 * Vitesses verticales (en pixels par seconde) des figures animées
+	 */
+	private double[] vy;
+
+	/**
+	 * Vitesses de rotation (en radians par seconde) des figures animées
+	 */
+	private double[] spin;
+
+	/**
+	 * Phases de l'oscillation du facteur d'échelle des figures animées
+	 */
+	private double[] phase;
+
+	/**
+	 * Facteurs d'échelle courants des figures animées
+	 */
+	private double[] scale;
+
+	/**
+	 * Le memento du dessin avant l'ajout des figures animées
+	 */
+	private Memento<Figure> saved;
+
+	/**
+	 * La qualité de rendu de la zone de dessin avant le test
+	 */
+	private RenderQuality savedQuality;
+
+	/**
+	 * L'instantané des durées de dessin au début du test
+	 */
+	private Histogram.Snapshot startPaints;
+
+	/**
+	 * L'instantané des durées de dessin à la fin du test
+	 */
+	private Histogram.Snapshot endPaints;
+
+	/**
+	 * L'instant (en ns) du début du test
+	 */
+	private long startNanos;
+
+	/**
+	 * L'instant (en ns) du tick précédent
+	 */
+	private long previousNanos;
+
+	/**
+	 * Durée effective (en ns) du test
+	 */
+	private long elapsedNanos;
+
+	/**
+	 * Le traitement à effectuer (avec le rapport) à la fin du test
+	 */
+	private Consumer<String> onFinish;
+
+	/**
+	 * Etat du test
+	 */
+	private boolean running;
+
+	/**
+	 * Constructeur
+	 * @param drawing le dessin auquel ajouter les figures animées
+	 * @param panel la zone de dessin dont on mesure le rendu
+	 * @param count le nombre de figures animées
+	 * @param duration la durée (en secondes) du test
+	 * @param quality la qualité de rendu à utiliser pendant le test
+	 * @param seed la graine du générateur pseudo-aléatoire des figures
+	 * animées
+	 * @throws IllegalArgumentException si le nombre de figures ou la durée ne
+	 * sont pas strictement positifs
+	 */
+	public StressTest(Drawing drawing,
+	                  DrawingPanel panel,
+	                  int count,
+	                  int duration,
+	                  RenderQuality quality,
+	                  long seed)
+	    throws IllegalArgumentException
+	{
+		if ((count <= 0) || (duration <= 0))
+		{
+			throw new IllegalArgumentException("invalid stress test " + count
+			    + " figures, " + duration + " s");
+		}
+		this.drawing = drawing;
+		this.panel = panel;
+		this.count = count;
+		this.duration = duration;
+		this.quality = quality;
+		fillStyle = FillStyle.SOLID;
+		this.seed = seed;
+		random = new Random(seed);
+		animation = new Timer(0, (e) -> tick());
+		animation.setCoalesce(true);
+		end = new Timer(duration * 1000, (e) -> stop());
+		end.setRepeats(false);
+		gcListener = (Notification notification, Object handback) ->
+		{
+			gc(notification);
+		};
+		frameTime = Metrics.histogram("stress.frame");
+		gcPauses = Metrics.histogram("stress.gc");
+		paintTime = Metrics.histogram("panel.paint");
+		animated = new ArrayList<Figure>(count);
+		saved = null;
+		savedQuality = null;
+		startPaints = null;
+		endPaints = null;
+		startNanos = 0L;
+		previousNanos = 0L;
+		elapsedNanos = 0L;
+		onFinish = null;
+		running = false;
+	}
+
+	/**
+	 * Mise en place du style de remplissage des figures animées (à appeler
+	 * avant le début du test)
+	 * @param style le style de remplissage (couleurs unies par défaut)
+	 */
+	public void setFillStyle(FillStyle style)
+	{
+		if (style != null)
+		{
+			fillStyle = style;
+		}
+	}
+
+	/**
+	 * Etat du test
+	 * @return true si le test est en cours
+	 */
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	/**
+	 * Début du test : ajout des figures animées et démarrage de l'animation
+	 * @param onFinish le traitement à effectuer avec le rapport du test à la
+	 * fin du test (ou null)
+	 */
+	public void start(Consumer<String> onFinish)
+	{
+		if (running)
+		{
+			return;
+		}
+		this.onFinish = onFinish;
+		Metrics.acquire();
+		savedQuality = panel.getRenderQuality();
+		panel.setRenderQuality(quality);
+		saved = drawing.createMemento();
+		spawn();
+
+		frameTime.reset();
+		gcPauses.reset();
+		for (GarbageCollectorMXBean bean : ManagementFactory
+		    .getGarbageCollectorMXBeans())
+		{
+			if (bean instanceof NotificationEmitter)
+			{
+				((NotificationEmitter) bean)
+				    .addNotificationListener(gcListener, null, null);
+			}
+		}
+		running = true;
+		startPaints = paintTime.snapshot();
+		startNanos = System.nanoTime();
+		previousNanos = startNanos;
+		animation.start();
+		end.start();
+		Log.info("stress test started: {} figures for {} s", count, duration);
+	}
+
+	/**
+	 * Fin (éventuellement anticipée) du test : arrêt de l'animation,
+	 * restitution du dessin et de la qualité de rendu, puis transmission du
+	 * rapport
+	 */
+	public void stop()
+	{
+		if (!running)
+		{
+			return;
+		}
+		running = false;
+		animation.stop();
+		end.stop();
+		elapsedNanos = System.nanoTime() - startNanos;
+		endPaints = paintTime.snapshot();
+		for (GarbageCollectorMXBean bean : ManagementFactory
+		    .getGarbageCollectorMXBeans())
+		{
+			if (bean instanceof NotificationEmitter)
+			{
+				try
+				{
+					((NotificationEmitter) bean)
+					    .removeNotificationListener(gcListener);
+				}
+				catch (ListenerNotFoundException e)
+				{
+					// Le listener n'a pas pu être ajouté à ce collecteur
+				}
+			}
+		}
+		animated.clear();
+		drawing.setMemento(saved);
+		saved = null;
+		panel.setRenderQuality(savedQuality);
+		Metrics.release();
+
+		String result = report();
+		Log.info("stress test finished:\n{}", result);
+		if (onFinish != null)
+		{
+			onFinish.accept(result);
+		}
+	}
+
+	/**
+	 * Rapport du test : images par seconde soutenues, percentiles des durées
+	 * entre deux images et de dessin de la zone, pauses du ramasse miettes
+	 * @return le rapport du dernier test effectué (ou en cours)
+	 */
+	public String report()
+	{
+		Histogram.Snapshot paints = (endPaints != null ? endPaints
+		    : paintTime.snapshot()).minus(startPaints);
+		Histogram.Snapshot frames = frameTime.snapshot();
+		Histogram.Snapshot pauses = gcPauses.snapshot();
+		double seconds = elapsedNanos / 1e9;
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d figures, %.1f s, %s quality, %s fill, "
+		    + "seed %d%n", count, seconds, quality, fillStyle, seed));
+		sb.append(String.format("FPS        %8.1f (%d frames painted)%n",
+		                        seconds > 0.0 ? paints.getCount() / seconds
+		                            : 0.0,
+		                        paints.getCount()));
+		sb.append(String.format("%-10s %8s %8s %8s %8s %8s%n", "(ms)", "mean",
+		                        "p50", "p90", "p99", "max"));
+		sb.append(line("frame", frames));
+		sb.append(line("paint", paints));
+		sb.append(line("gc pause", pauses));
+		sb.append(String.format("GC         %d pause(s), %.1f ms total%n",
+		                        pauses.getCount(),
+		                        (pauses.getMean() * pauses.getCount()) / 1e6));
+		return sb.toString();
+	}
+
+	/**
+	 * Ligne du rapport correspondant à un histogramme
+	 * @param name le nom de la ligne
+	 * @param s l'instantané de l'histogramme (durées en ns)
+	 * @return la ligne du rapport (durées en ms)
+	 */
+	private static String line(String name, Histogram.Snapshot s)
+	{
+		return String.format("%-10s %8.2f %8.2f %8.2f %8.2f %8.2f%n", name,
+		                     s.getMean() / 1e6,
+		                     s.getValueAtPercentile(50.0) / 1e6,
+		                     s.getValueAtPercentile(90.0) / 1e6,
+		                     s.getValueAtPercentile(99.0) / 1e6,
+		                     s.getMax() / 1e6);
+	}
+
+	/**
+	 * Ajout au dessin des figures animées (des ellipses, seul type de figure
+	 * disponible pour l'instant) dans les limites de la zone de dessin avec
+	 * des couleurs, traits, vitesses et phases tirés à partir de la graine
+	 * {@link #seed} et remplies selon le {@link #fillStyle}. Le style courant du dessin est restitué après l'ajout
+	 * des figures.
+	 */
+	private void spawn()
+	{
+		FigureType type = drawing.getFigureType();
+		Paint fill = drawing.getFillpaint();
+		Paint edge = drawing.getEdgePaint();
+		LineType line = drawing.getEdgeType();
+		float width = drawing.getEdgeWidth();
+
+		double w = Math.max(panel.getWidth(), MaxSize);
+		double h = Math.max(panel.getHeight(), MaxSize);
+		LineType[] lines = LineType.values();
+		vx = new double[count];
+		vy = new double[count];
+		spin = new double[count];
+		phase = new double[count];
+		scale = new double[count];
+		random.setSeed(seed);
+		drawing.setFigureType(FigureType.ELLIPSE);
+		for (int i = 0; i < count; i++)
+		{
+			// Tirages indépendants du style de remplissage : mêmes trajectoires
+			Color first = Colors[random.nextInt(Colors.length)];
+			Color second = Colors[random.nextInt(Colors.length)];
+			drawing.setFillPaint(fillStyle.getPaint(first, second,
+			                                        (float) MaxSize));
+			drawing.setEdgePaint(Colors[random.nextInt(Colors.length)]);
+			drawing.setEdgeType(lines[random.nextInt(lines.length)]);
+			drawing.setEdgeWidth(1 + random.nextInt(4));
+			double fw = MinSize + (random.nextDouble() * (MaxSize - MinSize));
+			double fh = MinSize + (random.nextDouble() * (MaxSize - MinSize));
+			double x = random.nextDouble() * (w - fw);
+			double y = random.nextDouble() * (h - fh);
+			Figure figure = drawing.initiateFigure(new Point2D.Double(x, y));
+			figure.setLastPoint(new Point2D.Double(x + fw, y + fh));
+			figure.normalize();
+			animated.add(figure);
+			double angle = random.nextDouble() * 2.0 * Math.PI;
+			double speed = random.nextDouble() * MaxSpeed;
+			vx[i] = speed * Math.cos(angle);
+			vy[i] = speed * Math.sin(angle);
+			spin[i] = ((2.0 * random.nextDouble()) - 1.0) * MaxSpin;
+			phase[i] = random.nextDouble() * 2.0 * Math.PI;
+			scale[i] = 1.0;
+		}
+
+		drawing.setFigureType(type);
+		drawing.setFillPaint(fill);
+		drawing.setEdgePaint(edge);
+		drawing.setEdgeType(line);
+		drawing.setEdgeWidth(width);
+	}
+
+	/**
+	 * Tick de l'animation : déplacement des figures en fonction du temps
+	 * écoulé depuis le tick précédent, puis mise à jour du dessin
+	 */
+	private void tick()
+	{
+		if (!running)
+		{
+			return;
+		}
+		long now = System.nanoTime();
+		frameTime.record(now - previousNanos);
+		double dt = (now - previousNanos) / 1e9;
+		double t = (now - startNanos) / 1e9;
+		previousNanos = now;
+
+		double w = panel.getWidth();
+		double h = panel.getHeight();
+		for (int i = 0; i < animated.size(); i++)
+		{
+			Figure figure = animated.get(i);
+			Point2D center = figure.getCenter();
+			double dx = vx[i] * dt;
+			double dy = vy[i] * dt;
+			if (((center.getX() + dx) < 0.0) || ((center.getX() + dx) > w))
+			{
+				vx[i] = -vx[i];
+				dx = -dx;
+			}
+			if (((center.getY() + dy) < 0.0) || ((center.getY() + dy) > h))
+			{
+				vy[i] = -vy[i];
+				dy = -dy;
+			}
+			figure.translate(dx, dy);
+			figure.rotate(spin[i] * dt);
+			double s = 1.0 + (ScaleAmplitude * Math.sin((ScalePulse * t)
+			    + phase[i]));
+			figure.scale(s / scale[i]);
+			scale[i] = s;
+		}
+		drawing.update();
+	}
+
+	/**
+	 * Enregistrement de la durée d'une pause du ramasse miettes.
+	 * Les notifications des collecteurs concurrents ("... Cycles" de ZGC ou
+	 * Shenandoah) décrivent des cycles qui ne bloquent pas l'application et
+	 * sont ignorées.
+	 * @param notification la notification du collecteur
+	 */
+	private void gc(Notification notification)
+	{
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+		    .equals(notification.getType()))
+		{
+			return;
+		}
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+		    .from((CompositeData) notification.getUserData());
+		if (info.getGcName().endsWith("Cycles"))
+		{
+			return;
+		}
+		gcPauses.record(info.getGcInfo().getDuration() * 1000000L);
+	}
+}
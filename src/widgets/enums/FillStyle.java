@@ -0,0 +1,84 @@
+package widgets.enums;
+
+import java.awt.Color;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.Paint;
+
+import utils.PaintFactory;
+
+/**
+ * Styles de remplissage des figures : couleur unie, dégradés (linéaire ou
+ * radial) entre deux couleurs ou hachures. Les dégradés et hachures sont
+ * définis dans l'espace propre des figures (centré sur leur barycentre) et
+ * fournis par la {@link PaintFactory} : les figures de mêmes couleurs
+ * partagent donc un même paint et les tuiles calculées pour le dessiner.
+ * @author davidroussel
+ */
+public enum FillStyle
+{
+	/**
+	 * Couleur unie
+	 */
+	SOLID,
+
+	/**
+	 * Dégradé linéaire selon la diagonale de la figure
+	 */
+	LINEAR,
+
+	/**
+	 * Dégradé radial depuis le centre de la figure
+	 */
+	RADIAL,
+
+	/**
+	 * Hachures diagonales
+	 */
+	HATCH;
+
+	/**
+	 * Positions des couleurs le long des dégradés
+	 */
+	private final static float[] Fractions = {0.0f, 1.0f};
+
+	/**
+	 * Espacement (en pixels) des traits des hachures
+	 */
+	private final static int HatchSpacing = 6;
+
+	/**
+	 * Paint de remplissage de ce style
+	 * @param first la couleur principale (couleur unie, couleur de départ des
+	 * dégradés ou couleur des traits des hachures)
+	 * @param second la couleur secondaire (couleur d'arrivée des dégradés ou
+	 * couleur de fond des hachures)
+	 * @param size la taille (dans l'espace propre des figures) couverte par
+	 * les dégradés
+	 * @return le paint de remplissage en provenance de la {@link PaintFactory}
+	 * @throws AssertionError si le style est inconnu
+	 */
+	public Paint getPaint(Color first, Color second, float size)
+	    throws AssertionError
+	{
+		float half = size / 2.0f;
+		switch (this)
+		{
+			case SOLID:
+				return PaintFactory.getPaint(first);
+			case LINEAR:
+				return PaintFactory.getLinearGradient(-half, -half, half, half,
+				                                      Fractions,
+				                                      new Color[] {first, second},
+				                                      CycleMethod.NO_CYCLE);
+			case RADIAL:
+				return PaintFactory.getRadialGradient(0.0f, 0.0f, half,
+				                                      Fractions,
+				                                      new Color[] {first, second},
+				                                      CycleMethod.NO_CYCLE);
+			case HATCH:
+				return PaintFactory.getHatch(first, second, HatchSpacing, false);
+		}
+
+		throw new AssertionError("FillStyle Unknown assertion " + this);
+	}
+}
@@ -0,0 +1,64 @@
+package widgets.enums;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+/**
+ * Niveaux de qualité du rendu de la zone de dessin : chaque niveau
+ * correspond à un ensemble d'indications de rendu ({@link RenderingHints})
+ * appliquées au contexte graphique avant le dessin des figures.
+ * @author davidroussel
+ */
+public enum RenderQuality
+{
+	/**
+	 * Rendu rapide : pas d'antialiasing et traits normalisés
+	 */
+	LOW,
+
+	/**
+	 * Rendu par défaut : antialiasing des formes
+	 */
+	MEDIUM,
+
+	/**
+	 * Rendu soigné : antialiasing, algorithmes de rendu privilégiant la
+	 * qualité et traits non normalisés
+	 */
+	HIGH;
+
+	/**
+	 * Application des indications de rendu de ce niveau à un contexte
+	 * graphique
+	 * @param g2D le contexte graphique
+	 * @throws AssertionError si le niveau est inconnu
+	 */
+	public void applyTo(Graphics2D g2D) throws AssertionError
+	{
+		switch (this)
+		{
+			case LOW:
+				g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				                     RenderingHints.VALUE_ANTIALIAS_OFF);
+				g2D.setRenderingHint(RenderingHints.KEY_RENDERING,
+				                     RenderingHints.VALUE_RENDER_SPEED);
+				g2D.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+				                     RenderingHints.VALUE_STROKE_NORMALIZE);
+				return;
+			case MEDIUM:
+				g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				                     RenderingHints.VALUE_ANTIALIAS_ON);
+				return;
+			case HIGH:
+				g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				                     RenderingHints.VALUE_ANTIALIAS_ON);
+				g2D.setRenderingHint(RenderingHints.KEY_RENDERING,
+				                     RenderingHints.VALUE_RENDER_QUALITY);
+				g2D.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+				                     RenderingHints.VALUE_STROKE_PURE);
+				return;
+		}
+
+		throw new AssertionError("RenderQuality Unknown assertion " + this);
+	}
+}